@@ -0,0 +1,134 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks documents parsed in chunks on an executor are the same the engine
+ * returns parsing them on a single thread.
+ */
+public class ChunkedParseTest extends ApplicationTestCase<Application> {
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private ExecutorService mExecutor;
+    private RichTextEngine mEngine;
+
+    public ChunkedParseTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        mEngine = new RichTextEngine(getContext());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testSamples() throws Exception {
+        for(String sample : SAMPLES){
+            String source = Utils.readFromfile(getContext(), sample);
+            assertSameDocument(mEngine.parse(source), mEngine.parse(source, mExecutor));
+        }
+    }
+
+    public void testLongArticle() throws Exception {
+        String source = longArticle();
+        assertSameDocument(mEngine.parse(source), mEngine.parse(source, mExecutor));
+    }
+
+    public void testElementsLeftOpen() throws Exception {
+
+        // markers left open at the end of a part, the next part can't take the output as it is.
+        // The marker of an audio element is never removed
+        String source = longArticle().replace("<h2>Update 1200</h2>", "<h2>Update <font color=\"red\">1200</h2>")
+                .replace("<h2>Update 2400</h2>", "<h2>Update <a href=\"http://square1.io\">2400</h2>")
+                .replace("<h2>Update 600</h2>", "<audio src=\"http://square1.io/a.mp3\"></audio><h2>Update 600</h2>");
+        assertSameDocument(mEngine.parse(source), mEngine.parse(source, mExecutor));
+    }
+
+    public void testRejectingExecutor() throws Exception {
+
+        // every part is parsed on the calling thread when the executor can't run it
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+
+        String source = longArticle();
+        assertSameDocument(mEngine.parse(source), mEngine.parse(source, executor));
+    }
+
+    private static String longArticle(){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 3000; index ++){
+            switch (index % 6){
+                case 0:
+                    html.append("<h2>Update ").append(index).append("</h2>");
+                    break;
+                case 1:
+                    html.append("<p>Paragraph <b>number</b> ").append(index)
+                            .append(" with a <a href=\"http://square1.io\">link</a>. </p>\n");
+                    break;
+                case 2:
+                    html.append("<ul><li>first</li><li>second <i>item</i></li></ul>");
+                    break;
+                case 3:
+                    html.append("<blockquote>Quote ").append(index).append("</blockquote>");
+                    break;
+                case 4:
+                    html.append("<p>https://twitter.com/square1io/status/670060095972245504</p>");
+                    break;
+                default:
+                    html.append("<div><p>Nested paragraph ").append(index).append("</p></div>");
+                    break;
+            }
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual){
+
+        ArrayList<DocumentElement> expectedElements = expected.getElements();
+        ArrayList<DocumentElement> actualElements = actual.getElements();
+
+        assertEquals(expectedElements.size(), actualElements.size());
+
+        for(int index = 0; index < expectedElements.size(); index ++){
+
+            DocumentElement element = expectedElements.get(index);
+            assertEquals(element.getClass(), actualElements.get(index).getClass());
+
+            if(element instanceof RichTextDocumentElement){
+                assertEquals(((RichTextDocumentElement) element).contentString(),
+                        ((RichTextDocumentElement) actualElements.get(index)).contentString());
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import io.square1.oembed.OembedCache;
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.RichTextSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * parses the samples on many threads at the same time and checks every document
+ * is the same one parsed on a single thread.
+ */
+public class ConcurrentParseTest extends ApplicationTestCase<Application> {
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int ROUNDS = 10;
+
+    private interface Parser {
+        RichDocument parse(String source);
+    }
+
+    public ConcurrentParseTest() {
+        super(Application.class);
+    }
+
+    public void testSharedEngine() throws Exception {
+
+        final RichTextEngine engine = new RichTextEngine(getContext());
+
+        assertSameOnAllThreads(new Parser() {
+            @Override
+            public RichDocument parse(String source) {
+                return engine.parse(source);
+            }
+        });
+    }
+
+    public void testFromHtml() throws Exception {
+
+        assertSameOnAllThreads(new Parser() {
+            @Override
+            public RichDocument parse(String source) {
+                return RichTextV2.fromHtml(getContext(), source);
+            }
+        });
+    }
+
+    public void testOembedCacheIsCreatedOnce() throws Exception {
+
+        final ConcurrentLinkedQueue<OembedCache> caches = new ConcurrentLinkedQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<>();
+
+        for(int thread = 0; thread < THREADS; thread ++){
+
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        caches.add(OembedCache.initOembedCache(getContext(), null));
+                    } catch (InterruptedException e) {
+                        // counted as a missing cache below
+                    }
+                }
+            });
+
+            worker.start();
+            threads.add(worker);
+        }
+
+        start.countDown();
+
+        for(Thread worker : threads){
+            worker.join();
+        }
+
+        assertEquals(THREADS, caches.size());
+        for(OembedCache cache : caches){
+            assertSame(OembedCache.getInstance(), cache);
+        }
+    }
+
+    private void assertSameOnAllThreads(final Parser parser) throws Exception {
+
+        final ArrayList<String> sources = new ArrayList<>();
+        for(String sample : SAMPLES){
+            sources.add(Utils.readFromfile(getContext(), sample));
+        }
+        sources.add(nestedLists());
+
+        final ArrayList<RichDocument> expected = new ArrayList<>();
+        for(String source : sources){
+            expected.add(parser.parse(source));
+        }
+
+        final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Thread> threads = new ArrayList<>();
+
+        for(int thread = 0; thread < THREADS; thread ++){
+
+            final int offset = thread;
+
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        // every thread goes through the sources in a different order
+                        for(int round = 0; round < ROUNDS * sources.size(); round ++){
+                            int index = (round + offset) % sources.size();
+                            assertSameDocument(expected.get(index), parser.parse(sources.get(index)));
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            });
+
+            worker.start();
+            threads.add(worker);
+        }
+
+        start.countDown();
+
+        for(Thread worker : threads){
+            worker.join();
+        }
+
+        if(failures.isEmpty() == false){
+            throw new AssertionError(failures.size() + " threads failed, first: " + failures.peek());
+        }
+    }
+
+    private static String nestedLists(){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 200; index ++){
+            html.append("<ul><li>first ").append(index);
+            for(int depth = 0; depth < index % 4; depth ++){
+                html.append(depth % 2 == 0 ? "<ol>" : "<ul>").append("<li>level ").append(depth);
+            }
+            for(int depth = index % 4 - 1; depth >= 0; depth --){
+                html.append("</li>").append(depth % 2 == 0 ? "</ol>" : "</ul>");
+            }
+            html.append("</li><li>last</li></ul><p>after list ").append(index).append("</p>");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual){
+
+        ArrayList<DocumentElement> expectedElements = expected.getElements();
+        ArrayList<DocumentElement> actualElements = actual.getElements();
+
+        assertEquals(expectedElements.size(), actualElements.size());
+
+        for(int index = 0; index < expectedElements.size(); index ++){
+
+            DocumentElement element = expectedElements.get(index);
+            assertEquals(element.getClass(), actualElements.get(index).getClass());
+
+            if(element instanceof RichTextDocumentElement){
+
+                RichTextDocumentElement text = (RichTextDocumentElement) element;
+                RichTextDocumentElement actualText = (RichTextDocumentElement) actualElements.get(index);
+                assertEquals(text.contentString(), actualText.contentString());
+
+                RichTextSpan[] spans = text.getSpans();
+                RichTextSpan[] actualSpans = actualText.getSpans();
+                assertEquals(spans.length, actualSpans.length);
+
+                for(int span = 0; span < spans.length; span ++){
+                    assertEquals(spans[span].getClass(), actualSpans[span].getClass());
+                    assertEquals(text.getSpanStart(spans[span]), actualText.getSpanStart(actualSpans[span]));
+                    assertEquals(text.getSpanEnd(spans[span]), actualText.getSpanEnd(actualSpans[span]));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.parser.handlers.BHandler;
+import io.square1.richtextlib.v2.trace.CountingTracer;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
+
+/**
+ * checks what a CountingTracer aggregates for a known document, and that tags left
+ * open on a thread by an earlier parse don't change the timings of the next one.
+ */
+public class CountingTracerTest extends ApplicationTestCase<Application> {
+
+    private static final String DOCUMENT = "<html><body><p>one <b>two</b> and <b>three</b></p>" +
+            "<ul><li>first</li><li>second</li></ul><p>four</p></body></html>";
+
+    private CountingTracer mTracer;
+    private RichTextEngine mEngine;
+
+    public CountingTracerTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mTracer = new CountingTracer();
+        mEngine = new RichTextEngine(getContext());
+        mEngine.setTracer(mTracer);
+    }
+
+    public void testTagCounts() throws Exception {
+
+        mEngine.parse(DOCUMENT);
+
+        assertEquals(2, mTracer.getTagCount("p"));
+        assertEquals(2, mTracer.getTagCount("b"));
+        assertEquals(1, mTracer.getTagCount("ul"));
+        assertEquals(2, mTracer.getTagCount("li"));
+        assertEquals(0, mTracer.getTagCount("i"));
+
+        assertEquals(2, mTracer.getHandlerCount(BHandler.class));
+        assertEquals(2, mTracer.getSpanCount(StyleSpan.class));
+
+        // timings include the nested tags
+        assertTrue(mTracer.getTagNanos("b") > 0);
+        assertTrue(mTracer.getTagNanos("ul") >= mTracer.getTagNanos("li"));
+
+        mEngine.parse(DOCUMENT);
+        assertEquals(4, mTracer.getTagCount("b"));
+
+        mTracer.reset();
+        assertEquals(0, mTracer.getTagCount("b"));
+        assertTrue(mTracer.getTags().isEmpty());
+    }
+
+    public void testPhaseTimings() throws Exception {
+
+        mEngine.parse(DOCUMENT);
+
+        for(RichTextTracer.Phase phase : RichTextTracer.Phase.values()){
+            assertEquals(1, mTracer.getPhaseCount(phase));
+            assertTrue(mTracer.getPhaseNanos(phase) >= 0);
+        }
+
+        // the tags are handled while the document is parsed
+        assertTrue(mTracer.getPhaseNanos(RichTextTracer.Phase.PARSE) > 0);
+        assertTrue(mTracer.getPhaseNanos(RichTextTracer.Phase.PARSE) >= mTracer.getTagNanos("ul"));
+    }
+
+    public void testOpenTagsAreForgottenWhenAParseStarts() throws Exception {
+
+        // what a parse unwound by a limit or a cancellation leaves on this thread
+        mTracer.onTagOpen("div");
+        mTracer.onTagOpen("div");
+        Thread.sleep(50);
+
+        long before = System.nanoTime();
+        mEngine.parse(DOCUMENT);
+
+        // a close reported after the parse doesn't take the time of the stale opening
+        mTracer.onTagClose("div");
+        assertTrue(mTracer.getTagNanos("div") < System.nanoTime() - before);
+        assertEquals(1, mTracer.getTagCount("div"));
+    }
+}
@@ -0,0 +1,107 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.net.Uri;
+import android.test.ApplicationTestCase;
+
+import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.embed.EmbedClassifier;
+import io.square1.richtextlib.v2.embed.EmbedMatch;
+import io.square1.richtextlib.v2.embed.EmbedProvider;
+import io.square1.richtextlib.v2.embed.EmbedProviders;
+
+/**
+ * checks the links EmbedClassifier recognises and how providers are registered
+ */
+public class EmbedClassifierTest extends ApplicationTestCase<Application> {
+
+    public EmbedClassifierTest() {
+        super(Application.class);
+    }
+
+    public void testDefaultProviders() throws Exception {
+
+        EmbedClassifier classifier = new EmbedClassifier();
+
+        assertMatch(classifier, "https://www.youtube.com/watch?v=dQw4w9WgXcQ", EmbedUtils.TEmbedType.EYoutube, "dQw4w9WgXcQ");
+        assertMatch(classifier, "//www.youtube-nocookie.com/embed/dQw4w9WgXcQ?rel=0", EmbedUtils.TEmbedType.EYoutube, "dQw4w9WgXcQ");
+        assertMatch(classifier, "youtu.be/dQw4w9WgXcQ", EmbedUtils.TEmbedType.EYoutube, "dQw4w9WgXcQ");
+        assertMatch(classifier, "https://mobile.twitter.com/square1/status/640556452934414336",
+                EmbedUtils.TEmbedType.ETwitter, "640556452934414336");
+        assertMatch(classifier, "https://gfycat.com/ifr/SomeGif", EmbedUtils.TEmbedType.EGfycat, "SomeGif");
+        assertMatch(classifier, "https://player.vimeo.com/video/123456",
+                EmbedUtils.TEmbedType.EVimeo, "https://player.vimeo.com/video/123456");
+
+        EmbedMatch soundCloud = classifier.classify(
+                "https://w.soundcloud.com/player/?url=https%3A//api.soundcloud.com/tracks/196567484&auto_play=false");
+        assertEquals(EmbedUtils.TEmbedType.ESoundCloud, soundCloud.getType());
+        assertEquals("196567484", soundCloud.getId());
+        assertEquals(EmbedUtils.getSoundCloudStreamFromTrackId("196567484", EmbedUtils.SOUND_CLOUD_CLIENT_ID),
+                soundCloud.getContent());
+
+        assertNull(classifier.classify("https://soundcloud.com/artist/track"));
+        assertNull(classifier.classify("https://twitter.com/square1"));
+        assertNull(classifier.classify("http://square1.io/blog/123"));
+        // only the host is looked at
+        assertNull(classifier.classify("http://example.com/twitter/123"));
+        assertNull(classifier.classify("http://notyoutube.com/watch?v=dQw4w9WgXcQ"));
+        assertNull(classifier.classify(""));
+        assertNull(classifier.classify(null));
+    }
+
+    public void testRegisteredProviders() throws Exception {
+
+        EmbedClassifier classifier = new EmbedClassifier()
+                .register("facebook.com", EmbedProviders.oembed(EmbedUtils.TEmbedType.EFacebook))
+                .register("music.youtube.com", new EmbedProvider() {
+                    @Override
+                    public EmbedMatch match(String link, Uri uri) {
+                        return new EmbedMatch(EmbedUtils.TEmbedType.EAudio, link, link);
+                    }
+                });
+
+        assertMatch(classifier, "https://www.facebook.com/square1/videos/1",
+                EmbedUtils.TEmbedType.EFacebook, "https://www.facebook.com/square1/videos/1");
+        // the longest host suffix is asked first
+        assertEquals(EmbedUtils.TEmbedType.EAudio,
+                classifier.classify("https://music.youtube.com/watch?v=dQw4w9WgXcQ").getType());
+        assertEquals(EmbedUtils.TEmbedType.EYoutube,
+                classifier.classify("https://www.youtube.com/watch?v=dQw4w9WgXcQ").getType());
+
+        classifier.unregister("facebook.com");
+        assertNull(classifier.classify("https://www.facebook.com/square1/videos/1"));
+    }
+
+    public void testResultsAreRemembered() throws Exception {
+
+        final int[] calls = new int[1];
+        EmbedClassifier classifier = new EmbedClassifier(8).register("example.com", new EmbedProvider() {
+            @Override
+            public EmbedMatch match(String link, Uri uri) {
+                calls[0] ++;
+                return null;
+            }
+        });
+
+        assertNull(classifier.classify("http://example.com/1"));
+        assertNull(classifier.classify("http://example.com/1"));
+        assertEquals(1, calls[0]);
+
+        EmbedMatch match = classifier.classify("https://vimeo.com/1");
+        assertSame(match, classifier.classify("https://vimeo.com/1"));
+    }
+
+    public void testEmbedUtilsUsesDefault() throws Exception {
+        assertEquals("dQw4w9WgXcQ", EmbedUtils.getYoutubeVideoId("http://youtu.be/dQw4w9WgXcQ"));
+        assertEquals(EmbedUtils.TEmbedType.EInstagram, EmbedUtils.getOembedType("https://www.instagram.com/p/xyz/"));
+        assertEquals(EmbedUtils.TEmbedType.EUnsupported, EmbedUtils.getOembedType("https://www.youtube.com/watch?v=dQw4w9WgXcQ"));
+        assertNull(EmbedUtils.getTweetId("https://vimeo.com/123"));
+    }
+
+    private static void assertMatch(EmbedClassifier classifier, String link, EmbedUtils.TEmbedType type, String id){
+        EmbedMatch match = classifier.classify(link);
+        assertNotNull(link, match);
+        assertEquals(type, match.getType());
+        assertEquals(id, match.getId());
+    }
+}
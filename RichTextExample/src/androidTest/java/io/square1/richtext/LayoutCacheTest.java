@@ -0,0 +1,208 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.test.ApplicationTestCase;
+import android.view.View;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.spans.WidthSizedSpan;
+import io.square1.richtextlib.ui.Appearance;
+import io.square1.richtextlib.ui.LayoutCache;
+import io.square1.richtextlib.ui.RichContentView;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks views bound again to an element laid out before take its layout from the cache,
+ * unless the width or the appearance changed or its media changed size, and that the
+ * size of the cache counts the elements it keeps.
+ */
+public class LayoutCacheTest extends ApplicationTestCase<Application> {
+
+    private static final int WIDTH = 600;
+
+    private LayoutCache mCache;
+    private LayoutCache mPrevious;
+    private ExecutorService mExecutor;
+    private RichTextDocumentElement mElement;
+
+    public LayoutCacheTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        mPrevious = RichContentView.getLayoutCache();
+        mCache = new LayoutCache(LayoutCache.DEFAULT_MAX_SIZE);
+        RichContentView.setLayoutCache(mCache);
+        mExecutor = Executors.newSingleThreadExecutor();
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        // the longest text of the sample, the one with its images
+        for(DocumentElement element : engine.parse(Utils.readFromfile(getContext(), "samples/html5.html")).getElements()){
+            if(element instanceof RichTextDocumentElement &&
+                    (mElement == null || mElement.length() < ((RichTextDocumentElement) element).length())){
+                mElement = (RichTextDocumentElement) element;
+            }
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        RichContentView.setLayoutCache(mPrevious);
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testRebindHits() throws Exception {
+
+        RichContentView first = bind(mElement, WIDTH);
+        RichContentView second = bind(mElement, WIDTH);
+
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(first.getMeasuredHeight(), second.getMeasuredHeight());
+    }
+
+    public void testWidthAndAppearanceAreKeys() throws Exception {
+
+        bind(mElement, WIDTH);
+        bind(mElement, WIDTH / 2);
+
+        RichContentView view = new RichContentView(getContext());
+        view.getStyle().setTextColor(Color.RED);
+        view.setText(mElement);
+        measure(view, WIDTH);
+
+        assertEquals(3, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+
+        // back to the first width, after a rotation
+        bind(mElement, WIDTH);
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    public void testPrefetch() throws Exception {
+
+        Appearance appearance = new RichContentView(getContext()).getStyle();
+        mCache.prefetch(mElement, WIDTH, appearance, mExecutor).get();
+
+        // already there
+        assertNull(mCache.prefetch(mElement, WIDTH, appearance, mExecutor));
+
+        bind(mElement, WIDTH);
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(0, mCache.getMissCount());
+    }
+
+    public void testMediaSizeUpdatedRemoves() throws Exception {
+
+        RichContentView view = bind(mElement, WIDTH);
+        bind(mElement, WIDTH / 2);
+        assertTrue(mCache.getSize() > 0);
+
+        // the layouts are removed when the view lays the text out again
+        view.mediaSizeUpdated();
+        measure(view, WIDTH);
+        bind(mElement, WIDTH / 2);
+
+        assertEquals(4, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+    }
+
+    public void testMediaSizesAreKeys() throws Exception {
+
+        bind(mElement, WIDTH);
+
+        UrlBitmapSpan[] spans = mElement.getSpans(0, mElement.length(), UrlBitmapSpan.class);
+        assertTrue(spans.length > 0);
+
+        // the first image has no size in the html, it was laid out with the default ratio
+        Bitmap square = Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888);
+        for(UrlBitmapSpan span : spans){
+            span.updateBitmap(getContext(), new BitmapDrawable(getContext().getResources(), square));
+        }
+
+        // no view laid the text out again, the layout made before isn't found anyway
+        bind(mElement, WIDTH);
+        assertEquals(2, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+
+        bind(mElement, WIDTH);
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    public void testMediaSizesAreKeptByTheElement() throws Exception {
+
+        long sizes = mElement.getMediaSizes(WIDTH);
+        assertEquals(sizes, mElement.getMediaSizes(WIDTH));
+        assertTrue(sizes != mElement.getMediaSizes(WIDTH / 2));
+
+        int generation = WidthSizedSpan.Sizes.generation();
+        UrlBitmapSpan span = mElement.getSpans(0, mElement.length(), UrlBitmapSpan.class)[0];
+        span.updateBitmap(getContext(), new BitmapDrawable(getContext().getResources(),
+                Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888)));
+
+        // the first image has no size in the html, it is a square once loaded
+        assertTrue(WidthSizedSpan.Sizes.generation() != generation);
+        assertTrue(sizes != mElement.getMediaSizes(WIDTH));
+    }
+
+    public void testPrefetchSizeIsTakenOnTheCallingThread() throws Exception {
+
+        Appearance appearance = new RichContentView(getContext()).getStyle();
+        mCache.prefetch(mElement, WIDTH, appearance, mExecutor).get();
+
+        // the element and the frozen copy of the static layout
+        assertTrue(mCache.getSize() > 2 * mElement.length() * 2);
+        assertEquals(LayoutCache.estimateSize(mElement), mCache.getSize() -
+                LayoutCache.estimateSize(mElement, mCache.get(mElement, WIDTH, appearance.fingerprint())));
+    }
+
+    public void testSizeCountsTheElement() throws Exception {
+
+        // a DynamicLayout doesn't copy the text, the cache keeps it in memory all the same
+        bind(mElement, WIDTH);
+        assertTrue(mCache.getSize() > mElement.length() * 2);
+    }
+
+    public void testSizeIsBounded() throws Exception {
+
+        bind(mElement, WIDTH);
+        int maxSize = 3 * mCache.getSize();
+
+        LayoutCache cache = new LayoutCache(maxSize);
+        RichContentView.setLayoutCache(cache);
+
+        // narrower widths have more lines, every layout is at least as large as the first
+        for(int width = WIDTH; width > WIDTH / 2; width -= 10){
+            bind(mElement, width);
+        }
+
+        assertTrue(cache.getSize() <= maxSize);
+        bind(mElement, WIDTH);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    private RichContentView bind(RichTextDocumentElement element, int width){
+        RichContentView view = new RichContentView(getContext());
+        view.setText(element);
+        measure(view, width);
+        return view;
+    }
+
+    private static void measure(RichContentView view, int width){
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+}
@@ -0,0 +1,123 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+import android.util.Patterns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.v2.linkify.Linkifier;
+import io.square1.richtextlib.v2.linkify.PatternLinkifier;
+
+/**
+ * compares Linkifier.WEB_URL against the Patterns.WEB_URL matcher previously used to
+ * autolink text on the sample documents and on a long article, results are written to logcat.
+ */
+public class LinkifierBenchmark extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "LinkifierBenchmark";
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+
+    private List<String> mSources;
+
+    public LinkifierBenchmark() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        mSources = new ArrayList<>();
+        for(String sample : SAMPLES){
+            mSources.add(Utils.readFromfile(getContext(), sample));
+        }
+
+        StringBuilder article = new StringBuilder();
+        for(int index = 0; index < 5000; index ++){
+            article.append("Paragraph ").append(index)
+                    .append(" of a long article. Most sentences have no links at all, some end with a dot.");
+            if(index % 10 == 0){
+                article.append(" More at https://www.square1.io/blog/").append(index).append("?ref=feed.");
+            }
+            if(index % 25 == 0){
+                article.append(" Watch youtu.be/dQw4w9WgXcQ or mail info@square1.io");
+            }
+            article.append('\n');
+        }
+        mSources.add(article.toString());
+    }
+
+    public void testMatchesWebUrlPattern() throws Exception {
+        Linkifier pattern = new PatternLinkifier(Patterns.WEB_URL);
+        for(String source : mSources){
+            assertEquals(LinkifierTest.find(pattern, source), LinkifierTest.find(Linkifier.WEB_URL, source));
+        }
+    }
+
+    public void testLinksPerSecond() throws Exception {
+
+        int[] range = new int[2];
+        int links = 0;
+
+        for(int round = 0; round < WARM_UP_ROUNDS; round ++){
+            links = matchAll();
+            linkifyAll(range);
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            matchAll();
+        }
+        long patternTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            linkifyAll(range);
+        }
+        long linkifierTime = System.nanoTime() - start;
+
+        Log.i(TAG, links + " links");
+        Log.i(TAG, "Patterns.WEB_URL " + millis(patternTime) + " ms");
+        Log.i(TAG, "Linkifier.WEB_URL " + millis(linkifierTime) + " ms");
+    }
+
+    private int matchAll(){
+        int links = 0;
+        for(String source : mSources){
+            Matcher matcher = Patterns.WEB_URL.matcher(source);
+            while (matcher.find()){
+                links ++;
+            }
+        }
+        return links;
+    }
+
+    private int linkifyAll(int[] range){
+        int links = 0;
+        for(String source : mSources){
+            int position = 0;
+            while (Linkifier.WEB_URL.find(source, position, range)){
+                position = range[1];
+                links ++;
+            }
+        }
+        return links;
+    }
+
+    private static double millis(long nanos){
+        return nanos / (ROUNDS * 1000000d);
+    }
+}
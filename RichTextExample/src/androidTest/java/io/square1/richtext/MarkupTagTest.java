@@ -0,0 +1,59 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+import io.square1.richtextlib.v2.parser.MarkupTag;
+
+/**
+ * checks what a MarkupTag keeps of the attributes of the parser and how the ignore flag is inherited
+ */
+public class MarkupTagTest extends ApplicationTestCase<Application> {
+
+    public MarkupTagTest() {
+        super(Application.class);
+    }
+
+    public void testAttributesReadWhileOpen() throws Exception {
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "href", "href", "CDATA", "http://square1.io");
+        atts.addAttribute("", "class", "class", "CDATA", "one two");
+
+        MarkupTag tag = new MarkupTag("a", atts);
+        assertEquals("http://square1.io", tag.attributes.getValue("href"));
+
+        // the parser reuses its attributes for the next element
+        atts.clear();
+        assertEquals("http://square1.io", tag.attributes.getValue("href"));
+        assertEquals(2, tag.attributes.getLength());
+        assertEquals("one two", tag.getElementClass());
+        assertEquals(2, tag.elementClasses.size());
+
+        MarkupTag empty = new MarkupTag("p", new AttributesImpl());
+        assertEquals(0, empty.attributes.getLength());
+        assertNull(empty.getElementClass());
+    }
+
+    public void testIgnoreInherited() throws Exception {
+
+        AttributesImpl ignore = new AttributesImpl();
+        ignore.addAttribute("", MarkupTag.ATT_IGNORE_TAG, MarkupTag.ATT_IGNORE_TAG, "CDATA", "");
+
+        MarkupTag root = new MarkupTag("div", new AttributesImpl());
+        MarkupTag ignored = new MarkupTag("div", ignore);
+        MarkupTag child = new MarkupTag("p", new AttributesImpl());
+        MarkupTag sibling = new MarkupTag("p", new AttributesImpl());
+
+        root.addChild(ignored);
+        ignored.addChild(child);
+        root.addChild(sibling);
+
+        assertFalse(root.ignoreTag());
+        assertTrue(ignored.ignoreTag());
+        assertTrue(child.ignoreTag());
+        assertFalse(sibling.ignoreTag());
+    }
+}
@@ -0,0 +1,108 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import io.square1.richtextlib.spans.BoldSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * parses documents of growing length with nested lists and inline elements, the time spent
+ * on every paragraph shouldn't grow with the number of elements opened and closed before it.
+ * Results are written to logcat.
+ */
+public class OpenElementBenchmark extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "OpenElementBenchmark";
+
+    private static final int[] PARAGRAPHS = { 1000, 2500, 5000, 10000 };
+
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 3;
+
+    /**
+     * the builder still sets every span in time proportional to the spans already there,
+     * the ratio leaves room for that.
+     */
+    private static final double MAX_GROWTH = 5;
+
+    private static final class Marker {}
+
+    public OpenElementBenchmark() {
+        super(Application.class);
+    }
+
+    public void testMarkersAreNotSpans() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement("0123456789");
+        Marker first = new Marker();
+        Marker second = new Marker();
+
+        element.addMarker(first);
+        element.append("abcdef");
+        element.addMarker(second);
+        element.setSpan(new BoldSpan(), 10, 16, 0);
+
+        assertSame(second, element.getLastMarker(Marker.class));
+        assertEquals(0, element.getSpans(0, element.length(), Marker.class).length);
+
+        element.delete(2, 12);
+        assertEquals(2, element.getMarkerStart(first));
+        assertEquals(6, element.getMarkerStart(second));
+
+        element.removeMarker(second);
+        assertSame(first, element.getLastMarker(Marker.class));
+        assertEquals(-1, element.getMarkerStart(second));
+
+        element.removeMarker(first);
+        assertNull(element.getLastMarker(Marker.class));
+    }
+
+    public void testTimePerParagraph() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+
+        for(int round = 0; round < WARM_UP_ROUNDS; round ++){
+            engine.parse(document(PARAGRAPHS[0]));
+        }
+
+        double first = 0;
+        double last = 0;
+
+        for(int paragraphs : PARAGRAPHS){
+
+            String source = document(paragraphs);
+            long best = Long.MAX_VALUE;
+
+            for(int round = 0; round < ROUNDS; round ++){
+                long start = System.nanoTime();
+                engine.parse(source);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            last = best / (paragraphs * 1000d);
+            if(first == 0){
+                first = last;
+            }
+
+            Log.i(TAG, paragraphs + " paragraphs " + (best / 1000000) + " ms " + last + " us/paragraph");
+        }
+
+        assertTrue(last + " us/paragraph against " + first, last < first * MAX_GROWTH);
+    }
+
+    private static String document(int paragraphs){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < paragraphs; index ++){
+            html.append("<p>Paragraph <b>").append(index).append("</b> with <i>some</i> <a href=\"http://square1.io/")
+                    .append(index).append("\">link</a> and <font color=\"#ff0000\">colour</font>.</p>");
+            if(index % 10 == 0){
+                html.append("<ul><li>one<ol><li>two<ul><li>three</li></ul></li></ol></li><li>four</li></ul>");
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+}
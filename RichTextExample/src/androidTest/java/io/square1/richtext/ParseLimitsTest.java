@@ -0,0 +1,391 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.SlicedParse;
+import io.square1.richtextlib.v2.cache.RichDocumentCache;
+import io.square1.richtextlib.v2.codec.RichDocumentCodec;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.ParseLimits;
+
+/**
+ * checks every limit truncates the document the same way whichever way it is parsed, and
+ * parses generated pathological documents of growing size failing if the time they take
+ * grows faster than their size.
+ */
+public class ParseLimitsTest extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "ParseLimitsTest";
+
+    /**
+     * the documents are made this many times longer, a parse taking linear time takes
+     * about as many times as long
+     */
+    private static final int GROWTH = 4;
+
+    /**
+     * the most the time can grow, a parse taking quadratic time grows GROWTH * GROWTH times
+     */
+    private static final int MAX_TIME_GROWTH = 2 * GROWTH;
+
+    private static final int SEEDS = 3;
+
+    private ExecutorService mExecutor;
+
+    public ParseLimitsTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testDefaultStyleHasNoLimits() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        assertSame(ParseLimits.NONE, engine.getStyle().limits());
+
+        RichDocument document = engine.parse(nested(200, 0));
+        assertFalse(document.isTruncated());
+        assertTrue(text(document).contains("level 199 "));
+    }
+
+    public void testSamplesAreNotTruncated() throws Exception {
+
+        RichTextEngine engine = engine(ParseLimits.DEFAULT);
+
+        for(String sample : new String[]{"samples/html5.html", "samples/test.html", "samples/youtube_test.html"}){
+            assertFalse(engine.parse(Utils.readFromfile(getContext(), sample)).isTruncated());
+        }
+    }
+
+    public void testDeepElementsKeepTheirText() throws Exception {
+
+        RichTextEngine engine = engine(ParseLimits.DEFAULT.withMaxDepth(16));
+        RichDocument document = engine.parse(nested(200, 0));
+
+        assertTrue(document.isTruncated());
+        String text = text(document);
+        assertTrue(text.contains("level 15 "));
+        assertTrue(text.contains("level 199 "));
+    }
+
+    public void testElementsEndTheDocument() throws Exception {
+
+        RichDocument document = engine(ParseLimits.DEFAULT.withMaxElements(20)).parse(paragraphs(100));
+
+        assertTrue(document.isTruncated());
+        assertTrue(text(document).contains("paragraph 5 "));
+        assertFalse(text(document).contains("paragraph 50 "));
+    }
+
+    public void testEmbedsAreDropped() throws Exception {
+
+        RichDocument document = engine(ParseLimits.DEFAULT.withMaxEmbeds(3)).parse(nestedEmbeds(4, 10, 0));
+
+        int embeds = 0;
+        for(DocumentElement element : document.getElements()){
+            if(element instanceof RichTextDocumentElement == false){
+                embeds ++;
+            }
+        }
+
+        assertTrue(document.isTruncated());
+        assertEquals(3, embeds);
+        // the text after the embeds dropped is kept
+        assertTrue(text(document).contains("embed 9 "));
+    }
+
+    public void testTextIsCut() throws Exception {
+
+        RichDocument document = engine(ParseLimits.DEFAULT.withMaxTextLength(100)).parse(paragraphs(100));
+
+        assertTrue(document.isTruncated());
+        assertTrue(text(document).replace("\n", "").length() <= 100);
+    }
+
+    public void testTimeBudget() throws Exception {
+
+        String source = paragraphs(20000);
+        RichDocument document = engine(ParseLimits.DEFAULT.withTimeBudget(1, TimeUnit.MILLISECONDS)).parse(source);
+
+        assertTrue(document.isTruncated());
+        assertFalse(text(document).contains("paragraph 19999 "));
+    }
+
+    public void testTruncatedDocumentsAreNotCached() throws Exception {
+
+        RichTextEngine engine = engine(ParseLimits.DEFAULT.withMaxElements(20));
+        RichDocumentCache cache = new RichDocumentCache(4 * 1024 * 1024);
+        engine.setCache(cache);
+
+        String source = paragraphs(100);
+        engine.parse(source);
+        engine.parse(source);
+
+        assertEquals(0, cache.getMemoryHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * the chunks of a long document are parsed on their own but the limits are checked
+     * against the whole document
+     */
+    public void testChunkedParseIsTruncatedTheSame() throws Exception {
+
+        ParseLimits[] limits = {
+                ParseLimits.NONE.withMaxElements(2000),
+                ParseLimits.NONE.withMaxEmbeds(5),
+                ParseLimits.NONE.withMaxTextLength(20 * 1000),
+                ParseLimits.NONE.withMaxDepth(6)
+        };
+
+        String source = mixed(new Random(11), 3000);
+
+        for(ParseLimits limit : limits){
+
+            RichTextEngine engine = engine(limit);
+            RichDocument expected = engine.parse(source);
+            RichDocument chunked = engine.parse(source, mExecutor);
+
+            RichTextEngine sliced = engine(limit);
+            SlicedParse parse = sliced.newSlicedParse(source, null);
+            while (parse.step(0, TimeUnit.MILLISECONDS) == false){
+                // a slice at a time
+            }
+
+            assertTrue(expected.isTruncated());
+            assertTrue(chunked.isTruncated());
+            assertTrue(parse.getDocument().isTruncated());
+            assertTrue(Arrays.equals(RichDocumentCodec.encode(expected), RichDocumentCodec.encode(chunked)));
+            assertTrue(Arrays.equals(RichDocumentCodec.encode(expected), RichDocumentCodec.encode(parse.getDocument())));
+        }
+    }
+
+    public void testDeepNestingScales() throws Exception {
+        assertScales("nesting", new Generator() {
+            @Override
+            public String generate(Random random, int size) {
+                return nested(size, random.nextInt(8));
+            }
+        }, 500);
+    }
+
+    public void testEmbedsInNestedListsScale() throws Exception {
+        assertScales("embeds", new Generator() {
+            @Override
+            public String generate(Random random, int size) {
+                return nestedEmbeds(20 + random.nextInt(20), size, random.nextInt(8));
+            }
+        }, 250);
+    }
+
+    public void testUnclosedElementsScale() throws Exception {
+        assertScales("unclosed", new Generator() {
+            @Override
+            public String generate(Random random, int size) {
+                return unclosed(random, size);
+            }
+        }, 500);
+    }
+
+    public void testMixedScales() throws Exception {
+        assertScales("mixed", new Generator() {
+            @Override
+            public String generate(Random random, int size) {
+                return mixed(random, size);
+            }
+        }, 500);
+    }
+
+    private interface Generator {
+
+        /**
+         * @param size the number of elements, about
+         */
+        String generate(Random random, int size);
+    }
+
+    /**
+     * parses the documents generated with size and GROWTH times size with the default
+     * limits, the time of the longer ones can't grow more than MAX_TIME_GROWTH times
+     */
+    private void assertScales(String name, Generator generator, int size){
+
+        RichTextEngine engine = engine(ParseLimits.DEFAULT);
+
+        for(int seed = 0; seed < SEEDS; seed ++){
+
+            String small = generator.generate(new Random(seed), size);
+            String large = generator.generate(new Random(seed), size * GROWTH);
+
+            long smallTime = time(engine, small);
+            long largeTime = time(engine, large);
+
+            Log.i(TAG, name + " seed " + seed + " " + small.length() + " chars " + smallTime / 1000 +
+                    " us, " + large.length() + " chars " + largeTime / 1000 + " us");
+
+            // a millisecond at least, shorter times are mostly noise
+            assertTrue(name + " seed " + seed + " took " + largeTime / 1000 + " us",
+                    largeTime <= MAX_TIME_GROWTH * Math.max(smallTime, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * @return the shortest of a few parses of source after one to warm up
+     */
+    private static long time(RichTextEngine engine, String source){
+
+        engine.parse(source);
+        long best = Long.MAX_VALUE;
+
+        for(int round = 0; round < 3; round ++){
+            long start = System.nanoTime();
+            engine.parse(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best;
+    }
+
+    private RichTextEngine engine(final ParseLimits limits){
+        return new RichTextEngine(getContext(), new RichTextV2.DefaultStyle(getContext()){
+            @Override
+            public ParseLimits limits() {
+                return limits;
+            }
+        });
+    }
+
+    private static final String[] BLOCKS = {"div", "blockquote", "ul", "ol", "li", "p", "table", "td"};
+    private static final String[] INLINE = {"b", "i", "u", "a", "span", "em", "strong", "small"};
+
+    private static String nested(int depth, int kind){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        String block = BLOCKS[kind % BLOCKS.length];
+        String inline = INLINE[kind % INLINE.length];
+
+        for(int level = 0; level < depth; level ++){
+            html.append('<').append(block).append("><").append(inline).append(">level ").append(level).append(' ');
+        }
+        for(int level = 0; level < depth; level ++){
+            html.append("</").append(inline).append("></").append(block).append('>');
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    private static String nestedEmbeds(int depth, int embeds, int kind){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        String inline = INLINE[kind % INLINE.length];
+
+        for(int level = 0; level < depth; level ++){
+            html.append("<ul><li><").append(inline).append(">item ").append(level).append(' ');
+        }
+        for(int embed = 0; embed < embeds; embed ++){
+            html.append("embed ").append(embed).append(" <iframe src=\"https://player.vimeo.com/video/")
+                    .append(embed).append("\" width=\"560\" height=\"315\"></iframe> ");
+        }
+        for(int level = 0; level < depth; level ++){
+            html.append("</").append(inline).append("></li></ul>");
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    /**
+     * tags TagSoup has to close, at random
+     */
+    private static String unclosed(Random random, int elements){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+
+        for(int element = 0; element < elements; element ++){
+            String[] tags = random.nextBoolean() ? BLOCKS : INLINE;
+            html.append('<').append(tags[random.nextInt(tags.length)]).append('>')
+                    .append("text ").append(element).append(' ');
+            if(random.nextInt(10) == 0){
+                html.append("</").append(BLOCKS[random.nextInt(BLOCKS.length)]).append('>');
+            }
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    /**
+     * paragraphs, lists and embeds nested at random
+     */
+    private static String mixed(Random random, int elements){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        int open = 0;
+
+        for(int element = 0; element < elements; element ++){
+            switch (random.nextInt(6)){
+                case 0:
+                    html.append("<blockquote>");
+                    open ++;
+                    break;
+                case 1:
+                    if(open > 0){
+                        html.append("</blockquote>");
+                        open --;
+                    }
+                    break;
+                case 2:
+                    html.append("<iframe src=\"https://player.vimeo.com/video/").append(element)
+                            .append("\" width=\"560\" height=\"315\"></iframe>");
+                    break;
+                case 3:
+                    html.append("<ul><li>item <b>").append(element).append("</b></li></ul>");
+                    break;
+                default:
+                    html.append("<p>paragraph ").append(element).append(" with <i>some</i> text</p>");
+                    break;
+            }
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    private static String paragraphs(int count){
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < count; index ++){
+            html.append("<p>paragraph ").append(index).append(" of the document</p>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String text(RichDocument document){
+        StringBuilder text = new StringBuilder();
+        for(DocumentElement element : document.getElements()){
+            if(element instanceof RichTextDocumentElement){
+                text.append(((RichTextDocumentElement) element).contentString());
+            }
+        }
+        return text.toString();
+    }
+}
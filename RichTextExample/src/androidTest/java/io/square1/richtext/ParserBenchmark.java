@@ -0,0 +1,205 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.os.Debug;
+import android.os.Parcel;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.parser.MarkupTag;
+
+/**
+ * operations per second and bytes allocated per operation of the parts of the parser
+ * needing Android, the parts in richtext-core are measured by the benchmarks module.
+ * Results are written to logcat and to a tab separated file per suite in
+ * files/benchmarks of the external files folder, to diff between commits.
+ */
+public class ParserBenchmark extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "ParserBenchmark";
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final String[] LINKS = {
+            "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "https://mobile.twitter.com/square1/status/640556452934414336",
+            "https://player.vimeo.com/video/123456",
+            "https://gfycat.com/ifr/SomeGif",
+            "https://twitter.com/square1",
+            "http://square1.io/blog/123"
+    };
+
+    private static final String[] TAGS = {
+            "p", "a", "b", "i", "div", "span", "img", "ul", "li", "blockquote", "h1", "figure"
+    };
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 30;
+
+    private List<String> mSources;
+
+    public ParserBenchmark() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        mSources = new ArrayList<>();
+        for(String sample : SAMPLES){
+            mSources.add(Utils.readFromfile(getContext(), sample));
+        }
+    }
+
+    public void testFromHtml() throws Exception {
+
+        ArrayList<String> results = new ArrayList<>();
+
+        for(int index = 0; index < SAMPLES.length; index ++){
+            final String source = mSources.get(index);
+            results.add(measure(SAMPLES[index], 1, new Runnable() {
+                @Override
+                public void run() {
+                    RichTextV2.fromHtml(getContext(), source);
+                }
+            }));
+        }
+
+        write("fromHtml", results);
+    }
+
+    public void testParseLink() throws Exception {
+
+        final EmbedUtils.ParseLinkCallback callback = new EmbedUtils.ParseLinkCallback() {
+            @Override
+            public void onLinkParsed(Object callingObject, String result, EmbedUtils.TEmbedType type) {
+            }
+        };
+
+        ArrayList<String> results = new ArrayList<>();
+        results.add(measure("links", LINKS.length, new Runnable() {
+            @Override
+            public void run() {
+                for(String link : LINKS){
+                    EmbedUtils.parseLink(this, link, callback);
+                }
+            }
+        }));
+
+        write("parseLink", results);
+    }
+
+    public void testHandlerLookup() throws Exception {
+
+        final MarkupContext context = new MarkupContext();
+        final MarkupTag[] tags = new MarkupTag[TAGS.length];
+        for(int index = 0; index < TAGS.length; index ++){
+            tags[index] = new MarkupTag(TAGS[index], new AttributesImpl());
+        }
+
+        ArrayList<String> results = new ArrayList<>();
+        results.add(measure("tags", tags.length, new Runnable() {
+            @Override
+            public void run() {
+                for(MarkupTag tag : tags){
+                    context.getTagHandler(tag);
+                }
+            }
+        }));
+
+        write("handlerLookup", results);
+    }
+
+    public void testParcelRoundTrip() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        ArrayList<String> results = new ArrayList<>();
+
+        for(int index = 0; index < SAMPLES.length; index ++){
+            final RichDocument document = engine.parse(mSources.get(index));
+            results.add(measure(SAMPLES[index], 1, new Runnable() {
+                @Override
+                public void run() {
+                    Parcel parcel = Parcel.obtain();
+                    document.writeToParcel(parcel, 0);
+                    parcel.setDataPosition(0);
+                    RichDocument.CREATOR.createFromParcel(parcel);
+                    parcel.recycle();
+                }
+            }));
+        }
+
+        write("parcelRoundTrip", results);
+    }
+
+    /**
+     * runs operation ROUNDS times after WARM_UP_ROUNDS
+     * @param operations the operations done by each run
+     * @return the name, operations per second and bytes per operation separated by tabs
+     */
+    private static String measure(String name, int operations, Runnable operation){
+
+        for(int round = 0; round < WARM_UP_ROUNDS; round ++){
+            operation.run();
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            operation.run();
+        }
+        long time = System.nanoTime() - start;
+
+        long bytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        int total = ROUNDS * operations;
+        return String.format(Locale.US, "%s\t%.1f\t%d", name,
+                total * 1000000000d / Math.max(1, time), bytes / total);
+    }
+
+    private void write(String suite, List<String> results) throws IOException {
+
+        File folder = getContext().getExternalFilesDir(null);
+        if(folder == null){
+            folder = getContext().getFilesDir();
+        }
+
+        folder = new File(folder, "benchmarks");
+        folder.mkdirs();
+
+        FileWriter writer = new FileWriter(new File(folder, suite + ".tsv"));
+        try {
+            writer.write("name\tops/s\tbytes/op\n");
+            for(String result : results){
+                Log.i(TAG, suite + " " + result);
+                writer.write(result);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.net.Uri;
+import android.test.ApplicationTestCase;
+import android.text.DynamicLayout;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.style.ReplacementSpan;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.ui.Appearance;
+import io.square1.richtextlib.ui.PrecomputedLayout;
+import io.square1.richtextlib.ui.RichContentView;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks a layout precomputed off the main thread breaks the text in the same lines a
+ * DynamicLayout does, and that RichContentView uses it instead of laying the text out again.
+ */
+public class PrecomputedLayoutTest extends ApplicationTestCase<Application> {
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final int WIDTH = 600;
+
+    private ExecutorService mExecutor;
+    private Thread mLayoutThread;
+    private ArrayList<RichTextDocumentElement> mElements;
+
+    public PrecomputedLayoutTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                mLayoutThread = new Thread(runnable, "layout");
+                return mLayoutThread;
+            }
+        });
+
+        mElements = new ArrayList<>();
+        RichTextEngine engine = new RichTextEngine(getContext());
+        for(String sample : SAMPLES){
+            for(DocumentElement element : engine.parse(Utils.readFromfile(getContext(), sample)).getElements()){
+                if(element instanceof RichTextDocumentElement){
+                    mElements.add((RichTextDocumentElement) element);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testSameLinesAsDynamicLayout() throws Exception {
+
+        Appearance appearance = new Appearance(getContext());
+        int compared = 0;
+
+        for(RichTextDocumentElement element : mElements){
+
+            // sized by the view in a DynamicLayout, see testReplacementSpansAreMeasuredHere
+            if(element.getSpans(0, element.length(), ReplacementSpan.class).length > 0){
+                continue;
+            }
+            compared ++;
+
+            Layout expected = new DynamicLayout(element,
+                    appearance.textPaint(null),
+                    WIDTH,
+                    Layout.Alignment.ALIGN_NORMAL,
+                    appearance.getSpacingMult(),
+                    appearance.getLineSpacingAdd(),
+                    false);
+
+            Layout actual = PrecomputedLayout.submit(element, WIDTH, appearance, mExecutor).get().getLayout();
+
+            assertEquals(expected.getLineCount(), actual.getLineCount());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            for(int line = 0; line < expected.getLineCount(); line ++){
+                assertEquals(expected.getLineStart(line), actual.getLineStart(line));
+            }
+        }
+
+        assertTrue(compared > 0);
+    }
+
+    public void testReplacementSpansAreMeasuredHere() throws Exception {
+
+        final Thread[] measuredOn = new Thread[1];
+        final boolean[] drawn = new boolean[1];
+
+        RichTextDocumentElement element = new RichTextDocumentElement("text ");
+        element.appendImage(Uri.parse("http://square1.io/image.png"), 2 * WIDTH, WIDTH);
+        element.append(" box ");
+        element.setSpan(new ReplacementSpan() {
+            @Override
+            public int getSize(Paint paint, CharSequence text, int start, int end, Paint.FontMetricsInt fm) {
+                measuredOn[0] = Thread.currentThread();
+                return 10;
+            }
+
+            @Override
+            public void draw(Canvas canvas, CharSequence text, int start, int end, float x, int top, int y, int bottom, Paint paint) {
+                drawn[0] = true;
+            }
+        }, element.length() - 4, element.length() - 1, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        Layout layout = PrecomputedLayout.submit(element, WIDTH, new Appearance(getContext()), mExecutor).get().getLayout();
+
+        assertSame(Thread.currentThread(), measuredOn[0]);
+        // the image is as wide as the text, keeping its ratio
+        assertTrue(layout.getHeight() >= WIDTH / 2);
+        assertTrue(layout.getHeight() < WIDTH);
+
+        // the spans draw themselves
+        layout.draw(new Canvas(Bitmap.createBitmap(WIDTH, layout.getHeight(), Bitmap.Config.ARGB_8888)));
+        assertTrue(drawn[0]);
+    }
+
+    public void testTextIsFrozen() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement("some text");
+        PrecomputedLayout layout = PrecomputedLayout.create(element, WIDTH, new Appearance(getContext()));
+
+        element.append(" added later");
+
+        assertSame(element, layout.getSource());
+        assertEquals("some text", layout.getLayout().getText().toString());
+    }
+
+    public void testViewUsesPrecomputedLayout() throws Exception {
+
+        RichContentView view = new RichContentView(getContext());
+        RichTextDocumentElement element = mElements.get(0);
+
+        Future<PrecomputedLayout> future = PrecomputedLayout.submit(element, WIDTH, view.getStyle(), mExecutor);
+        view.setText(element, future);
+        measure(view, WIDTH);
+
+        assertTrue(future.isDone());
+        assertNotSame(Thread.currentThread(), mLayoutThread);
+        assertEquals(future.get().getHeight(), view.getMeasuredHeight());
+    }
+
+    public void testStaticModeFollowsWidth() throws Exception {
+
+        RichContentView view = new RichContentView(getContext());
+        view.setTextLayoutMode(RichContentView.TextLayoutMode.STATIC);
+        RichTextDocumentElement element = mElements.get(0);
+
+        view.setText(element, PrecomputedLayout.submit(element, WIDTH, view.getStyle(), mExecutor));
+        measure(view, WIDTH);
+        int wide = view.getMeasuredHeight();
+
+        // narrower than the precomputed layout, the view lays the text out again
+        measure(view, WIDTH / 2);
+        assertEquals(PrecomputedLayout.create(element, WIDTH / 2, view.getStyle()).getHeight(),
+                view.getMeasuredHeight());
+        assertTrue(view.getMeasuredHeight() > wide);
+
+        view.mediaSizeUpdated();
+        measure(view, WIDTH);
+        assertEquals(wide, view.getMeasuredHeight());
+    }
+
+    private static void measure(RichContentView view, int width){
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+}
@@ -0,0 +1,315 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.ApplicationTestCase;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.ui.LayoutCache;
+import io.square1.richtextlib.ui.RichContentView;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * counts the layouts of a view when a batch of images arrives in the same frame: the
+ * view lays the text out again once per frame, and a DynamicLayout only reflows the
+ * paragraphs of the images unless one of them ends the text. The height of the view
+ * follows the size of the images either way.
+ */
+public class ReflowTest extends ApplicationTestCase<Application> {
+
+    private static final int IMAGES = 30;
+    private static final int WIDTH = 600;
+
+    // a quarter of the width high once loaded, three quarters before
+    private static final int IMAGE_WIDTH = 400;
+    private static final int IMAGE_HEIGHT = 100;
+    private static final int IMAGE_SHRINK = (int)(WIDTH * UrlBitmapSpan.RATIO) -
+            WIDTH * IMAGE_HEIGHT / IMAGE_WIDTH;
+
+    private Handler mMain;
+    private LayoutCache mPrevious;
+    private RichTextDocumentElement mText;
+
+    public ReflowTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mMain = new Handler(Looper.getMainLooper());
+        // every layout is made by the view
+        mPrevious = RichContentView.getLayoutCache();
+        RichContentView.setLayoutCache(null);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        RichContentView.setLayoutCache(mPrevious);
+        super.tearDown();
+    }
+
+    public void testBatchIsReflowedOnceIncrementally() throws Exception {
+
+        final RichContentView view = newView(RichContentView.TextLayoutMode.DYNAMIC, false);
+        int layouts = view.getLayoutCount();
+        int reflows = view.getReflowCount();
+        int height = view.getMeasuredHeight();
+
+        completeImages(view);
+
+        assertEquals(reflows + 1, view.getReflowCount());
+        // the paragraphs of the images only, the text isn't laid out from the start
+        assertEquals(layouts, view.getLayoutCount());
+        assertShrunk(height, view);
+    }
+
+    public void testImageEndingTheTextIsLaidOutWhole() throws Exception {
+
+        final RichContentView view = newView(RichContentView.TextLayoutMode.DYNAMIC, true);
+        int layouts = view.getLayoutCount();
+        int reflows = view.getReflowCount();
+        int height = view.getMeasuredHeight();
+
+        completeImages(view);
+
+        // the span watchers aren't told about a span ending the text
+        assertEquals(reflows + 1, view.getReflowCount());
+        assertEquals(layouts + 1, view.getLayoutCount());
+        assertShrunk(height, view);
+    }
+
+    public void testBatchIsLaidOutOnceWhole() throws Exception {
+
+        final RichContentView view = newView(RichContentView.TextLayoutMode.STATIC, false);
+        int layouts = view.getLayoutCount();
+        int reflows = view.getReflowCount();
+        int height = view.getMeasuredHeight();
+
+        completeImages(view);
+
+        assertEquals(reflows + 1, view.getReflowCount());
+        assertEquals(layouts + 1, view.getLayoutCount());
+        assertShrunk(height, view);
+    }
+
+    public void testFramesAreReflowedApart() throws Exception {
+
+        final RichContentView view = newView(RichContentView.TextLayoutMode.DYNAMIC, false);
+        int reflows = view.getReflowCount();
+        int height = view.getMeasuredHeight();
+
+        completeImages(view);
+        completeImages(view);
+
+        assertEquals(reflows + 2, view.getReflowCount());
+        assertShrunk(height, view);
+    }
+
+    public void testSharedLayoutIsReflowedInEveryView() throws Exception {
+
+        RichContentView.setLayoutCache(new LayoutCache(LayoutCache.DEFAULT_MAX_SIZE));
+
+        final RichContentView first = newView(RichContentView.TextLayoutMode.DYNAMIC, false);
+        final RichContentView second = showText(RichContentView.TextLayoutMode.DYNAMIC);
+        final int height = first.getMeasuredHeight();
+        assertEquals(height, second.getMeasuredHeight());
+        // the second view took the layout of the first from the cache
+        assertEquals(0, second.getLayoutCount());
+
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                first.layout(0, 0, WIDTH, height);
+                assertFalse(first.isLayoutRequested());
+            }
+        });
+
+        // the spans are bound to the second view, the layout reflows under the first too
+        completeImages(second);
+
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(first.isLayoutRequested());
+                measure(first);
+            }
+        });
+
+        assertShrunk(height, first);
+        assertShrunk(height, second);
+    }
+
+    public void testSizesFromAnotherThreadAreHandedToTheMainThread() throws Exception {
+
+        final RichContentView view = newView(RichContentView.TextLayoutMode.DYNAMIC, false);
+        int reflows = view.getReflowCount();
+        int height = view.getMeasuredHeight();
+
+        // as the images loaded by a downloader calling back on its own thread
+        Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+        for(UrlBitmapSpan span : mText.getSpans(UrlBitmapSpan.class)){
+            span.updateBitmap(getContext(), new BitmapDrawable(getContext().getResources(), bitmap));
+        }
+
+        awaitFrame();
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                measure(view);
+            }
+        });
+
+        assertEquals(reflows + 1, view.getReflowCount());
+        assertShrunk(height, view);
+    }
+
+    /**
+     * @param imageLast true to end the text with an image
+     */
+    private RichContentView newView(final RichContentView.TextLayoutMode mode, boolean imageLast) throws Exception {
+
+        if(imageLast == true){
+            RichTextDocumentElement.TextBuilder builder = new RichTextDocumentElement.TextBuilder("");
+            for(int index = 0; index < IMAGES; index ++){
+                builder.paragraph("Image " + index).image("http://square1.io/" + index + ".png");
+            }
+            mText = builder.build();
+
+            UrlBitmapSpan[] spans = mText.getSpans(0, mText.length(), UrlBitmapSpan.class);
+            assertEquals(mText.length(), mText.getSpanEnd(spans[spans.length - 1]));
+        }else {
+            StringBuilder html = new StringBuilder("<html><body>");
+            for(int index = 0; index < IMAGES; index ++){
+                html.append("<p>Image ").append(index).append("</p><img src=\"http://square1.io/")
+                        .append(index).append(".png\"/>");
+            }
+            html.append("<p>The end</p></body></html>");
+
+            for(DocumentElement element : new RichTextEngine(getContext()).parse(html.toString()).getElements()){
+                if(element instanceof RichTextDocumentElement){
+                    mText = (RichTextDocumentElement) element;
+                    break;
+                }
+            }
+        }
+
+        return showText(mode);
+    }
+
+    /**
+     * a new view showing mText, measured
+     */
+    private RichContentView showText(final RichContentView.TextLayoutMode mode) throws Exception {
+
+        final RichContentView[] view = new RichContentView[1];
+
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                view[0] = new RichContentView(getContext());
+                view[0].setTextLayoutMode(mode);
+                view[0].setText(mText);
+                measure(view[0]);
+            }
+        });
+
+        return view[0];
+    }
+
+    /**
+     * every image of the view arrives in the same frame, the view is measured when the
+     * frame is done as it would be by the traversal following it
+     */
+    private void completeImages(final RichContentView view) throws Exception {
+
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = Bitmap.createBitmap(IMAGE_WIDTH, IMAGE_HEIGHT, Bitmap.Config.ARGB_8888);
+                UrlBitmapSpan[] spans = mText.getSpans(UrlBitmapSpan.class);
+                assertEquals(IMAGES, spans.length);
+
+                for(UrlBitmapSpan span : spans){
+                    span.updateBitmap(getContext(), new BitmapDrawable(getContext().getResources(), bitmap));
+                }
+            }
+        });
+
+        awaitFrame();
+
+        runOnMain(new Runnable() {
+            @Override
+            public void run() {
+                measure(view);
+            }
+        });
+    }
+
+    /**
+     * waits for the frame following what was posted to the main thread so far
+     */
+    private void awaitFrame() throws Exception {
+
+        final CountDownLatch frame = new CountDownLatch(1);
+
+        mMain.post(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        frame.countDown();
+                    }
+                });
+            }
+        });
+
+        assertTrue(frame.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * the images were laid out with the default ratio, the view lost the difference
+     */
+    private static void assertShrunk(int height, RichContentView view){
+        assertEquals(IMAGES * IMAGE_SHRINK, height - view.getMeasuredHeight(), IMAGES);
+    }
+
+    private void runOnMain(final Runnable runnable) throws Exception {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final Throwable[] error = new Throwable[1];
+
+        mMain.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable throwable) {
+                    error[0] = throwable;
+                }
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        if(error[0] != null){
+            throw new Exception(error[0]);
+        }
+    }
+
+    private static void measure(RichContentView view){
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+}
@@ -0,0 +1,401 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.RichTextSpan;
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.cache.RichDocumentCache;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.linkify.Linkifier;
+import io.square1.richtextlib.v2.linkify.PatternLinkifier;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.parser.ParseLimits;
+import io.square1.richtextlib.v2.parser.TagHandler;
+import io.square1.richtextlib.v2.parser.TagHandlerFactory;
+import io.square1.richtextlib.v2.parser.handlers.IHandler;
+import io.square1.richtextlib.v2.shortcode.ElementRewriter;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRegistry;
+
+/**
+ * checks documents are found in the cache by source, style and context, evicted by size
+ * and discarded from disk when written by another version. Every lookup gets spans of its own.
+ */
+public class RichDocumentCacheTest extends ApplicationTestCase<Application> {
+
+    private static final int MEMORY_SIZE = 4 * 1024 * 1024;
+
+    // writes on the calling thread, to read the files back right after a put
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File mDirectory;
+
+    public RichDocumentCacheTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(getContext().getCacheDir(), "RichDocumentCacheTest");
+        new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE).clear();
+    }
+
+    public void testEngineHitsTheCache() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE);
+        engine.setCache(cache);
+
+        String source = Utils.readFromfile(getContext(), "samples/test.html");
+        RichDocument first = engine.parse(source);
+        RichDocument cached = engine.parse(source);
+
+        // the cache keeps a compact copy, the document parsed first is left as it is
+        assertNotSame(first, cached);
+        assertEquals(first, cached);
+        // every lookup gets a copy of its own
+        RichDocument again = engine.parse(source);
+        assertNotSame(cached, again);
+        assertEquals(cached, again);
+        assertEquals(2, cache.getMemoryHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2f / 3f, cache.getHitRate());
+
+        engine.setCache(null);
+        assertEquals(first, engine.parse(source));
+    }
+
+    public void testCallerDocumentIsNotCompacted() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        engine.setCache(new RichDocumentCache(MEMORY_SIZE));
+
+        RichDocument first = engine.parse(Utils.readFromfile(getContext(), "samples/test.html"));
+
+        for(DocumentElement element : first.getElements()){
+            if(element instanceof RichTextDocumentElement){
+                assertFalse(((RichTextDocumentElement) element).isCompact());
+            }
+        }
+    }
+
+    public void testCachedDocumentsTakeStyles() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        engine.setCache(new RichDocumentCache(MEMORY_SIZE));
+
+        String source = "<p>cached <i>document</i></p>";
+        engine.parse(source);
+        RichTextDocumentElement cached = text(engine.parse(source));
+
+        assertTrue(cached.isCompact());
+        cached.setBoldText(0, 6);
+        assertFalse(cached.isCompact());
+        assertEquals(2, cached.getSpans(0, cached.length(), StyleSpan.class).length);
+    }
+
+    public void testHitsHaveSpansOfTheirOwn() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        engine.setCache(new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1", DIRECT));
+
+        String source = "<p>image <img src=\"http://square1.io/a.png\"/> and text</p>";
+        engine.parse(source);
+
+        RichTextSpan[] first = text(engine.parse(source)).getStatefulSpans();
+        RichTextSpan[] second = text(engine.parse(source)).getStatefulSpans();
+        assertTrue(first.length > 0);
+        assertEquals(first.length, second.length);
+        for(int index = 0; index < first.length; index ++){
+            assertNotSame(first[index], second[index]);
+            assertEquals(first[index].getClass(), second[index].getClass());
+        }
+
+        // the same from a document read back from disk
+        RichDocumentCache reopened = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1");
+        long key = RichDocumentCache.key(source, engine.getStyle(), new MarkupContext());
+        RichTextSpan[] read = text(reopened.get(key, source)).getStatefulSpans();
+        assertEquals(1, reopened.getDiskHitCount());
+        assertNotSame(read[0], text(reopened.get(key, source)).getStatefulSpans()[0]);
+    }
+
+    public void testFromHtmlHitsTheCache() throws Exception {
+
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE);
+        RichTextV2.setDocumentCache(cache);
+
+        try {
+            String source = "<p>cached <b>document</b></p>";
+            RichDocument first = RichTextV2.fromHtml(getContext(), source);
+            RichDocument cached = RichTextV2.fromHtml(getContext(), source);
+            assertEquals(first, cached);
+            assertEquals(cached, RichTextV2.fromHtml(getContext(), source));
+            assertEquals(2, cache.getMemoryHitCount());
+        } finally {
+            RichTextV2.setDocumentCache(null);
+        }
+    }
+
+    public void testKeyChangesWithStyleAndContext() throws Exception {
+
+        RichTextV2.DefaultStyle style = new RichTextV2.DefaultStyle(getContext());
+        RichTextV2.DefaultStyle noEmbeds = new RichTextV2.DefaultStyle(getContext()){
+            @Override
+            public boolean extractEmbeds() {
+                return false;
+            }
+        };
+        RichTextV2.DefaultStyle limited = new RichTextV2.DefaultStyle(getContext()){
+            @Override
+            public ParseLimits limits() {
+                return ParseLimits.DEFAULT.withMaxDepth(8);
+            }
+        };
+
+        String source = "<p>text</p>";
+        long key = RichDocumentCache.key(source, style, new MarkupContext());
+
+        assertEquals(key, RichDocumentCache.key(source, new RichTextV2.DefaultStyle(getContext()), new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source + " ", style, new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source, noEmbeds, new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source, limited, new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source, style, new CustomContext()));
+    }
+
+    public void testKeyChangesWithHeaderSizes() throws Exception {
+
+        RichTextV2.DefaultStyle style = new RichTextV2.DefaultStyle(getContext());
+        RichTextV2.DefaultStyle largerH3 = new RichTextV2.DefaultStyle(getContext()){
+            @Override
+            public float headerIncrease(int headerLevel) {
+                return headerLevel == 3 ? 3f : super.headerIncrease(headerLevel);
+            }
+        };
+
+        String source = "<h3>text</h3>";
+        assertFalse(RichDocumentCache.key(source, style, new MarkupContext()) ==
+                RichDocumentCache.key(source, largerH3, new MarkupContext()));
+    }
+
+    public void testOtherSourceWithTheSameKeyIsNotReturned() throws Exception {
+
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1", DIRECT);
+        String source = "<p>first source</p>";
+        cache.put(1, source, RichTextV2.fromHtml(getContext(), source));
+
+        // as two sources whose hashes collide
+        assertNull(cache.get(1, "<p>other source</p>"));
+        assertNull(cache.get(1, "<p>first source!</p>"));
+        assertNotNull(cache.get(1, source));
+        assertEquals(2, cache.getMissCount());
+
+        RichDocumentCache reopened = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1");
+        assertNull(reopened.get(1, "<p>other source</p>"));
+        assertNotNull(reopened.get(1, source));
+        assertEquals(1, reopened.getDiskHitCount());
+    }
+
+    public void testFilesAreWrittenOnTheWriter() throws Exception {
+
+        final List<Runnable> queued = new ArrayList<>();
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1",
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        queued.add(command);
+                    }
+                });
+
+        String source = "<p>written later</p>";
+        cache.put(1, source, RichTextV2.fromHtml(getContext(), source));
+        assertEquals(1, queued.size());
+        // in memory already
+        assertNotNull(cache.get(1, source));
+        assertNull(new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1").get(1, source));
+
+        queued.remove(0).run();
+        assertNotNull(new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1").get(1, source));
+
+        // removals are queued after the writes
+        cache.remove(1);
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+        assertNull(new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1").get(1, source));
+    }
+
+    public void testKeyChangesWithLinkifier() throws Exception {
+
+        String source = "<p>text</p>";
+        long key = RichDocumentCache.key(source, linkified(Pattern.compile("a+")), new MarkupContext());
+
+        assertEquals(key, RichDocumentCache.key(source, linkified(Pattern.compile("a+")), new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source, linkified(Pattern.compile("b+")), new MarkupContext()));
+        assertFalse(key == RichDocumentCache.key(source,
+                linkified(Pattern.compile("a+", Pattern.CASE_INSENSITIVE)), new MarkupContext()));
+    }
+
+    public void testKeyChangesWithRegistrations() throws Exception {
+
+        RichTextV2.DefaultStyle style = new RichTextV2.DefaultStyle(getContext());
+        String source = "<p>text</p>";
+        long key = RichDocumentCache.key(source, style, new MarkupContext());
+
+        MarkupContext handlers = new MarkupContext();
+        handlers.register("b", new TagHandlerFactory() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new IHandler();
+            }
+        });
+        assertFalse(key == RichDocumentCache.key(source, style, handlers));
+
+        MarkupContext caption = new MarkupContext();
+        caption.setShortcodeRegistry(new ShortcodeRegistry().registerEnclosing("caption", new ElementRewriter("figure")));
+        MarkupContext otherCaption = new MarkupContext();
+        otherCaption.setShortcodeRegistry(new ShortcodeRegistry().registerEnclosing("caption", new ElementRewriter("div")));
+        assertFalse(key == RichDocumentCache.key(source, style, caption));
+        assertFalse(RichDocumentCache.key(source, style, caption) == RichDocumentCache.key(source, style, otherCaption));
+
+        MarkupContext versioned = new MarkupContext();
+        versioned.setCacheVersion("2");
+        assertFalse(key == RichDocumentCache.key(source, style, versioned));
+    }
+
+    public void testLinkifiersDoNotShareDocuments() throws Exception {
+
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE);
+        String source = "<p>aaa bbb</p>";
+
+        RichTextEngine first = new RichTextEngine(getContext(), linkified(Pattern.compile("a+")));
+        RichTextEngine second = new RichTextEngine(getContext(), linkified(Pattern.compile("b+")));
+        first.setCache(cache);
+        second.setCache(cache);
+
+        assertNotSame(first.parse(source), second.parse(source));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    private RichTextV2.DefaultStyle linkified(final Pattern pattern){
+
+        return new RichTextV2.DefaultStyle(getContext()){
+
+            private final Linkifier mLinkifier = new PatternLinkifier(pattern);
+
+            @Override
+            public Linkifier linkifier() {
+                return mLinkifier;
+            }
+        };
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        String first = document(100);
+        String second = document(101);
+        String third = document(102);
+
+        // the cache keeps documents compacted
+        RichDocument parsed = engine.parse(first);
+        parsed.compact();
+        int size = RichDocumentCache.estimateSize(parsed);
+        RichDocumentCache cache = new RichDocumentCache(size * 2 + size / 2);
+        engine.setCache(cache);
+
+        engine.parse(first);
+        engine.parse(second);
+        engine.parse(first);
+        engine.parse(third);
+
+        assertTrue(cache.getMemorySize() <= size * 2 + size / 2);
+        assertEquals(1, cache.getMemoryHitCount());
+
+        engine.parse(first);
+        assertEquals(2, cache.getMemoryHitCount());
+
+        engine.parse(second);
+        assertEquals(2, cache.getMemoryHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    public void testDiskTier() throws Exception {
+
+        String source = Utils.readFromfile(getContext(), "samples/test.html");
+        RichTextEngine engine = new RichTextEngine(getContext());
+        long key = RichDocumentCache.key(source, engine.getStyle(), new MarkupContext());
+
+        RichDocument document = engine.parse(source);
+        new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1", DIRECT).put(key, source, document);
+
+        // a new cache on the same directory, as after the process is restarted
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1");
+        assertEquals(document, cache.get(key, source));
+        assertEquals(1, cache.getDiskHitCount());
+
+        assertNotNull(cache.get(key, source));
+        assertEquals(1, cache.getMemoryHitCount());
+    }
+
+    public void testVersionChangeDiscardsFiles() throws Exception {
+
+        String source = "<p>old version</p>";
+        RichDocument document = RichTextV2.fromHtml(getContext(), source);
+        new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1", DIRECT).put(1, source, document);
+
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "2");
+        assertNull(cache.get(1, source));
+        assertEquals(1, cache.getMissCount());
+
+        assertNull(new RichDocumentCache(MEMORY_SIZE, mDirectory, Long.MAX_VALUE, "1").get(1, source));
+    }
+
+    public void testDiskSizeIsBounded() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        RichDocumentCache cache = new RichDocumentCache(MEMORY_SIZE, mDirectory, 1, "1", DIRECT);
+
+        cache.put(1, document(10), engine.parse(document(10)));
+        cache.put(2, document(11), engine.parse(document(11)));
+
+        RichDocumentCache reopened = new RichDocumentCache(MEMORY_SIZE, mDirectory, 1, "1");
+        assertNull(reopened.get(1, document(10)));
+        assertNull(reopened.get(2, document(11)));
+    }
+
+    private static RichTextDocumentElement text(RichDocument document){
+        for(DocumentElement element : document.getElements()){
+            if(element instanceof RichTextDocumentElement){
+                return (RichTextDocumentElement) element;
+            }
+        }
+        return null;
+    }
+
+    private static String document(int paragraphs){
+        StringBuilder html = new StringBuilder();
+        for(int index = 0; index < paragraphs; index ++){
+            html.append("<p>paragraph <i>").append(index).append("</i></p>");
+        }
+        return html.toString();
+    }
+
+    public static class CustomContext extends MarkupContext {
+    }
+}
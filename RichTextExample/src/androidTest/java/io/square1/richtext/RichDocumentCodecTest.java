@@ -0,0 +1,348 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.net.Uri;
+import android.os.Parcel;
+import android.test.ApplicationTestCase;
+import android.text.Layout;
+import android.text.Spanned;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.spans.AbsoluteSizeSpan;
+import io.square1.richtextlib.spans.BackgroundColorSpan;
+import io.square1.richtextlib.spans.BoldSpan;
+import io.square1.richtextlib.spans.BulletSpan;
+import io.square1.richtextlib.spans.ClickableSpan;
+import io.square1.richtextlib.spans.ForegroundColorSpan;
+import io.square1.richtextlib.spans.HeaderSpan;
+import io.square1.richtextlib.spans.ItalicSpan;
+import io.square1.richtextlib.spans.LeadingMarginSpan;
+import io.square1.richtextlib.spans.QuoteSpan;
+import io.square1.richtextlib.spans.RelativeSizeSpan;
+import io.square1.richtextlib.spans.RichAlignmentSpan;
+import io.square1.richtextlib.spans.RichTextSpan;
+import io.square1.richtextlib.spans.StrikethroughSpan;
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.spans.SubscriptSpan;
+import io.square1.richtextlib.spans.SuperscriptSpan;
+import io.square1.richtextlib.spans.TextAppearanceSpan;
+import io.square1.richtextlib.spans.TypefaceSpan;
+import io.square1.richtextlib.spans.URLSpan;
+import io.square1.richtextlib.spans.UnderlineSpan;
+import io.square1.richtextlib.spans.UnsupportedContentSpan;
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.spans.VideoPlayerSpan;
+import io.square1.richtextlib.spans.YouTubeSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecTypes;
+import io.square1.richtextlib.v2.codec.CodecWriter;
+import io.square1.richtextlib.v2.codec.RichDocumentCodec;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.ImageDocumentElement;
+import io.square1.richtextlib.v2.content.OembedDocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.content.VideoDocumentElement;
+import io.square1.richtextlib.v2.content.WebDocumentElement;
+
+/**
+ * checks documents read back by RichDocumentCodec have the same text, spans and
+ * elements as the ones written, from every kind of source, and that data which
+ * isn't a document in the current format is rejected.
+ */
+public class RichDocumentCodecTest extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "RichDocumentCodecTest";
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    public RichDocumentCodecTest() {
+        super(Application.class);
+    }
+
+    public void testSamples() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+
+        for(String sample : SAMPLES){
+            RichDocument document = engine.parse(Utils.readFromfile(getContext(), sample));
+            byte[] data = RichDocumentCodec.encode(document);
+            assertSameDocument(document, RichDocumentCodec.decode(data));
+            assertTrue(sample, Arrays.equals(data, RichDocumentCodec.encode(RichDocumentCodec.decode(data))));
+        }
+    }
+
+    /**
+     * every registered type is written again the same way once read back, so none of
+     * their values is lost
+     */
+    public void testEveryType() throws Exception {
+
+        byte[] data = RichDocumentCodec.encode(everyType());
+        RichDocument decoded = RichDocumentCodec.decode(data);
+
+        assertSameDocument(everyType(), decoded);
+        assertTrue(Arrays.equals(data, RichDocumentCodec.encode(decoded)));
+
+        VideoDocumentElement video = (VideoDocumentElement) decoded.getElements().get(3);
+        assertEquals(640, video.getWidth());
+        assertEquals(360, video.getHeight());
+    }
+
+    public void testByteBufferAndMappedFile() throws Exception {
+
+        byte[] data = RichDocumentCodec.encode(everyType());
+
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 3);
+        buffer.put(new byte[3]);
+        buffer.put(data);
+        buffer.position(3);
+
+        assertSameDocument(everyType(), RichDocumentCodec.decode(buffer));
+        assertEquals(3, buffer.position());
+
+        File file = new File(getContext().getCacheDir(), "RichDocumentCodecTest.rdoc");
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(data);
+        output.close();
+
+        try {
+            assertSameDocument(everyType(), RichDocumentCodec.decode(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testRejectsOtherData() throws Exception {
+
+        byte[] data = RichDocumentCodec.encode(everyType());
+
+        byte[] magic = data.clone();
+        magic[0] = 'X';
+        assertRejected(magic);
+
+        byte[] version = data.clone();
+        version[4] = (byte) (RichDocumentCodec.FORMAT_VERSION + 1);
+        assertRejected(version);
+
+        assertRejected(Arrays.copyOf(data, data.length / 2));
+        assertRejected(new byte[0]);
+    }
+
+    public void testUnregisteredSpan() throws Exception {
+
+        RichTextDocumentElement text = new RichTextDocumentElement("text");
+        text.setSpan(new UnregisteredSpan(), 0, 4, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        ArrayList<DocumentElement> elements = new ArrayList<>();
+        elements.add(text);
+
+        try {
+            RichDocumentCodec.encode(new RichDocument("", elements));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testApplicationTypes() throws Exception {
+
+        try {
+            CodecTypes.register(CodecTypes.FIRST_APPLICATION_ID - 1, MentionSpan.class, MentionSpan.FACTORY);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        CodecTypes.register(CodecTypes.FIRST_APPLICATION_ID, MentionSpan.class, MentionSpan.FACTORY);
+
+        RichTextDocumentElement text = new RichTextDocumentElement("hello @someone");
+        text.setSpan(new MentionSpan("http://example.com/someone", 42), 6, 14, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        ArrayList<DocumentElement> elements = new ArrayList<>();
+        elements.add(text);
+
+        RichDocument decoded = RichDocumentCodec.decode(RichDocumentCodec.encode(new RichDocument("", elements)));
+        RichTextDocumentElement element = (RichTextDocumentElement) decoded.getElements().get(0);
+        MentionSpan[] mentions = element.getSpans(0, element.length(), MentionSpan.class);
+
+        assertEquals(1, mentions.length);
+        assertEquals(42, mentions[0].mUserId);
+        assertEquals("http://example.com/someone", mentions[0].getURL());
+    }
+
+    /**
+     * Parcel is native, this only runs on a device
+     */
+    public void testSmallerThanParcel() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+
+        for(String sample : SAMPLES){
+
+            RichDocument document = engine.parse(Utils.readFromfile(getContext(), sample));
+
+            Parcel parcel = Parcel.obtain();
+            document.writeToParcel(parcel, 0);
+            int parcelSize = parcel.marshall().length;
+            parcel.recycle();
+
+            int codecSize = RichDocumentCodec.encode(document).length;
+            Log.i(TAG, sample + " parcel " + parcelSize + " bytes, codec " + codecSize + " bytes");
+
+            assertTrue(sample, codecSize < parcelSize);
+        }
+    }
+
+    private static void assertRejected(byte[] data){
+        try {
+            RichDocumentCodec.decode(data);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static RichDocument everyType(){
+
+        RichTextDocumentElement text = new RichTextDocumentElement("every span written by the codec, one after the other\n");
+
+        Object[] spans = {
+                new AbsoluteSizeSpan(14, true),
+                new BackgroundColorSpan(Color.YELLOW),
+                new BoldSpan(),
+                new BulletSpan(8, Color.RED),
+                new ForegroundColorSpan(Color.BLUE),
+                new HeaderSpan(2),
+                new ItalicSpan(),
+                new LeadingMarginSpan(10, 20),
+                new QuoteSpan(Color.GRAY),
+                new RelativeSizeSpan(1.5f),
+                new RichAlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER),
+                new StrikethroughSpan(),
+                new StyleSpan(Typeface.BOLD_ITALIC),
+                new SubscriptSpan(),
+                new SuperscriptSpan(),
+                new TextAppearanceSpan("serif", Typeface.ITALIC, 18, ColorStateList.valueOf(Color.GREEN), null),
+                new TypefaceSpan("monospace"),
+                new URLSpan("http://example.com"),
+                new UnderlineSpan(),
+                new UnsupportedContentSpan("http://example.com/embed"),
+                new UrlBitmapSpan(Uri.parse("http://example.com/image.png"), 200, 100, 300),
+                new VideoPlayerSpan("http://example.com/video.mp4", 640, 360, 300),
+                new YouTubeSpan("dQw4w9WgXcQ", 640, 360, 300)
+        };
+
+        for(int index = 0; index < spans.length; index ++){
+            int start = (index * 7) % (text.length() - 5);
+            text.setSpan(spans[index], start, start + 1 + index % 5, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+
+        ArrayList<DocumentElement> elements = new ArrayList<>();
+        elements.add(text);
+        elements.add(new ImageDocumentElement("http://example.com/image.png", "http://example.com", 200, 100));
+        elements.add(new OembedDocumentElement("http://twitter.com/status/1", "1", EmbedUtils.TEmbedType.ETwitter));
+        elements.add(new VideoDocumentElement("http://example.com/video.mp4", 640, 360));
+        elements.add(new WebDocumentElement("<p>web</p>", WebDocumentElement.ContentType.EHtml, 320, 240));
+
+        return new RichDocument("every type", elements);
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual){
+
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getElements().size(), actual.getElements().size());
+
+        for(int index = 0; index < expected.getElements().size(); index ++){
+
+            DocumentElement left = expected.getElements().get(index);
+            DocumentElement right = actual.getElements().get(index);
+
+            assertEquals(left.getClass(), right.getClass());
+
+            if(left instanceof RichTextDocumentElement){
+                assertSameText((RichTextDocumentElement) left, (RichTextDocumentElement) right);
+            }else if(left instanceof VideoDocumentElement){
+                assertEquals(((VideoDocumentElement) left).getContent(), ((VideoDocumentElement) right).getContent());
+            }else if(left instanceof WebDocumentElement){
+                WebDocumentElement web = (WebDocumentElement) left;
+                assertEquals(web.getContent(), ((WebDocumentElement) right).getContent());
+                assertEquals(web.getType(), ((WebDocumentElement) right).getType());
+                assertEquals(web.getWidth(), ((WebDocumentElement) right).getWidth());
+            }else {
+                assertEquals(left, right);
+            }
+        }
+    }
+
+    private static void assertSameText(RichTextDocumentElement expected, RichTextDocumentElement actual){
+
+        assertEquals(expected, actual);
+
+        RichTextSpan[] left = expected.getSpans();
+        RichTextSpan[] right = actual.getSpans();
+
+        for(int index = 0; index < left.length; index ++){
+
+            assertEquals(expected.getSpanStart(left[index]), actual.getSpanStart(right[index]));
+            assertEquals(expected.getSpanEnd(left[index]), actual.getSpanEnd(right[index]));
+            assertEquals(expected.getSpanFlags(left[index]), actual.getSpanFlags(right[index]));
+
+            if(left[index] instanceof ClickableSpan){
+                assertEquals(((ClickableSpan) left[index]).getAction(), ((ClickableSpan) right[index]).getAction());
+            }
+        }
+    }
+
+    public static class MentionSpan extends URLSpan {
+
+        static final CodecTypes.Factory FACTORY = new CodecTypes.Factory() {
+            @Override
+            public MentionSpan newInstance() {
+                return new MentionSpan();
+            }
+        };
+
+        private int mUserId;
+
+        public MentionSpan(){
+        }
+
+        public MentionSpan(String url, int userId){
+            super(url);
+            mUserId = userId;
+        }
+
+        @Override
+        public void writeTo(CodecWriter out) {
+            super.writeTo(out);
+            out.writeVarInt(mUserId);
+        }
+
+        @Override
+        public void readFrom(CodecReader in) {
+            super.readFrom(in);
+            mUserId = in.readVarInt();
+        }
+    }
+
+    public static class UnregisteredSpan extends URLSpan {
+    }
+}
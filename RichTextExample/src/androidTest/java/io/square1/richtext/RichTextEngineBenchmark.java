@@ -0,0 +1,119 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.Style;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * compares documents per second parsed by RichTextEngine against the static
+ * RichTextV2.fromHtml entry point, results are written to logcat.
+ */
+public class RichTextEngineBenchmark extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "RichTextBenchmark";
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 30;
+
+    private List<String> mSources;
+
+    public RichTextEngineBenchmark() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        mSources = new ArrayList<>();
+        for(String sample : SAMPLES){
+            mSources.add(Utils.readFromfile(getContext(), sample));
+        }
+    }
+
+    public void testEngineMatchesStaticEntryPoint() throws Exception {
+
+        Style style = new RichTextV2.DefaultStyle(getContext());
+        RichTextEngine engine = new RichTextEngine(getContext(), style);
+
+        for(String source : mSources){
+            RichDocument expected = RichTextV2.fromHtml(getContext(), source, style);
+            assertSameDocument(expected, engine.parse(source));
+            // a second parse on the same thread reuses the pooled reader
+            assertSameDocument(expected, engine.parse(source));
+        }
+    }
+
+    public void testDocumentsPerSecond() throws Exception {
+
+        Style style = new RichTextV2.DefaultStyle(getContext());
+        RichTextEngine engine = new RichTextEngine(getContext(), style);
+
+        for(int round = 0; round < WARM_UP_ROUNDS; round ++){
+            parseStatic();
+            engine.parseAll(mSources);
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            parseStatic();
+        }
+        long staticTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            engine.parseAll(mSources);
+        }
+        long engineTime = System.nanoTime() - start;
+
+        int documents = ROUNDS * mSources.size();
+        Log.i(TAG, "fromHtml " + documentsPerSecond(documents, staticTime) + " docs/s");
+        Log.i(TAG, "RichTextEngine " + documentsPerSecond(documents, engineTime) + " docs/s");
+    }
+
+    private void parseStatic(){
+        for(String source : mSources){
+            RichTextV2.fromHtml(getContext(), source);
+        }
+    }
+
+    private static double documentsPerSecond(int documents, long nanos){
+        return documents * 1000000000d / nanos;
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual){
+
+        ArrayList<DocumentElement> expectedElements = expected.getElements();
+        ArrayList<DocumentElement> actualElements = actual.getElements();
+
+        assertEquals(expectedElements.size(), actualElements.size());
+
+        for(int index = 0; index < expectedElements.size(); index ++){
+
+            DocumentElement element = expectedElements.get(index);
+            assertEquals(element.getClass(), actualElements.get(index).getClass());
+
+            if(element instanceof RichTextDocumentElement){
+                assertEquals(((RichTextDocumentElement) element).contentString(),
+                        ((RichTextDocumentElement) actualElements.get(index)).contentString());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import io.square1.richtextlib.v2.shortcode.ShortcodeReader;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRegistry;
+
+/**
+ * compares the regular expressions previously used to rewrite the WordPress tags
+ * against ShortcodeRegistry on a large WordPress export, results are written to logcat.
+ */
+public class ShortcodeBenchmark extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "ShortcodeBenchmark";
+
+    private static final String SOUND_CLOUD = "\\[soundcloud (.*?)/?\\]";
+    private static final String SOUND_CLOUD_REPLACEMENT = "<soundcloud $1 />";
+
+    private static final String INTERACTION = "\\[interaction (.*?)/?\\]";
+    private static final String INTERACTION_REPLACEMENT = "";
+
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+
+    private String mExport;
+
+    public ShortcodeBenchmark() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 20000; index ++){
+            html.append("<p>Paragraph ").append(index).append(" of the export with a ")
+                    .append("<a href=\"http://square1.io\">link</a> and a note [1].</p>\n");
+            if(index % 50 == 0){
+                html.append("[soundcloud url=\"https://api.soundcloud.com/tracks/").append(index)
+                        .append("\" params=\"auto_play=false\" width=\"100%\" height=\"166\" /]\n");
+            }
+            if(index % 70 == 0){
+                html.append("[interaction id=\"").append(index).append("\"]\n");
+            }
+            if(index % 90 == 0){
+                html.append("[caption id=\"attachment_").append(index)
+                        .append("\" width=\"300\"]<img src=\"x.jpg\"/> Caption[/caption]\n");
+            }
+        }
+        html.append("</body></html>");
+        mExport = html.toString();
+    }
+
+    public void testRegistryMatchesRegularExpressions() throws Exception {
+        // the registry trims the white space the regular expressions left before the />
+        assertEquals(replaceAll(mExport).replace("  />", " />"),
+                ShortcodeRegistry.DEFAULT.rewrite(mExport));
+    }
+
+    public void testRewriteTime() throws Exception {
+
+        for(int round = 0; round < WARM_UP_ROUNDS; round ++){
+            replaceAll(mExport);
+            ShortcodeRegistry.DEFAULT.rewrite(mExport);
+            stream(mExport);
+        }
+
+        long start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            replaceAll(mExport);
+        }
+        long replaceAllTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            ShortcodeRegistry.DEFAULT.rewrite(mExport);
+        }
+        long rewriteTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(int round = 0; round < ROUNDS; round ++){
+            stream(mExport);
+        }
+        long streamTime = System.nanoTime() - start;
+
+        Log.i(TAG, mExport.length() + " chars");
+        Log.i(TAG, "replaceAll " + millis(replaceAllTime) + " ms");
+        Log.i(TAG, "ShortcodeRegistry.rewrite " + millis(rewriteTime) + " ms");
+        Log.i(TAG, "ShortcodeReader " + millis(streamTime) + " ms");
+    }
+
+    private static String replaceAll(String source){
+        return source.replaceAll(SOUND_CLOUD, SOUND_CLOUD_REPLACEMENT)
+                .replaceAll(INTERACTION, INTERACTION_REPLACEMENT);
+    }
+
+    /**
+     * reads the rewritten source the way the parser does, without keeping it
+     */
+    private static int stream(String source) throws IOException {
+
+        Reader reader = new ShortcodeReader(new StringReader(source), ShortcodeRegistry.DEFAULT);
+        char[] buffer = new char[1024];
+        int total = 0;
+        int read;
+
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1){
+            total += read;
+        }
+
+        return total;
+    }
+
+    private static double millis(long nanos){
+        return nanos / (ROUNDS * 1000000d);
+    }
+}
@@ -0,0 +1,37 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRegistry;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRewriter;
+
+/**
+ * checks a ShortcodeRegistry set on the MarkupContext is used by the parser,
+ * the registry itself is tested in richtext-core
+ */
+public class ShortcodeTest extends ApplicationTestCase<Application> {
+
+    public ShortcodeTest() {
+        super(Application.class);
+    }
+
+    public void testRegistryOnMarkupContext() throws Exception {
+
+        MarkupContext markupContext = new MarkupContext();
+        markupContext.setShortcodeRegistry(new ShortcodeRegistry()
+                .registerEnclosing("caption", ShortcodeRewriter.CONTENT));
+
+        RichDocument document = RichTextV2.fromHtml(getContext(),
+                "<p>[caption id=\"attachment_1\"]The caption[/caption]</p>",
+                markupContext,
+                null);
+
+        RichTextDocumentElement element = (RichTextDocumentElement) document.getElements().get(0);
+        assertEquals("The caption", element.contentString().trim());
+    }
+}
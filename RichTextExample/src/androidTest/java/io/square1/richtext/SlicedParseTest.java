@@ -0,0 +1,364 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.v2.CancellationToken;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.SlicedParse;
+import io.square1.richtextlib.v2.codec.RichDocumentCodec;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.parser.MarkupTag;
+import io.square1.richtextlib.v2.parser.TagHandler;
+import io.square1.richtextlib.v2.parser.TagHandlerFactory;
+
+/**
+ * checks documents parsed a slice at a time are the same the engine returns parsing them
+ * in one go, that a step stops close to its budget whatever the shape of the document and
+ * that a cancelled or failed parse stops early without keeping what it parsed nor the thread
+ * it ran on.
+ */
+public class SlicedParseTest extends ApplicationTestCase<Application> {
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final long STEP_BUDGET_MILLIS = 2;
+
+    /**
+     * what a step can take past its budget, the parse only stops between elements
+     */
+    private static final long STEP_SLACK_MILLIS = 20;
+
+    private ExecutorService mExecutor;
+    private RichTextEngine mEngine;
+
+    public SlicedParseTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        mExecutor = Executors.newFixedThreadPool(2);
+        mEngine = new RichTextEngine(getContext());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    public void testResumedParseMatches() throws Exception {
+
+        ArrayList<String> sources = new ArrayList<>();
+        for(String sample : SAMPLES){
+            sources.add(Utils.readFromfile(getContext(), sample));
+        }
+        sources.add(longArticle());
+
+        for(String source : sources){
+
+            SlicedParse parse = mEngine.newSlicedParse(source, null);
+            int steps = 0;
+
+            // no time at all, every step parses a single element
+            while (parse.step(0, TimeUnit.MILLISECONDS) == false){
+                steps ++;
+            }
+
+            // the article is far longer than a slice
+            if(source.length() > 64 * 1024){
+                assertTrue(steps > 10);
+            }
+
+            assertSameDocument(mEngine.parse(source), parse.getDocument());
+        }
+    }
+
+    public void testStepsOnAnExecutor() throws Exception {
+
+        String source = longArticle();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<RichDocument> result = new AtomicReference<>();
+
+        // the steps run on both threads of the executor
+        mEngine.newSlicedParse(source, null).runOn(mExecutor, 1, new RichTextEngine.Callback() {
+            @Override
+            public void onDocumentParsed(String source, RichDocument document) {
+                result.set(document);
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        assertSameDocument(mEngine.parse(source), result.get());
+    }
+
+    public void testCancelMidDocument() throws Exception {
+
+        String source = longArticle();
+        SlicedParse parse = mEngine.newSlicedParse(source, null);
+
+        assertFalse(parse.step(0, TimeUnit.MILLISECONDS));
+        assertFalse(parse.isDone());
+
+        parse.cancel();
+
+        assertTrue(parse.step(0, TimeUnit.MILLISECONDS));
+        assertTrue(parse.isCancelled());
+        assertSame(RichDocument.EMPTY, parse.getDocument());
+
+        // the engine parses the next document as if nothing happened
+        assertSameDocument(new RichTextEngine(getContext()).parse(source), mEngine.parse(source));
+    }
+
+    public void testWrapperStepsKeepTheirBudget() throws Exception {
+
+        // all the content in one element, as the body of a blog post often is
+        String source = longArticle().replace("<body>", "<body><div class=\"entry-content\">")
+                .replace("</body>", "</div></body>");
+
+        SlicedParse parse = mEngine.newSlicedParse(source, null);
+        long longest = 0;
+        int steps = 0;
+
+        while (true){
+            long start = System.nanoTime();
+            boolean done = parse.step(STEP_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+            longest = Math.max(longest, System.nanoTime() - start);
+            if(done == true){
+                break;
+            }
+            steps ++;
+        }
+
+        assertTrue(steps > 10);
+        // the budget and a single element
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(longest) < STEP_BUDGET_MILLIS + STEP_SLACK_MILLIS);
+        assertSameDocument(mEngine.parse(source), parse.getDocument());
+    }
+
+    public void testCancelEndsTheParseThread() throws Exception {
+
+        SlicedParse parse = mEngine.newSlicedParse(longArticle(), null);
+
+        assertFalse(parse.step(0, TimeUnit.MILLISECONDS));
+        assertTrue(parsingThreadCount() > 0);
+
+        parse.cancel();
+        assertTrue(parse.step(0, TimeUnit.MILLISECONDS));
+
+        for(int wait = 0; wait < 50 && parsingThreadCount() > 0; wait ++){
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, parsingThreadCount());
+    }
+
+    public void testAbandonedParseEndsItsThread() throws Exception {
+
+        assertFalse(mEngine.newSlicedParse(longArticle(), null).step(0, TimeUnit.MILLISECONDS));
+        assertTrue(parsingThreadCount() > 0);
+
+        // the parse is noticed once collected
+        for(int wait = 0; wait < 50 && parsingThreadCount() > 0; wait ++){
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, parsingThreadCount());
+    }
+
+    public void testCancelledParseIsNotKept() throws Exception {
+
+        final CancellationToken cancellation = new CancellationToken();
+        final ArrayList<WeakReference<DocumentElement>> parsed = new ArrayList<>();
+
+        RichDocument document = mEngine.parse(new StringReader(longArticle()),
+                new RichTextV2.OnElementParsedListener() {
+                    @Override
+                    public void onElementParsed(DocumentElement element, int index) {
+                        parsed.add(new WeakReference<>(element));
+                        if(index == 3){
+                            cancellation.cancel();
+                        }
+                    }
+                }, cancellation);
+
+        assertSame(RichDocument.EMPTY, document);
+        // the elements completed along with the fourth one at most
+        assertTrue(parsed.size() >= 4 && parsed.size() < 8);
+
+        for(int gc = 0; gc < 3; gc ++){
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+
+        // the parser state reused by the engine doesn't hold on to them
+        for(WeakReference<DocumentElement> element : parsed){
+            assertNull(element.get());
+        }
+
+        assertSame(RichDocument.EMPTY, mEngine.parse(longArticle(), cancellation));
+    }
+
+    public void testParseThreadFailureIsThrownByTheStep() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext(), null, new RichTextEngine.MarkupContextFactory() {
+            @Override
+            public MarkupContext newMarkupContext() {
+                MarkupContext context = new MarkupContext();
+                context.register("blink", new TagHandlerFactory.Stateless() {
+                    @Override
+                    public TagHandler newTagHandler() {
+                        return new TagHandler() {
+                            @Override
+                            public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
+                                throw new StackOverflowError("nested too deep");
+                            }
+
+                            @Override
+                            public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
+                            }
+                        };
+                    }
+                });
+                return context;
+            }
+        });
+
+        final SlicedParse parse = engine.newSlicedParse("<p>first</p><blink>second</blink><p>third</p>", null);
+
+        // a step waiting for a parse thread that died would never return
+        Future<Boolean> step = mExecutor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return parse.step(1, TimeUnit.SECONDS);
+            }
+        });
+
+        try {
+            step.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+
+        assertTrue(parse.isDone());
+        assertSame(RichDocument.EMPTY, parse.getDocument());
+        assertTrue(parse.step(1, TimeUnit.SECONDS));
+
+        // the thread and the engine are still good for the next parse
+        SlicedParse next = engine.newSlicedParse("<p>first</p><p>third</p>", null);
+        while (next.step(1, TimeUnit.SECONDS) == false);
+        assertEquals(engine.parse("<p>first</p><p>third</p>"), next.getDocument());
+    }
+
+    public void testParseThreadsAreShared() throws Exception {
+
+        String source = Utils.readFromfile(getContext(), "samples/test.html");
+        int threads = threadCount();
+
+        for(int parse = 0; parse < 10; parse ++){
+            SlicedParse sliced = mEngine.newSlicedParse(source, null);
+            while (sliced.step(1, TimeUnit.SECONDS) == false);
+            // the thread goes back to wait for a parse right after waking the step up
+            Thread.sleep(20);
+        }
+
+        // one after the other, the parses ran on the same idle thread
+        assertTrue(threadCount() <= threads + 1);
+    }
+
+    /**
+     * @return the parse threads in the middle of a parse, the idle ones aren't counted
+     */
+    private static int parsingThreadCount(){
+
+        int count = 0;
+        for(Map.Entry<Thread,StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()){
+            if(isParseThread(entry.getKey()) == false){
+                continue;
+            }
+            for(StackTraceElement frame : entry.getValue()){
+                if(frame.getClassName().startsWith(SlicedParse.class.getName() + "$")){
+                    count ++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int threadCount(){
+
+        int count = 0;
+        for(Thread thread : Thread.getAllStackTraces().keySet()){
+            if(isParseThread(thread) == true){
+                count ++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isParseThread(Thread thread){
+        return "RichTextSlicedParse".equals(thread.getName()) && thread.isAlive();
+    }
+
+    private static String longArticle(){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 1500; index ++){
+            switch (index % 5){
+                case 0:
+                    html.append("<h2>Update ").append(index).append("</h2>");
+                    break;
+                case 1:
+                    html.append("<p>Paragraph <b>number</b> ").append(index)
+                            .append(" with a <a href=\"http://square1.io\">link</a>. </p>\n");
+                    break;
+                case 2:
+                    html.append("<ul><li>first</li><li>second <i>item</i></li></ul>");
+                    break;
+                case 3:
+                    html.append("<p>https://twitter.com/square1io/status/670060095972245504</p>");
+                    break;
+                default:
+                    html.append("<blockquote>Quote ").append(index).append("</blockquote>");
+                    break;
+            }
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual) throws Exception {
+        assertEquals(expected.getElements().size(), actual.getElements().size());
+        assertTrue(Arrays.equals(RichDocumentCodec.encode(expected), RichDocumentCodec.encode(actual)));
+    }
+}
@@ -0,0 +1,135 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.os.Debug;
+import android.test.ApplicationTestCase;
+import android.text.Layout;
+import android.view.View;
+
+import java.util.Arrays;
+
+import io.square1.richtextlib.spans.ClickableSpan;
+import io.square1.richtextlib.ui.Appearance;
+import io.square1.richtextlib.ui.PrecomputedLayout;
+import io.square1.richtextlib.ui.RichContentView;
+import io.square1.richtextlib.ui.SpanHitIndex;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks the index finds the spans the layout has at the points of its regions, and that
+ * looking a point up doesn't allocate.
+ */
+public class SpanHitIndexTest extends ApplicationTestCase<Application> {
+
+    private static final int WIDTH = 600;
+
+    private RichTextDocumentElement mText;
+    private Layout mLayout;
+    private SpanHitIndex mIndex;
+
+    public SpanHitIndexTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        for(DocumentElement element : new RichTextEngine(getContext()).parse(linkedArticle()).getElements()){
+            if(element instanceof RichTextDocumentElement){
+                mText = (RichTextDocumentElement) element;
+                break;
+            }
+        }
+
+        mLayout = PrecomputedLayout.create(mText, WIDTH, new Appearance(getContext())).getLayout();
+        mIndex = SpanHitIndex.build(mLayout, mText);
+    }
+
+    public void testEveryLinkIsIndexed() throws Exception {
+
+        ClickableSpan[] links = mText.getSpans(ClickableSpan.class);
+        assertTrue(links.length > 0);
+
+        for(ClickableSpan link : links){
+            assertTrue(mIndex.indexOf(link) >= 0);
+        }
+    }
+
+    public void testRegionsMatchTheLayout() throws Exception {
+
+        for(int region = 0; region < mIndex.getRegionCount(); region ++){
+
+            if(mIndex.getKind(region) != SpanHitIndex.CLICKABLE){
+                continue;
+            }
+
+            int line = mIndex.getLine(region);
+            float x = (mIndex.getLeft(region) + mIndex.getRight(region)) / 2;
+            Object span = mIndex.getSpan(region);
+
+            // what the view found before the index
+            int offset = mLayout.getOffsetForHorizontal(line, x);
+            ClickableSpan[] expected = mText.getSpans(offset, offset, ClickableSpan.class);
+
+            assertTrue(Arrays.asList(expected).contains(span));
+            assertTrue(Arrays.asList(mIndex.getClickableSpans(line, x)).contains(span));
+        }
+    }
+
+    public void testLookupsDoNotAllocate() throws Exception {
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+
+        int found = 0;
+        for(int line = 0; line < mLayout.getLineCount(); line ++){
+            for(int x = 0; x < WIDTH; x += 20){
+                if(mIndex.contains(line, x, SpanHitIndex.ANIMATABLE) ||
+                        mIndex.contains(line, x, SpanHitIndex.CLICKABLE)){
+                    found ++;
+                }
+            }
+        }
+
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        assertTrue(found > 0);
+        assertEquals(0, allocations);
+    }
+
+    public void testViewIndexFollowsTheLayout() throws Exception {
+
+        RichContentView view = new RichContentView(getContext());
+        view.setText(mText);
+        assertNull(view.getHitIndex());
+
+        measure(view, WIDTH);
+        SpanHitIndex index = view.getHitIndex();
+        assertSame(index, view.getHitIndex());
+
+        view.mediaSizeUpdated();
+        measure(view, WIDTH / 2);
+        assertNotSame(index, view.getHitIndex());
+    }
+
+    private static void measure(RichContentView view, int width){
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+    }
+
+    private static String linkedArticle(){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 100; index ++){
+            html.append("<p>Paragraph ").append(index).append(" has a <a href=\"http://square1.io/")
+                    .append(index).append("\">link that is long enough to wrap on the next line of the paragraph</a>")
+                    .append(" and <b>some</b> text after it.</p>");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+}
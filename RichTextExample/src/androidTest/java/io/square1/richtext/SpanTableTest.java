@@ -0,0 +1,384 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.net.Uri;
+import android.test.ApplicationTestCase;
+import android.text.SpanWatcher;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.style.CharacterStyle;
+import android.text.style.LeadingMarginSpan;
+import android.text.style.MetricAffectingSpan;
+import android.text.style.ReplacementSpan;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.ClickableSpan;
+import io.square1.richtextlib.spans.RichTextSpan;
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.spans.URLSpan;
+import io.square1.richtextlib.spans.UnderlineSpan;
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.codec.RichDocumentCodec;
+import io.square1.richtextlib.v2.codec.SpanTable;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks a compacted element answers the queries of layout and drawing the way it did
+ * before being compacted, and measures the heap retained by both on the samples.
+ */
+public class SpanTableTest extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "SpanTableTest";
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final Class[] KINDS = {
+            Object.class,
+            RichTextSpan.class,
+            MetricAffectingSpan.class,
+            CharacterStyle.class,
+            LeadingMarginSpan.class,
+            ReplacementSpan.class,
+            ClickableSpan.class,
+            URLSpan.class
+    };
+
+    /**
+     * the documents parsed for the heap measure, the samples are a few KB each
+     */
+    private static final int COPIES = 50;
+
+    public SpanTableTest() {
+        super(Application.class);
+    }
+
+    public void testSameQueries() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        Random random = new Random(7);
+
+        for(String sample : SAMPLES){
+
+            String source = Utils.readFromfile(getContext(), sample);
+            ArrayList<DocumentElement> live = engine.parse(source).getElements();
+            RichDocument compact = engine.parse(source);
+            compact.compact();
+
+            for(int index = 0; index < live.size(); index ++){
+
+                if(live.get(index) instanceof RichTextDocumentElement == false){
+                    continue;
+                }
+
+                RichTextDocumentElement expected = (RichTextDocumentElement) live.get(index);
+                RichTextDocumentElement actual = (RichTextDocumentElement) compact.getElements().get(index);
+
+                assertTrue(actual.isCompact());
+                assertEquals(expected.getSpanCount(), actual.getSpanCount());
+                assertSameQueries(expected, actual, random);
+                assertTrue(actual.isCompact());
+            }
+        }
+    }
+
+    public void testDecodedDocumentsAreCompact() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        String source = Utils.readFromfile(getContext(), "samples/test.html");
+
+        RichDocument document = engine.parse(source);
+        RichDocument decoded = RichDocumentCodec.decode(RichDocumentCodec.encode(document));
+
+        for(int index = 0; index < decoded.getElements().size(); index ++){
+            if(decoded.getElements().get(index) instanceof RichTextDocumentElement){
+                RichTextDocumentElement element = (RichTextDocumentElement) decoded.getElements().get(index);
+                assertTrue(element.isCompact());
+                assertSameQueries((RichTextDocumentElement) document.getElements().get(index), element, new Random(3));
+            }
+        }
+
+        assertEquals(document, decoded);
+    }
+
+    public void testSpansKeepTheirIdentity() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        for(int index = 0; index < SpanTable.MAX_CACHED_SPANS * 2; index ++){
+            element.appendBold("bold ");
+        }
+
+        assertTrue(element.compact());
+        Object first = element.getSpans(0, 1, Object.class)[0];
+
+        // more spans than the cache holds
+        for(int index = 0; index < element.length(); index += 5){
+            element.getSpans(index, index + 1, Object.class);
+        }
+
+        // the span still referenced here is returned again
+        assertSame(first, element.getSpans(0, 1, Object.class)[0]);
+        assertEquals(0, element.getSpanStart(first));
+
+        // the same span while it is in the cache
+        Object last = element.getSpans(element.length() - 1, element.length(), Object.class)[0];
+        assertSame(last, element.getSpans(element.length() - 1, element.length(), Object.class)[0]);
+    }
+
+    public void testStatefulSpansArePinned() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendImage(Uri.parse("http://square1.io/image.png"), 40, 30);
+        for(int index = 0; index < SpanTable.MAX_CACHED_SPANS * 2; index ++){
+            element.appendBold("bold ");
+        }
+
+        assertTrue(element.compact());
+        int image = System.identityHashCode(element.getSpans(UrlBitmapSpan.class)[0]);
+
+        // not referenced here, dropped by the cache of the table if it weren't pinned
+        for(int index = 0; index < element.length(); index += 5){
+            element.getSpans(index, index + 1, Object.class);
+        }
+        Runtime.getRuntime().gc();
+
+        assertEquals(image, System.identityHashCode(element.getSpans(UrlBitmapSpan.class)[0]));
+    }
+
+    public void testStatefulSpans() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold ").appendUnderlined("underlined ");
+        element.appendImage(Uri.parse("http://square1.io/image.png"), 40, 30);
+
+        assertEquals(1, element.getStatefulSpans().length);
+        assertTrue(element.getStatefulSpans()[0] instanceof UrlBitmapSpan);
+
+        // the value spans aren't created to be bound
+        assertTrue(element.compact());
+        assertEquals(1, element.getStatefulSpans().length);
+        assertSame(element.getSpans(UrlBitmapSpan.class)[0], element.getStatefulSpans()[0]);
+    }
+
+    public void testCompactCopy() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold ").appendUnderlined("underlined");
+        Object bold = element.getSpans()[0];
+
+        RichTextDocumentElement copy = element.compactCopy();
+
+        assertTrue(copy.isCompact());
+        assertFalse(element.isCompact());
+        assertEquals(element, copy);
+        // the spans got before are still those of the element
+        assertSame(bold, element.getSpans()[0]);
+        assertEquals(0, element.getSpanStart(bold));
+    }
+
+    public void testWatchersDontInflate() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold").appendUnderlined(" underlined");
+        assertTrue(element.compact());
+
+        Watcher watcher = new Watcher();
+        element.setSpan(watcher, 0, element.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE | Spanned.SPAN_PRIORITY);
+
+        assertTrue(element.isCompact());
+        assertSame(watcher, element.getSpans(0, element.length(), Object.class)[0]);
+        assertEquals(3, element.getSpans(0, element.length(), Object.class).length);
+
+        element.removeSpan(watcher);
+        assertTrue(element.isCompact());
+        assertEquals(2, element.getSpanCount());
+    }
+
+    public void testEditsInflate() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold");
+        assertTrue(element.compact());
+
+        element.append(" more");
+        assertFalse(element.isCompact());
+        assertEquals(1, element.getSpans().length);
+        assertEquals(4, element.getSpanEnd(element.getSpans()[0]));
+
+        assertTrue(element.compact());
+        element.delete(0, 2);
+        assertFalse(element.isCompact());
+        assertEquals(2, element.getSpanEnd(element.getSpans()[0]));
+    }
+
+    public void testSettersInflate() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold").append(" plain");
+        assertTrue(element.compact());
+
+        element.setBoldText(5, element.length());
+        assertFalse(element.isCompact());
+
+        StyleSpan[] spans = element.getSpans(0, element.length(), StyleSpan.class);
+        assertEquals(2, spans.length);
+        assertEquals(0, element.getSpanStart(spans[0]));
+        assertEquals(4, element.getSpanEnd(spans[0]));
+        assertEquals(5, element.getSpanStart(spans[1]));
+    }
+
+    public void testSettersKeepTheWatchers() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        element.appendBold("bold").append(" plain");
+        assertTrue(element.compact());
+
+        // the builder is made for the watcher while the element stays compact
+        Watcher watcher = new Watcher();
+        element.setSpan(watcher, 0, element.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE | Spanned.SPAN_PRIORITY);
+        element.setUnderline(0, 4);
+
+        assertFalse(element.isCompact());
+        assertEquals(3, element.getSpanCount());
+        assertSame(watcher, element.getSpans(0, element.length(), Watcher.class)[0]);
+        assertEquals(1, element.getSpans(0, element.length(), StyleSpan.class).length);
+        assertEquals(1, element.getSpans(0, element.length(), UnderlineSpan.class).length);
+    }
+
+    public void testUnregisteredSpansAreNotCompacted() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement("text");
+        element.setSpan(new Watcher(), 0, 4, Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+
+        assertFalse(element.compact());
+        assertFalse(element.isCompact());
+        assertEquals(1, element.getSpanCount());
+    }
+
+    /**
+     * logs the heap retained by the samples parsed COPIES times, before and after
+     * compacting their spans
+     */
+    public void testHeapSavings() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        String[] sources = new String[SAMPLES.length];
+        for(int index = 0; index < SAMPLES.length; index ++){
+            sources[index] = Utils.readFromfile(getContext(), SAMPLES[index]);
+        }
+
+        // once before measuring, so the caches of the engine and the codec are filled
+        compact(parse(engine, sources, 1));
+
+        long baseline = usedHeap();
+        ArrayList<RichDocument> documents = parse(engine, sources, COPIES);
+        long live = usedHeap() - baseline;
+        int spans = spanCount(documents);
+
+        compact(documents);
+        long compact = usedHeap() - baseline;
+
+        Log.i(TAG, spans + " spans, live " + live / 1024 + " KB, compact " + compact / 1024 +
+                " KB, " + (live - compact) / Math.max(1, spans) + " bytes saved per span");
+
+        assertTrue(compact < live);
+        assertEquals(spans, spanCount(documents));
+    }
+
+    private static ArrayList<RichDocument> parse(RichTextEngine engine, String[] sources, int copies){
+        ArrayList<RichDocument> documents = new ArrayList<>();
+        for(int copy = 0; copy < copies; copy ++){
+            for(String source : sources){
+                documents.add(engine.parse(source));
+            }
+        }
+        return documents;
+    }
+
+    private static void compact(ArrayList<RichDocument> documents){
+        for(RichDocument document : documents){
+            document.compact();
+        }
+    }
+
+    private static int spanCount(ArrayList<RichDocument> documents){
+        int count = 0;
+        for(RichDocument document : documents){
+            for(DocumentElement element : document.getElements()){
+                if(element instanceof RichTextDocumentElement){
+                    count += ((RichTextDocumentElement) element).getSpanCount();
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for(int gc = 0; gc < 3; gc ++){
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void assertSameQueries(RichTextDocumentElement expected, RichTextDocumentElement actual, Random random){
+
+        int length = expected.length();
+        assertEquals(expected.contentString(), actual.contentString());
+
+        for(int query = 0; query < 200; query ++){
+
+            int start = random.nextInt(length + 1);
+            int end = random.nextBoolean() ? start : start + random.nextInt(length - start + 1);
+            Class kind = KINDS[random.nextInt(KINDS.length)];
+
+            Object[] left = expected.getSpans(start, end, kind);
+            Object[] right = actual.getSpans(start, end, kind);
+
+            assertEquals(left.length, right.length);
+
+            for(int index = 0; index < left.length; index ++){
+                assertEquals(left[index].getClass(), right[index].getClass());
+                assertEquals(expected.getSpanStart(left[index]), actual.getSpanStart(right[index]));
+                assertEquals(expected.getSpanEnd(left[index]), actual.getSpanEnd(right[index]));
+                assertEquals(expected.getSpanFlags(left[index]), actual.getSpanFlags(right[index]));
+            }
+
+            assertEquals(expected.nextSpanTransition(start, length, kind),
+                    actual.nextSpanTransition(start, length, kind));
+        }
+
+        Spanned left = (Spanned) expected.subSequence(0, length / 2);
+        Spanned right = (Spanned) actual.subSequence(0, length / 2);
+        assertEquals(left.toString(), right.toString());
+        assertEquals(left.getSpans(0, left.length(), Object.class).length,
+                right.getSpans(0, right.length(), Object.class).length);
+    }
+
+    private static class Watcher implements SpanWatcher {
+
+        @Override
+        public void onSpanAdded(Spannable text, Object what, int start, int end) {
+        }
+
+        @Override
+        public void onSpanRemoved(Spannable text, Object what, int start, int end) {
+        }
+
+        @Override
+        public void onSpanChanged(Spannable text, Object what, int ostart, int oend, int nstart, int nend) {
+        }
+    }
+}
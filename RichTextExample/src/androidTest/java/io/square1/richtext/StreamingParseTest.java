@@ -0,0 +1,193 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.OembedDocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * feeds the parser with a stream delivering the html in small chunks and checks
+ * elements are delivered before the end of the input is reached.
+ */
+public class StreamingParseTest extends ApplicationTestCase<Application> {
+
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * serves the html CHUNK_SIZE chars at a time and remembers how much was read
+     */
+    private static class ChunkedReader extends Reader {
+
+        private final String mSource;
+        private int mPosition;
+
+        ChunkedReader(String source){
+            mSource = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+
+            if(mPosition == mSource.length()){
+                return -1;
+            }
+
+            int count = Math.min(Math.min(length, CHUNK_SIZE), mSource.length() - mPosition);
+            mSource.getChars(mPosition, mPosition + count, buffer, offset);
+            mPosition += count;
+            return count;
+        }
+
+        boolean endReached(){
+            return mPosition == mSource.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+
+        }
+    }
+
+    private static class ChunkedInputStream extends InputStream {
+
+        private final byte[] mSource;
+        private int mPosition;
+
+        ChunkedInputStream(byte[] source){
+            mSource = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return mPosition < mSource.length ? mSource[mPosition ++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            if(mPosition == mSource.length){
+                return -1;
+            }
+
+            int count = Math.min(Math.min(length, CHUNK_SIZE), mSource.length - mPosition);
+            System.arraycopy(mSource, mPosition, buffer, offset, count);
+            mPosition += count;
+            return count;
+        }
+
+        boolean endReached(){
+            return mPosition == mSource.length;
+        }
+    }
+
+    /**
+     * records for every element delivered whether the end of the input had been reached
+     */
+    private static abstract class RecordingListener implements RichTextV2.OnElementParsedListener {
+
+        final ArrayList<DocumentElement> elements = new ArrayList<>();
+        final ArrayList<Boolean> endReached = new ArrayList<>();
+
+        @Override
+        public void onElementParsed(DocumentElement element, int index) {
+            assertEquals(elements.size(), index);
+            elements.add(element);
+            endReached.add(endReached());
+        }
+
+        abstract boolean endReached();
+    }
+
+    private String mHtml;
+
+    public StreamingParseTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        html.append("<p>The opening paragraph of the article.</p>");
+        html.append("<p>https://twitter.com/square1io/status/670060095972245504</p>");
+        for(int index = 0; index < 200; index ++){
+            html.append("<p>Paragraph number ").append(index).append(" of the article.</p>");
+        }
+        html.append("</body></html>");
+        mHtml = html.toString();
+    }
+
+    public void testReaderDeliversElementsBeforeEndOfInput() throws Exception {
+
+        final ChunkedReader reader = new ChunkedReader(mHtml);
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            boolean endReached() {
+                return reader.endReached();
+            }
+        };
+
+        RichDocument document = RichTextV2.fromHtml(getContext(), reader, null, null, listener);
+
+        assertTrue(listener.elements.size() >= 3);
+        // the opening paragraph and the tweet come before the rest of the article is read
+        assertTrue(listener.elements.get(0) instanceof RichTextDocumentElement);
+        assertTrue(listener.elements.get(1) instanceof OembedDocumentElement);
+        assertFalse(listener.endReached.get(0));
+        assertFalse(listener.endReached.get(1));
+
+        assertEquals(document.getElements(), listener.elements);
+        assertSameDocument(RichTextV2.fromHtml(getContext(), mHtml), document);
+    }
+
+    public void testInputStreamDeliversElementsBeforeEndOfInput() throws Exception {
+
+        final ChunkedInputStream stream = new ChunkedInputStream(mHtml.getBytes("UTF-8"));
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            boolean endReached() {
+                return stream.endReached();
+            }
+        };
+
+        RichDocument document = RichTextV2.fromHtml(getContext(), stream, null, null, listener);
+
+        assertFalse(listener.endReached.get(0));
+        assertFalse(listener.endReached.get(1));
+        assertSameDocument(RichTextV2.fromHtml(getContext(), mHtml), document);
+    }
+
+    public void testInputStreamCharsetFromMetaTag() throws Exception {
+
+        final String html = "<html><head><meta http-equiv=\"Content-Type\" " +
+                "content=\"text/html; charset=ISO-8859-1\"></head><body><p>café</p></body></html>";
+
+        RichDocument document = RichTextV2.fromHtml(getContext(),
+                new ChunkedInputStream(html.getBytes("ISO-8859-1")), null, null, null);
+
+        RichTextDocumentElement element = (RichTextDocumentElement) document.getElements().get(0);
+        assertTrue(element.contentString().contains("café"));
+    }
+
+    private static void assertSameDocument(RichDocument expected, RichDocument actual){
+
+        ArrayList<DocumentElement> expectedElements = expected.getElements();
+        ArrayList<DocumentElement> actualElements = actual.getElements();
+
+        assertEquals(expectedElements.size(), actualElements.size());
+
+        for(int index = 0; index < expectedElements.size(); index ++){
+            assertEquals(expectedElements.get(index), actualElements.get(index));
+        }
+    }
+}
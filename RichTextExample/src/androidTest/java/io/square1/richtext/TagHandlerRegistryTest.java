@@ -0,0 +1,146 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.graphics.Typeface;
+import android.test.ApplicationTestCase;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.parser.MarkupTag;
+import io.square1.richtextlib.v2.parser.TagHandler;
+import io.square1.richtextlib.v2.parser.TagHandlerFactory;
+import io.square1.richtextlib.v2.parser.handlers.BHandler;
+import io.square1.richtextlib.v2.parser.handlers.DIVHandler;
+import io.square1.richtextlib.v2.parser.handlers.DefaultHandler;
+import io.square1.richtextlib.v2.parser.handlers.IHandler;
+import io.square1.richtextlib.v2.parser.handlers.OLHandler;
+
+/**
+ * checks how a MarkupContext resolves the handlers of its tags: registered factories
+ * replace the default ones, unknown tags are resolved once and stateless handlers are
+ * shared while DIV and OL get a handler for every element.
+ */
+public class TagHandlerRegistryTest extends ApplicationTestCase<Application> {
+
+    public TagHandlerRegistryTest() {
+        super(Application.class);
+    }
+
+    public void testRegisterOverridesDefault() throws Exception {
+
+        MarkupContext context = new MarkupContext();
+        assertTrue(context.getTagHandler(tag("b")) instanceof BHandler);
+
+        context.register("B", new TagHandlerFactory() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new IHandler();
+            }
+        });
+
+        // not case sensitive, and the handler resolved before is forgotten
+        assertTrue(context.getTagHandler(tag("b")) instanceof IHandler);
+        assertTrue(context.getTagHandler(tag("B")) instanceof IHandler);
+    }
+
+    public void testRegisteredHandlerIsUsedByTheParser() throws Exception {
+
+        RichTextEngine engine = new RichTextEngine(getContext(), null, new RichTextEngine.MarkupContextFactory() {
+            @Override
+            public MarkupContext newMarkupContext() {
+                MarkupContext context = new MarkupContext();
+                context.register("b", new TagHandlerFactory.Stateless() {
+                    @Override
+                    public TagHandler newTagHandler() {
+                        return new IHandler();
+                    }
+                });
+                return context;
+            }
+        });
+
+        RichTextDocumentElement text = null;
+        for(DocumentElement element : engine.parse("<p>some <b>bold</b> text</p>").getElements()){
+            if(element instanceof RichTextDocumentElement){
+                text = (RichTextDocumentElement) element;
+            }
+        }
+
+        assertNotNull(text);
+        StyleSpan[] spans = text.getSpans(StyleSpan.class);
+        assertEquals(1, spans.length);
+        assertEquals(Typeface.ITALIC, spans[0].getStyle());
+    }
+
+    public void testUnknownTagIsResolvedOnce() throws Exception {
+
+        final int[] created = new int[1];
+        MarkupContext context = new MarkupContext();
+
+        TagHandler first = context.getTagHandler(tag("blink"));
+        assertTrue(first instanceof DefaultHandler);
+
+        // served from the cache, no lookup and no new handler
+        for(int index = 0; index < 10; index ++){
+            assertSame(first, context.getTagHandler(tag("blink")));
+        }
+
+        // registering drops what was resolved, unsupported tags included
+        context.register("blink", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                created[0] ++;
+                return new DefaultHandler();
+            }
+        });
+
+        TagHandler registered = context.getTagHandler(tag("blink"));
+        assertNotSame(first, registered);
+        for(int index = 0; index < 10; index ++){
+            assertSame(registered, context.getTagHandler(tag("blink")));
+        }
+        assertEquals(1, created[0]);
+    }
+
+    public void testStatelessHandlersAreShared() throws Exception {
+
+        MarkupContext context = new MarkupContext();
+
+        for(String name : new String[]{"b", "em", "br", "i", "p", "a"}){
+            assertSame(context.getTagHandler(tag(name)), context.getTagHandler(tag(name)));
+        }
+
+        // every context has handlers of its own
+        assertNotSame(context.getTagHandler(tag("b")), new MarkupContext().getTagHandler(tag("b")));
+    }
+
+    public void testStatefulHandlersArePerElement() throws Exception {
+
+        MarkupContext context = new MarkupContext();
+
+        TagHandler outerDiv = context.getTagHandler(tag("div"));
+        TagHandler innerDiv = context.getTagHandler(tag("div"));
+        assertTrue(outerDiv instanceof DIVHandler);
+        assertTrue(innerDiv instanceof DIVHandler);
+        assertNotSame(outerDiv, innerDiv);
+
+        OLHandler outerList = (OLHandler) context.getTagHandler(tag("ol"));
+        OLHandler innerList = (OLHandler) context.getTagHandler(tag("ol"));
+        assertNotSame(outerList, innerList);
+
+        // the index of a list isn't moved by the lists nested in it
+        assertEquals(1, outerList.getNextIndex());
+        assertEquals(1, innerList.getNextIndex());
+        assertEquals(2, innerList.getNextIndex());
+        assertEquals(2, outerList.getNextIndex());
+    }
+
+    private static MarkupTag tag(String name){
+        return new MarkupTag(name, new AttributesImpl());
+    }
+}
@@ -0,0 +1,97 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.os.Debug;
+import android.test.ApplicationTestCase;
+import android.util.Log;
+
+import io.square1.richtextlib.spans.Style;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.RichDocument;
+
+/**
+ * counts the bytes allocated for each character of html parsed. Text used to be copied
+ * several times on its way to the output, and every paragraph copied the whole output,
+ * so the bytes per character grew with the length of the document.
+ */
+public class TextAllocationTest extends ApplicationTestCase<Application> {
+
+    private static final String TAG = "TextAllocationTest";
+
+    /**
+     * the text of the document is kept in the output, in the html source and in the
+     * parser buffers, anything above this is an extra copy
+     */
+    private static final double MAX_BYTES_PER_CHAR = 48;
+
+    public TextAllocationTest() {
+        super(Application.class);
+    }
+
+    public void testTextBytesPerChar() throws Exception {
+
+        Style style = new RichTextV2.DefaultStyle(getContext());
+        String html = document(300, 40, false);
+
+        // loads the classes and the parser
+        RichTextV2.fromHtml(getContext(), html, style);
+
+        double bytesPerChar = bytesPerChar(html, style);
+        Log.i(TAG, "text " + bytesPerChar + " bytes/char");
+
+        assertTrue(bytesPerChar + " bytes/char", bytesPerChar < MAX_BYTES_PER_CHAR);
+    }
+
+    public void testBytesPerCharDontGrowWithLength() throws Exception {
+
+        Style style = new RichTextV2.DefaultStyle(getContext());
+        String small = document(500, 2, true);
+        String large = document(2000, 2, true);
+
+        RichTextV2.fromHtml(getContext(), small, style);
+
+        double smallBytesPerChar = bytesPerChar(small, style);
+        double largeBytesPerChar = bytesPerChar(large, style);
+        Log.i(TAG, "small " + smallBytesPerChar + " bytes/char, large " + largeBytesPerChar + " bytes/char");
+
+        assertTrue(largeBytesPerChar < MAX_BYTES_PER_CHAR);
+        assertTrue(smallBytesPerChar + " " + largeBytesPerChar, largeBytesPerChar < smallBytesPerChar * 1.5);
+    }
+
+    private double bytesPerChar(String html, Style style){
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+
+        RichDocument document = RichTextV2.fromHtml(getContext(), html, style);
+
+        int bytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        assertFalse(document.getElements().isEmpty());
+        return bytes / (double) html.length();
+    }
+
+    /**
+     * @param paragraphs number of paragraphs
+     * @param sentences sentences in each paragraph
+     * @param markup adds some inline markup and a link to each paragraph
+     */
+    private static String document(int paragraphs, int sentences, boolean markup){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+
+        for(int index = 0; index < paragraphs; index ++){
+            html.append("<p>");
+            for(int sentence = 0; sentence < sentences; sentence ++){
+                html.append("Lorem ipsum dolor sit amet,  consectetur\n adipiscing elit. ");
+            }
+            if(markup == true){
+                html.append("Some <b>bold</b> words and a link, www.square1.io/").append(index).append('.');
+            }
+            html.append("</p>\n");
+        }
+
+        return html.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,217 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.content.Context;
+import android.test.ApplicationTestCase;
+import android.text.style.ParagraphStyle;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+
+import io.square1.richtext.io.square1.richtext.sample.Utils;
+import io.square1.richtextlib.spans.RichTextSpan;
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.spans.VideoPlayerSpan;
+import io.square1.richtextlib.ui.RichContentView;
+import io.square1.richtextlib.ui.RichTextBlockAdapter;
+import io.square1.richtextlib.v2.RichTextEngine;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.ImageDocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.content.TextBlocks;
+import io.square1.richtextlib.v2.content.VideoDocumentElement;
+
+/**
+ * checks the blocks a text is split in put together give the text back, that paragraph
+ * spans aren't split and that the adapter has an item for every block and shows the
+ * elements that aren't text.
+ */
+public class TextBlocksTest extends ApplicationTestCase<Application> {
+
+    private static final String[] SAMPLES = {
+            "samples/html5.html",
+            "samples/test.html",
+            "samples/youtube_test.html"
+    };
+
+    private static final int[] LENGTHS = {0, 100, 1000};
+
+    private ArrayList<RichDocument> mDocuments;
+
+    public TextBlocksTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        RichTextEngine engine = new RichTextEngine(getContext());
+        mDocuments = new ArrayList<>();
+        for(String sample : SAMPLES){
+            mDocuments.add(engine.parse(Utils.readFromfile(getContext(), sample)));
+        }
+        mDocuments.add(engine.parse(longArticle()));
+    }
+
+    public void testBlocksGiveTheTextBack() throws Exception {
+
+        for(RichTextDocumentElement text : texts()){
+            for(int length : LENGTHS){
+
+                int[] boundaries = TextBlocks.boundaries(text, length);
+                StringBuilder joined = new StringBuilder();
+
+                for(int index = 0; index < TextBlocks.count(boundaries); index ++){
+                    if(index > 0){
+                        joined.append('\n');
+                    }
+                    joined.append(TextBlocks.block(text, boundaries, index).contentString());
+
+                    // short paragraphs are kept together
+                    if(index < TextBlocks.count(boundaries) - 1){
+                        assertTrue(boundaries[index + 1] - boundaries[index] >= length);
+                    }
+                }
+
+                assertEquals(text.contentString(), joined.toString());
+            }
+        }
+    }
+
+    public void testParagraphSpansAreNotSplit() throws Exception {
+
+        for(RichTextDocumentElement text : texts()){
+
+            int[] boundaries = TextBlocks.boundaries(text, 0);
+
+            for(ParagraphStyle span : text.getSpans(ParagraphStyle.class)){
+                int start = text.getSpanStart(span);
+                int end = text.getSpanEnd(span);
+                for(int boundary : boundaries){
+                    assertFalse(start < boundary && boundary < end);
+                }
+            }
+        }
+    }
+
+    public void testBlocksShareTheSpans() throws Exception {
+
+        RichTextDocumentElement text = texts().get(0);
+        int[] boundaries = TextBlocks.boundaries(text, 0);
+        assertTrue(TextBlocks.count(boundaries) > 1);
+
+        RichTextDocumentElement block = TextBlocks.block(text, boundaries, 1);
+        for(RichTextSpan span : block.getSpans()){
+            assertTrue(text.getSpanStart(span) >= 0);
+        }
+    }
+
+    public void testBlankLinesStayWithTheParagraph() throws Exception {
+
+        RichTextDocumentElement text = new RichTextDocumentElement("first\n\nsecond\nthird");
+        int[] boundaries = TextBlocks.boundaries(text, 0);
+
+        assertEquals(3, TextBlocks.count(boundaries));
+        assertEquals("first\n", TextBlocks.block(text, boundaries, 0).contentString());
+        assertEquals("second", TextBlocks.block(text, boundaries, 1).contentString());
+        assertEquals("third", TextBlocks.block(text, boundaries, 2).contentString());
+
+        assertEquals(1, TextBlocks.count(TextBlocks.boundaries(new RichTextDocumentElement(""), 0)));
+    }
+
+    public void testAdapterItems() throws Exception {
+
+        for(RichDocument document : mDocuments){
+
+            RichTextBlockAdapter adapter = new RichTextBlockAdapter(document, 100);
+            int count = 0;
+
+            for(DocumentElement element : document.getElements()){
+                if(element instanceof RichTextDocumentElement){
+                    count += TextBlocks.count(TextBlocks.boundaries((RichTextDocumentElement) element, 100));
+                }else {
+                    count ++;
+                }
+            }
+
+            assertEquals(count, adapter.getCount());
+            for(int position = 0; position < adapter.getCount(); position ++){
+                boolean text = adapter.getItem(position) instanceof RichTextDocumentElement;
+                assertEquals(text ? 0 : 1, adapter.getItemViewType(position));
+            }
+        }
+    }
+
+    public void testElementViews() throws Exception {
+
+        ArrayList<DocumentElement> elements = new ArrayList<>();
+        elements.add(ImageDocumentElement.newInstance("http://square1.io/image.png", "", 40, 30));
+        elements.add(new RichTextDocumentElement("some text"));
+        elements.add(VideoDocumentElement.newInstance("http://square1.io/video.mp4", 40, 30));
+
+        final ArrayList<RichTextDocumentElement> made = new ArrayList<>();
+        RichTextBlockAdapter adapter = new RichTextBlockAdapter(new RichDocument("", elements)){
+            @Override
+            protected RichTextDocumentElement getElementText(DocumentElement element, Context context) {
+                RichTextDocumentElement text = super.getElementText(element, context);
+                made.add(text);
+                return text;
+            }
+        };
+
+        FrameLayout parent = new FrameLayout(getContext());
+        assertEquals(3, adapter.getCount());
+
+        View image = adapter.getView(0, null, parent);
+        assertTrue(image instanceof RichContentView);
+        View video = adapter.getView(2, null, parent);
+        assertTrue(video instanceof RichContentView);
+
+        assertEquals(2, made.size());
+        assertEquals(1, made.get(0).getSpans(0, made.get(0).length(), UrlBitmapSpan.class).length);
+        assertEquals(1, made.get(1).getSpans(0, made.get(1).length(), VideoPlayerSpan.class).length);
+
+        // bound again, the text and the images it loaded are kept
+        assertSame(image, adapter.getView(0, image, parent));
+        assertEquals(2, made.size());
+    }
+
+    private ArrayList<RichTextDocumentElement> texts(){
+        ArrayList<RichTextDocumentElement> texts = new ArrayList<>();
+        for(RichDocument document : mDocuments){
+            for(DocumentElement element : document.getElements()){
+                if(element instanceof RichTextDocumentElement){
+                    texts.add((RichTextDocumentElement) element);
+                }
+            }
+        }
+        return texts;
+    }
+
+    private static String longArticle(){
+
+        StringBuilder html = new StringBuilder("<html><body>");
+        for(int index = 0; index < 500; index ++){
+            switch (index % 4){
+                case 0:
+                    html.append("<h2>Update ").append(index).append("</h2>");
+                    break;
+                case 1:
+                    html.append("<p>Paragraph <b>number</b> ").append(index)
+                            .append(" with a <a href=\"http://square1.io\">link</a>.</p>");
+                    break;
+                case 2:
+                    html.append("<ul><li>first</li><li>second <i>item</i></li></ul>");
+                    break;
+                default:
+                    html.append("<blockquote>Quote ").append(index).append("<br/>on two lines</blockquote>");
+                    break;
+            }
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+}
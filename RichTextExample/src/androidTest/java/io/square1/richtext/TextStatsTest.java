@@ -0,0 +1,105 @@
+package io.square1.richtext;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+
+import java.util.Random;
+
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * checks the statistics RichTextDocumentElement keeps while text is appended and deleted
+ * against the ones found going through the whole text.
+ */
+public class TextStatsTest extends ApplicationTestCase<Application> {
+
+    private static final String[] PIECES = { "\n", "\n\n", " ", "\t", "word", " two words ", "\nline\n", "" };
+
+    public TextStatsTest() {
+        super(Application.class);
+    }
+
+    public void testEmpty() throws Exception {
+        RichTextDocumentElement element = new RichTextDocumentElement();
+        assertEquals(0, element.getNonWhitespaceCount());
+        assertEquals(0, element.getLeadingNewLines());
+        assertEquals(0, element.getTrailingNewLines());
+    }
+
+    public void testNewLinesOnly() throws Exception {
+
+        RichTextDocumentElement element = new RichTextDocumentElement("\n\n");
+        element.append('\n');
+        assertEquals(3, element.getLeadingNewLines());
+        assertEquals(3, element.getTrailingNewLines());
+
+        element.append(" a\n");
+        assertEquals(3, element.getLeadingNewLines());
+        assertEquals(1, element.getTrailingNewLines());
+        assertEquals(1, element.getNonWhitespaceCount());
+
+        element.delete(3, 5);
+        assertEquals(4, element.getLeadingNewLines());
+        assertEquals(4, element.getTrailingNewLines());
+        assertEquals(0, element.getNonWhitespaceCount());
+    }
+
+    public void testRandomEdits() throws Exception {
+
+        Random random = new Random(42);
+        RichTextDocumentElement element = new RichTextDocumentElement("\n start ");
+
+        for(int step = 0; step < 5000; step ++){
+
+            int length = element.length();
+            int action = random.nextInt(10);
+            String piece = PIECES[random.nextInt(PIECES.length)];
+
+            if(action < 5){
+                element.append(piece);
+            }else if(action < 6){
+                element.append(piece.length() > 0 ? piece.charAt(0) : 'x');
+            }else if(action < 7){
+                element.append(new SpannableStringBuilder("-" + piece), 1, piece.length() + 1);
+            }else if(action < 8 && length > 0){
+                int start = random.nextInt(length);
+                element.delete(start, Math.min(length, start + random.nextInt(8)));
+            }else if(action < 9 && length > 0){
+                element.trim(Math.min(length, random.nextInt(4)));
+            }else if(length > 2){
+                element.replaceAt(random.nextInt(length - 2), random.nextBoolean() ? "\n\n" : "ab");
+            }
+
+            assertStats(element);
+        }
+    }
+
+    private static void assertStats(RichTextDocumentElement element){
+
+        String text = element.contentString();
+
+        assertEquals(TextUtils.getTrimmedLength(text) > 0, element.getNonWhitespaceCount() > 0);
+
+        int nonWhitespace = 0;
+        for(int index = 0; index < text.length(); index ++){
+            if(text.charAt(index) > ' '){
+                nonWhitespace ++;
+            }
+        }
+        assertEquals(text, nonWhitespace, element.getNonWhitespaceCount());
+
+        int leading = 0;
+        while (leading < text.length() && text.charAt(leading) == '\n'){
+            leading ++;
+        }
+        assertEquals(text, leading, element.getLeadingNewLines());
+
+        int trailing = 0;
+        while (trailing < text.length() && text.charAt(text.length() - trailing - 1) == '\n'){
+            trailing ++;
+        }
+        assertEquals(text, trailing, element.getTrailingNewLines());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+import io.square1.richtextlib.v2.linkify.Linkifier;
+
+/**
+ * autolinking of each sample with Linkifier.WEB_URL, the markup is left in the text
+ * so every attribute holding an address is found too
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class AutolinkBenchmark {
+
+    @Param({"html5.html", "test.html", "youtube_test.html"})
+    public String sample;
+
+    private String mSource;
+    private final int[] mRange = new int[2];
+
+    @Setup
+    public void setUp() throws IOException {
+        mSource = Samples.read(sample);
+    }
+
+    @Benchmark
+    public int findAll(){
+
+        int links = 0;
+        int from = 0;
+
+        while (Linkifier.WEB_URL.find(mSource, from, mRange) == true){
+            from = mRange[1];
+            links ++;
+        }
+
+        return links;
+    }
+}
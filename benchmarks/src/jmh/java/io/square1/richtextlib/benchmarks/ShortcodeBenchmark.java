@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import io.square1.richtextlib.v2.shortcode.ShortcodeReader;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRegistry;
+
+/**
+ * shortcode preprocessing of each sample, as a whole string and streamed the way
+ * the parser reads it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class ShortcodeBenchmark {
+
+    @Param({"html5.html", "test.html", "youtube_test.html"})
+    public String sample;
+
+    private String mSource;
+    private final char[] mBuffer = new char[1024];
+
+    @Setup
+    public void setUp() throws IOException {
+        mSource = Samples.read(sample);
+    }
+
+    @Benchmark
+    public String rewrite(){
+        return ShortcodeRegistry.DEFAULT.rewrite(mSource);
+    }
+
+    @Benchmark
+    public int stream() throws IOException {
+
+        Reader reader = new ShortcodeReader(new StringReader(mSource), ShortcodeRegistry.DEFAULT);
+        int total = 0;
+        int read;
+
+        while ((read = reader.read(mBuffer, 0, mBuffer.length)) != -1){
+            total += read;
+        }
+
+        return total;
+    }
+}
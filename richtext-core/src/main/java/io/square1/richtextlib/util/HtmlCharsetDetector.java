@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the charset of an html byte stream looking at the byte order mark first and at the
+ * meta tags within the first kilobyte then. UTF-8 is used when neither says anything.
+ */
+public class HtmlCharsetDetector {
+
+    public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * how many bytes are looked at for a meta tag
+     */
+    private static final int PRESCAN_SIZE = 1024;
+
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?\\s*([a-zA-Z0-9_\\-:.]+)",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * @return a reader decoding in with the detected charset, reads from in as data is requested
+     */
+    public static Reader newReader(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, PRESCAN_SIZE * 2);
+        return new InputStreamReader(buffered, detect(buffered));
+    }
+
+    public static Reader newReader(ByteBuffer buffer) throws IOException {
+        return newReader(new ByteBufferInputStream(buffer));
+    }
+
+    /**
+     * detects the charset of in consuming the byte order mark if any,
+     * the rest of the prescanned bytes are left in the stream.
+     */
+    public static Charset detect(BufferedInputStream in) throws IOException {
+
+        byte[] head = new byte[PRESCAN_SIZE];
+        in.mark(PRESCAN_SIZE);
+        int length = 0;
+        int read;
+
+        while (length < head.length &&
+                (read = in.read(head, length, head.length - length)) != -1){
+            length += read;
+        }
+
+        in.reset();
+
+        if(length >= 3 &&
+                (head[0] & 0xFF) == 0xEF &&
+                (head[1] & 0xFF) == 0xBB &&
+                (head[2] & 0xFF) == 0xBF){
+            in.skip(3);
+            return DEFAULT_CHARSET;
+        }
+
+        if(length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF){
+            in.skip(2);
+            return Charset.forName("UTF-16BE");
+        }
+
+        if(length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE){
+            in.skip(2);
+            return Charset.forName("UTF-16LE");
+        }
+
+        // meta tags are ascii in every charset we can expect here
+        Matcher matcher = META_CHARSET.matcher(new String(head, 0, length, "ISO-8859-1"));
+        if(matcher.find()){
+            return forName(matcher.group(1));
+        }
+
+        return DEFAULT_CHARSET;
+    }
+
+    private static Charset forName(String name){
+        try {
+            Charset charset = Charset.forName(name.toUpperCase(Locale.US));
+            // a document declaring utf-16 in an ascii compatible meta tag is really utf-8
+            if(charset.name().startsWith("UTF-16")){
+                return DEFAULT_CHARSET;
+            }
+            return charset;
+        }catch (Exception e){
+            return DEFAULT_CHARSET;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer){
+            mBuffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+
+            if(len == 0){
+                return 0;
+            }
+
+            if(mBuffer.hasRemaining() == false){
+                return -1;
+            }
+
+            len = Math.min(len, mBuffer.remaining());
+            mBuffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return mBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Finds the positions a document can be split at to be parsed in chunks.
+ *
+ * A boundary follows the end tag of a p, div, h1-h6 or blockquote that isn't nested in any
+ * other element, plus the blanks after it, and precedes a start tag. The scan is a cheap
+ * approximation of what TagSoup does and stops at the first end tag that doesn't match the
+ * last open element, ChunkedParser checks every boundary while parsing.
+ */
+final class BlockBoundaryScanner {
+
+    private static final HashSet<String> BLOCKS = new HashSet<>(Arrays.asList(
+            "p", "div", "h1", "h2", "h3", "h4", "h5", "h6", "blockquote"));
+
+    private static final HashSet<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "basefont", "br", "col", "embed", "frame", "hr", "img", "input",
+            "isindex", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+
+    private static final HashSet<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList(
+            "script", "style"));
+
+    private final String mSource;
+    private final ArrayList<String> mOpenElements = new ArrayList<>();
+    private final ArrayList<Integer> mBoundaries = new ArrayList<>();
+    private final ArrayList<String> mBoundaryTags = new ArrayList<>();
+    private final ArrayList<Boolean> mBoundaryBlanks = new ArrayList<>();
+
+    private String mHtmlTag = "";
+    private String mBodyTag = "<body>";
+
+    BlockBoundaryScanner(String source){
+        mSource = source;
+    }
+
+    /**
+     * @param chunkLength the minimum distance between two boundaries
+     */
+    void scan(int chunkLength){
+
+        final int length = mSource.length();
+        int chunkStart = 0;
+        int position = 0;
+
+        while (position < length) {
+
+            position = mSource.indexOf('<', position);
+
+            if(position == -1 || position + 1 == length){
+                return;
+            }
+
+            char next = mSource.charAt(position + 1);
+
+            if(mSource.startsWith("<!--", position)){
+                position = skipPast("-->", position + 4);
+            }
+            else if(next == '!' || next == '?'){
+                position = skipPast(">", position + 2);
+            }
+            else if(next == '/'){
+
+                int endTag = position;
+                int nameEnd = nameEnd(position + 2);
+                String name = mSource.substring(position + 2, nameEnd).toLowerCase(Locale.US);
+                position = skipPast(">", nameEnd);
+
+                if(position == -1){
+                    return;
+                }
+
+                if("html".equals(name) || "body".equals(name)){
+                    continue;
+                }
+
+                int last = mOpenElements.size() - 1;
+                if(last < 0 || mOpenElements.get(last).equals(name) == false){
+                    return;
+                }
+
+                mOpenElements.remove(last);
+
+                if(last == 0 && BLOCKS.contains(name)){
+                    int boundary = skipBlanks(position);
+                    if(boundary - chunkStart >= chunkLength &&
+                            length - boundary >= chunkLength / 2 &&
+                            startTagAt(boundary)){
+                        mBoundaries.add(boundary);
+                        mBoundaryTags.add(name);
+                        mBoundaryBlanks.add(blankBefore(endTag));
+                        chunkStart = boundary;
+                    }
+                }
+            }
+            else if(isNameStart(next)){
+
+                int nameEnd = nameEnd(position + 1);
+                String name = mSource.substring(position + 1, nameEnd).toLowerCase(Locale.US);
+                int tagEnd = tagEnd(nameEnd);
+
+                if(tagEnd == -1){
+                    return;
+                }
+
+                boolean selfClosing = mSource.charAt(tagEnd - 1) == '/';
+
+                if("html".equals(name) || "body".equals(name)){
+                    // the chunks are parsed inside the same html and body elements
+                    if(mBoundaries.isEmpty() == false){
+                        mBoundaries.clear();
+                        mBoundaryTags.clear();
+                        mBoundaryBlanks.clear();
+                        return;
+                    }
+                    if("html".equals(name)){
+                        mHtmlTag = mSource.substring(position, tagEnd + 1);
+                    }else {
+                        mBodyTag = mSource.substring(position, tagEnd + 1);
+                    }
+                }
+                else if(RAW_TEXT_ELEMENTS.contains(name) && selfClosing == false){
+                    mOpenElements.add(name);
+                    int endTag = indexOfIgnoreCase("</" + name, tagEnd + 1);
+                    if(endTag == -1){
+                        return;
+                    }
+                    position = endTag;
+                    continue;
+                }
+                else if(VOID_ELEMENTS.contains(name) == false && selfClosing == false){
+                    mOpenElements.add(name);
+                }
+
+                position = tagEnd + 1;
+            }
+            else {
+                position ++;
+            }
+
+            if(position == -1){
+                return;
+            }
+        }
+    }
+
+    int getBoundaryCount(){
+        return mBoundaries.size();
+    }
+
+    /**
+     * @return the position in the source the chunk following the boundary starts at
+     */
+    int getBoundary(int index){
+        return mBoundaries.get(index);
+    }
+
+    /**
+     * @return the name of the block the boundary follows
+     */
+    String getBoundaryTag(int index){
+        return mBoundaryTags.get(index);
+    }
+
+    /**
+     * @return true if the text of the block the boundary follows ends with a blank
+     */
+    boolean isBlankBeforeBoundary(int index){
+        return mBoundaryBlanks.get(index);
+    }
+
+    /**
+     * @return the html and body start tags of the document, they open every chunk but the first
+     */
+    String getPrefix(){
+        return mHtmlTag + mBodyTag;
+    }
+
+    private int skipPast(String terminator, int from){
+        int index = mSource.indexOf(terminator, from);
+        return index == -1 ? -1 : index + terminator.length();
+    }
+
+    /**
+     * @return true if the last character before the tags preceding index is a blank
+     */
+    private boolean blankBefore(int index){
+        while (index > 0 && mSource.charAt(index - 1) == '>'){
+            index = mSource.lastIndexOf('<', index - 1);
+        }
+        return index > 0 && mSource.charAt(index - 1) <= ' ';
+    }
+
+    private int skipBlanks(int from){
+        int length = mSource.length();
+        while (from < length && mSource.charAt(from) <= ' '){
+            from ++;
+        }
+        return from;
+    }
+
+    private boolean startTagAt(int index){
+        return index + 1 < mSource.length() &&
+                mSource.charAt(index) == '<' &&
+                isNameStart(mSource.charAt(index + 1));
+    }
+
+    private int nameEnd(int from){
+        int length = mSource.length();
+        while (from < length) {
+            char c = mSource.charAt(from);
+            if(Character.isLetterOrDigit(c) == false && c != '-' && c != ':' && c != '_'){
+                break;
+            }
+            from ++;
+        }
+        return from;
+    }
+
+    /**
+     * @return the index of the '>' closing the tag, quoted attribute values are skipped
+     */
+    private int tagEnd(int from){
+        int length = mSource.length();
+        char quote = 0;
+        for(int index = from; index < length; index ++){
+            char c = mSource.charAt(index);
+            if(quote != 0){
+                if(c == quote){
+                    quote = 0;
+                }
+            }else if(c == '"' || c == '\''){
+                quote = c;
+            }else if(c == '>'){
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfIgnoreCase(String target, int from){
+        int last = mSource.length() - target.length();
+        for(int index = from; index <= last; index ++){
+            if(mSource.regionMatches(true, index, target, 0, target.length())){
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNameStart(char c){
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
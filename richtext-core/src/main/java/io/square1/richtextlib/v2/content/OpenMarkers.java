@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.content;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The markers left by the tag handlers where the elements still open on a
+ * RichTextDocumentElement start. Markers are kept in the order they were added and
+ * by their class and superclasses, so that the last one of a kind is found without
+ * going through the spans of the whole text.
+ * Their offsets follow the text as it is deleted the way a SPAN_MARK_MARK span would.
+ */
+final class OpenMarkers {
+
+    private final ArrayList<Object> mMarkers = new ArrayList<>();
+    private int[] mStarts = new int[8];
+    private final HashMap<Class<?>,ArrayList<Object>> mMarkersByKind = new HashMap<>();
+
+    void add(Object marker, int start){
+
+        if(mMarkers.size() == mStarts.length){
+            int[] starts = new int[mStarts.length * 2];
+            System.arraycopy(mStarts, 0, starts, 0, mStarts.length);
+            mStarts = starts;
+        }
+
+        mStarts[mMarkers.size()] = start;
+        mMarkers.add(marker);
+
+        for(Class<?> kind = marker.getClass(); kind != Object.class; kind = kind.getSuperclass()){
+
+            ArrayList<Object> markers = mMarkersByKind.get(kind);
+            if(markers == null){
+                markers = new ArrayList<>();
+                mMarkersByKind.put(kind, markers);
+            }
+            markers.add(marker);
+        }
+    }
+
+    boolean isEmpty(){
+        return mMarkers.isEmpty();
+    }
+
+    /**
+     * @return the marker of the given kind added last, null if there isn't one
+     */
+    @SuppressWarnings("unchecked")
+    <T> T last(Class<T> kind){
+
+        if(kind.isInterface() == true){
+            for(int index = mMarkers.size() - 1; index >= 0; index --){
+                if(kind.isInstance(mMarkers.get(index))){
+                    return (T) mMarkers.get(index);
+                }
+            }
+            return null;
+        }
+
+        ArrayList<Object> markers = mMarkersByKind.get(kind);
+
+        if(markers == null || markers.isEmpty()){
+            return null;
+        }
+
+        return (T) markers.get(markers.size() - 1);
+    }
+
+    /**
+     * @return the offset of marker or -1 if it isn't there
+     */
+    int start(Object marker){
+        int index = lastIndexOf(mMarkers, marker);
+        return index < 0 ? -1 : mStarts[index];
+    }
+
+    void remove(Object marker){
+
+        int index = lastIndexOf(mMarkers, marker);
+
+        if(index < 0){
+            return;
+        }
+
+        mMarkers.remove(index);
+        System.arraycopy(mStarts, index + 1, mStarts, index, mMarkers.size() - index);
+
+        for(Class<?> kind = marker.getClass(); kind != Object.class; kind = kind.getSuperclass()){
+            ArrayList<Object> markers = mMarkersByKind.get(kind);
+            markers.remove(lastIndexOf(markers, marker));
+        }
+    }
+
+    /**
+     * moves the markers after the text deleted between start and end, the ones in between
+     * move to start
+     */
+    void delete(int start, int end){
+
+        int count = end - start;
+
+        for(int index = 0; index < mMarkers.size(); index ++){
+            int offset = mStarts[index];
+            if(offset > start){
+                mStarts[index] = Math.max(start, offset - count);
+            }
+        }
+    }
+
+    /**
+     * the markers in the text replaced between start and end move to start
+     */
+    void replace(int start, int end){
+
+        for(int index = 0; index < mMarkers.size(); index ++){
+            int offset = mStarts[index];
+            if(offset > start && offset < end){
+                mStarts[index] = start;
+            }
+        }
+    }
+
+    /**
+     * markers are usually looked for right after they are added, the search starts from the end
+     */
+    private static int lastIndexOf(ArrayList<Object> markers, Object marker){
+
+        for(int index = markers.size() - 1; index >= 0; index --){
+            if(markers.get(index) == marker){
+                return index;
+            }
+        }
+
+        return -1;
+    }
+}
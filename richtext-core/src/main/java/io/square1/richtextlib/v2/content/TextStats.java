@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.content;
+
+/**
+ * Running statistics of the text of a RichTextDocumentElement, kept up to date as text
+ * is appended and deleted so that the handlers don't have to go through the whole text
+ * to know whether it is blank or how many new lines it starts and ends with.
+ * Characters up to ' ' are whitespace, as in TextUtils.getTrimmedLength.
+ */
+final class TextStats {
+
+    private int mLength;
+    private int mNonWhitespace;
+    private int mLeadingNewLines;
+    private int mTrailingNewLines;
+
+    void append(CharSequence text, int start, int end){
+
+        boolean leading = mLeadingNewLines == mLength;
+
+        for(int index = start; index < end; index ++){
+
+            char c = text.charAt(index);
+
+            if(c == '\n'){
+                mTrailingNewLines ++;
+                if(leading == true){
+                    mLeadingNewLines ++;
+                }
+            }else {
+                mTrailingNewLines = 0;
+                leading = false;
+                if(c > ' '){
+                    mNonWhitespace ++;
+                }
+            }
+        }
+
+        mLength += end - start;
+    }
+
+    void append(char c){
+
+        if(c == '\n'){
+            mTrailingNewLines ++;
+            if(mLeadingNewLines == mLength){
+                mLeadingNewLines ++;
+            }
+        }else {
+            mTrailingNewLines = 0;
+            if(c > ' '){
+                mNonWhitespace ++;
+            }
+        }
+
+        mLength ++;
+    }
+
+    /**
+     * to be called before the text between start and end is removed
+     */
+    void remove(CharSequence text, int start, int end){
+        mNonWhitespace -= count(text, start, end);
+    }
+
+    /**
+     * to be called once the text between start and end has been inserted, an empty range
+     * after a removal. The new lines at both ends are counted again, that only goes
+     * through the new lines found there.
+     */
+    void insert(CharSequence text, int start, int end){
+
+        mNonWhitespace += count(text, start, end);
+        mLength = text.length();
+
+        mLeadingNewLines = 0;
+        while (mLeadingNewLines < mLength && text.charAt(mLeadingNewLines) == '\n'){
+            mLeadingNewLines ++;
+        }
+
+        mTrailingNewLines = 0;
+        while (mTrailingNewLines < mLength && text.charAt(mLength - mTrailingNewLines - 1) == '\n'){
+            mTrailingNewLines ++;
+        }
+    }
+
+    int nonWhitespace(){
+        return mNonWhitespace;
+    }
+
+    int leadingNewLines(){
+        return mLeadingNewLines;
+    }
+
+    int trailingNewLines(){
+        return mTrailingNewLines;
+    }
+
+    private static int count(CharSequence text, int start, int end){
+
+        int count = 0;
+
+        for(int index = start; index < end; index ++){
+            if(text.charAt(index) > ' '){
+                count ++;
+            }
+        }
+
+        return count;
+    }
+}
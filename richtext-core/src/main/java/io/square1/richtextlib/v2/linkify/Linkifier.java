@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.linkify;
+
+/**
+ * Finds the links in the text of a document, see Style.linkifier.
+ * A linkifier is shared by all the documents parsed with the same Style and
+ * has to be thread safe.
+ */
+public interface Linkifier {
+
+    /**
+     * finds no links, disables autolinking
+     */
+    Linkifier NONE = new Linkifier() {
+        @Override
+        public boolean find(CharSequence text, int from, int[] range) {
+            return false;
+        }
+
+        @Override
+        public String cacheKey() {
+            return "none";
+        }
+    };
+
+    /**
+     * finds the same web addresses android.util.Patterns.WEB_URL does, without regular expressions
+     */
+    Linkifier WEB_URL = new WebUrlLinkifier();
+
+    /**
+     * finds the first link in text starting at from or after it, links are never empty
+     * @param range receives the start of the link at index 0 and its end at index 1
+     * @return false if there are no more links in text
+     */
+    boolean find(CharSequence text, int from, int[] range);
+
+    /**
+     * @return a string that is the same for linkifiers finding the same links, documents
+     * parsed with linkifiers of different keys aren't shared by RichDocumentCache
+     */
+    String cacheKey();
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.linkify;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the links matching a regular expression, new PatternLinkifier(Patterns.WEB_URL)
+ * follows the web address rules of the platform the app runs on.
+ */
+public class PatternLinkifier implements Linkifier {
+
+    private final Pattern mPattern;
+
+    public PatternLinkifier(Pattern pattern){
+        mPattern = pattern;
+    }
+
+    @Override
+    public boolean find(CharSequence text, int from, int[] range) {
+
+        Matcher matcher = mPattern.matcher(text);
+
+        while (from <= text.length() && matcher.find(from) == true){
+
+            if(matcher.end() > matcher.start()){
+                range[0] = matcher.start();
+                range[1] = matcher.end();
+                return true;
+            }
+
+            from = matcher.end() + 1;
+        }
+
+        return false;
+    }
+
+    @Override
+    public String cacheKey() {
+        return "pattern/" + mPattern.flags() + "/" + mPattern.pattern();
+    }
+}
@@ -0,0 +1,682 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.linkify;
+
+/**
+ * Hand written scanner for the web addresses matched by android.util.Patterns.WEB_URL:
+ *
+ * [(http|https|rtsp)://[user[:password]@]] (label.)+ tld | ipv4 [:port] [/path|?query]
+ *
+ * followed by a word boundary or by the end of the text. The alternatives are tried in the
+ * same order the regular expression tries them, so the same addresses are found.
+ * Text after the last '.' is never looked at and only runs of label characters
+ * followed by a '.' or by the ':' of a scheme are matched further.
+ */
+final class WebUrlLinkifier implements Linkifier {
+
+    private static final int MAX_LABEL_LENGTH = 63;
+    private static final int MAX_TLD_LENGTH = 63;
+    private static final int MAX_PUNYCODE_LENGTH = 58;
+    private static final int MAX_USER_LENGTH = 64;
+    private static final int MAX_PASSWORD_LENGTH = 25;
+    private static final int MAX_PORT_LENGTH = 5;
+
+    private static final int NOT_MATCHED = -1;
+    private static final int NOT_TRIED = -2;
+
+    @Override
+    public boolean find(CharSequence text, int from, int[] range) {
+
+        final int length = text.length();
+        int dot = NOT_MATCHED;
+        int position = from;
+
+        while (position < length){
+
+            if(dot < position){
+                // every web address has a dot
+                dot = indexOf(text, '.', position);
+                if(dot == NOT_MATCHED){
+                    return false;
+                }
+            }
+
+            if(isRunChar(Character.codePointAt(text, position)) == false){
+                position ++;
+                continue;
+            }
+
+            int runEnd = skipRun(text, position);
+            int start = NOT_MATCHED;
+            int end = NOT_MATCHED;
+
+            if(runEnd < length && text.charAt(runEnd) == '.'){
+
+                // a host starts in the run, whatever comes after the first label doesn't
+                // depend on where the label starts
+                int tail = NOT_TRIED;
+                int labelLength = Character.codePointCount(text, position, runEnd);
+                boolean labelEnd = isLabelChar(Character.codePointBefore(text, runEnd));
+
+                for(int index = position; index < runEnd && end == NOT_MATCHED; ){
+
+                    int codePoint = Character.codePointAt(text, index);
+
+                    if(labelEnd == true &&
+                            labelLength <= MAX_LABEL_LENGTH &&
+                            isLabelChar(codePoint) == true){
+
+                        if(tail == NOT_TRIED){
+                            tail = hostNameFrom(text, runEnd + 1);
+                        }
+
+                        end = tail;
+                    }
+
+                    if(end == NOT_MATCHED && runEnd - index <= 3 && isDigits(text, index, runEnd)){
+                        end = ipAddress(text, index);
+                    }
+
+                    start = index;
+                    index += Character.charCount(codePoint);
+                    labelLength --;
+                }
+
+            }else if(runEnd < length && text.charAt(runEnd) == ':' && startsWith(text, runEnd, "://")){
+
+                if(runEnd - 5 >= position && startsWithIgnoreCase(text, runEnd - 5, "https")){
+                    start = runEnd - 5;
+                    end = afterScheme(text, runEnd + 3);
+                }
+
+                if(end == NOT_MATCHED && runEnd - 4 >= position &&
+                        (startsWithIgnoreCase(text, runEnd - 4, "http") ||
+                                startsWithIgnoreCase(text, runEnd - 4, "rtsp"))){
+                    start = runEnd - 4;
+                    end = afterScheme(text, runEnd + 3);
+                }
+            }
+
+            if(end != NOT_MATCHED){
+                range[0] = start;
+                range[1] = end;
+                return true;
+            }
+
+            position = runEnd;
+        }
+
+        return false;
+    }
+
+    @Override
+    public String cacheKey() {
+        return "web-url";
+    }
+
+    private static int afterScheme(CharSequence text, int position){
+
+        int user = userInfo(text, position);
+
+        if(user != NOT_MATCHED){
+            int end = host(text, user);
+            if(end != NOT_MATCHED){
+                return end;
+            }
+        }
+
+        return host(text, position);
+    }
+
+    private static int host(CharSequence text, int position){
+
+        int dot = labelEnd(text, position);
+
+        if(dot != NOT_MATCHED){
+            int end = hostNameFrom(text, dot + 1);
+            if(end != NOT_MATCHED){
+                return end;
+            }
+        }
+
+        return ipAddress(text, position);
+    }
+
+    /**
+     * @param position right after the dot of the first label
+     * @return the end of the address, the labels are taken greedily and given back one by one
+     * until a top level domain and what follows it match
+     */
+    private static int hostNameFrom(CharSequence text, int position){
+
+        int last = position;
+        int dot;
+
+        while ((dot = labelEnd(text, last)) != NOT_MATCHED){
+            last = dot + 1;
+        }
+
+        for(int tld = last; tld >= position; tld = lastIndexOf(text, '.', tld - 2) + 1){
+
+            int end = topLevelDomain(text, tld);
+
+            if(end != NOT_MATCHED){
+                return end;
+            }
+
+            if(tld == position){
+                break;
+            }
+        }
+
+        return NOT_MATCHED;
+    }
+
+    /**
+     * @return the index of the dot closing the label starting at position
+     */
+    private static int labelEnd(CharSequence text, int position){
+
+        final int length = text.length();
+
+        if(position >= length || isLabelChar(Character.codePointAt(text, position)) == false){
+            return NOT_MATCHED;
+        }
+
+        int end = skipRun(text, position);
+
+        if(end == length ||
+                text.charAt(end) != '.' ||
+                isLabelChar(Character.codePointBefore(text, end)) == false ||
+                Character.codePointCount(text, position, end) > MAX_LABEL_LENGTH){
+            return NOT_MATCHED;
+        }
+
+        return end;
+    }
+
+    private static int topLevelDomain(CharSequence text, int position){
+
+        final int length = text.length();
+
+        if(startsWith(text, position, "xn--")){
+
+            int start = position + 4;
+            int run = 0;
+
+            while (start + run < length && run <= MAX_PUNYCODE_LENGTH &&
+                    (isWordChar(text.charAt(start + run)) || text.charAt(start + run) == '-')){
+                run ++;
+            }
+
+            for(int count = Math.min(run, MAX_PUNYCODE_LENGTH); count >= 0; count --){
+                if(start + count < length && isWordChar(text.charAt(start + count))){
+                    int end = portPathAndBoundary(text, start + count + 1);
+                    if(end != NOT_MATCHED){
+                        return end;
+                    }
+                }
+            }
+        }
+
+        int end = position;
+        int count = 0;
+
+        while (end < length && count < MAX_TLD_LENGTH){
+            int codePoint = Character.codePointAt(text, end);
+            if(isTldChar(codePoint) == false){
+                break;
+            }
+            end += Character.charCount(codePoint);
+            count ++;
+        }
+
+        for(; count >= 2; count --){
+
+            int match = portPathAndBoundary(text, end);
+
+            if(match != NOT_MATCHED){
+                return match;
+            }
+
+            end -= Character.charCount(Character.codePointBefore(text, end));
+        }
+
+        return NOT_MATCHED;
+    }
+
+    private static int ipAddress(CharSequence text, int position){
+
+        final int length = text.length();
+        int octet = position;
+
+        for(int index = 0; index < 3; index ++){
+
+            int digits = countDigits(text, octet, 4);
+
+            if(digits == 0 ||
+                    digits > 3 ||
+                    octet + digits == length ||
+                    text.charAt(octet + digits) != '.' ||
+                    isOctet(text, octet, digits, index == 0) == false){
+                return NOT_MATCHED;
+            }
+
+            octet += digits + 1;
+        }
+
+        int digits = countDigits(text, octet, 3);
+        int end;
+
+        if(digits == 3 && isOctet(text, octet, 3, false) &&
+                (end = portPathAndBoundary(text, octet + 3)) != NOT_MATCHED){
+            return end;
+        }
+
+        if(digits >= 2 && text.charAt(octet) != '0' &&
+                (end = portPathAndBoundary(text, octet + 2)) != NOT_MATCHED){
+            return end;
+        }
+
+        if(digits >= 1){
+            return portPathAndBoundary(text, octet + 1);
+        }
+
+        return NOT_MATCHED;
+    }
+
+    private static boolean isOctet(CharSequence text, int position, int digits, boolean first){
+
+        char c = text.charAt(position);
+
+        switch (digits){
+            case 3:
+                char c1 = text.charAt(position + 1);
+                char c2 = text.charAt(position + 2);
+                return c <= '1' ||
+                        (c == '2' && (c1 <= '4' || (c1 == '5' && c2 <= '5')));
+            case 2:
+                return c != '0';
+            default:
+                return first == false || c != '0';
+        }
+    }
+
+    private static int portPathAndBoundary(CharSequence text, int position){
+
+        if(position < text.length() && text.charAt(position) == ':'){
+
+            int digits = countDigits(text, position + 1, MAX_PORT_LENGTH);
+
+            for(; digits > 0; digits --){
+                int end = pathAndBoundary(text, position + 1 + digits);
+                if(end != NOT_MATCHED){
+                    return end;
+                }
+            }
+        }
+
+        return pathAndBoundary(text, position);
+    }
+
+    /**
+     * the path is taken greedily and given back until it is followed by a boundary
+     */
+    private static int pathAndBoundary(CharSequence text, int position){
+
+        final int length = text.length();
+
+        if(position < length && (text.charAt(position) == '/' || text.charAt(position) == '?')){
+
+            int end = position + 1;
+            int match = isBoundary(text, end) ? end : NOT_MATCHED;
+
+            while (end < length){
+
+                int codePoint = Character.codePointAt(text, end);
+
+                if(isPathChar(codePoint) == true){
+                    end += Character.charCount(codePoint);
+                }else if(codePoint == '%' && isEscape(text, end)){
+                    end += 3;
+                }else {
+                    break;
+                }
+
+                if(isBoundary(text, end) == true){
+                    match = end;
+                }
+            }
+
+            if(match != NOT_MATCHED){
+                return match;
+            }
+        }
+
+        return isBoundary(text, position) ? position : NOT_MATCHED;
+    }
+
+    private static int userInfo(CharSequence text, int position){
+
+        int end = skipUserChars(text, position, MAX_USER_LENGTH);
+
+        if(end == NOT_MATCHED){
+            return NOT_MATCHED;
+        }
+
+        if(end < text.length() && text.charAt(end) == ':'){
+            end = skipUserChars(text, end + 1, MAX_PASSWORD_LENGTH);
+            if(end == NOT_MATCHED){
+                return NOT_MATCHED;
+            }
+        }
+
+        return end < text.length() && text.charAt(end) == '@' ? end + 1 : NOT_MATCHED;
+    }
+
+    /**
+     * @return the end of 1 to max user info characters or escapes, NOT_MATCHED if there
+     * are none or more than max
+     */
+    private static int skipUserChars(CharSequence text, int position, int max){
+
+        final int length = text.length();
+        int end = position;
+        int count = 0;
+
+        while (end < length && count <= max){
+
+            char c = text.charAt(end);
+
+            if(isUserChar(c) == true){
+                end ++;
+            }else if(c == '%' && isEscape(text, end)){
+                end += 3;
+            }else {
+                break;
+            }
+
+            count ++;
+        }
+
+        return count == 0 || count > max ? NOT_MATCHED : end;
+    }
+
+    /**
+     * \b, or $ before the end of the text or before a line terminator ending it
+     */
+    private static boolean isBoundary(CharSequence text, int position){
+
+        final int length = text.length();
+
+        if(position == length){
+            return true;
+        }
+
+        char c = text.charAt(position);
+
+        if(position == length - 2 && c == '\r' && text.charAt(position + 1) == '\n'){
+            return true;
+        }
+
+        if(position == length - 1){
+            if(c == '\n'){
+                if(position == 0 || text.charAt(position - 1) != '\r'){
+                    return true;
+                }
+            }else if(c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029'){
+                return true;
+            }
+        }
+
+        boolean left = false;
+        if(position > 0){
+            int codePoint = Character.codePointBefore(text, position);
+            left = isWord(codePoint) ||
+                    (Character.getType(codePoint) == Character.NON_SPACING_MARK &&
+                            hasBaseCharacter(text, position - 1));
+        }
+
+        int codePoint = Character.codePointAt(text, position);
+        boolean right = isWord(codePoint) ||
+                (Character.getType(codePoint) == Character.NON_SPACING_MARK &&
+                        hasBaseCharacter(text, position));
+
+        return left != right;
+    }
+
+    private static boolean hasBaseCharacter(CharSequence text, int position){
+
+        for(int index = position; index >= 0; index --){
+            int codePoint = Character.codePointAt(text, index);
+            if(Character.isLetterOrDigit(codePoint)){
+                return true;
+            }
+            if(Character.getType(codePoint) != Character.NON_SPACING_MARK){
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isWord(int codePoint){
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static boolean isWordChar(char c){
+        return (c >= 'a' && c <= 'z') ||
+                (c >= 'A' && c <= 'Z') ||
+                (c >= '0' && c <= '9') ||
+                c == '_';
+    }
+
+    private static boolean isAlphanumeric(int codePoint){
+        return (codePoint >= 'a' && codePoint <= 'z') ||
+                (codePoint >= 'A' && codePoint <= 'Z') ||
+                (codePoint >= '0' && codePoint <= '9');
+    }
+
+    /**
+     * the non ASCII characters allowed in an IRI, spaces excluded
+     */
+    private static boolean isUcsChar(int codePoint){
+
+        if(codePoint < 0xA0){
+            return false;
+        }
+
+        if(codePoint <= 0xD7FF){
+            return codePoint != 0xA0 &&
+                    (codePoint < 0x2000 || codePoint > 0x200A) &&
+                    codePoint != 0x2028 &&
+                    codePoint != 0x2029 &&
+                    codePoint != 0x202F &&
+                    codePoint != 0x3000;
+        }
+
+        if(codePoint < 0x10000){
+            return (codePoint >= 0xF900 && codePoint <= 0xFDCF) ||
+                    (codePoint >= 0xFDF0 && codePoint <= 0xFFEF);
+        }
+
+        return (codePoint & 0xFFFF) <= 0xFFFD &&
+                (codePoint < 0xE0000 || (codePoint >= 0xE1000 && codePoint <= 0xEFFFD));
+    }
+
+    private static boolean isLabelChar(int codePoint){
+        return isAlphanumeric(codePoint) || isUcsChar(codePoint);
+    }
+
+    private static boolean isRunChar(int codePoint){
+        return isLabelChar(codePoint) || codePoint == '_' || codePoint == '-';
+    }
+
+    private static boolean isTldChar(int codePoint){
+        return (codePoint >= 'a' && codePoint <= 'z') ||
+                (codePoint >= 'A' && codePoint <= 'Z') ||
+                isUcsChar(codePoint);
+    }
+
+    private static boolean isPathChar(int codePoint){
+
+        if(isLabelChar(codePoint) == true){
+            return true;
+        }
+
+        switch (codePoint){
+            case ';': case '/': case '?': case ':': case '@': case '&': case '=': case '#': case '~':
+            case '-': case '.': case '+': case '!': case '*': case '\'': case '(': case ')': case ',':
+            case '_': case '$':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isUserChar(char c){
+
+        if(isAlphanumeric(c) == true){
+            return true;
+        }
+
+        switch (c){
+            case '$': case '-': case '_': case '.': case '+': case '!': case '*': case '\'':
+            case '(': case ')': case ',': case ';': case '?': case '&': case '=':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isEscape(CharSequence text, int position){
+        return position + 2 < text.length() &&
+                isHexDigit(text.charAt(position + 1)) &&
+                isHexDigit(text.charAt(position + 2));
+    }
+
+    private static boolean isHexDigit(char c){
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isDigits(CharSequence text, int start, int end){
+        for(int index = start; index < end; index ++){
+            char c = text.charAt(index);
+            if(c < '0' || c > '9'){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countDigits(CharSequence text, int position, int max){
+        int count = 0;
+        while (count < max && position + count < text.length()){
+            char c = text.charAt(position + count);
+            if(c < '0' || c > '9'){
+                break;
+            }
+            count ++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the end of the run of label characters, '_' and '-' starting at position
+     */
+    private static int skipRun(CharSequence text, int position){
+
+        final int length = text.length();
+        int end = position;
+
+        while (end < length){
+            int codePoint = Character.codePointAt(text, end);
+            if(isRunChar(codePoint) == false){
+                break;
+            }
+            end += Character.charCount(codePoint);
+        }
+
+        return end;
+    }
+
+    private static boolean startsWith(CharSequence text, int position, String prefix){
+
+        if(position < 0 || position + prefix.length() > text.length()){
+            return false;
+        }
+
+        for(int index = 0; index < prefix.length(); index ++){
+            if(text.charAt(position + index) != prefix.charAt(index)){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param prefix lower case ASCII
+     */
+    private static boolean startsWithIgnoreCase(CharSequence text, int position, String prefix){
+
+        if(position < 0 || position + prefix.length() > text.length()){
+            return false;
+        }
+
+        for(int index = 0; index < prefix.length(); index ++){
+            char c = text.charAt(position + index);
+            if(c >= 'A' && c <= 'Z'){
+                c += 'a' - 'A';
+            }
+            if(c != prefix.charAt(index)){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from){
+
+        if(text instanceof String){
+            return ((String) text).indexOf(c, from);
+        }
+
+        for(int index = from; index < text.length(); index ++){
+            if(text.charAt(index) == c){
+                return index;
+            }
+        }
+
+        return NOT_MATCHED;
+    }
+
+    private static int lastIndexOf(CharSequence text, char c, int from){
+
+        for(int index = from; index >= 0; index --){
+            if(text.charAt(index) == c){
+                return index;
+            }
+        }
+
+        return NOT_MATCHED;
+    }
+}
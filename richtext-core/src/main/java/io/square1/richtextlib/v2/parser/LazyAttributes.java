@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.parser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The attributes of a MarkupTag, copied from the ones of the parser the first time they are read.
+ * Tags whose attributes are never read don't copy them. The parser must not change the
+ * attributes of an element until it is closed, TagSoup doesn't.
+ */
+final class LazyAttributes implements Attributes {
+
+    static final Attributes EMPTY = new AttributesImpl();
+
+    private Attributes mSource;
+    private AttributesImpl mAttributes;
+
+    LazyAttributes(Attributes source){
+        mSource = source;
+    }
+
+    private Attributes attributes(){
+        if(mAttributes == null){
+            mAttributes = new AttributesImpl(mSource);
+            mSource = null;
+        }
+        return mAttributes;
+    }
+
+    @Override
+    public int getLength() {
+        return attributes().getLength();
+    }
+
+    @Override
+    public String getURI(int index) {
+        return attributes().getURI(index);
+    }
+
+    @Override
+    public String getLocalName(int index) {
+        return attributes().getLocalName(index);
+    }
+
+    @Override
+    public String getQName(int index) {
+        return attributes().getQName(index);
+    }
+
+    @Override
+    public String getType(int index) {
+        return attributes().getType(index);
+    }
+
+    @Override
+    public String getValue(int index) {
+        return attributes().getValue(index);
+    }
+
+    @Override
+    public int getIndex(String uri, String localName) {
+        return attributes().getIndex(uri, localName);
+    }
+
+    @Override
+    public int getIndex(String qName) {
+        return attributes().getIndex(qName);
+    }
+
+    @Override
+    public String getType(String uri, String localName) {
+        return attributes().getType(uri, localName);
+    }
+
+    @Override
+    public String getType(String qName) {
+        return attributes().getType(qName);
+    }
+
+    @Override
+    public String getValue(String uri, String localName) {
+        return attributes().getValue(uri, localName);
+    }
+
+    @Override
+    public String getValue(String qName) {
+        return attributes().getValue(qName);
+    }
+}
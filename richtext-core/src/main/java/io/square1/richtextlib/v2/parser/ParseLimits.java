@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.parser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The most a parse spends on a document, see Style.limits. Once a limit is reached the parse
+ * degrades instead of failing: elements nested deeper than the maximum depth are dropped
+ * keeping their text, embeds after the maximum number are dropped, the text is cut at the
+ * maximum length and the document ends, as if the source ended there, at the element after
+ * the maximum number of elements or after the time budget is used. The document is then
+ * marked as truncated, see RichDocument.isTruncated, and isn't cached.
+ *
+ * Limits are immutable, the with methods return a copy with one limit changed.
+ */
+public final class ParseLimits {
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    /**
+     * no time budget, the parse takes as long as the document needs
+     */
+    public static final long NO_TIME_BUDGET = 0;
+
+    /**
+     * limits above what the markup of an article needs, for styles parsing documents from
+     * sources that aren't trusted. Past the depth the spans of the nested elements cost more
+     * than the rest of the document. RichTextV2.DefaultStyle has no limits
+     */
+    public static final ParseLimits DEFAULT = new ParseLimits(32, 50 * 1000, 1000, 4 * 1024 * 1024, NO_TIME_BUDGET);
+
+    /**
+     * no limits at all
+     */
+    public static final ParseLimits NONE = new ParseLimits(UNLIMITED, UNLIMITED, UNLIMITED, UNLIMITED, NO_TIME_BUDGET);
+
+    private final int mMaxDepth;
+    private final int mMaxElements;
+    private final int mMaxEmbeds;
+    private final int mMaxTextLength;
+    private final long mTimeBudgetNanos;
+
+    private ParseLimits(int maxDepth, int maxElements, int maxEmbeds, int maxTextLength, long timeBudgetNanos){
+        mMaxDepth = maxDepth;
+        mMaxElements = maxElements;
+        mMaxEmbeds = maxEmbeds;
+        mMaxTextLength = maxTextLength;
+        mTimeBudgetNanos = timeBudgetNanos;
+    }
+
+    /**
+     * @param maxDepth the elements open at the same time, html and body included
+     */
+    public ParseLimits withMaxDepth(int maxDepth){
+        return new ParseLimits(Math.max(maxDepth, 2), mMaxElements, mMaxEmbeds, mMaxTextLength, mTimeBudgetNanos);
+    }
+
+    /**
+     * @param maxElements the elements in the document, html and body excluded
+     */
+    public ParseLimits withMaxElements(int maxElements){
+        return new ParseLimits(mMaxDepth, Math.max(maxElements, 0), mMaxEmbeds, mMaxTextLength, mTimeBudgetNanos);
+    }
+
+    /**
+     * @param maxEmbeds the elements the document is split at: videos, iframes and oembeds
+     */
+    public ParseLimits withMaxEmbeds(int maxEmbeds){
+        return new ParseLimits(mMaxDepth, mMaxElements, Math.max(maxEmbeds, 0), mMaxTextLength, mTimeBudgetNanos);
+    }
+
+    /**
+     * @param maxTextLength the chars of text in the source, markup excluded
+     */
+    public ParseLimits withMaxTextLength(int maxTextLength){
+        return new ParseLimits(mMaxDepth, mMaxElements, mMaxEmbeds, Math.max(maxTextLength, 0), mTimeBudgetNanos);
+    }
+
+    /**
+     * @param budget the wall clock time the parse can take, NO_TIME_BUDGET for none. It is
+     *               checked before every element, closing the open elements and completing
+     *               the document comes on top. Where a document is truncated then depends on
+     *               how busy the device was
+     */
+    public ParseLimits withTimeBudget(long budget, TimeUnit unit){
+        return new ParseLimits(mMaxDepth, mMaxElements, mMaxEmbeds, mMaxTextLength, unit.toNanos(Math.max(budget, 0)));
+    }
+
+    public int getMaxDepth(){
+        return mMaxDepth;
+    }
+
+    public int getMaxElements(){
+        return mMaxElements;
+    }
+
+    public int getMaxEmbeds(){
+        return mMaxEmbeds;
+    }
+
+    public int getMaxTextLength(){
+        return mMaxTextLength;
+    }
+
+    public long getTimeBudgetNanos(){
+        return mTimeBudgetNanos;
+    }
+
+    public boolean hasTimeBudget(){
+        return mTimeBudgetNanos != NO_TIME_BUDGET;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ParseLimits that = (ParseLimits) o;
+
+        return mMaxDepth == that.mMaxDepth &&
+                mMaxElements == that.mMaxElements &&
+                mMaxEmbeds == that.mMaxEmbeds &&
+                mMaxTextLength == that.mMaxTextLength &&
+                mTimeBudgetNanos == that.mTimeBudgetNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mMaxDepth;
+        result = 31 * result + mMaxElements;
+        result = 31 * result + mMaxEmbeds;
+        result = 31 * result + mMaxTextLength;
+        result = 31 * result + (int) (mTimeBudgetNanos ^ (mTimeBudgetNanos >>> 32));
+        return result;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.shortcode;
+
+/**
+ * Turns a shortcode into an html element with the same attributes,
+ * [soundcloud url="..."] becomes &lt;soundcloud url="..." /&gt; and
+ * [caption id="..."]text[/caption] becomes &lt;caption id="..."&gt;text&lt;/caption&gt;
+ * when the element is "caption".
+ */
+public class ElementRewriter implements ShortcodeRewriter {
+
+    private final String mElement;
+
+    /**
+     * @param element the name of the html element, a TagHandler has to be registered for it
+     */
+    public ElementRewriter(String element){
+        mElement = element;
+    }
+
+    public String getElement(){
+        return mElement;
+    }
+
+    @Override
+    public void rewrite(Shortcode shortcode, StringBuilder output) {
+
+        output.append('<').append(mElement);
+
+        if(shortcode.getAttributes().length() > 0){
+            output.append(' ').append(shortcode.getAttributes());
+        }
+
+        if(shortcode.getContent() == null){
+            output.append(" />");
+        }else {
+            output.append('>')
+                    .append(shortcode.getContent())
+                    .append("</").append(mElement).append('>');
+        }
+    }
+}
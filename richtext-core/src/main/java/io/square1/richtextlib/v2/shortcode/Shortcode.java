@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.shortcode;
+
+import java.util.ArrayList;
+
+/**
+ * A WordPress shortcode found in the source: [name attributes], [name attributes/]
+ * or [name attributes]content[/name]
+ */
+public final class Shortcode {
+
+    private final String mName;
+    private final String mAttributes;
+    private final String mContent;
+
+    private ArrayList<String> mAttributeNames;
+    private ArrayList<String> mAttributeValues;
+
+    public Shortcode(String name, String attributes, String content){
+        mName = name;
+        mAttributes = attributes;
+        mContent = content;
+    }
+
+    public String getName(){
+        return mName;
+    }
+
+    /**
+     * @return the text between the name and the closing bracket as written in the source,
+     * without the self closing slash and the surrounding white space
+     */
+    public String getAttributes(){
+        return mAttributes;
+    }
+
+    /**
+     * @return the text between the opening and the closing tag or null if the
+     * shortcode has no closing tag
+     */
+    public String getContent(){
+        return mContent;
+    }
+
+    /**
+     * @param name the attribute name, not case sensitive
+     * @return the value of the attribute, null if not set
+     */
+    public String getAttribute(String name){
+
+        parseAttributes();
+
+        for(int index = 0; index < mAttributeNames.size(); index ++){
+            if(name.equalsIgnoreCase(mAttributeNames.get(index)) == true){
+                return mAttributeValues.get(index);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param position the position among the attributes without a name, as in [embed http://...]
+     * @return the value or null if there is no such attribute
+     */
+    public String getPositionalAttribute(int position){
+
+        parseAttributes();
+
+        for(int index = 0; index < mAttributeNames.size(); index ++){
+            if(mAttributeNames.get(index) == null && position -- == 0){
+                return mAttributeValues.get(index);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * name="value", name='value', name=value, "value" and value as WordPress does
+     */
+    private void parseAttributes(){
+
+        if(mAttributeNames != null){
+            return;
+        }
+
+        mAttributeNames = new ArrayList<>();
+        mAttributeValues = new ArrayList<>();
+
+        final String text = mAttributes;
+        final int length = text.length();
+        int index = 0;
+
+        while (index < length){
+
+            while (index < length && isSpace(text.charAt(index)) == true){
+                index ++;
+            }
+
+            if(index == length){
+                break;
+            }
+
+            String name = null;
+            int start = index;
+
+            if(isQuote(text.charAt(index)) == false){
+
+                while (index < length &&
+                        isSpace(text.charAt(index)) == false &&
+                        text.charAt(index) != '='){
+                    index ++;
+                }
+
+                int end = index;
+                while (index < length && isSpace(text.charAt(index)) == true){
+                    index ++;
+                }
+
+                if(index < length && text.charAt(index) == '='){
+                    name = text.substring(start, end);
+                    index ++;
+                    while (index < length && isSpace(text.charAt(index)) == true){
+                        index ++;
+                    }
+                    start = index;
+                }else {
+                    mAttributeNames.add(null);
+                    mAttributeValues.add(text.substring(start, end));
+                    continue;
+                }
+            }
+
+            String value;
+
+            if(index < length && isQuote(text.charAt(index)) == true){
+                char quote = text.charAt(index);
+                int end = text.indexOf(quote, index + 1);
+                if(end == -1){
+                    end = length;
+                }
+                value = text.substring(index + 1, end);
+                index = Math.min(end + 1, length);
+            }else {
+                while (index < length && isSpace(text.charAt(index)) == false){
+                    index ++;
+                }
+                value = text.substring(start, index);
+            }
+
+            mAttributeNames.add(name);
+            mAttributeValues.add(value);
+        }
+    }
+
+    private static boolean isQuote(char c){
+        return c == '"' || c == '\'';
+    }
+
+    private static boolean isSpace(char c){
+        return c <= ' ' || c == '\u00a0' || c == '\u200b';
+    }
+
+    @Override
+    public String toString() {
+        return "[" + mName + (mAttributes.length() > 0 ? " " + mAttributes : "") + "]" +
+                (mContent != null ? mContent + "[/" + mName + "]" : "");
+    }
+}
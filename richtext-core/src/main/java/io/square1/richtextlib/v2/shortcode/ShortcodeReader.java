@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.shortcode;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Rewrites the shortcodes of a ShortcodeRegistry while the source is read, in a single pass.
+ * Text without a '[' is read straight into the caller's buffer, from a '[' on the text is
+ * held back only until it is known whether a registered shortcode starts there.
+ * The opening tag of a shortcode has to be on a single line, the content of an enclosing
+ * shortcode is held back until its closing tag.
+ */
+public class ShortcodeReader extends FilterReader {
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private final ShortcodeRegistry mRegistry;
+
+    /**
+     * chars read from the source and not delivered yet are between mStart and mEnd
+     */
+    private char[] mBuffer = new char[BUFFER_SIZE];
+    private int mStart;
+    private int mEnd;
+    private boolean mEof;
+
+    /**
+     * replacement of the last shortcode found, delivered before the rest of the buffer
+     */
+    private final StringBuilder mReplacement = new StringBuilder();
+    private int mReplacementIndex;
+
+    public ShortcodeReader(Reader in, ShortcodeRegistry registry) {
+        super(in);
+        mRegistry = registry;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] single = new char[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+
+        if(len == 0){
+            return 0;
+        }
+
+        while (true) {
+
+            if(mReplacementIndex < mReplacement.length()){
+
+                int count = Math.min(len, mReplacement.length() - mReplacementIndex);
+                mReplacement.getChars(mReplacementIndex, mReplacementIndex + count, cbuf, off);
+                mReplacementIndex += count;
+
+                if(mReplacementIndex == mReplacement.length()){
+                    mReplacement.setLength(0);
+                    mReplacementIndex = 0;
+                }
+
+                return count;
+            }
+
+            if(mStart == mEnd){
+
+                if(mEof == true){
+                    return -1;
+                }
+
+                // nothing held back, the source is read in the caller's buffer
+                int read = in.read(cbuf, off, len);
+
+                if(read == -1){
+                    mEof = true;
+                    return -1;
+                }
+
+                int bracket = indexOfBracket(cbuf, off, off + read);
+
+                if(bracket == -1){
+                    return read;
+                }
+
+                hold(cbuf, bracket, off + read);
+
+                if(bracket > off){
+                    return bracket - off;
+                }
+            }
+
+            if(mBuffer[mStart] == '['){
+
+                int length = rewrite();
+
+                if(length > 0){
+                    mStart += length;
+                    continue;
+                }
+
+                // not a shortcode, the bracket goes through with the text following it
+                return deliver(cbuf, off, len, mStart + 1);
+            }
+
+            return deliver(cbuf, off, len, mStart);
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return mReplacementIndex < mReplacement.length() || mStart < mEnd || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        char[] buffer = new char[(int) Math.min(n, BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n){
+            int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if(read == -1){
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    /**
+     * copies the buffered text up to the next bracket found from searchFrom on
+     */
+    private int deliver(char[] cbuf, int off, int len, int searchFrom){
+
+        int limit = Math.min(mEnd, mStart + len);
+        int end = searchFrom < limit ? indexOfBracket(mBuffer, searchFrom, limit) : -1;
+
+        if(end == -1){
+            end = limit;
+        }
+
+        int count = end - mStart;
+        System.arraycopy(mBuffer, mStart, cbuf, off, count);
+        mStart = end;
+        return count;
+    }
+
+    /**
+     * rewrites the shortcode starting at mStart, if any
+     * @return the length of the shortcode in the source, 0 if no registered shortcode starts there
+     */
+    private int rewrite() throws IOException {
+
+        final int maxNameLength = mRegistry.getMaxNameLength();
+        int offset = 1;
+
+        while (true){
+
+            if(request(offset + 1) == false){
+                return 0;
+            }
+
+            if(isNameChar(mBuffer[mStart + offset]) == false){
+                break;
+            }
+
+            if(offset > maxNameLength){
+                return 0;
+            }
+
+            offset ++;
+        }
+
+        char terminator = mBuffer[mStart + offset];
+
+        if(offset == 1 ||
+                (terminator != '/' && terminator != ']' && terminator > ' ')){
+            return 0;
+        }
+
+        String name = new String(mBuffer, mStart + 1, offset - 1);
+        ShortcodeRegistry.Entry entry = mRegistry.getEntry(name);
+
+        if(entry == null){
+            return 0;
+        }
+
+        final int attributesStart = offset;
+
+        while (true){
+
+            if(request(offset + 1) == false){
+                return 0;
+            }
+
+            char c = mBuffer[mStart + offset];
+
+            if(c == ']'){
+                break;
+            }
+
+            if(isLineTerminator(c) == true){
+                return 0;
+            }
+
+            offset ++;
+        }
+
+        int attributesEnd = offset;
+        boolean selfClosing = attributesEnd > attributesStart &&
+                mBuffer[mStart + attributesEnd - 1] == '/';
+
+        if(selfClosing == true){
+            attributesEnd --;
+        }
+
+        String attributes = new String(mBuffer,
+                mStart + attributesStart,
+                attributesEnd - attributesStart).trim();
+
+        int length = offset + 1;
+        String content = null;
+
+        if(entry.enclosing == true && selfClosing == false){
+
+            String closingTag = "[/" + name + "]";
+            int close = indexOf(closingTag, length);
+
+            if(close != -1){
+                content = new String(mBuffer, mStart + length, close - length);
+                length = close + closingTag.length();
+            }
+        }
+
+        entry.rewriter.rewrite(new Shortcode(name, attributes, content), mReplacement);
+        return length;
+    }
+
+    /**
+     * @param from offset from mStart
+     * @return the offset from mStart of target, reading as much of the source as needed
+     */
+    private int indexOf(String target, int from) throws IOException {
+
+        final int targetLength = target.length();
+
+        while (true){
+
+            int limit = mEnd - mStart - targetLength;
+
+            for(int offset = from; offset <= limit; offset ++){
+                if(matches(target, mStart + offset) == true){
+                    return offset;
+                }
+            }
+
+            from = Math.max(from, limit + 1);
+
+            if(request(mEnd - mStart + 1) == false){
+                return -1;
+            }
+        }
+    }
+
+    private boolean matches(String target, int position){
+
+        for(int index = 0; index < target.length(); index ++){
+            if(mBuffer[position + index] != target.charAt(index)){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * reads from the source until count chars are held back
+     * @return false if the source ends before
+     */
+    private boolean request(int count) throws IOException {
+
+        while (mEnd - mStart < count){
+
+            if(mEof == true){
+                return false;
+            }
+
+            if(mEnd == mBuffer.length){
+                makeRoom(mBuffer.length);
+            }
+
+            int read = in.read(mBuffer, mEnd, mBuffer.length - mEnd);
+
+            if(read == -1){
+                mEof = true;
+            }else {
+                mEnd += read;
+            }
+        }
+
+        return true;
+    }
+
+    private void hold(char[] source, int start, int end){
+
+        mStart = 0;
+        mEnd = 0;
+
+        if(end - start > mBuffer.length){
+            mBuffer = new char[end - start];
+        }
+
+        System.arraycopy(source, start, mBuffer, 0, end - start);
+        mEnd = end - start;
+    }
+
+    /**
+     * moves the held back chars at the beginning of the buffer, growing it if there is
+     * no room for more than capacity chars
+     */
+    private void makeRoom(int capacity){
+
+        int count = mEnd - mStart;
+        char[] buffer = count < capacity ? mBuffer : new char[capacity * 2];
+        System.arraycopy(mBuffer, mStart, buffer, 0, count);
+        mBuffer = buffer;
+        mStart = 0;
+        mEnd = count;
+    }
+
+    private static int indexOfBracket(char[] buffer, int start, int end){
+
+        for(int index = start; index < end; index ++){
+            if(buffer[index] == '['){
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isNameChar(char c){
+        return c > ' ' &&
+                c != '[' && c != ']' && c != '/' &&
+                c != '<' && c != '>' && c != '&' &&
+                c != '=' && c != '"' && c != '\'';
+    }
+
+    private static boolean isLineTerminator(char c){
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.shortcode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The WordPress shortcodes rewritten when Style.parseWordPressTags is true and the
+ * rewriters handling them, set it on the MarkupContext. Shortcodes not registered are left
+ * in the text untouched.
+ *
+ * A new registry handles [soundcloud] turning it into a soundcloud element and drops
+ * [interaction]. Register the rewriters before parsing, a registry can be shared between
+ * threads as long as it is not modified.
+ */
+public class ShortcodeRegistry {
+
+    static final class Entry {
+
+        final ShortcodeRewriter rewriter;
+        final boolean enclosing;
+
+        Entry(ShortcodeRewriter rewriter, boolean enclosing){
+            this.rewriter = rewriter;
+            this.enclosing = enclosing;
+        }
+    }
+
+    /**
+     * the registry used by a MarkupContext when none is set, it can't be modified
+     */
+    public static final ShortcodeRegistry DEFAULT = new ShortcodeRegistry(true);
+
+    private final HashMap<String,Entry> mEntries = new HashMap<>();
+    private final boolean mLocked;
+    private int mMaxNameLength;
+
+    public ShortcodeRegistry(){
+        this(false);
+    }
+
+    private ShortcodeRegistry(boolean locked){
+        put("soundcloud", new Entry(new ElementRewriter("soundcloud"), false));
+        put("interaction", new Entry(ShortcodeRewriter.REMOVE, false));
+        mLocked = locked;
+    }
+
+    /**
+     * registers a shortcode written as [name attributes] or [name attributes/], a closing
+     * [/name] is left in the text.
+     * @param name the shortcode name, case sensitive
+     */
+    public ShortcodeRegistry register(String name, ShortcodeRewriter rewriter){
+        checkNotLocked();
+        put(name, new Entry(rewriter, false));
+        return this;
+    }
+
+    /**
+     * registers a shortcode that can wrap some content as in [caption]text[/caption].
+     * When no [/name] follows in the source the shortcode is rewritten without content.
+     * @param name the shortcode name, case sensitive
+     */
+    public ShortcodeRegistry registerEnclosing(String name, ShortcodeRewriter rewriter){
+        checkNotLocked();
+        put(name, new Entry(rewriter, true));
+        return this;
+    }
+
+    public ShortcodeRegistry unregister(String name){
+        checkNotLocked();
+        mEntries.remove(name);
+        return this;
+    }
+
+    /**
+     * @return the rewriter registered for name or null
+     */
+    public ShortcodeRewriter getRewriter(String name){
+        Entry entry = mEntries.get(name);
+        return entry != null ? entry.rewriter : null;
+    }
+
+    /**
+     * rewrites all the shortcodes in source in a single pass
+     * @return the rewritten text, source itself if it contains no shortcodes
+     */
+    public String rewrite(String source){
+
+        if(source.indexOf('[') == -1){
+            return source;
+        }
+
+        StringBuilder output = new StringBuilder(source.length());
+        Reader reader = new ShortcodeReader(new StringReader(source), this);
+        char[] buffer = new char[4096];
+
+        try {
+            int read;
+            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+                output.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            // a StringReader doesn't throw
+            throw new IllegalStateException(e);
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * @return a string that is the same for registries rewriting the same shortcodes the same
+     * way, rewriters other than ElementRewriter are told apart by class only
+     */
+    public String getCacheKey(){
+
+        StringBuilder key = new StringBuilder();
+
+        for(Map.Entry<String,Entry> entry : new TreeMap<>(mEntries).entrySet()){
+
+            ShortcodeRewriter rewriter = entry.getValue().rewriter;
+
+            key.append(entry.getKey())
+                    .append(entry.getValue().enclosing ? "/=" : "=")
+                    .append(rewriter instanceof ElementRewriter ?
+                            "<" + ((ElementRewriter) rewriter).getElement() : rewriter.getClass().getName())
+                    .append(' ');
+        }
+
+        return key.toString();
+    }
+
+    Entry getEntry(String name){
+        return mEntries.get(name);
+    }
+
+    int getMaxNameLength(){
+        return mMaxNameLength;
+    }
+
+    private void put(String name, Entry entry){
+        mEntries.put(name, entry);
+        mMaxNameLength = Math.max(mMaxNameLength, name.length());
+    }
+
+    private void checkNotLocked(){
+        if(mLocked == true){
+            throw new UnsupportedOperationException("the default registry can't be modified");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.shortcode;
+
+/**
+ * Replaces a shortcode with the html the parser will see in its place, see ShortcodeRegistry.
+ * Rewriters are shared by all the documents parsed with the same registry and might
+ * be invoked concurrently.
+ */
+public interface ShortcodeRewriter {
+
+    /**
+     * drops the shortcode and its content
+     */
+    ShortcodeRewriter REMOVE = new ShortcodeRewriter() {
+        @Override
+        public void rewrite(Shortcode shortcode, StringBuilder output) {
+
+        }
+    };
+
+    /**
+     * drops the shortcode keeping its content, if any
+     */
+    ShortcodeRewriter CONTENT = new ShortcodeRewriter() {
+        @Override
+        public void rewrite(Shortcode shortcode, StringBuilder output) {
+            if(shortcode.getContent() != null){
+                output.append(shortcode.getContent());
+            }
+        }
+    };
+
+    /**
+     * @param output append the replacement here
+     */
+    void rewrite(Shortcode shortcode, StringBuilder output);
+}
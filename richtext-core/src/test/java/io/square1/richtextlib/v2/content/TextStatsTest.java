@@ -0,0 +1,119 @@
+package io.square1.richtextlib.v2.content;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * checks the statistics TextStats keeps while text is appended, deleted and replaced
+ * against the ones found going through the whole text.
+ */
+public class TextStatsTest {
+
+    private static final String[] PIECES = { "\n", "\n\n", " ", "\t", "word", " two words ", "\nline\n", "" };
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertStats(new StringBuilder(), new TextStats());
+    }
+
+    @Test
+    public void testNewLinesOnly() throws Exception {
+
+        StringBuilder text = new StringBuilder();
+        TextStats stats = new TextStats();
+
+        append(text, stats, "\n\n");
+        text.append('\n');
+        stats.append('\n');
+        assertEquals(3, stats.leadingNewLines());
+        assertEquals(3, stats.trailingNewLines());
+
+        append(text, stats, " a\n");
+        assertEquals(3, stats.leadingNewLines());
+        assertEquals(1, stats.trailingNewLines());
+        assertEquals(1, stats.nonWhitespace());
+
+        delete(text, stats, 3, 5);
+        assertEquals(4, stats.leadingNewLines());
+        assertEquals(4, stats.trailingNewLines());
+        assertEquals(0, stats.nonWhitespace());
+    }
+
+    @Test
+    public void testRandomEdits() throws Exception {
+
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        TextStats stats = new TextStats();
+        append(text, stats, "\n start ");
+
+        for(int step = 0; step < 5000; step ++){
+
+            int length = text.length();
+            int action = random.nextInt(10);
+            String piece = PIECES[random.nextInt(PIECES.length)];
+
+            if(action < 5){
+                append(text, stats, piece);
+            }else if(action < 6){
+                char c = piece.length() > 0 ? piece.charAt(0) : 'x';
+                text.append(c);
+                stats.append(c);
+            }else if(action < 7){
+                String source = "-" + piece + "-";
+                text.append(source, 1, piece.length() + 1);
+                stats.append(source, 1, piece.length() + 1);
+            }else if(action < 8 && length > 0){
+                int start = random.nextInt(length);
+                delete(text, stats, start, Math.min(length, start + random.nextInt(8)));
+            }else if(length > 2){
+                int start = random.nextInt(length - 2);
+                String replacement = random.nextBoolean() ? "\n\n" : "ab";
+                stats.remove(text, start, start + replacement.length());
+                text.replace(start, start + replacement.length(), replacement);
+                stats.insert(text, start, start + replacement.length());
+            }
+
+            assertStats(text, stats);
+        }
+    }
+
+    private static void append(StringBuilder text, TextStats stats, String piece){
+        text.append(piece);
+        stats.append(piece, 0, piece.length());
+    }
+
+    private static void delete(StringBuilder text, TextStats stats, int start, int end){
+        stats.remove(text, start, end);
+        text.delete(start, end);
+        stats.insert(text, start, start);
+    }
+
+    private static void assertStats(CharSequence text, TextStats stats){
+
+        String string = text.toString();
+
+        int nonWhitespace = 0;
+        for(int index = 0; index < text.length(); index ++){
+            if(text.charAt(index) > ' '){
+                nonWhitespace ++;
+            }
+        }
+        assertEquals(string, nonWhitespace, stats.nonWhitespace());
+
+        int leading = 0;
+        while (leading < text.length() && text.charAt(leading) == '\n'){
+            leading ++;
+        }
+        assertEquals(string, leading, stats.leadingNewLines());
+
+        int trailing = 0;
+        while (trailing < text.length() && text.charAt(text.length() - trailing - 1) == '\n'){
+            trailing ++;
+        }
+        assertEquals(string, trailing, stats.trailingNewLines());
+    }
+}
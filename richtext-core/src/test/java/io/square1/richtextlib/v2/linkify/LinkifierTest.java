@@ -0,0 +1,39 @@
+package io.square1.richtextlib.v2.linkify;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * checks the links found by the linkifiers
+ */
+public class LinkifierTest {
+
+    @Test
+    public void testFindsLinks() throws Exception {
+        assertEquals("[www.square1.io]", find(Linkifier.WEB_URL, "visit www.square1.io today").toString());
+        assertEquals("[http://square1.io/a]", find(Linkifier.WEB_URL, "(http://square1.io/a) ok").toString());
+        assertEquals("[]", find(Linkifier.NONE, "visit www.square1.io today").toString());
+        assertEquals("[#one, #two]", find(new PatternLinkifier(Pattern.compile("#\\w+")), "#one and #two").toString());
+        // empty matches are skipped
+        assertEquals("[]", find(new PatternLinkifier(Pattern.compile("x*")), "abc").toString());
+    }
+
+    static List<String> find(Linkifier linkifier, String text){
+
+        List<String> links = new ArrayList<>();
+        int[] range = new int[2];
+        int position = 0;
+
+        while (linkifier.find(text, position, range)){
+            links.add(text.substring(range[0], range[1]));
+            position = range[1];
+        }
+
+        return links;
+    }
+}
@@ -0,0 +1,118 @@
+package io.square1.richtextlib.v2.shortcode;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * checks the shortcode forms handled by ShortcodeRegistry and ShortcodeReader
+ */
+public class ShortcodeTest {
+
+    @Test
+    public void testDefaultRegistry() throws Exception {
+
+        ShortcodeRegistry registry = ShortcodeRegistry.DEFAULT;
+
+        assertEquals("<p><soundcloud url=\"https://soundcloud.com/a/b\" /></p>",
+                registry.rewrite("<p>[soundcloud url=\"https://soundcloud.com/a/b\"/]</p>"));
+        assertEquals("<soundcloud url=http://x/y />",
+                registry.rewrite("[soundcloud url=http://x/y]"));
+        assertEquals("before  after", registry.rewrite("before [interaction id=\"12\"] after"));
+        // not registered or not a shortcode
+        assertEquals("[gallery ids=\"1,2\"] [1] a[b", registry.rewrite("[gallery ids=\"1,2\"] [1] a[b"));
+        // the opening tag can't span lines
+        assertEquals("[soundcloud url=x\n]", registry.rewrite("[soundcloud url=x\n]"));
+    }
+
+    @Test
+    public void testDefaultRegistryCantBeModified() throws Exception {
+        try {
+            ShortcodeRegistry.DEFAULT.register("gallery", ShortcodeRewriter.REMOVE);
+            fail();
+        }catch (UnsupportedOperationException e){
+            // expected
+        }
+    }
+
+    @Test
+    public void testEnclosingShortcodes() throws Exception {
+
+        ShortcodeRegistry registry = new ShortcodeRegistry()
+                .registerEnclosing("caption", new ElementRewriter("figure"))
+                .registerEnclosing("embed", ShortcodeRewriter.CONTENT)
+                .register("gallery", ShortcodeRewriter.REMOVE);
+
+        assertEquals("a<figure id=\"c1\" width=\"300\"><img src=\"x.jpg\"/> text</figure>b",
+                registry.rewrite("a[caption id=\"c1\" width=\"300\"]<img src=\"x.jpg\"/> text[/caption]b"));
+        assertEquals("<p>http://youtu.be/1</p>", registry.rewrite("<p>[embed]http://youtu.be/1[/embed]</p>"));
+        assertEquals("<figure />", registry.rewrite("[caption/]"));
+        // without a closing tag the shortcode has no content
+        assertEquals("<figure id=\"1\" />text", registry.rewrite("[caption id=\"1\"]text"));
+        assertEquals("", registry.rewrite("[gallery ids=\"1,2,3\"]"));
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+
+        final Shortcode[] found = new Shortcode[1];
+        ShortcodeRegistry registry = new ShortcodeRegistry().register("video", new ShortcodeRewriter() {
+            @Override
+            public void rewrite(Shortcode shortcode, StringBuilder output) {
+                found[0] = shortcode;
+            }
+        });
+
+        registry.rewrite("[video http://v.mp4 width=640 height='360' autoplay /]");
+
+        Shortcode shortcode = found[0];
+        assertEquals("video", shortcode.getName());
+        assertNull(shortcode.getContent());
+        assertEquals("http://v.mp4", shortcode.getPositionalAttribute(0));
+        assertEquals("autoplay", shortcode.getPositionalAttribute(1));
+        assertEquals("640", shortcode.getAttribute("width"));
+        assertEquals("360", shortcode.getAttribute("HEIGHT"));
+        assertNull(shortcode.getAttribute("missing"));
+    }
+
+    @Test
+    public void testReaderMatchesRewrite() throws Exception {
+
+        ShortcodeRegistry registry = new ShortcodeRegistry()
+                .registerEnclosing("caption", new ElementRewriter("figure"));
+
+        StringBuilder html = new StringBuilder();
+        for(int index = 0; index < 500; index ++){
+            html.append("<p>paragraph [").append(index).append("] ");
+            html.append("[soundcloud url=\"https://soundcloud.com/").append(index).append("\"/]");
+            html.append("[caption id=\"").append(index).append("\"]caption ").append(index).append("[/caption]");
+            html.append("[interaction id=1]</p>\n");
+        }
+
+        String source = html.toString();
+        Reader reader = new ShortcodeReader(new StringReader(source), registry);
+        assertEquals(registry.rewrite(source), readSlowly(reader));
+    }
+
+    /**
+     * reads a few chars at a time so that shortcodes cross the reads
+     */
+    private static String readSlowly(Reader reader) throws IOException {
+
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[7];
+        int read;
+
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1){
+            builder.append(buffer, 0, read);
+        }
+
+        return builder.toString();
+    }
+}
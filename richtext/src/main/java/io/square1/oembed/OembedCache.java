@@ -46,9 +46,14 @@ public class OembedCache {
     private HashMap<String, Oembed> mCache;
     private OembedDownloader mOembedDownloader;
 
-    public static OembedCache sInstance;
-
-    public static final OembedCache initOembedCache(Context context, OembedDownloader downloader) {
+    private static OembedCache sInstance;
+
+    /**
+     * creates the shared cache the first time it is called, later calls return it and
+     * ignore their arguments. Synchronized with getInstance so that threads racing to
+     * create it all get the same cache.
+     */
+    public static final synchronized OembedCache initOembedCache(Context context, OembedDownloader downloader) {
 
         if (sInstance == null) {
             sInstance = new OembedCache(context, downloader);
@@ -21,7 +21,6 @@ package io.square1.parcelable;
 
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.util.Log;
 
 import java.lang.reflect.Array;
 
@@ -59,8 +58,6 @@ public class DynamicParcelableCreator<T extends DynamicParcelable> implements Pa
     }
 
     public static void writeType(Parcel in , DynamicParcelable span){
-         String className = span.getClass().getName();
-        Log.i("CLASS", "-> " + className);
-         in.writeString(className);
+         in.writeString(span.getClass().getName());
     }
 }
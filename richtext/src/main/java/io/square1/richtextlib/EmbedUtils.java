@@ -23,8 +23,9 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import io.square1.richtextlib.v2.embed.EmbedClassifier;
+import io.square1.richtextlib.v2.embed.EmbedMatch;
 
 /**
  * Created by roberto on 12/06/15.
@@ -72,59 +73,20 @@ public class EmbedUtils {
 
 
 
+    /**
+     * finds the embed in link with EmbedClassifier.DEFAULT
+     * @return true if callback has been invoked with the embed in link
+     */
     public static boolean parseLink( Object calling , String link , ParseLinkCallback callback ) {
 
+        EmbedMatch match = EmbedClassifier.DEFAULT.classify(link);
 
-
-        final Uri uri = Uri.parse(link);
-
-        String result = getTweetId(link);
-        if(TextUtils.isEmpty(result) == false){
-             callback.onLinkParsed(calling, result, TEmbedType.ETwitter);
-             return true;
-        }
-
-        result = getYoutubeVideoId(link);
-        if(TextUtils.isEmpty(result) == false){
-            callback.onLinkParsed(calling, result, TEmbedType.EYoutube);
-            return true;
-        }
-
-        result = getGfycatId(link);
-        if(TextUtils.isEmpty(result) == false){
-            callback.onLinkParsed(calling, result, TEmbedType.EGfycat);
-            return true;
-        }
-
-        result = parseSoundCloud(link);
-        if(TextUtils.isEmpty(result) == false){
-            result = getSoundCloudStreamFromTrackId(result,SOUND_CLOUD_CLIENT_ID);
-            callback.onLinkParsed(calling, result, TEmbedType.ESoundCloud);
-            return true;
-        }
-
-        result = getVimeoId(link);
-        if(TextUtils.isEmpty(result) == false){
-            callback.onLinkParsed(calling, result, TEmbedType.EVimeo);
-            return true;
-        }
-
-        result = getVineId(link);
-        if(TextUtils.isEmpty(result) == false){
-            callback.onLinkParsed(calling, result, TEmbedType.EVine);
+        if(match != null){
+            callback.onLinkParsed(calling, match.getContent(), match.getType());
             return true;
         }
 
-        result = getInstagramId(link);
-        if(TextUtils.isEmpty(result) == false){
-            callback.onLinkParsed(calling, result, TEmbedType.EInstagram);
-            return true;
-        }
-
-
         return false;
-       // callback.onLinkParsed(link,TLinkType.EUnsupported);
-
     }
 
     /**
@@ -169,46 +131,12 @@ public class EmbedUtils {
     }
 
     public static String getTweetId(String in){
-
-
-        if(TextUtils.isEmpty(in)){
-            return null;
-        }
-
-
-
-        if(in.indexOf("twitter") >= 0 || in.indexOf("t.co") >=0 ){
-
-            Uri tweet = Uri.parse(in);
-
-            String lastPath = tweet.getLastPathSegment();
-            if( TextUtils.isEmpty(lastPath) == false
-                    && TextUtils.isDigitsOnly(lastPath) ){
-                return lastPath;
-            }
-        }
-        return null;
+        return getId(in, TEmbedType.ETwitter);
     }
 
 
     public static String getGfycatId(String in){
-
-        Uri uri = Uri.parse(in);
-
-        final String host = uri.getHost();
-
-        if( TextUtils.isEmpty(host) == false &&
-                host.endsWith("gfycat.com") == true){
-            List<String> paths =  uri.getPathSegments();
-            if(paths.size() == 1){
-                return paths.get(0);
-            }
-            else if(paths.size() == 2){
-                return paths.get(1);
-            }
-        }
-
-        return null;
+        return getId(in, TEmbedType.EGfycat);
     }
 
     public static String getSoundCloudStream(String baseUrl,String clientId){
@@ -239,38 +167,15 @@ public class EmbedUtils {
     }
 
     public static String getYoutubeVideoId(String in){
-
-        //*EDIT* - fixed to hopefully support more recent youtube link styles/formats:
-        final String pattern = "(?<=watch\\?v=|/videos/|/embed/|youtu.be/)[^&#?]*";
-        final String pattern2 = "(?:youtube(?:-nocookie)?\\.com\\/(?:[^\\/\\n\\s]+\\/\\S+\\/|(?:v|e(?:mbed)?)\\/|\\S*?[?&]v=)|youtu\\.be\\/)([a-zA-Z0-9_-]{11})";
-
-
-        Pattern compiledPattern = Pattern.compile(pattern2, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = compiledPattern.matcher(in);
-
-        if(matcher.find()){
-            return matcher.group(1);
-        }
-
-        return null;
+        return getId(in, TEmbedType.EYoutube);
     }
 
     public static TEmbedType getOembedType(String link){
 
+        EmbedMatch match = EmbedClassifier.DEFAULT.classify(link);
 
-        String result = getVimeoId(link);
-        if(TextUtils.isEmpty(result) == false){
-            return TEmbedType.EVimeo;
-        }
-
-        result = getVineId(link);
-        if(TextUtils.isEmpty(result) == false){
-            return TEmbedType.EVine;
-        }
-
-        result = getInstagramId(link);
-        if(TextUtils.isEmpty(result) == false){
-            return TEmbedType.EInstagram;
+        if(match != null && TextUtils.isEmpty(oembedRequestUrl(match.getType())) == false){
+            return match.getType();
         }
 
         return TEmbedType.EUnsupported;
@@ -278,47 +183,21 @@ public class EmbedUtils {
     }
 
     public static String getVineId(String in){
-
-        Uri uri = Uri.parse(in);
-
-        final String host = uri.getHost();
-
-        if( TextUtils.isEmpty(host) == false &&
-                host.indexOf("vine") >= 0){
-            return in;
-        }
-
-        return null;
+        return getId(in, TEmbedType.EVine);
     }
 
     public static String getVimeoId(String in){
-
-        Uri uri = Uri.parse(in);
-
-        final String host = uri.getHost();
-
-        if( TextUtils.isEmpty(host) == false &&
-                host.indexOf("vimeo") >= 0){
-            return in;
-        }
-
-        return null;
+        return getId(in, TEmbedType.EVimeo);
     }
 
     public static String getInstagramId(String in){
-
-        Uri uri = Uri.parse(in);
-
-        final String host = uri.getHost();
-
-        if( TextUtils.isEmpty(host) == false &&
-                host.indexOf("instagram") >= 0){
-            return in;
-        }
-
-        return null;
+        return getId(in, TEmbedType.EInstagram);
     }
 
+    private static String getId(String link, TEmbedType type){
+        EmbedMatch match = EmbedClassifier.DEFAULT.classify(link);
+        return match != null && match.getType() == type ? match.getId() : null;
+    }
 
     public static String getYoutubeThumbnailUrl(String videoId){
         return  String.format("http://img.youtube.com/vi/%s/hqdefault.jpg", videoId);
@@ -28,8 +28,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class AbsoluteSizeSpan extends MetricAffectingSpan implements RichTextSpan {
+public class AbsoluteSizeSpan extends MetricAffectingSpan implements RichTextSpan, Codable.Value {
 
     public static final  int TYPE = UniqueId.getType();
 
@@ -101,6 +104,18 @@ public class AbsoluteSizeSpan extends MetricAffectingSpan implements RichTextSpa
         mDip = src.readInt() != 0;
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mSize);
+        out.writeBoolean(mDip);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mSize = in.readInt();
+        mDip = in.readBoolean();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
@@ -32,8 +32,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class BulletSpan implements LeadingMarginSpan, RichTextSpan {
+public class BulletSpan implements LeadingMarginSpan, RichTextSpan, Codable.Value {
 
     public static final Creator<BulletSpan> CREATOR  = DynamicParcelableCreator.getInstance(BulletSpan.class);
 
@@ -80,6 +83,20 @@ public class BulletSpan implements LeadingMarginSpan, RichTextSpan {
         mColor = src.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mGapWidth);
+        out.writeBoolean(mWantColor);
+        out.writeInt(mColor);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mGapWidth = in.readInt();
+        mWantColor = in.readBoolean();
+        mColor = in.readInt();
+    }
+
     public int describeContents() {
         return 0;
     }
@@ -29,8 +29,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class ForegroundColorSpan extends CharacterStyle implements UpdateAppearance, RichTextSpan {
+public class ForegroundColorSpan extends CharacterStyle implements UpdateAppearance, RichTextSpan, Codable.Value {
 
     public static final Creator<ForegroundColorSpan> CREATOR  = DynamicParcelableCreator.getInstance(ForegroundColorSpan.class);
 
@@ -78,6 +81,16 @@ public class ForegroundColorSpan extends CharacterStyle implements UpdateAppeara
         mColor = src.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mColor);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mColor = in.readInt();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
@@ -29,8 +29,11 @@ import io.square1.richtextlib.ui.Appearance;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class HeaderSpan extends MetricAffectingSpan implements RichTextSpan {
+public class HeaderSpan extends MetricAffectingSpan implements RichTextSpan, Codable {
 
     public static final Creator<HeaderSpan> CREATOR  = DynamicParcelableCreator.getInstance(HeaderSpan.class);
 
@@ -88,6 +91,16 @@ public class HeaderSpan extends MetricAffectingSpan implements RichTextSpan {
         mHeaderIndex = src.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mHeaderIndex);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mHeaderIndex = in.readInt();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
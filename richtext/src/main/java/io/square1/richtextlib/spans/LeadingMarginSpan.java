@@ -30,11 +30,14 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 19/09/15.
  */
-public class LeadingMarginSpan implements RichTextSpan, android.text.style.LeadingMarginSpan {
+public class LeadingMarginSpan implements RichTextSpan, android.text.style.LeadingMarginSpan, Codable.Value {
 
     public static final Parcelable.Creator<LeadingMarginSpan> CREATOR  = DynamicParcelableCreator.getInstance(LeadingMarginSpan.class);
     public static final int TYPE = UniqueId.getType();
@@ -75,6 +78,18 @@ public class LeadingMarginSpan implements RichTextSpan, android.text.style.Leadi
         mRest = src.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mFirstLine);
+        out.writeInt(mRest);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mFirstLine = in.readInt();
+        mRest = in.readInt();
+    }
+
 
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
@@ -38,9 +38,12 @@ import io.square1.richtextlib.ui.Appearance;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 
-public class QuoteSpan extends MetricAffectingSpan implements /*LineHeightSpan,*/ LineBackgroundSpan,RichTextSpan,LeadingMarginSpan {
+public class QuoteSpan extends MetricAffectingSpan implements /*LineHeightSpan,*/ LineBackgroundSpan,RichTextSpan,LeadingMarginSpan, Codable {
 
     public static final Parcelable.Creator<QuoteSpan> CREATOR  = DynamicParcelableCreator.getInstance(QuoteSpan.class);
     public static final int TYPE = UniqueId.getType();
@@ -115,6 +118,16 @@ public class QuoteSpan extends MetricAffectingSpan implements /*LineHeightSpan,*
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mColor);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mColor = in.readInt();
+    }
+
 
     public int getLeadingMargin(boolean first) {
 
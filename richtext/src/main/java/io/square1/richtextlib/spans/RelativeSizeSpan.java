@@ -29,8 +29,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class RelativeSizeSpan extends MetricAffectingSpan implements RichTextSpan {
+public class RelativeSizeSpan extends MetricAffectingSpan implements RichTextSpan, Codable.Value {
 
     public static final Parcelable.Creator<RelativeSizeSpan> CREATOR  = DynamicParcelableCreator.getInstance(RelativeSizeSpan.class);
 
@@ -85,6 +88,16 @@ public class RelativeSizeSpan extends MetricAffectingSpan implements RichTextSpa
         mProportion = src.readFloat();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeFloat(mProportion);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mProportion = in.readFloat();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
@@ -29,12 +29,15 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 public interface RichAlignmentSpan extends android.text.style.AlignmentSpan, RichTextSpan {
 
     public Layout.Alignment getAlignment();
 
-    public static class Standard  implements RichAlignmentSpan {
+    public static class Standard  implements RichAlignmentSpan, Codable.Value {
 
         public static final int TYPE = UniqueId.getType();
 
@@ -73,6 +76,16 @@ public interface RichAlignmentSpan extends android.text.style.AlignmentSpan, Ric
             mAlignment = Layout.Alignment.valueOf(src.readString());
         }
 
+        @Override
+        public void writeTo(CodecWriter out) {
+            out.writeString(mAlignment.name());
+        }
+
+        @Override
+        public void readFrom(CodecReader in) {
+            mAlignment = Layout.Alignment.valueOf(in.readString());
+        }
+
         @Override
         public void onAttachedToWindow(RichContentViewDisplay view) {
 
@@ -22,11 +22,18 @@ package io.square1.richtextlib.spans;
 import android.content.Context;
 import android.graphics.Bitmap;
 
+import io.square1.richtextlib.v2.linkify.Linkifier;
+import io.square1.richtextlib.v2.parser.ParseLimits;
+
 
 
 
 /**
  * Created by roberto on 17/06/15.
+ *
+ * Extend RichTextV2.DefaultStyle rather than implementing this directly, the methods added
+ * to this interface get a default there. linkifier and limits were added after 6.0: a Style
+ * implemented directly has to add them, Linkifier.WEB_URL and ParseLimits.NONE parse as before.
  */
 public interface Style {
 
@@ -74,7 +81,8 @@ public interface Style {
     float  smallTextReduce();
 
     /**
-     * will make an attempt to resolve Wordpress tags such as [soundcloud /]
+     * will make an attempt to resolve Wordpress tags such as [soundcloud /],
+     * see MarkupContext.setShortcodeRegistry
      */
     boolean parseWordPressTags();
 
@@ -99,5 +107,15 @@ public interface Style {
      */
     boolean extractEmbeds();
 
+    /**
+     * @return the Linkifier finding the links in the text, Linkifier.NONE disables autolinking
+     */
+    Linkifier linkifier();
+
+    /**
+     * @return the most a parse spends on a document, ParseLimits.NONE for no limits
+     */
+    ParseLimits limits();
+
 
 }
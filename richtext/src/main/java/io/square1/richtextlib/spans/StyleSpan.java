@@ -30,6 +30,9 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  *
@@ -39,7 +42,7 @@ import io.square1.richtextlib.util.UniqueId;
  * you getInstance bold italic.  You can't turn off a style from the base style.
  *
  */
-public class StyleSpan extends MetricAffectingSpan implements RichTextSpan {
+public class StyleSpan extends MetricAffectingSpan implements RichTextSpan, Codable.Value {
 
     public static final Creator<StyleSpan> CREATOR  = DynamicParcelableCreator.getInstance(StyleSpan.class);
 
@@ -134,6 +137,16 @@ public class StyleSpan extends MetricAffectingSpan implements RichTextSpan {
         mStyle = mStyle - 1;
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeInt(mStyle);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mStyle = in.readInt();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
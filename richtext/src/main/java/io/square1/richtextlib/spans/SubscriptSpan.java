@@ -30,8 +30,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class SubscriptSpan extends MetricAffectingSpan implements RichTextSpan {
+public class SubscriptSpan extends MetricAffectingSpan implements RichTextSpan, Codable.Value {
 
     public static final Parcelable.Creator<SubscriptSpan> CREATOR  = DynamicParcelableCreator.getInstance(SubscriptSpan.class);
 
@@ -73,6 +76,14 @@ public class SubscriptSpan extends MetricAffectingSpan implements RichTextSpan {
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
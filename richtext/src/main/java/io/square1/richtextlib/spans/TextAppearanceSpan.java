@@ -32,12 +32,15 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Sets the text color, size, style, and typeface to match a TextAppearance
  * resource.
  */
-public class TextAppearanceSpan extends MetricAffectingSpan implements RichTextSpan {
+public class TextAppearanceSpan extends MetricAffectingSpan implements RichTextSpan, Codable {
 
     private  String mTypeface;
     private  int mStyle;
@@ -276,6 +279,31 @@ public class TextAppearanceSpan extends MetricAffectingSpan implements RichTextS
         }
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mTypeface);
+        out.writeInt(mStyle);
+        out.writeInt(mTextSize);
+        // only the default colors, the states of a ColorStateList can't be read back
+        out.writeBoolean(mTextColor != null);
+        if(mTextColor != null){
+            out.writeInt(mTextColor.getDefaultColor());
+        }
+        out.writeBoolean(mTextColorLink != null);
+        if(mTextColorLink != null){
+            out.writeInt(mTextColorLink.getDefaultColor());
+        }
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mTypeface = in.readString();
+        mStyle = in.readInt();
+        mTextSize = in.readInt();
+        mTextColor = in.readBoolean() ? ColorStateList.valueOf(in.readInt()) : null;
+        mTextColorLink = in.readBoolean() ? ColorStateList.valueOf(in.readInt()) : null;
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
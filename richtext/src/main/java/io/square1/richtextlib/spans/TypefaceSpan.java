@@ -32,11 +32,14 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Changes the typeface family of the text to which the span is attached.
  */
-public class TypefaceSpan extends MetricAffectingSpan implements RichTextSpan {
+public class TypefaceSpan extends MetricAffectingSpan implements RichTextSpan, Codable {
 
     public static final Parcelable.Creator<TypefaceSpan> CREATOR  = DynamicParcelableCreator.getInstance(TypefaceSpan.class);
 
@@ -122,6 +125,16 @@ public class TypefaceSpan extends MetricAffectingSpan implements RichTextSpan {
         mFamily = src.readString();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mFamily);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mFamily = in.readString();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
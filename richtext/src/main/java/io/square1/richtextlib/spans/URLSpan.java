@@ -33,8 +33,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class URLSpan extends ClickableSpan implements io.square1.richtextlib.spans.ClickableSpan, RichTextSpan {
+public class URLSpan extends ClickableSpan implements io.square1.richtextlib.spans.ClickableSpan, RichTextSpan, Codable.Value {
 
     public static final Parcelable.Creator<URLSpan> CREATOR  = DynamicParcelableCreator.getInstance(URLSpan.class);
 
@@ -91,6 +94,16 @@ public class URLSpan extends ClickableSpan implements io.square1.richtextlib.spa
         mURL = in.readString();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mURL);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mURL = in.readString();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
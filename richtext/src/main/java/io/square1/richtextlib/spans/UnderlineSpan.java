@@ -30,8 +30,11 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
-public class UnderlineSpan extends CharacterStyle implements UpdateAppearance, RichTextSpan {
+public class UnderlineSpan extends CharacterStyle implements UpdateAppearance, RichTextSpan, Codable.Value {
 
  public static final Parcelable.Creator<UnderlineSpan> CREATOR  = DynamicParcelableCreator.getInstance(UnderlineSpan.class);
 
@@ -68,6 +71,14 @@ public class UnderlineSpan extends CharacterStyle implements UpdateAppearance, R
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
@@ -31,11 +31,14 @@ import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 16/07/15.
  */
-public class UnsupportedContentSpan extends android.text.style.ClickableSpan implements io.square1.richtextlib.spans.ClickableSpan, RichTextSpan {
+public class UnsupportedContentSpan extends android.text.style.ClickableSpan implements io.square1.richtextlib.spans.ClickableSpan, RichTextSpan, Codable.Value {
 
     public static final Parcelable.Creator<UnsupportedContentSpan> CREATOR  = DynamicParcelableCreator.getInstance(UnsupportedContentSpan.class);
 
@@ -87,6 +90,16 @@ public class UnsupportedContentSpan extends android.text.style.ClickableSpan imp
         mURL = in.readString();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mURL);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mURL = in.readString();
+    }
+
     @Override
     public void onAttachedToWindow(RichContentViewDisplay view) {
 
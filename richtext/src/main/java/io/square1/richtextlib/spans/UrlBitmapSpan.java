@@ -42,11 +42,14 @@ import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.NumberUtils;
 import io.square1.richtextlib.util.Size;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 23/06/15.
  */
-public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,  UpdateAppearance, RichTextSpan {
+public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,  UpdateAppearance, RichTextSpan, Codable, WidthSizedSpan {
 
     public static final Creator<UrlBitmapSpan> CREATOR = DynamicParcelableCreator.getInstance(UrlBitmapSpan.class);
     public static final int TYPE = UniqueId.getType();
@@ -129,6 +132,25 @@ public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mImage != null ? mImage.toString() : null);
+        out.writeInt(mMaxImageWidth);
+        out.writeBoolean(mProvidedSize != null);
+        if(mProvidedSize != null){
+            out.writeInt(mProvidedSize.getWidth());
+            out.writeInt(mProvidedSize.getHeight());
+        }
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        String image = in.readString();
+        mImage = image != null ? Uri.parse(image) : null;
+        mMaxImageWidth = in.readInt();
+        mProvidedSize = in.readBoolean() ? new Size(in.readInt(), in.readInt()) : null;
+    }
+
     WeakReference<RichContentView> mRef;
 
     RichContentView getCurrentRichContentView() {
@@ -183,11 +205,8 @@ public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,
 
     private int containerViewHasMeasure(){
         if(mRef != null && mRef.get() != null){
-            RichContentView display = mRef.get();
-
-            int measured = display.getMeasuredWidth() -
-                    display.getPaddingLeft() -
-                    display.getPaddingRight();
+            // set before the text is laid out, the measured width only after it
+            int measured = mRef.get().getTextWidth();
 
             if(measured > 0) return measured;
         }
@@ -196,18 +215,21 @@ public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,
     }
 
     protected Rect getImageBounds(){
+        return getImageBounds(containerViewHasMeasure());
+    }
 
-        final int maxAvailableWidth = containerViewHasMeasure();
+    /**
+     * @param maxAvailableWidth the width of the text, NumberUtils.INVALID if it isn't known
+     */
+    private Rect getImageBounds(int maxAvailableWidth){
 
         //we force the aspect ratio and size if the size is hard coded
         if(Size.valid(mProvidedSize) == true){
 
-            if(maxAvailableWidth == NumberUtils.INVALID) {
-                return mProvidedSize.bounds();
-            }
-            else if(mProvidedSize.getWidth() > maxAvailableWidth) {
+            if(maxAvailableWidth != NumberUtils.INVALID &&
+                    mProvidedSize.getWidth() > maxAvailableWidth) {
                 // what if we exceed the available size ?
-                mProvidedSize = new Size(maxAvailableWidth, (int)(maxAvailableWidth * mProvidedSize.getRatio()));
+                return new Rect(0, 0, maxAvailableWidth, (int)(maxAvailableWidth * mProvidedSize.getRatio()));
             }
             return mProvidedSize.bounds();
         }
@@ -249,6 +271,22 @@ public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,
         return rect.right;
     }
 
+    @Override
+    public int getSize(int width, Paint.FontMetricsInt fm) {
+
+        Rect rect = getImageBounds(width > 0 ? width : NumberUtils.INVALID);
+
+        if (fm != null) {
+            fm.ascent = -rect.bottom;
+            fm.descent = 0;
+
+            fm.top = fm.ascent;
+            fm.bottom = 0;
+        }
+
+        return rect.right;
+    }
+
     public Drawable getBitmap() {
         return mBitmap;
     }
@@ -296,13 +334,14 @@ public class UrlBitmapSpan extends ReplacementSpan implements RemoteBitmapSpan,
                 bitmap.getIntrinsicHeight());
 
         mBitmap.setBounds(0, 0, mActualSize.getWidth(), mActualSize.getHeight());
+        WidthSizedSpan.Sizes.changed();
 
         final RichContentView view = mRef.get();
 
         ensureDrawableIsAttached();
 
         if (view != null) {
-            view.mediaSizeUpdated();
+            view.mediaSizeUpdated(this);
         }
 
     }
@@ -40,11 +40,14 @@ import io.square1.richtextlib.ui.video.RichVideoView;
 import io.square1.richtextlib.util.NumberUtils;
 import io.square1.richtextlib.util.Size;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 23/06/15.
  */
-public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan, UpdateAppearance, RichTextSpan , RichVideoView.RichVideoViewListener {
+public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan, UpdateAppearance, RichTextSpan , RichVideoView.RichVideoViewListener, Codable, WidthSizedSpan {
 
     public static final Creator<VideoPlayerSpan> CREATOR  = DynamicParcelableCreator.getInstance(VideoPlayerSpan.class);
     public static final int TYPE = UniqueId.getType();
@@ -103,6 +106,24 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
         mVideoSize = src.readParcelable(Size.class.getClassLoader());
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mVideoPath);
+        out.writeInt(mMaxImageWidth);
+        out.writeBoolean(mVideoSize != null);
+        if(mVideoSize != null){
+            out.writeInt(mVideoSize.getWidth());
+            out.writeInt(mVideoSize.getHeight());
+        }
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mVideoPath = in.readString();
+        mMaxImageWidth = in.readInt();
+        mVideoSize = in.readBoolean() ? new Size(in.readInt(), in.readInt()) : null;
+    }
+
     WeakReference<RichContentView> mRef;
 
     @Override
@@ -148,11 +169,8 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
 
     private int containerViewHasMeasure(){
         if(mRef != null && mRef.get() != null){
-            RichContentView display = mRef.get();
-
-            int measured = display.getMeasuredWidth() -
-                    display.getPaddingLeft() -
-                    display.getPaddingRight();
+            // set before the text is laid out, the measured width only after it
+            int measured = mRef.get().getTextWidth();
 
             if(measured > 0) return measured;
         }
@@ -161,9 +179,15 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
     }
 
     private Rect getVideoPlayerBounds(){
+        return getVideoPlayerBounds(containerViewHasMeasure());
+    }
+
+    /**
+     * @param maxAvailableWidth the width of the text, NumberUtils.INVALID if it isn't known
+     */
+    private Rect getVideoPlayerBounds(int maxAvailableWidth){
 
-        final int maxAvailableWidth = containerViewHasMeasure();
-        final Size videoSize = mVideoPlayer.getVideoSize();
+        final Size videoSize = mVideoPlayer != null ? mVideoPlayer.getVideoSize() : null;
 
         if(videoSize == null){
             if(maxAvailableWidth == NumberUtils.INVALID){
@@ -182,6 +206,22 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
         }
     }
 
+    @Override
+    public int getSize(int width, Paint.FontMetricsInt fm) {
+
+        Rect rect = getVideoPlayerBounds(width > 0 ? width : NumberUtils.INVALID);
+
+        if (fm != null) {
+            fm.ascent = -rect.bottom;
+            fm.descent = 0;
+
+            fm.top = fm.ascent;
+            fm.bottom = 0;
+        }
+
+        return rect.right;
+    }
+
     @Override
     public int getSize(Paint paint, CharSequence text,
                        int start, int end,
@@ -264,6 +304,7 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
 
         mVideoSize = videoView.getVideoSize();
         mSizeHasChanged = true;
+        WidthSizedSpan.Sizes.changed();
         final RichContentView view = mRef.get();
         Rect newRect = getVideoPlayerBounds();
 
@@ -271,7 +312,7 @@ public class VideoPlayerSpan extends ReplacementSpan implements  ClickableSpan,
 
         if(view != null){
             if(needsLayout == true){
-                view.mediaSizeUpdated();
+                view.mediaSizeUpdated(this);
             }else {
                 view.invalidate();
             }
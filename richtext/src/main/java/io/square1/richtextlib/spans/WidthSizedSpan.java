@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.spans;
+
+import android.graphics.Paint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ReplacementSpan sized by the width of the view showing it. PrecomputedLayout measures
+ * these for the width the layout is built for, on the thread creating it, see getSize.
+ * The spans call Sizes.changed when their size changes.
+ */
+public interface WidthSizedSpan {
+
+    /**
+     * same as ReplacementSpan.getSize when the text is laid out in width, the state of the
+     * span isn't changed
+     */
+    int getSize(int width, Paint.FontMetricsInt fm);
+
+    /**
+     * counts the size changes of all the WidthSizedSpans, what is worked out from their
+     * sizes is out of date once the generation changes
+     */
+    final class Sizes {
+
+        private static final AtomicInteger sGeneration = new AtomicInteger();
+
+        private Sizes(){
+        }
+
+        public static void changed(){
+            sGeneration.incrementAndGet();
+        }
+
+        public static int generation(){
+            return sGeneration.get();
+        }
+    }
+}
@@ -38,6 +38,8 @@ import io.square1.richtextlib.ui.RichContentView;
 import io.square1.richtextlib.ui.RichContentViewDisplay;
 import io.square1.richtextlib.util.NumberUtils;
 import io.square1.richtextlib.util.UniqueId;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 23/06/15.
@@ -88,6 +90,18 @@ public class YouTubeSpan extends UrlBitmapSpan implements ClickableSpan {
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        super.writeTo(out);
+        out.writeString(mYoutubeId);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        super.readFrom(in);
+        mYoutubeId = in.readString();
+    }
+
 
 
     @Override
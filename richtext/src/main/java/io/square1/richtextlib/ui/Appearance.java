@@ -358,6 +358,49 @@ public class Appearance {
         this.textHeaderColor = textHeaderColor;
     }
 
+    /**
+     * a hash of everything layouts made with this appearance depend on, appearances with
+     * the same fingerprint lay a text out the same way. Fonts and the quote sign are told
+     * apart by identity
+     */
+    public long fingerprint(){
+
+        long hash = FNV_OFFSET;
+
+        hash = mix(hash, textColor != null ? textColor : 0);
+        hash = mix(hash, textColor != null ? 1 : 0);
+        hash = mix(hash, linkColor != null ? linkColor : 0);
+        hash = mix(hash, linkColor != null ? 1 : 0);
+        hash = mix(hash, System.identityHashCode(textTypeFace));
+        hash = mix(hash, System.identityHashCode(linkTypeFace));
+        hash = mix(hash, Float.floatToIntBits(textFontSize));
+        hash = mix(hash, Float.floatToIntBits(linkFontSize));
+        hash = mix(hash, Float.floatToIntBits(quoteSignLeftPadding));
+        hash = mix(hash, Float.floatToIntBits(quoteSignRightPadding));
+        hash = mix(hash, Float.floatToIntBits(quoteSignTopPadding));
+        hash = mix(hash, quoteBackgroundColor);
+        hash = mix(hash, System.identityHashCode(quoteSign));
+        hash = mix(hash, textQuoteColor != null ? textQuoteColor : 0);
+        hash = mix(hash, textQuoteColor != null ? 1 : 0);
+        hash = mix(hash, Float.floatToIntBits(textQuoteFontSize));
+        hash = mix(hash, System.identityHashCode(textQuoteTypeFace));
+        hash = mix(hash, textHeaderColor != null ? textHeaderColor : 0);
+        hash = mix(hash, textHeaderColor != null ? 1 : 0);
+        hash = mix(hash, Float.floatToIntBits(spacingMult));
+        hash = mix(hash, Float.floatToIntBits(spacingAdd));
+
+        return hash;
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mix(long hash, int value){
+        hash ^= value;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+
     private static final float[] HEADER_SIZES = {
             1.5f, 1.4f, 1.3f, 1.2f, 1.1f, 1f,
     };
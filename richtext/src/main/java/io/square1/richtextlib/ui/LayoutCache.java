@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.text.Layout;
+import android.text.Spanned;
+import android.util.LruCache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * Keeps the layouts made by RichContentViews, so that a list binding the same element
+ * again or a view measured again at a width it had before, after a rotation, doesn't
+ * lay the text out again. Layouts are kept by element, compared by identity, by the width
+ * available to the text, by the fingerprint of the Appearance and by the sizes the media
+ * of the text have at that width, up to a size estimated from their lines and from the
+ * element they keep in memory, the least recently used ones are evicted first.
+ *
+ * A view uses the cache set with RichContentView.setLayoutCache, prefetch lays out the
+ * elements of items about to be shown on an executor. The cache can be shared between
+ * threads, the element is only read by the thread calling its methods, the one of the
+ * views showing it, prefetch lays out a copy of it.
+ */
+public class LayoutCache {
+
+    /**
+     * the estimated size in bytes of the layouts kept by the cache views use by default
+     */
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final int LAYOUT_SIZE = 128;
+    private static final int LINE_SIZE = 32;
+    private static final int SPAN_SIZE = 64;
+
+    private final LruCache<Key,Entry> mLayouts;
+    private final Set<Key> mPending = Collections.newSetFromMap(new ConcurrentHashMap<Key,Boolean>());
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    /**
+     * @param maxSize the estimated size in bytes of the layouts kept
+     */
+    public LayoutCache(int maxSize){
+
+        mLayouts = new LruCache<Key,Entry>(maxSize){
+            @Override
+            protected int sizeOf(Key key, Entry entry) {
+                // the media of the text load after it is put, the size can't follow them
+                return entry.mSize;
+            }
+        };
+    }
+
+    /**
+     * @param width the width available to the text, without the padding of the view
+     * @param fingerprint the fingerprint of the Appearance the layout is made with
+     * @return the layout of text or null if there isn't one
+     */
+    public Layout get(RichTextDocumentElement text, int width, long fingerprint){
+
+        Entry entry = mLayouts.get(new Key(text, width, fingerprint));
+
+        if(entry != null){
+            mHits.incrementAndGet();
+            return entry.mLayout;
+        }
+
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * keeps the layout of text made with its media at their current size
+     */
+    public void put(RichTextDocumentElement text, int width, long fingerprint, Layout layout){
+        put(new Key(text, width, fingerprint), layout, estimateSize(text));
+    }
+
+    /**
+     * @param textSize what estimateSize(RichTextDocumentElement) returned for the text of key
+     */
+    private void put(Key key, Layout layout, int textSize){
+        mLayouts.put(key, new Entry(layout, textSize + estimateSize(key.mText, layout)));
+    }
+
+    /**
+     * lays text out on executor unless the cache already has its layout, views measured
+     * at width after it is done find it in the cache
+     * @param width the width available to the text, without the padding of the view
+     * @return the layout or null if it was already in the cache or being laid out
+     */
+    public Future<PrecomputedLayout> prefetch(final RichTextDocumentElement text,
+                                              final int width,
+                                              Appearance appearance,
+                                              Executor executor){
+
+        final long fingerprint = appearance.fingerprint();
+        final Key key = new Key(text, width, fingerprint);
+
+        if(mLayouts.get(key) != null || mPending.add(key) == false){
+            return null;
+        }
+
+        // the element is changed by the views while the layout is made
+        final int textSize = estimateSize(text);
+
+        FutureTask<PrecomputedLayout> task = new FutureTask<PrecomputedLayout>(
+                PrecomputedLayout.builder(text, width, appearance)){
+            @Override
+            protected void done() {
+                if(isCancelled() == false){
+                    try {
+                        // keyed by the sizes of the media the builder measured
+                        put(key, get().getLayout(), textSize);
+                    } catch (InterruptedException | ExecutionException e) {
+                        // not laid out, the view will do it
+                    }
+                }
+                mPending.remove(key);
+            }
+        };
+
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * removes the layouts of text at every width. Once the size of its media changes they
+     * aren't found anymore, removing them frees their memory before they are evicted
+     */
+    public void remove(RichTextDocumentElement text){
+
+        for(Key key : mLayouts.snapshot().keySet()){
+            if(key.mText == text){
+                mLayouts.remove(key);
+            }
+        }
+    }
+
+    public void clear(){
+        mLayouts.evictAll();
+    }
+
+    public long getHitCount(){
+        return mHits.get();
+    }
+
+    public long getMissCount(){
+        return mMisses.get();
+    }
+
+    public float getHitRate(){
+        long hits = mHits.get();
+        long lookups = hits + mMisses.get();
+        return lookups > 0 ? (float) hits / lookups : 0;
+    }
+
+    /**
+     * @return the estimated size in bytes of the layouts kept
+     */
+    public int getSize(){
+        return mLayouts.size();
+    }
+
+    /**
+     * a rough estimate of the memory a layout keeps in memory along with the element it
+     * is keyed by: text with its spans and the bitmaps of its images. It reads the element,
+     * call it on the thread of the views showing it
+     */
+    public static int estimateSize(RichTextDocumentElement text){
+
+        int size = text.length() * 2 + text.getSpanCount() * SPAN_SIZE;
+
+        for(UrlBitmapSpan span : text.getSpans(0, text.length(), UrlBitmapSpan.class)){
+            Drawable drawable = span.getBitmap();
+            if(drawable instanceof BitmapDrawable){
+                Bitmap bitmap = ((BitmapDrawable) drawable).getBitmap();
+                size += bitmap != null ? bitmap.getByteCount() : 0;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * a rough estimate of the memory retained by a layout of text: its lines and the frozen
+     * copy of the text a static layout makes. The element isn't read, only compared with
+     * the text of the layout
+     */
+    public static int estimateSize(RichTextDocumentElement text, Layout layout){
+
+        int size = LAYOUT_SIZE + layout.getLineCount() * LINE_SIZE;
+        CharSequence laidOut = layout.getText();
+
+        if(laidOut != text){
+            size += laidOut.length() * 2;
+            if(laidOut instanceof Spanned){
+                size += ((Spanned) laidOut).getSpans(0, laidOut.length(), Object.class).length * SPAN_SIZE;
+            }
+        }
+
+        return size;
+    }
+
+    private static final class Entry {
+
+        private final Layout mLayout;
+        private final int mSize;
+
+        Entry(Layout layout, int size){
+            mLayout = layout;
+            mSize = size;
+        }
+    }
+
+    private static final class Key {
+
+        private final RichTextDocumentElement mText;
+        private final int mWidth;
+        private final long mFingerprint;
+        private final long mMediaSizes;
+
+        Key(RichTextDocumentElement text, int width, long fingerprint){
+            mText = text;
+            mWidth = width;
+            mFingerprint = fingerprint;
+            mMediaSizes = text.getMediaSizes(width);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if(o instanceof Key == false){
+                return false;
+            }
+
+            Key key = (Key) o;
+            return mText == key.mText &&
+                    mWidth == key.mWidth &&
+                    mFingerprint == key.mFingerprint &&
+                    mMediaSizes == key.mMediaSizes;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(mText);
+            result = 31 * result + mWidth;
+            result = 31 * result + (int) (mFingerprint ^ (mFingerprint >>> 32));
+            result = 31 * result + (int) (mMediaSizes ^ (mMediaSizes >>> 32));
+            return result;
+        }
+    }
+}
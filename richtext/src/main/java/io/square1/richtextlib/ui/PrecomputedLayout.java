@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.ui;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+import android.text.Layout;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.style.ReplacementSpan;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import io.square1.richtextlib.spans.WidthSizedSpan;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+
+/**
+ * A StaticLayout of a frozen copy of a RichTextDocumentElement, for a width and the
+ * Appearance of a view. The copy and the paint are taken on the calling thread, the
+ * glyphs are measured when the layout is built, that can be on any thread: adapters
+ * submit the layout of an item on an executor when they bind it and hand the future to
+ * RichContentView.setText, onMeasure then only picks up the result.
+ *
+ * Images and videos read the view they are bound to and the size of their media when
+ * measured, the copy holds the size they have on the calling thread instead, see
+ * WidthSizedSpan. The layout is stale once their media changes size, the view then lays
+ * the text out again.
+ */
+public final class PrecomputedLayout {
+
+    private final RichTextDocumentElement mSource;
+    private final int mWidth;
+    private final Layout mLayout;
+
+    private PrecomputedLayout(RichTextDocumentElement source, int width, Layout layout){
+        mSource = source;
+        mWidth = width;
+        mLayout = layout;
+    }
+
+    /**
+     * builds the layout on the calling thread
+     * @param width the width available to the text, without the padding of the view
+     */
+    public static PrecomputedLayout create(RichTextDocumentElement text, int width, Appearance appearance){
+        return new Builder(text, width, appearance).call();
+    }
+
+    /**
+     * copies the text and the paint and builds the layout on executor
+     * @param width the width available to the text, without the padding of the view
+     */
+    public static Future<PrecomputedLayout> submit(RichTextDocumentElement text,
+                                                   int width,
+                                                   Appearance appearance,
+                                                   Executor executor){
+        FutureTask<PrecomputedLayout> task = new FutureTask<>(new Builder(text, width, appearance));
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * takes the copy of the text and the paint on the calling thread, the layout is built
+     * when the callable is called
+     */
+    static Callable<PrecomputedLayout> builder(RichTextDocumentElement text, int width, Appearance appearance){
+        return new Builder(text, width, appearance);
+    }
+
+    /**
+     * the element the layout was built from, the text of the layout is a copy of it
+     */
+    public RichTextDocumentElement getSource(){
+        return mSource;
+    }
+
+    public int getWidth(){
+        return mWidth;
+    }
+
+    public Layout getLayout(){
+        return mLayout;
+    }
+
+    public int getHeight(){
+        return mLayout.getHeight();
+    }
+
+    /**
+     * holds what the layout is built from, taken on the thread creating it: the spans of
+     * a compact element and the Appearance aren't safe to read from another thread
+     */
+    private static final class Builder implements Callable<PrecomputedLayout> {
+
+        private final RichTextDocumentElement mSource;
+        private final Spanned mText;
+        private final TextPaint mPaint;
+        private final int mWidth;
+        private final float mSpacingMult;
+        private final float mSpacingAdd;
+
+        Builder(RichTextDocumentElement text, int width, Appearance appearance){
+            mSource = text;
+            mPaint = appearance.textPaint(null);
+            mWidth = Math.max(0, width);
+            mSpacingMult = appearance.getSpacingMult();
+            mSpacingAdd = appearance.getLineSpacingAdd();
+            mText = measuredCopy(text);
+        }
+
+        /**
+         * @return a copy of text with its replacement spans measured now
+         */
+        private Spanned measuredCopy(RichTextDocumentElement text){
+
+            ReplacementSpan[] spans = text.getSpans(0, text.length(), ReplacementSpan.class);
+
+            if(spans.length == 0){
+                return new SpannedString(text);
+            }
+
+            SpannableString copy = new SpannableString(text);
+
+            for(ReplacementSpan span : spans){
+
+                int start = copy.getSpanStart(span);
+                int end = copy.getSpanEnd(span);
+                int flags = copy.getSpanFlags(span);
+
+                Paint.FontMetricsInt fm = mPaint.getFontMetricsInt();
+                Paint.FontMetricsInt measured = mPaint.getFontMetricsInt();
+                int size = span instanceof WidthSizedSpan ?
+                        ((WidthSizedSpan) span).getSize(mWidth, measured) :
+                        span.getSize(mPaint, text, start, end, measured);
+
+                copy.removeSpan(span);
+                copy.setSpan(new MeasuredSpan(span, size, sameMetrics(fm, measured) ? null : measured),
+                        start, end, flags);
+            }
+
+            return copy;
+        }
+
+        private static boolean sameMetrics(Paint.FontMetricsInt first, Paint.FontMetricsInt second){
+            return first.top == second.top &&
+                    first.ascent == second.ascent &&
+                    first.descent == second.descent &&
+                    first.bottom == second.bottom &&
+                    first.leading == second.leading;
+        }
+
+        // StaticLayout.Builder is API 23
+        @SuppressWarnings("deprecation")
+        @Override
+        public PrecomputedLayout call() {
+
+            Layout layout;
+
+            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M){
+                layout = StaticLayout.Builder.obtain(mText, 0, mText.length(), mPaint, mWidth)
+                        .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                        .setLineSpacing(mSpacingAdd, mSpacingMult)
+                        .setIncludePad(false)
+                        .build();
+            }else {
+                layout = new StaticLayout(mText,
+                        mPaint,
+                        mWidth,
+                        Layout.Alignment.ALIGN_NORMAL,
+                        mSpacingMult,
+                        mSpacingAdd,
+                        false);
+            }
+
+            return new PrecomputedLayout(mSource, mWidth, layout);
+        }
+    }
+
+    /**
+     * stands for a replacement span in the copy of the text: the layout takes the size the span
+     * had on the thread creating the copy, the span itself draws it on the thread of the view
+     */
+    private static final class MeasuredSpan extends ReplacementSpan {
+
+        private final ReplacementSpan mSpan;
+        private final int mSize;
+
+        /**
+         * the metrics set by the span, null if it left those of the paint
+         */
+        private final Paint.FontMetricsInt mMetrics;
+
+        MeasuredSpan(ReplacementSpan span, int size, Paint.FontMetricsInt metrics){
+            mSpan = span;
+            mSize = size;
+            mMetrics = metrics;
+        }
+
+        @Override
+        public int getSize(Paint paint, CharSequence text, int start, int end, Paint.FontMetricsInt fm) {
+
+            if(fm != null && mMetrics != null){
+                fm.top = mMetrics.top;
+                fm.ascent = mMetrics.ascent;
+                fm.descent = mMetrics.descent;
+                fm.bottom = mMetrics.bottom;
+                fm.leading = mMetrics.leading;
+            }
+
+            return mSize;
+        }
+
+        @Override
+        public void draw(Canvas canvas, CharSequence text, int start, int end, float x, int top, int y, int bottom, Paint paint) {
+            mSpan.draw(canvas, text, start, end, x, top, y, bottom, paint);
+        }
+    }
+}
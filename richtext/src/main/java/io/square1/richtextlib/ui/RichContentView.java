@@ -27,12 +27,12 @@ import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Point;
-import android.graphics.Rect;
 import android.graphics.Typeface;
-import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.DynamicLayout;
 import android.text.Layout;
 import android.text.SpanWatcher;
@@ -41,6 +41,7 @@ import android.text.StaticLayout;
 import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.EditText;
@@ -48,6 +49,12 @@ import android.widget.FrameLayout;
 import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import io.square1.richtextlib.R;
 import io.square1.richtextlib.v2.RichTextV2;
@@ -69,6 +76,16 @@ import io.square1.richtextlib.spans.YouTubeSpan;
  */
 public class RichContentView extends FrameLayout implements RichContentViewDisplay , Drawable.Callback {
 
+    /**
+     * DYNAMIC lays the text out in a DynamicLayout following the changes of its spans,
+     * STATIC in a StaticLayout of a frozen copy of the text, built again when a span
+     * changes size. A static layout doesn't keep watchers on the text and can be
+     * precomputed off the main thread, see PrecomputedLayout.
+     */
+    public enum TextLayoutMode {
+        DYNAMIC,
+        STATIC
+    }
 
     private UrlBitmapDownloader mBitmapManager;
 
@@ -79,7 +96,42 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
     private Appearance mAppearance;
 
-    private DynamicLayout mLayout;
+    private Layout mLayout;
+
+    private TextLayoutMode mTextLayoutMode;
+
+    private Future<PrecomputedLayout> mLayoutFuture;
+
+    private PrecomputedLayout mPrecomputedLayout;
+
+    private SpanHitIndex mHitIndex;
+
+    private Layout mHitIndexLayout;
+
+    private final int[] mLocationOnScreen = new int[2];
+
+    // the spans that changed size since the last frame, see mediaSizeUpdated
+    private final ArrayList<Object> mResizedSpans = new ArrayList<>();
+
+    private boolean mFullReflow;
+
+    private boolean mReflowScheduled;
+
+    private Choreographer.FrameCallback mFrameReflow;
+
+    // hands the sizes changed on other threads to the main thread, see mainLoopHandler
+    private volatile Handler mMainLoopHandler;
+
+    private final Runnable mReflow = new Runnable() {
+        @Override
+        public void run() {
+            reflow(false);
+        }
+    };
+
+    private int mLayoutCount;
+
+    private int mReflowCount;
 
 
     private int mLastMeasuredWidth;
@@ -89,6 +141,24 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
     private OnSpanClickedObserver mOnSpanClickedObserver;
 
+    private static volatile LayoutCache sLayoutCache = new LayoutCache(LayoutCache.DEFAULT_MAX_SIZE);
+
+    // the views shown a layout of the cache, more than one when they show the same text.
+    // Used on the main thread only, see layoutShared
+    private static final WeakHashMap<Layout, Set<RichContentView>> sLayoutViews = new WeakHashMap<>();
+
+    /**
+     * @param cache where every view looks for the layout of its text before laying it out,
+     *              null to lay the text out every time
+     */
+    public static void setLayoutCache(LayoutCache cache){
+        sLayoutCache = cache;
+    }
+
+    public static LayoutCache getLayoutCache(){
+        return sLayoutCache;
+    }
+
 
 
     public RichContentView(Context context) {
@@ -134,12 +204,20 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
         if(mText != builder) {
             mLayout = null;
+            mLayoutFuture = null;
+            mPrecomputedLayout = null;
+            // the changes of the text shown before are dropped
+            cancelReflow();
+            mReflowScheduled = false;
+            mResizedSpans.clear();
+            mFullReflow = false;
             mText = builder;
 
             mEmptyText = TextUtils.isEmpty(mText);
 
             if(mText != null) {
-                mSpans = mText.getSpans();
+                // the value spans have nothing to bind, those of a compact text aren't created
+                mSpans = mText.getStatefulSpans();
             }else {
                 mSpans = new RichTextSpan[0];
             }
@@ -157,6 +235,45 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
         }
     }
 
+    /**
+     * sets the text and the layout precomputed for it, onMeasure uses the layout if it was
+     * built for the width of the view whatever the TextLayoutMode, waiting for it if it isn't
+     * finished yet
+     */
+    public void setText(RichTextDocumentElement builder, Future<PrecomputedLayout> layout){
+
+        if(mText != builder) {
+            setText(builder);
+            mLayoutFuture = layout;
+        }
+    }
+
+    public void setTextLayoutMode(TextLayoutMode textLayoutMode){
+
+        if(mTextLayoutMode != textLayoutMode){
+            mTextLayoutMode = textLayoutMode;
+            mLayout = null;
+            performLayout();
+        }
+    }
+
+    public TextLayoutMode getTextLayoutMode(){
+        return mTextLayoutMode;
+    }
+
+    /**
+     * the width the text is laid out at, without the padding. It is set when the view is
+     * measured before the text is laid out, the media are sized by it
+     * @return the width or 0 if the view wasn't measured yet
+     */
+    public int getTextWidth(){
+
+        if(mLastMeasuredWidth <= 0){
+            return 0;
+        }
+
+        return Math.max(0, mLastMeasuredWidth - getPaddingLeft() - getPaddingRight());
+    }
 
 
     @Override
@@ -167,29 +284,17 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
             requestLayout();
     }
 
+    /**
+     * the span changed, it is laid out again with the other spans changed in the same frame
+     */
     public void spanUpdated(RichTextSpan richTextSpan){
 
         if(mText == null || mLayout == null){
             return;
         }
 
-        int start = mText.getSpanStart(richTextSpan);
-        int end = mText.getSpanEnd(richTextSpan);
-        int length = mText.length();
-
-        if(start >= 0 && end < length) {//http://crashes.to/s/97526bcc474
-            SpanWatcher[] watchers = mText.getSpans(SpanWatcher.class);
-            for (SpanWatcher watcher : watchers) {
-                watcher.onSpanChanged(mText, richTextSpan, start, end, start, end);
-            }
-        }
-
         invalidate();
-       // if(previousSize != afterUpdate){
-            forceLayout();
-            requestLayout();
-       // }
-
+        mediaSizeUpdated(richTextSpan);
     }
 
     @Override
@@ -225,11 +330,13 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
         mAppearance = new Appearance(context);
 
         mText = new RichTextDocumentElement();
-        mSpans = mText.getSpans();
+        mSpans = mText.getStatefulSpans();
         mEmptyText = true;
 
         mLastMeasuredWidth = 0;
 
+        mTextLayoutMode = TextLayoutMode.DYNAMIC;
+
         parseCustomAttributes(context, attrs);
 
 
@@ -247,6 +354,7 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
         int widthSize = MeasureSpec.getSize(widthMeasureSpec);
 
+        reflow(true);
 
         if(mLayout == null || (mLastMeasuredWidth != widthSize)){
             mLastMeasuredWidth = widthSize;
@@ -274,7 +382,97 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
     }
 
 
-    private DynamicLayout makeLayout(int width){
+    /**
+     * the layout precomputed for the text, the one in the cache or a new one. A layout from
+     * the cache is used whatever the TextLayoutMode of the view
+     */
+    private Layout makeLayout(int width){
+
+        LayoutCache cache = sLayoutCache;
+        long fingerprint = mAppearance.fingerprint();
+
+        PrecomputedLayout precomputed = takePrecomputedLayout();
+        Layout layout = null;
+
+        if(precomputed != null &&
+                precomputed.getSource() == mText &&
+                precomputed.getWidth() == width){
+            layout = precomputed.getLayout();
+            if(cache != null){
+                cache.put(mText, width, fingerprint, layout);
+            }
+        }
+
+        if(layout == null && cache != null){
+            layout = cache.get(mText, width, fingerprint);
+        }
+
+        if(layout == null){
+            layout = buildLayout(width);
+            mLayoutCount ++;
+            if(cache != null){
+                cache.put(mText, width, fingerprint, layout);
+            }
+        }
+
+        if(cache != null){
+            layoutShared(layout);
+        }
+
+        return layout;
+    }
+
+    /**
+     * keeps the view among those showing layout, a layout of the cache other views
+     * may be showing too
+     */
+    private void layoutShared(Layout layout){
+
+        Set<RichContentView> views = sLayoutViews.get(layout);
+        if(views == null){
+            views = Collections.newSetFromMap(new WeakHashMap<RichContentView, Boolean>());
+            sLayoutViews.put(layout, views);
+        }
+
+        views.add(this);
+    }
+
+    /**
+     * the other views showing layout are laid out again, it was reflowed by this view
+     * @param whole true if layout is out of date and has to be replaced
+     */
+    private void sharedLayoutChanged(Layout layout, boolean whole){
+
+        Set<RichContentView> views = sLayoutViews.get(layout);
+        if(views == null){
+            return;
+        }
+
+        for(RichContentView view : new ArrayList<>(views)){
+            // views showing something else since are left alone
+            if(view != this && view.mLayout == layout){
+                if(whole == true){
+                    view.mLayout = null;
+                    view.mLayoutFuture = null;
+                    view.mPrecomputedLayout = null;
+                }
+                view.mHitIndex = null;
+                view.invalidate();
+                view.requestLayout();
+            }
+        }
+
+        if(whole == true){
+            sLayoutViews.remove(layout);
+        }
+    }
+
+    private Layout buildLayout(int width){
+
+        if(mTextLayoutMode == TextLayoutMode.STATIC){
+            mPrecomputedLayout = PrecomputedLayout.create(mText, width, mAppearance);
+            return mPrecomputedLayout.getLayout();
+        }
 
         DynamicLayout result = new DynamicLayout(mText,
                 mAppearance.textPaint(null),
@@ -287,6 +485,24 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
         return result;
     }
 
+    private PrecomputedLayout takePrecomputedLayout(){
+
+        if(mLayoutFuture != null){
+            try {
+                // usually built by now, this only waits when measure runs right after bind
+                mPrecomputedLayout = mLayoutFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mPrecomputedLayout = null;
+            } catch (ExecutionException | CancellationException e) {
+                mPrecomputedLayout = null;
+            }
+            mLayoutFuture = null;
+        }
+
+        return mPrecomputedLayout;
+    }
+
 
     @Override
     public void onDraw(Canvas canvas){
@@ -322,25 +538,19 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
             x += getScrollX();
             y += getScrollY();
 
-            // Locate the URL text
+            // Locate the spans pressed
             int line = mLayout.getLineForVertical(y);
-            int off = mLayout.getOffsetForHorizontal(line, x);
+            SpanHitIndex index = getHitIndex();
 
-            Animatable[] animatables =  mText.getSpans(off, off, Animatable.class);
-            if(animatables.length > 0) return false;
+            if(index.contains(line, x, SpanHitIndex.ANIMATABLE)) return false;
 
-            if (animatables.length != 0 && action == MotionEvent.ACTION_UP) {
-                if(animatables[0].isRunning()){
-                    animatables[0].stop();
-                }else{
-                    animatables[0].start();
-                }
-            }
             // Find the URL that was pressed
-            ClickableSpan[] link = mText.getSpans(off, off, ClickableSpan.class);
-            // If we've found a URL
-            if (link.length != 0 && action == MotionEvent.ACTION_UP) {
-                onSpansClicked(link);
+            if (action == MotionEvent.ACTION_UP) {
+                ClickableSpan[] link = index.getClickableSpans(line, x);
+                // If we've found a URL
+                if (link.length != 0) {
+                    onSpansClicked(link);
+                }
             }
 
             return true;
@@ -351,6 +561,24 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
 
 
+    /**
+     * the regions of the clickable and animatable spans in the current layout, built the
+     * first time they are needed after the layout changed, null before the view is measured
+     */
+    public SpanHitIndex getHitIndex(){
+
+        if(mLayout == null){
+            return null;
+        }
+
+        if(mHitIndex == null || mHitIndexLayout != mLayout){
+            mHitIndex = SpanHitIndex.build(mLayout, mText);
+            mHitIndexLayout = mLayout;
+        }
+
+        return mHitIndex;
+    }
+
     @Override
     public UrlBitmapDownloader getDownloader() {
         return mBitmapManager;
@@ -371,6 +599,12 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
                 span.onAttachedToWindow(this);
         }
 
+        // the changes made while detached, or whose frame was cancelled by the detach
+        if(mReflowScheduled == true){
+            mReflowScheduled = false;
+            scheduleReflow();
+        }
+
     }
 
     @Override
@@ -378,6 +612,9 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
         mAttachedToWindow = false;
         super.onDetachedFromWindow();
 
+        // the changes stay scheduled, they are applied when the view is measured or attached again
+        cancelReflow();
+
         for(RichTextSpan span : mSpans){
             span.onDetachedFromWindow(this);
         }
@@ -529,6 +766,11 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
                 mAppearance.setLineSpacingAdd(lineSpacingAdd);
             }
 
+            if(a.hasValue(R.styleable.RichContentView_richTextLayoutMode)){
+                int textLayoutMode = a.getInt(R.styleable.RichContentView_richTextLayoutMode, 0);
+                mTextLayoutMode = TextLayoutMode.values()[textLayoutMode];
+            }
+
             CharSequence sequence =  "";
 
             if(a.hasValue(R.styleable.RichContentView_android_text)){
@@ -589,51 +831,39 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
 
     public Point getSpanOrigin(Object span) {
 
-        Rect parentTextViewRect = new Rect();
+        int startOffsetOfClickedText = mText.getSpanStart(span);
+        int endOffsetOfClickedText = mText.getSpanEnd(span);
+        float startXCoordinatesOfClickedText = mLayout.getPrimaryHorizontal(startOffsetOfClickedText);
+        float endXCoordinatesOfClickedText = mLayout.getPrimaryHorizontal(endOffsetOfClickedText);
+
 
+        // Get the bounds of the clicked text
+        int currentLineStartOffset = mLayout.getLineForOffset(startOffsetOfClickedText);
+        int currentLineEndOffset = mLayout.getLineForOffset(endOffsetOfClickedText);
+        boolean keywordIsInMultiLine = currentLineStartOffset != currentLineEndOffset;
 
-        double startOffsetOfClickedText = mText.getSpanStart(span);
-        double endOffsetOfClickedText = mText.getSpanEnd(span);
-        double startXCoordinatesOfClickedText = mLayout.getPrimaryHorizontal((int) startOffsetOfClickedText);
-        double endXCoordinatesOfClickedText = mLayout.getPrimaryHorizontal((int) endOffsetOfClickedText);
 
+        // Update the bounds to their real position on screen
+        getLocationOnScreen(mLocationOnScreen);
 
-        // Get the rectangle of the clicked text
-        int currentLineStartOffset = mLayout.getLineForOffset((int) startOffsetOfClickedText);
-        int currentLineEndOffset = mLayout.getLineForOffset((int) endOffsetOfClickedText);
-        boolean keywordIsInMultiLine = currentLineStartOffset != currentLineEndOffset;
-        mLayout.getLineBounds(currentLineStartOffset, parentTextViewRect);
-
-
-        // Update the rectangle position to his real position on screen
-        int[] parentTextViewLocation = {0, 0};
-        getLocationOnScreen(parentTextViewLocation);
-
-        double parentTextViewTopAndBottomOffset = (
-                parentTextViewLocation[1] -
-                        getScrollY() +
-                        getPaddingTop()
-        );
-        parentTextViewRect.top += parentTextViewTopAndBottomOffset;
-        parentTextViewRect.bottom += parentTextViewTopAndBottomOffset;
-
-        parentTextViewRect.left += (
-                parentTextViewLocation[0] +
-                        startXCoordinatesOfClickedText +
-                        getPaddingLeft() -
-                        getScrollX()
-        );
-
-        parentTextViewRect.right = (int) (
-                parentTextViewRect.left +
-                        endXCoordinatesOfClickedText -
-                        startXCoordinatesOfClickedText
-        );
-
-        int x = (parentTextViewRect.left + parentTextViewRect.right) / 2;
-        int y = parentTextViewRect.bottom;
+        int bottom = mLayout.getLineBottom(currentLineStartOffset) +
+                mLocationOnScreen[1] -
+                getScrollY() +
+                getPaddingTop();
+
+        int left = (int) (mLocationOnScreen[0] +
+                startXCoordinatesOfClickedText +
+                getPaddingLeft() -
+                getScrollX());
+
+        int right = (int) (left +
+                endXCoordinatesOfClickedText -
+                startXCoordinatesOfClickedText);
+
+        int x = (left + right) / 2;
+        int y = bottom;
         if (keywordIsInMultiLine) {
-            x = parentTextViewRect.left;
+            x = left;
         }
 
         return  new Point(x,y);
@@ -676,11 +906,213 @@ public class RichContentView extends FrameLayout implements RichContentViewDispl
         return mAppearance;
     }
 
+    private void removeCachedLayouts(){
+
+        LayoutCache cache = sLayoutCache;
+        if(cache != null && mText != null){
+            cache.remove(mText);
+        }
+    }
+
+    /**
+     * lays the whole text out again on the next frame, along with any other change made
+     * before it
+     */
     @Override
     public void mediaSizeUpdated() {
-        mLayout = null;
-        requestLayout();
 
+        if(Looper.myLooper() != Looper.getMainLooper()){
+            mainLoopHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    mediaSizeUpdated();
+                }
+            });
+            return;
+        }
+
+        mFullReflow = true;
+        scheduleReflow();
+    }
+
+    /**
+     * lays out again on the next frame the paragraph of span only, along with the other
+     * spans changing size before it. A static layout is laid out again whole.
+     * Images and videos may call it from the thread loading them, the span is then
+     * handed to the main thread
+     */
+    public void mediaSizeUpdated(final RichTextSpan span) {
+
+        if(Looper.myLooper() != Looper.getMainLooper()){
+            mainLoopHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    mediaSizeUpdated(span);
+                }
+            });
+            return;
+        }
+
+        if(mResizedSpans.contains(span) == false){
+            mResizedSpans.add(span);
+        }
+
+        scheduleReflow();
+    }
+
+    /**
+     * a view that isn't attached runs what it is posted only once attached, the
+     * sizes are handed to the main thread whether it is or not
+     */
+    private Handler mainLoopHandler(){
+
+        if(mMainLoopHandler == null){
+            mMainLoopHandler = new Handler(Looper.getMainLooper());
+        }
+
+        return mMainLoopHandler;
+    }
+
+    /**
+     * the number of times the view laid its text out from the start, for tests and benchmarks
+     */
+    public int getLayoutCount(){
+        return mLayoutCount;
+    }
+
+    /**
+     * the number of frames the view laid out again the media that changed size in
+     */
+    public int getReflowCount(){
+        return mReflowCount;
+    }
+
+    private void scheduleReflow(){
+
+        if(mReflowScheduled == true){
+            return;
+        }
+
+        mReflowScheduled = true;
+
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN &&
+                Looper.myLooper() == Looper.getMainLooper()){
+            postFrameReflow();
+        }else {
+            post(mReflow);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameReflow(){
+
+        if(mFrameReflow == null){
+            mFrameReflow = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    reflow(false);
+                }
+            };
+        }
+
+        Choreographer.getInstance().postFrameCallback(mFrameReflow);
+    }
+
+    /**
+     * removes the frame callback or the message posted by scheduleReflow
+     */
+    private void cancelReflow(){
+
+        removeCallbacks(mReflow);
+
+        if(mFrameReflow != null && Looper.myLooper() == Looper.getMainLooper()){
+            removeFrameReflow();
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameReflow(){
+        Choreographer.getInstance().removeFrameCallback(mFrameReflow);
+    }
+
+    /**
+     * applies the size changes made since the last frame, on the next frame or when the
+     * view is measured before it
+     * @param measuring true when called by onMeasure, that lays the view out already
+     */
+    private void reflow(boolean measuring){
+
+        if(mReflowScheduled == false){
+            return;
+        }
+
+        mReflowScheduled = false;
+        mReflowCount ++;
+
+        Layout reflowed = mLayout;
+
+        if(mFullReflow == false && mLayout instanceof DynamicLayout){
+            // the layout reflows the paragraphs of the spans, it is laid out again whole
+            // if one of them can't be notified
+            for(Object span : mResizedSpans){
+                if(notifySpanChanged(span) == false){
+                    mFullReflow = true;
+                    break;
+                }
+            }
+        }
+
+        if(mFullReflow == false && mLayout instanceof DynamicLayout){
+            // the layouts of the text at other widths are out of date, this one is
+            // kept again with the new sizes
+            LayoutCache cache = sLayoutCache;
+            if(cache != null && mText != null){
+                cache.remove(mText);
+                cache.put(mText, mLayout.getWidth(), mAppearance.fingerprint(), mLayout);
+            }
+        }else {
+            mLayout = null;
+            // measured before the media had its size
+            mLayoutFuture = null;
+            mPrecomputedLayout = null;
+            removeCachedLayouts();
+        }
+
+        if(reflowed != null){
+            // a DynamicLayout of the cache was reflowed under the other views showing it,
+            // any other layout is replaced
+            sharedLayoutChanged(reflowed, mLayout == null);
+        }
+
+        mResizedSpans.clear();
+        mFullReflow = false;
+        mHitIndex = null;
+
+        if(measuring == false){
+            invalidate();
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return false if the watchers of the text, the DynamicLayouts among them, weren't
+     * told span changed
+     */
+    private boolean notifySpanChanged(Object span){
+
+        int start = mText.getSpanStart(span);
+        int end = mText.getSpanEnd(span);
+        int length = mText.length();
+
+        if(start >= 0 && end < length) {//http://crashes.to/s/97526bcc474
+            SpanWatcher[] watchers = mText.getSpans(SpanWatcher.class);
+            for (SpanWatcher watcher : watchers) {
+                watcher.onSpanChanged(mText, span, start, end, start, end);
+            }
+            return true;
+        }
+
+        return false;
     }
 
 }
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.ui;
+
+import android.content.Context;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Executor;
+
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.ImageDocumentElement;
+import io.square1.richtextlib.v2.content.OembedDocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.content.TextBlocks;
+import io.square1.richtextlib.v2.content.VideoDocumentElement;
+import io.square1.richtextlib.v2.content.WebDocumentElement;
+
+/**
+ * Shows a long text in a ListView a paragraph block at a time, see TextBlocks, instead of
+ * a single RichContentView laying out and measuring the whole text before anything is
+ * drawn. Only the blocks on screen are laid out, the list doesn't need the height of the
+ * others, and media changing size lays out again the block they are in only. Blocks are
+ * copied from the text the first time they are shown.
+ *
+ * The blocks are shown by RichContentViews made by newTextView, override it to set them up.
+ * The elements of a document that aren't text are shown by getElementView, by default in
+ * a RichContentView as an image, a video or a link, override it to show them otherwise.
+ *
+ * The blocks prefetched are laid out with their media sized at the width of the views, as
+ * the views size them, a block whose media change size before it is shown is laid out
+ * again by its view.
+ */
+public class RichTextBlockAdapter extends BaseAdapter {
+
+    /**
+     * the length a block reaches before it is ended at the next paragraph break
+     */
+    public static final int DEFAULT_BLOCK_LENGTH = 1000;
+
+    private static final int TYPE_TEXT = 0;
+    private static final int TYPE_ELEMENT = 1;
+
+    private static final class Item {
+
+        private final DocumentElement mElement;
+        private final int[] mBoundaries;
+        private final int mIndex;
+        private RichTextDocumentElement mBlock;
+
+        private Item(DocumentElement element, int[] boundaries, int index){
+            mElement = element;
+            mBoundaries = boundaries;
+            mIndex = index;
+        }
+    }
+
+    private final ArrayList<Item> mItems;
+
+    // the text shown for the elements that aren't text, see getElementText
+    private final IdentityHashMap<DocumentElement,RichTextDocumentElement> mElementTexts =
+            new IdentityHashMap<>();
+
+    private Executor mPrefetchExecutor;
+    private int mPrefetchBlocks;
+
+    public RichTextBlockAdapter(RichTextDocumentElement text){
+        this(new RichDocument("", elements(text)), DEFAULT_BLOCK_LENGTH);
+    }
+
+    public RichTextBlockAdapter(RichDocument document){
+        this(document, DEFAULT_BLOCK_LENGTH);
+    }
+
+    /**
+     * @param blockLength the length a block reaches before it is ended at the next paragraph break
+     */
+    public RichTextBlockAdapter(RichDocument document, int blockLength){
+
+        mItems = new ArrayList<>();
+
+        for(DocumentElement element : document.getElements()){
+
+            if(element instanceof RichTextDocumentElement){
+                RichTextDocumentElement text = (RichTextDocumentElement) element;
+                int[] boundaries = TextBlocks.boundaries(text, blockLength);
+                for(int index = 0; index < TextBlocks.count(boundaries); index ++){
+                    mItems.add(new Item(text, boundaries, index));
+                }
+            }else {
+                mItems.add(new Item(element, null, 0));
+            }
+        }
+    }
+
+    /**
+     * lays out on executor the blocks after the last one bound, so they are in the
+     * LayoutCache of the views by the time they are scrolled to
+     * @param blocks how many blocks ahead, 0 to stop
+     */
+    public void setPrefetch(Executor executor, int blocks){
+        mPrefetchExecutor = executor;
+        mPrefetchBlocks = blocks;
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.size();
+    }
+
+    /**
+     * @return the text of the block at position or the element that isn't text
+     */
+    @Override
+    public Object getItem(int position) {
+        Item item = mItems.get(position);
+        return item.mBoundaries != null ? block(item) : item.mElement;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return 2;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return mItems.get(position).mBoundaries != null ? TYPE_TEXT : TYPE_ELEMENT;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+
+        Item item = mItems.get(position);
+
+        if(item.mBoundaries == null){
+            return getElementView(item.mElement, convertView, parent);
+        }
+
+        RichContentView view = convertView instanceof RichContentView ?
+                (RichContentView) convertView : newTextView(parent);
+
+        view.setText(block(item));
+        prefetch(position, view, parent);
+
+        return view;
+    }
+
+    /**
+     * @return the view the blocks of text are shown in
+     */
+    protected RichContentView newTextView(ViewGroup parent){
+        return new RichContentView(parent.getContext());
+    }
+
+    /**
+     * @return the view of an element that isn't text, a RichContentView showing the text
+     * getElementText makes for it unless overridden
+     */
+    protected View getElementView(DocumentElement element, View convertView, ViewGroup parent){
+
+        RichContentView view = convertView instanceof RichContentView ?
+                (RichContentView) convertView : newTextView(parent);
+
+        RichTextDocumentElement text = mElementTexts.get(element);
+        if(text == null){
+            text = getElementText(element, parent.getContext());
+            mElementTexts.put(element, text);
+        }
+
+        view.setText(text);
+        return view;
+    }
+
+    /**
+     * @return the text the default getElementView shows for an element that isn't text:
+     * an image, a video, the html of web content or a link to an embed or a web page.
+     * Called once for every element
+     */
+    protected RichTextDocumentElement getElementText(DocumentElement element, Context context){
+
+        if(element instanceof ImageDocumentElement){
+            ImageDocumentElement image = (ImageDocumentElement) element;
+            RichTextDocumentElement.TextBuilder builder = new RichTextDocumentElement.TextBuilder("")
+                    .image(image.getImageURL(), image.getWidth(), image.getHeight());
+            Uri action = image.getClickAction();
+            if(action != null && Uri.EMPTY.equals(action) == false){
+                builder.click(action.toString());
+            }
+            return builder.build();
+        }
+
+        if(element instanceof VideoDocumentElement){
+            return new RichTextDocumentElement.TextBuilder("")
+                    .video(((VideoDocumentElement) element).getContent())
+                    .build();
+        }
+
+        String content = null;
+
+        if(element instanceof WebDocumentElement){
+            WebDocumentElement web = (WebDocumentElement) element;
+            if(web.getType() == WebDocumentElement.ContentType.EHtml){
+                return RichTextV2.textFromHtml(context, web.getContent());
+            }
+            content = web.getContent();
+        }else if(element instanceof OembedDocumentElement){
+            content = ((OembedDocumentElement) element).getContent();
+        }
+
+        if(TextUtils.isEmpty(content) == true){
+            return new RichTextDocumentElement();
+        }
+
+        return new RichTextDocumentElement.TextBuilder(content)
+                .click(content)
+                .build();
+    }
+
+    private RichTextDocumentElement block(Item item){
+
+        if(item.mBlock == null){
+            item.mBlock = TextBlocks.block((RichTextDocumentElement) item.mElement,
+                    item.mBoundaries, item.mIndex);
+        }
+
+        return item.mBlock;
+    }
+
+    private void prefetch(int position, RichContentView view, ViewGroup parent){
+
+        LayoutCache cache = RichContentView.getLayoutCache();
+
+        if(mPrefetchExecutor == null || mPrefetchBlocks <= 0 || cache == null){
+            return;
+        }
+
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight() -
+                view.getPaddingLeft() - view.getPaddingRight();
+
+        if(width <= 0){
+            return;
+        }
+
+        // the layouts are made at the width the views will have, the media are sized by it
+        int last = Math.min(mItems.size() - 1, position + mPrefetchBlocks);
+        for(int next = position + 1; next <= last; next ++){
+            Item item = mItems.get(next);
+            if(item.mBoundaries != null){
+                cache.prefetch(block(item), width, view.getStyle(), mPrefetchExecutor);
+            }
+        }
+    }
+
+    private static ArrayList<DocumentElement> elements(RichTextDocumentElement text){
+        ArrayList<DocumentElement> elements = new ArrayList<>();
+        elements.add(text);
+        return elements;
+    }
+}
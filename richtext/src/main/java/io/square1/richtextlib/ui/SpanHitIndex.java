@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.ui;
+
+import android.graphics.drawable.Animatable;
+import android.text.Layout;
+import android.text.Spanned;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import io.square1.richtextlib.spans.ClickableSpan;
+
+/**
+ * The regions of the clickable and animatable spans of a text in a layout, one per line
+ * a span is on, from its left to its right on that line. Built once per layout, the
+ * regions are sorted by line so that finding the spans at a point is a binary search
+ * over the lines and a look at the regions of one line, without allocating anything
+ * unless a span is found. The regions can be walked as well, to draw the links or to
+ * expose them as virtual views.
+ */
+public final class SpanHitIndex {
+
+    public static final int CLICKABLE = 0;
+    public static final int ANIMATABLE = 1;
+
+    private static final ClickableSpan[] NO_SPANS = new ClickableSpan[0];
+
+    private final int mCount;
+    private final int[] mLines;
+    private final float[] mLefts;
+    private final float[] mRights;
+    private final int[] mKinds;
+    private final Object[] mSpans;
+
+    private SpanHitIndex(ArrayList<Region> regions){
+
+        mCount = regions.size();
+        mLines = new int[mCount];
+        mLefts = new float[mCount];
+        mRights = new float[mCount];
+        mKinds = new int[mCount];
+        mSpans = new Object[mCount];
+
+        for(int index = 0; index < mCount; index ++){
+            Region region = regions.get(index);
+            mLines[index] = region.mLine;
+            mLefts[index] = region.mLeft;
+            mRights[index] = region.mRight;
+            mKinds[index] = region.mKind;
+            mSpans[index] = region.mSpan;
+        }
+    }
+
+    /**
+     * @param text the text of layout, or a text with its spans at the same offsets
+     */
+    public static SpanHitIndex build(Layout layout, Spanned text){
+
+        ArrayList<Region> regions = new ArrayList<>();
+
+        for(ClickableSpan span : text.getSpans(0, text.length(), ClickableSpan.class)){
+            addRegions(layout, text, span, CLICKABLE, regions);
+        }
+
+        for(Animatable span : text.getSpans(0, text.length(), Animatable.class)){
+            addRegions(layout, text, span, ANIMATABLE, regions);
+        }
+
+        Collections.sort(regions, new Comparator<Region>() {
+            @Override
+            public int compare(Region lhs, Region rhs) {
+                if(lhs.mLine != rhs.mLine){
+                    return lhs.mLine < rhs.mLine ? -1 : 1;
+                }
+                return Float.compare(lhs.mLeft, rhs.mLeft);
+            }
+        });
+
+        return new SpanHitIndex(regions);
+    }
+
+    /**
+     * @return true if a span of kind is at x on line
+     */
+    public boolean contains(int line, float x, int kind){
+
+        for(int index = firstRegion(line); index < mCount && mLines[index] == line; index ++){
+            if(mKinds[index] == kind && mLefts[index] <= x && x < mRights[index]){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the clickable spans at x on line, an empty array shared by every call when
+     * there isn't one
+     */
+    public ClickableSpan[] getClickableSpans(int line, float x){
+
+        int first = firstRegion(line);
+        int found = 0;
+
+        for(int index = first; index < mCount && mLines[index] == line; index ++){
+            if(isClickableAt(index, x)){
+                found ++;
+            }
+        }
+
+        if(found == 0){
+            return NO_SPANS;
+        }
+
+        ClickableSpan[] spans = new ClickableSpan[found];
+        found = 0;
+
+        for(int index = first; index < mCount && mLines[index] == line; index ++){
+            if(isClickableAt(index, x)){
+                spans[found ++] = (ClickableSpan) mSpans[index];
+            }
+        }
+
+        return spans;
+    }
+
+    /**
+     * @return the first region of span or -1 if it isn't in the index
+     */
+    public int indexOf(Object span){
+
+        for(int index = 0; index < mCount; index ++){
+            if(mSpans[index] == span){
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getRegionCount(){
+        return mCount;
+    }
+
+    public int getLine(int region){
+        return mLines[region];
+    }
+
+    public float getLeft(int region){
+        return mLefts[region];
+    }
+
+    public float getRight(int region){
+        return mRights[region];
+    }
+
+    public int getKind(int region){
+        return mKinds[region];
+    }
+
+    public Object getSpan(int region){
+        return mSpans[region];
+    }
+
+    private boolean isClickableAt(int index, float x){
+        return mKinds[index] == CLICKABLE && mLefts[index] <= x && x < mRights[index];
+    }
+
+    /**
+     * @return the first region on line or after it
+     */
+    private int firstRegion(int line){
+
+        int low = 0;
+        int high = mCount;
+
+        while (low < high){
+            int middle = (low + high) >>> 1;
+            if(mLines[middle] < line){
+                low = middle + 1;
+            }else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private static void addRegions(Layout layout, Spanned text, Object span, int kind, ArrayList<Region> regions){
+
+        int start = text.getSpanStart(span);
+        int end = text.getSpanEnd(span);
+
+        if(start < 0 || end < start){
+            return;
+        }
+
+        int first = layout.getLineForOffset(start);
+        int last = layout.getLineForOffset(end);
+
+        for(int line = first; line <= last; line ++){
+
+            float left = line == first ? layout.getPrimaryHorizontal(start) : layout.getLineLeft(line);
+            float right = line == last ? layout.getPrimaryHorizontal(end) : layout.getLineRight(line);
+
+            if(right < left){
+                float swap = left;
+                left = right;
+                right = swap;
+            }
+
+            // a span ending where a line starts isn't on that line
+            if(right > left){
+                regions.add(new Region(line, left, right, kind, span));
+            }
+        }
+    }
+
+    private static final class Region {
+
+        private final int mLine;
+        private final float mLeft;
+        private final float mRight;
+        private final int mKind;
+        private final Object mSpan;
+
+        private Region(int line, float left, float right, int kind, Object span){
+            mLine = line;
+            mLeft = left;
+            mRight = right;
+            mKind = kind;
+            mSpan = span;
+        }
+    }
+}
@@ -43,9 +43,7 @@ public class Utils {
     public static <T extends Object> T newInstance(Class<T> currentClass){
 
         try {
-            T item = currentClass.newInstance();
-            Log.i("CLASS", currentClass.getName());
-            return item;
+            return currentClass.newInstance();
         }catch (Exception e){
             Log.e("CLASS" , currentClass.getName());
             e.printStackTrace();
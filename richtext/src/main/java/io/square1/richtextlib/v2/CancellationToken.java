@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2;
+
+/**
+ * Stops a parse that is no longer needed, for example when the view it was for has been
+ * recycled. The parser checks the token between elements, a cancelled parse returns
+ * RichDocument.EMPTY and the document isn't cached. A token can be shared by any number
+ * of parses and can be cancelled from any thread, it can't be reset.
+ */
+public final class CancellationToken {
+
+    private volatile boolean mCancelled;
+
+    public void cancel(){
+        mCancelled = true;
+    }
+
+    public boolean isCancelled(){
+        return mCancelled;
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2;
+
+import android.text.Spannable;
+import android.text.Spanned;
+
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.square1.richtextlib.spans.Style;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.parser.MarkupTag;
+import io.square1.richtextlib.v2.parser.ParseLimits;
+import io.square1.richtextlib.v2.parser.handlers.DefaultHandler;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
+
+/**
+ * Parses a long document in chunks on an Executor, see RichTextEngine.parse(String, Executor).
+ *
+ * The document is split at the boundaries found by BlockBoundaryScanner and every chunk is
+ * parsed by its own RichTextV2. The text the chunks before it leave in the output isn't known
+ * yet when a chunk starts, so the chunk starts from a guess of the part of that text the tag
+ * handlers can see: its last blank characters and whether there is anything else before them
+ * (the seed). The chunks are then stitched in order on the calling thread replacing the seed
+ * with the actual text. Whenever the guess was wrong, or a chunk doesn't end where TagSoup
+ * returns to the body element, the chunk is parsed again continuing the actual output, the
+ * document is always the one RichTextV2 returns parsing the source in one go.
+ *
+ * The limits of the style are checked against the whole document: a chunk that reached one
+ * of them, or would have continuing the previous chunks, is parsed again continuing the
+ * actual output and the document ends with the chunk that ended it.
+ */
+final class ChunkedParser {
+
+    /**
+     * target of the processing instruction closing every chunk but the last one
+     */
+    static final String CHUNK_END = "richtext-chunk-end";
+
+    /**
+     * documents aren't split in chunks shorter than this
+     */
+    static final int MIN_CHUNK_LENGTH = 16 * 1024;
+
+    /**
+     * the tag handlers only compare the length of the output with small numbers
+     */
+    private static final int SEED_TEXT_LENGTH = 8;
+
+    private static final String CHUNK_END_INSTRUCTION = "<?" + CHUNK_END + "?>";
+
+    /**
+     * the input and the results of the parse of a chunk
+     */
+    static final class Chunk {
+
+        final int index;
+        final String source;
+        final MarkupContext markupContext;
+
+        /**
+         * the guess of the text left by the previous chunks, null if output is the actual text
+         */
+        final String seed;
+        final Object seedSpan = new Object();
+
+        RichTextDocumentElement output;
+        int splitCount;
+        int nestedListsCount;
+        int elementCount;
+        int textLength;
+        boolean truncated;
+
+        final int initialNestedListsCount;
+        final ArrayList<DocumentElement> elements = new ArrayList<>();
+
+        /**
+         * the output at the time of the first split, it contains the seed
+         */
+        RichTextDocumentElement head;
+        int headSplitCount;
+        int headIndex;
+
+        /**
+         * true if the chunk ended inside body with its initial context
+         */
+        boolean clean;
+        boolean failed;
+
+        /**
+         * true if the document ended in the chunk reaching a limit
+         */
+        boolean ended;
+
+        private Chunk(int index,
+                      String source,
+                      MarkupContext markupContext,
+                      String seed,
+                      RichTextDocumentElement output,
+                      int splitCount,
+                      int nestedListsCount){
+
+            this.index = index;
+            this.source = source;
+            this.markupContext = markupContext;
+            this.seed = seed;
+            this.output = output;
+            this.splitCount = splitCount;
+            this.nestedListsCount = nestedListsCount;
+            this.initialNestedListsCount = nestedListsCount;
+        }
+
+        /**
+         * the text before the first split contains the seed, it is completed once the
+         * actual text is known
+         * @return true if the text has to be kept as it is
+         */
+        boolean deferSplit(RichTextDocumentElement output, int splitCount, int elementIndex){
+
+            if(seed == null || head != null){
+                return false;
+            }
+
+            head = output;
+            headSplitCount = splitCount;
+            headIndex = elementIndex;
+            return true;
+        }
+
+        private int seedEnd(RichTextDocumentElement text){
+            return Math.max(text.getSpanEnd(seedSpan), 0);
+        }
+    }
+
+    private final RichTextEngine mEngine;
+    private final String mSource;
+    private final int mChunkLength;
+
+    private ArrayList<Integer> mStarts;
+    private String mPrefix;
+
+    private ArrayList<DocumentElement> mResult;
+    private RichTextDocumentElement mOutput;
+    private boolean mOutputClean;
+    private int mSplitCount;
+    private int mNestedListsCount;
+    private int mElementCount;
+    private int mTextLength;
+    private boolean mTruncated;
+
+    private final ParseLimits mLimits;
+    private long mDeadline;
+
+    private String mPreparedSource;
+
+    ChunkedParser(RichTextEngine engine, String source, int chunkLength){
+        mEngine = engine;
+        mSource = source;
+        mChunkLength = chunkLength;
+        mLimits = engine.getStyle().limits();
+    }
+
+    RichDocument parse(Executor executor){
+
+        MarkupContext markupContext = mEngine.newMarkupContext();
+        RichTextTracer tracer = markupContext.getTracer();
+        final boolean timed = tracer != RichTextTracer.NONE;
+        long start = timed ? System.nanoTime() : 0;
+        mDeadline = System.nanoTime() + mLimits.getTimeBudgetNanos();
+
+        BlockBoundaryScanner scanner = prepare(markupContext);
+        String source = mPreparedSource;
+
+        if(timed){
+            long now = System.nanoTime();
+            tracer.onPhase(RichTextTracer.Phase.PREPROCESS, now - start);
+            start = now;
+        }
+
+        final int count = mStarts.size() - 1;
+        ArrayList<FutureTask<Chunk>> tasks = new ArrayList<>(count);
+        tasks.add(null);
+
+        for(int index = 1; index < count; index ++){
+
+            Chunk chunk = new Chunk(index,
+                    chunkSource(source, index, index + 1, count),
+                    mEngine.newMarkupContext(),
+                    guessSeed(scanner.getBoundaryTag(index - 1),
+                            scanner.isBlankBeforeBoundary(index - 1)),
+                    null,
+                    0,
+                    0);
+
+            FutureTask<Chunk> task = newTask(chunk);
+            tasks.add(task);
+
+            try {
+                executor.execute(task);
+            }catch (RejectedExecutionException e){
+                // parsed on this thread when its turn comes
+            }
+        }
+
+        reset();
+
+        Chunk chunk = new Chunk(0,
+                chunkSource(source, 0, 1, count),
+                markupContext,
+                null,
+                mOutput,
+                0,
+                0);
+        parseChunk(chunk);
+
+        for(int index = 0; index < count; index ++){
+
+            if(index > 0){
+                chunk = await(tasks.get(index));
+            }
+
+            if(chunk != null && chunk.seed == null && chunk.failed == false && chunk.ended == true){
+                cancel(tasks, index + 1);
+                continueWith(chunk);
+                break;
+            }
+
+            if(chunk == null ||
+                    chunk.failed == true ||
+                    (index + 1 < count && chunk.clean == false)){
+
+                cancel(tasks, index + 1);
+
+                if(index == 0){
+                    return parseInOneGo(source, count);
+                }
+
+                chunk = parseExactly(source, index, count, count);
+
+                if(chunk.failed == true){
+                    return parseInOneGo(source, count);
+                }
+
+                continueWith(chunk);
+                break;
+            }
+
+            if(chunk.seed == null){
+                continueWith(chunk);
+            }
+            else if(withinLimits(chunk) == true && seedMatches(chunk) == true){
+                stitch(chunk);
+            }
+            else {
+                chunk = parseExactly(source, index, index + 1, count);
+
+                if(chunk.failed == false && chunk.ended == true){
+                    cancel(tasks, index + 1);
+                    continueWith(chunk);
+                    break;
+                }
+
+                if(chunk.failed == true || (index + 1 < count && chunk.clean == false)){
+                    cancel(tasks, index + 1);
+                    return parseInOneGo(source, count);
+                }
+
+                continueWith(chunk);
+            }
+        }
+
+        if(timed){
+            long now = System.nanoTime();
+            tracer.onPhase(RichTextTracer.Phase.PARSE, now - start);
+            start = now;
+        }
+
+        RichDocument document = finish();
+
+        if(timed){
+            tracer.onPhase(RichTextTracer.Phase.FINISH, System.nanoTime() - start);
+        }
+
+        return document;
+    }
+
+    /**
+     * rewrites the shortcodes into mPreparedSource and finds the chunks of the document
+     */
+    private BlockBoundaryScanner prepare(MarkupContext markupContext){
+
+        String source = mSource;
+        if(mEngine.getStyle().parseWordPressTags() == true){
+            source = markupContext.getShortcodeRegistry().rewrite(source);
+        }
+
+        BlockBoundaryScanner scanner = new BlockBoundaryScanner(source);
+        if(parsesDocumentTags(markupContext) == true){
+            scanner.scan(mChunkLength);
+        }
+
+        mStarts = new ArrayList<>();
+        mStarts.add(0);
+        for(int index = 0; index < scanner.getBoundaryCount(); index ++){
+            mStarts.add(scanner.getBoundary(index));
+        }
+        mStarts.add(source.length());
+        mPrefix = scanner.getPrefix();
+        mPreparedSource = source;
+
+        return scanner;
+    }
+
+    private void reset(){
+        mResult = new ArrayList<>();
+        mOutput = new RichTextDocumentElement();
+        mSplitCount = 0;
+        mNestedListsCount = 0;
+        mElementCount = 0;
+        mTextLength = 0;
+        mTruncated = false;
+    }
+
+    private RichDocument finish(){
+
+        if(RichTextV2.completeRemainder(mOutput) == true){
+            mResult.add(mOutput);
+        }
+        mOutput.setTracer(null);
+
+        return new RichDocument("", mResult, mTruncated);
+    }
+
+    /**
+     * the chunks are parsed with their own html and body elements, this works as long as
+     * those elements don't do anything
+     */
+    private static boolean parsesDocumentTags(MarkupContext markupContext){
+
+        AttributesImpl attributes = new AttributesImpl();
+
+        return markupContext.getTagHandler(new MarkupTag("html", attributes)) instanceof DefaultHandler &&
+                markupContext.getTagHandler(new MarkupTag("body", attributes)) instanceof DefaultHandler;
+    }
+
+    private String chunkSource(String source, int from, int to, int count){
+
+        StringBuilder builder = new StringBuilder();
+
+        if(from > 0){
+            builder.append(mPrefix);
+        }
+
+        builder.append(source, mStarts.get(from), mStarts.get(to));
+
+        if(to < count){
+            builder.append(CHUNK_END_INSTRUCTION);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * what the output most likely ends with after the given block is closed
+     * @param blank true if the text of the block ends with a blank
+     */
+    private static String guessSeed(String tag, boolean blank){
+
+        StringBuilder seed = new StringBuilder();
+
+        for(int index = 0; index < SEED_TEXT_LENGTH; index ++){
+            seed.append('x');
+        }
+
+        if(blank == true){
+            seed.append(' ');
+        }
+
+        seed.append('\n');
+
+        if(tag.length() == 2 && tag.charAt(0) == 'h' || "blockquote".equals(tag)){
+            seed.append('\n');
+        }
+
+        return seed.toString();
+    }
+
+    /**
+     * @return the part of output the tag handlers can see: its last blank characters
+     * and a placeholder for at most SEED_TEXT_LENGTH characters before them
+     */
+    static String seedOf(RichTextDocumentElement output){
+
+        int length = output.length();
+        int text = length;
+
+        while (text > 0 && output.charAt(text - 1) <= ' '){
+            text --;
+        }
+
+        StringBuilder seed = new StringBuilder();
+        for(int index = Math.min(text, SEED_TEXT_LENGTH); index > 0; index --){
+            seed.append('x');
+        }
+        seed.append(output, text, length);
+
+        return seed.toString();
+    }
+
+    private FutureTask<Chunk> newTask(final Chunk chunk){
+
+        return new FutureTask<>(new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws Exception {
+                parseChunk(chunk);
+                return chunk;
+            }
+        });
+    }
+
+    private void parseChunk(Chunk chunk){
+
+        if(chunk.output == null){
+            // the span tells how much of the seed the chunk deletes
+            chunk.output = new RichTextDocumentElement(chunk.seed);
+            if(chunk.seed.length() > 0) {
+                chunk.output.setSpan(chunk.seedSpan, 0, chunk.seed.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+
+        RichTextEngine.Worker worker = mEngine.obtainWorker();
+
+        if(worker == null){
+            chunk.failed = true;
+            return;
+        }
+
+        worker.mRichText.parseChunk(worker.mReader, chunk, mEngine.getStyle(), mDeadline);
+    }
+
+    /**
+     * waits for task, running it on this thread if no thread of the executor has started it yet
+     * @return the parsed chunk or null if it couldn't be parsed
+     */
+    private static Chunk await(FutureTask<Chunk> task){
+
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the chunk is parsed again on this thread
+        }
+
+        return null;
+    }
+
+    private static void cancel(ArrayList<FutureTask<Chunk>> tasks, int from){
+        for(int index = from; index < tasks.size(); index ++){
+            tasks.get(index).cancel(false);
+        }
+    }
+
+    /**
+     * parses the chunks between from and to as one, continuing the current output
+     */
+    private Chunk parseExactly(String source, int from, int to, int count){
+
+        Chunk chunk = new Chunk(from,
+                chunkSource(source, from, to, count),
+                mEngine.newMarkupContext(),
+                null,
+                mOutput,
+                mSplitCount,
+                mNestedListsCount);
+
+        chunk.elementCount = mElementCount;
+        chunk.textLength = mTextLength;
+        chunk.truncated = mTruncated;
+
+        parseChunk(chunk);
+        return chunk;
+    }
+
+    private RichDocument parseInOneGo(String source, int count){
+
+        reset();
+
+        Chunk chunk = parseExactly(source, 0, count, count);
+
+        if(chunk.failed == true){
+            return RichDocument.EMPTY;
+        }
+
+        continueWith(chunk);
+        return finish();
+    }
+
+    /**
+     * takes the results of a chunk parsed continuing the current output
+     */
+    private void continueWith(Chunk chunk){
+        takeResults(chunk);
+        mOutputClean = isContinuable(mOutput, 0);
+    }
+
+    private void takeResults(Chunk chunk){
+        mResult.addAll(chunk.elements);
+        mOutput = chunk.output;
+        mSplitCount = chunk.splitCount;
+        mNestedListsCount = chunk.nestedListsCount;
+        mElementCount = chunk.elementCount;
+        mTextLength = chunk.textLength;
+        mTruncated = chunk.truncated;
+    }
+
+    /**
+     * @return true if the chunk didn't reach any limit and wouldn't have continuing the
+     * current output
+     */
+    private boolean withinLimits(Chunk chunk){
+        return chunk.truncated == false &&
+                chunk.elementCount <= mLimits.getMaxElements() - mElementCount &&
+                chunk.textLength <= mLimits.getMaxTextLength() - mTextLength &&
+                chunk.splitCount <= mLimits.getMaxEmbeds() - mSplitCount;
+    }
+
+    /**
+     * @return true if the chunk started from what the handlers would have seen in the current
+     * output and only the blank characters at the end of the seed have been deleted
+     */
+    private boolean seedMatches(Chunk chunk){
+
+        if(mOutputClean == false ||
+                chunk.initialNestedListsCount != mNestedListsCount ||
+                chunk.seed.equals(seedOf(mOutput)) == false){
+            return false;
+        }
+
+        RichTextDocumentElement text = chunk.head != null ? chunk.head : chunk.output;
+        int seedEnd = chunk.seedEnd(text);
+        int blanks = 0;
+
+        while (blanks < chunk.seed.length() &&
+                chunk.seed.charAt(chunk.seed.length() - blanks - 1) <= ' '){
+            blanks ++;
+        }
+
+        if(chunk.seed.length() - seedEnd > blanks ||
+                chunk.seed.regionMatches(0, text.subSequence(0, seedEnd).toString(), 0, seedEnd) == false){
+            return false;
+        }
+
+        // nothing the chunk added can start inside the seed
+        for(Object span : text.getSpans(0, seedEnd, Object.class)){
+            if(span != chunk.seedSpan && text.getSpanStart(span) < seedEnd){
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * replaces the seed with the current output and takes the results of the chunk
+     */
+    private void stitch(Chunk chunk){
+
+        RichTextDocumentElement text = chunk.head != null ? chunk.head : chunk.output;
+        int seedEnd = chunk.seedEnd(text);
+        text.removeSpan(chunk.seedSpan);
+
+        mOutput.trim(chunk.seed.length() - seedEnd);
+        int stitchedAt = mOutput.length();
+        mOutput.append(text.subSequence(seedEnd, text.length()));
+        mOutputClean = isContinuable(mOutput, stitchedAt);
+
+        if(chunk.head != null){
+
+            mResult.addAll(chunk.elements.subList(0, chunk.headIndex));
+
+            if(RichTextV2.completeSplitOutput(mOutput, mSplitCount + chunk.headSplitCount) == true){
+                mOutput.setTracer(null);
+                mResult.add(mOutput);
+            }
+
+            mResult.addAll(chunk.elements.subList(chunk.headIndex, chunk.elements.size()));
+            mOutput = chunk.output;
+            mOutputClean = isContinuable(mOutput, 0);
+        }
+        else {
+            mResult.addAll(chunk.elements);
+        }
+
+        mSplitCount += chunk.splitCount;
+        mNestedListsCount = chunk.nestedListsCount;
+        mElementCount += chunk.elementCount;
+        mTextLength += chunk.textLength;
+    }
+
+    /**
+     * a chunk can continue output only if there are no open markers the handlers could look
+     * for and no spans growing with the text appended after them. The markers are kept by
+     * the output, see RichTextDocumentElement.addMarker, they aren't among its spans.
+     * @param from spans before from have already been checked
+     */
+    private static boolean isContinuable(RichTextDocumentElement output, int from){
+
+        if(output.hasOpenMarkers() == true){
+            return false;
+        }
+
+        int length = output.length();
+
+        for(Object span : output.getSpans(from, length, Object.class)){
+
+            int start = output.getSpanStart(span);
+            int end = output.getSpanEnd(span);
+            int flags = output.getSpanFlags(span) & Spanned.SPAN_POINT_MARK_MASK;
+
+            if(start == end){
+                return false;
+            }
+
+            if(end == length &&
+                    flags != Spanned.SPAN_EXCLUSIVE_EXCLUSIVE &&
+                    flags != Spanned.SPAN_INCLUSIVE_EXCLUSIVE){
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
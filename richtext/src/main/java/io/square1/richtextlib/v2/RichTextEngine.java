@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import io.square1.richtextlib.spans.Style;
+import io.square1.richtextlib.util.HtmlCharsetDetector;
+import io.square1.richtextlib.v2.cache.RichDocumentCache;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
+
+/**
+ * Reusable entry point to the parser.
+ *
+ * RichTextV2.fromHtml builds a new TagSoup reader, content handler and default Style
+ * for every document. An engine builds the Style once and keeps one reader and one
+ * parser state per thread, so the same engine can be shared between threads and used
+ * to parse any number of documents. The documents returned are the same
+ * RichTextV2.fromHtml would return for the same source, Style and MarkupContext.
+ */
+public class RichTextEngine {
+
+    public interface Callback {
+        void onDocumentParsed(String source, RichDocument document);
+    }
+
+    /**
+     * MarkupContext instances hold per document state, the engine asks for a new one
+     * for every document it parses.
+     */
+    public interface MarkupContextFactory {
+        MarkupContext newMarkupContext();
+    }
+
+    private static final MarkupContextFactory DEFAULT_FACTORY = new MarkupContextFactory() {
+        @Override
+        public MarkupContext newMarkupContext() {
+            return new MarkupContext();
+        }
+    };
+
+    static class Worker {
+
+        final XMLReader mReader;
+        final RichTextV2 mRichText;
+
+        private Worker(XMLReader reader){
+            mReader = reader;
+            mRichText = new RichTextV2();
+        }
+    }
+
+    private final Style mStyle;
+    private final MarkupContextFactory mMarkupContextFactory;
+
+    private final ThreadLocal<Worker> mWorkers = new ThreadLocal<>();
+
+    private volatile RichTextTracer mTracer;
+    private volatile RichDocumentCache mCache;
+
+    public RichTextEngine(Context context){
+        this(context, null, null);
+    }
+
+    public RichTextEngine(Context context, Style style){
+        this(context, style, null);
+    }
+
+    public RichTextEngine(Context context,
+                          Style style,
+                          MarkupContextFactory markupContextFactory){
+
+        mStyle = style != null ? style : new RichTextV2.DefaultStyle(context);
+        mMarkupContextFactory = markupContextFactory != null ?
+                markupContextFactory : DEFAULT_FACTORY;
+    }
+
+    public Style getStyle(){
+        return mStyle;
+    }
+
+    /**
+     * @param tracer receives the parse events of every document parsed from now on,
+     *               it is invoked on the parsing threads. null disables tracing.
+     */
+    public void setTracer(RichTextTracer tracer){
+        mTracer = tracer;
+    }
+
+    /**
+     * @param cache looked up before the documents parsed from a String are parsed again,
+     *              null to parse them every time. A document found in the cache doesn't
+     *              produce any tracer event.
+     */
+    public void setCache(RichDocumentCache cache){
+        mCache = cache;
+    }
+
+    public RichDocumentCache getCache(){
+        return mCache;
+    }
+
+    /**
+     * parses source on the calling thread
+     * @param source the html to parse
+     * @return the parsed document or RichDocument.EMPTY if the source couldn't be parsed
+     */
+    public RichDocument parse(String source){
+        return parse(source, (CancellationToken) null);
+    }
+
+    /**
+     * same as parse(String), the parse stops as soon as cancellation is cancelled
+     * @return the parsed document or RichDocument.EMPTY if the parse has been cancelled
+     */
+    public RichDocument parse(String source, CancellationToken cancellation){
+
+        MarkupContext markupContext = newMarkupContext();
+        RichDocumentCache cache = mCache;
+
+        if(cache == null){
+            return parse(source, markupContext, cancellation);
+        }
+
+        long key = RichDocumentCache.key(source, mStyle, markupContext);
+        RichDocument document = cache.get(key, source);
+
+        if(document == null){
+            document = parse(source, markupContext, cancellation);
+            if(document != RichDocument.EMPTY){
+                cache.put(key, source, document);
+            }
+        }
+
+        return document;
+    }
+
+    private RichDocument parse(String source,
+                               MarkupContext markupContext,
+                               CancellationToken cancellation){
+
+        Worker worker = obtainWorker();
+
+        if(worker == null){
+            return RichDocument.EMPTY;
+        }
+
+        return worker.mRichText.parse(worker.mReader,
+                new StringReader(source),
+                markupContext,
+                mStyle,
+                null,
+                cancellation);
+    }
+
+    /**
+     * parses source on the calling thread as it is read
+     * @param listener notified of every element as soon as it is complete, can be null
+     * @return the whole document once source has been read completely
+     */
+    public RichDocument parse(Reader source, RichTextV2.OnElementParsedListener listener){
+        return parse(source, listener, null);
+    }
+
+    /**
+     * same as parse(Reader, OnElementParsedListener), the parse stops as soon as cancellation
+     * is cancelled and no more elements are delivered to listener
+     * @return the whole document or RichDocument.EMPTY if the parse has been cancelled
+     */
+    public RichDocument parse(Reader source,
+                              RichTextV2.OnElementParsedListener listener,
+                              CancellationToken cancellation){
+
+        Worker worker = obtainWorker();
+
+        if(worker == null){
+            return RichDocument.EMPTY;
+        }
+
+        return worker.mRichText.parse(worker.mReader,
+                source,
+                newMarkupContext(),
+                mStyle,
+                listener,
+                cancellation);
+    }
+
+    /**
+     * same as parse(Reader, OnElementParsedListener), the charset is taken from the byte
+     * order mark or from the meta tags and defaults to UTF-8
+     */
+    public RichDocument parse(InputStream source, RichTextV2.OnElementParsedListener listener){
+        try {
+            return parse(HtmlCharsetDetector.newReader(source), listener);
+        } catch (IOException e) {
+            Log.e(RichTextV2.TAG, "unable to read source", e);
+        }
+        return RichDocument.EMPTY;
+    }
+
+    /**
+     * same as parse(InputStream, OnElementParsedListener) reading the bytes between
+     * the buffer position and its limit
+     */
+    public RichDocument parse(ByteBuffer source, RichTextV2.OnElementParsedListener listener){
+        try {
+            return parse(HtmlCharsetDetector.newReader(source), listener);
+        } catch (IOException e) {
+            Log.e(RichTextV2.TAG, "unable to read source", e);
+        }
+        return RichDocument.EMPTY;
+    }
+
+    /**
+     * parses a long document splitting it at its top level blocks, the parts are parsed
+     * concurrently on executor and put together on the calling thread. The document returned
+     * is the same parse(String) returns, documents without top level blocks or shorter than
+     * a few tens of KB are parsed on the calling thread only.
+     * @param executor runs the parts of the document, an executor with a thread per core
+     *                 gives the lowest latency
+     */
+    public RichDocument parse(String source, Executor executor){
+
+        RichDocumentCache cache = mCache;
+
+        if(cache == null){
+            return new ChunkedParser(this, source, chunkLength(source)).parse(executor);
+        }
+
+        long key = RichDocumentCache.key(source, mStyle, newMarkupContext());
+        RichDocument document = cache.get(key, source);
+
+        if(document == null){
+            document = new ChunkedParser(this, source, chunkLength(source)).parse(executor);
+            if(document != RichDocument.EMPTY){
+                cache.put(key, source, document);
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * prepares the parse of source a slice at a time, nothing is parsed until the first
+     * SlicedParse.step
+     * @param cancellation stops the parse when cancelled, null if it is only cancelled
+     *                     through SlicedParse.cancel
+     */
+    public SlicedParse newSlicedParse(String source, CancellationToken cancellation){
+        return new SlicedParse(this, source,
+                cancellation != null ? cancellation : new CancellationToken());
+    }
+
+    /**
+     * parses source on the given executor, callback is invoked on the executor thread
+     */
+    public void parseAsync(final String source,
+                           Executor executor,
+                           final Callback callback){
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                RichDocument document = parse(source);
+                if(callback != null) {
+                    callback.onDocumentParsed(source, document);
+                }
+            }
+        });
+    }
+
+    /**
+     * parses all the sources on the calling thread reusing the same reader and parser state
+     * @return the parsed documents in the same order of sources
+     */
+    public List<RichDocument> parseAll(List<String> sources){
+
+        ArrayList<RichDocument> documents = new ArrayList<>(sources.size());
+
+        for(String source : sources){
+            documents.add(parse(source));
+        }
+
+        return documents;
+    }
+
+    /**
+     * a few chunks per core keep all the cores busy when the chunks take different times
+     */
+    private static int chunkLength(String source){
+        int chunks = Runtime.getRuntime().availableProcessors() * 4;
+        return Math.max(ChunkedParser.MIN_CHUNK_LENGTH, source.length() / chunks);
+    }
+
+    MarkupContext newMarkupContext(){
+
+        MarkupContext markupContext = mMarkupContextFactory.newMarkupContext();
+        RichTextTracer tracer = mTracer;
+        if(tracer != null){
+            markupContext.setTracer(tracer);
+        }
+
+        return markupContext;
+    }
+
+    Worker obtainWorker(){
+
+        Worker worker = mWorkers.get();
+
+        if(worker == null) {
+            try {
+                worker = new Worker(RichTextV2.newReader());
+                mWorkers.set(worker);
+            } catch (Exception e) {
+                Log.e(RichTextV2.TAG, "unable to create reader", e);
+            }
+        }
+
+        return worker;
+    }
+
+    /**
+     * drops the parser state of the calling thread, after a parse it failed in
+     */
+    void discardWorker(){
+        mWorkers.remove();
+    }
+}
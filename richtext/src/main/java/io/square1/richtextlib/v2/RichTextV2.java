@@ -28,33 +28,47 @@ import android.graphics.Color;
 import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.util.Log;
-import android.util.Patterns;
 
 
+import org.ccil.cowan.tagsoup.HTMLScanner;
 import org.ccil.cowan.tagsoup.HTMLSchema;
 import org.ccil.cowan.tagsoup.Parser;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.XMLReader;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
 
 
 import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.util.HtmlCharsetDetector;
+import io.square1.richtextlib.v2.cache.RichDocumentCache;
 import io.square1.richtextlib.v2.content.WebDocumentElement;
 import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 import io.square1.richtextlib.v2.content.DocumentElement;
 import io.square1.richtextlib.v2.content.OembedDocumentElement;
 import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.embed.EmbedClassifier;
+import io.square1.richtextlib.v2.embed.EmbedMatch;
+import io.square1.richtextlib.v2.linkify.Linkifier;
 import io.square1.richtextlib.v2.parser.InternalContentHandler;
 import io.square1.richtextlib.v2.parser.MarkupContext;
 import io.square1.richtextlib.v2.parser.MarkupTag;
+import io.square1.richtextlib.v2.parser.ParseLimits;
 import io.square1.richtextlib.spans.*;
 import io.square1.richtextlib.v2.parser.TagHandler;
+import io.square1.richtextlib.v2.shortcode.ShortcodeReader;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
 import io.square1.richtextlib.v2.utils.SpannedBuilderUtils;
 
 /**
@@ -111,7 +125,8 @@ public class RichTextV2 {
 
         @Override
         public float headerIncrease(int headerLevel) {
-            return HEADER_SIZES[headerLevel];
+            // levels go from 1 to 6, see Style.headerIncrease
+            return HEADER_SIZES[headerLevel - 1];
         }
 
         @Override
@@ -143,6 +158,35 @@ public class RichTextV2 {
         public boolean extractEmbeds(){
             return true;
         }
+
+        @Override
+        public Linkifier linkifier(){
+            return Linkifier.WEB_URL;
+        }
+
+        /**
+         * @return ParseLimits.NONE, documents are parsed whole as they always were.
+         * Override it returning ParseLimits.DEFAULT to bound what a parse spends
+         */
+        @Override
+        public ParseLimits limits(){
+            return ParseLimits.NONE;
+        }
+    }
+
+
+    /**
+     * receives the elements of a document while it is parsed
+     */
+    public interface OnElementParsedListener {
+
+        /**
+         * invoked on the parsing thread as soon as element is complete, elements are
+         * delivered in document order.
+         * @param element the completed element
+         * @param index the position of element in the document
+         */
+        void onElementParsed(DocumentElement element, int index);
     }
 
 
@@ -150,26 +194,73 @@ public class RichTextV2 {
         private static final HTMLSchema schema = new HTMLSchema();
     }
 
+    /**
+     * unwinds TagSoup once the document has been ended reaching a limit
+     */
+    private static final class LimitReachedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static volatile RichDocumentCache sDocumentCache;
+
+    /**
+     * @param cache looked up by the fromHtml methods parsing a String before the source is
+     *              parsed again, null to parse it every time. Documents are cached by the class
+     *              of the MarkupContext, not by what was registered on it. RichTextEngine
+     *              has its own, see RichTextEngine.setCache
+     */
+    public static void setDocumentCache(RichDocumentCache cache){
+        sDocumentCache = cache;
+    }
+
+    public static RichDocumentCache getDocumentCache(){
+        return sDocumentCache;
+    }
+
 
 
     private ArrayList<DocumentElement> mResult = new ArrayList<>();
     private Stack<MarkupTag> mStack = new Stack<>();
-    private ArrayList<MarkupTag> mHistory = new ArrayList<>();
     private Stack<MarkupContext> mMarkupContextStack = new Stack<>();
+    /**
+     * the open tags by the types of their handler, the last one of a type is the
+     * closest to the top of mStack. see getParent
+     */
+    private HashMap<Class<?>,ArrayList<MarkupTag>> mOpenTagsByType = new HashMap<>();
+    /**
+     * the handler types of the tags in mStack, null for tags without a handler
+     */
+    private Stack<Class<?>[]> mOpenTagTypes = new Stack<>();
+    /**
+     * handler class -> the class, its superclasses and all the interfaces they implement
+     */
+    private HashMap<Class<?>,Class<?>[]> mHandlerTypes = new HashMap<>();
     private RichTextDocumentElement mOutput;
     private MarkupContext mCurrentContext;
+    private final InternalContentHandler mContentHandler;
+    private RichTextTracer mTracer = RichTextTracer.NONE;
+    private OnElementParsedListener mListener;
+    private ChunkedParser.Chunk mChunk;
+    private SlicedParse.Slices mSlices;
+    private final int[] mLinkRange = new int[2];
 
 
     private int mOembedCount;
+    private int mNestedListsCount;
 
+    /**
+     * state of the checks of the limits of the style, see ParseLimits
+     */
+    private ParseLimits mLimits = ParseLimits.NONE;
+    private long mDeadline;
+    private int mElementCount;
+    private int mTextLength;
+    private int mSkippedDepth;
+    private boolean mTruncated;
 
-    private RichTextV2(Context context) {
-        init();
-        setupContext(new MarkupContext());
-    }
-    private RichTextV2(MarkupContext markupContext) {
-        init();
-        setupContext(markupContext);
+
+    RichTextV2() {
+        mContentHandler = new InternalContentHandler(this);
     }
 
     private void setupContext(MarkupContext markupContext){
@@ -180,10 +271,69 @@ public class RichTextV2 {
 
     private void init(){
         mOembedCount = 0;
-        mOutput = new RichTextDocumentElement();
+        mNestedListsCount = 0;
+        mElementCount = 0;
+        mTextLength = 0;
+        mTruncated = false;
+        mOutput = newOutput();
         mResult = new ArrayList<>();
     }
 
+    private RichTextDocumentElement newOutput(){
+        RichTextDocumentElement output = new RichTextDocumentElement();
+        if(mTracer != RichTextTracer.NONE){
+            output.setTracer(mTracer);
+        }
+        return output;
+    }
+
+    /**
+     * drops every reference to the last parsed document so that an instance
+     * kept around for reuse doesn't hold on to it
+     */
+    private void release(){
+        mListener = null;
+        mContentHandler.setCancellationToken(null);
+        if(mOutput != null){
+            mOutput.setTracer(null);
+        }
+        mTracer = RichTextTracer.NONE;
+        mResult = null;
+        mOutput = null;
+        mStack.clear();
+        mMarkupContextStack.clear();
+        mOpenTagsByType.clear();
+        mOpenTagTypes.clear();
+        mSkippedDepth = 0;
+        mLimits = ParseLimits.NONE;
+        if(mCurrentContext != null){
+            mCurrentContext.setRichText(null);
+            mCurrentContext = null;
+        }
+    }
+
+    static XMLReader newReader() throws SAXNotRecognizedException, SAXNotSupportedException {
+        XMLReader reader = new Parser();
+        reader.setProperty(Parser.schemaProperty, HtmlParser.schema);
+        return reader;
+    }
+
+
+    /**
+     * TagSoup keeps the state of the tag it was scanning when a handler unwinds it, the next
+     * document parsed with reader would start with that tag as text
+     */
+    private static void resetScanner(XMLReader reader){
+        try {
+            reader.setProperty(Parser.scannerProperty, new HTMLScanner());
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            Log.e(TAG, "unable to reset the scanner", e);
+        }
+    }
+
+    public RichTextTracer getTracer(){
+        return mTracer;
+    }
 
     public Style getCurrentStyle(){
         return mCurrentContext.getStyle();
@@ -243,12 +393,62 @@ public class RichTextV2 {
 
     }
 
-    final static String SOUND_CLOUD = "\\[soundcloud (.*?)/?\\]";
-    final static String SOUND_CLOUD_REPLACEMENT = "<soundcloud $1 />";
+    /**
+     * parses the html read from source, elements are delivered to listener while source is
+     * still being read so that the first ones can be displayed before the rest arrives.
+     * @param markupContext the context to use or null for the default one
+     * @param style the style to use or null for the default one
+     * @param listener notified of every completed element, can be null
+     * @return the whole document once source has been read completely
+     */
+    public static RichDocument fromHtml(Context context,
+                                        Reader source,
+                                        MarkupContext markupContext,
+                                        Style style,
+                                        OnElementParsedListener listener) {
+
+        return fromHtmlImpl(context, source, markupContext, style, listener);
+    }
 
-    final static String INTERACTION = "\\[interaction (.*?)/?\\]";
-    final static String INTERACTION_REPLACEMENT = "";
+    /**
+     * same as fromHtml(Context, Reader, MarkupContext, Style, OnElementParsedListener), the
+     * charset is taken from the byte order mark or from the meta tags and defaults to UTF-8
+     */
+    public static RichDocument fromHtml(Context context,
+                                        InputStream source,
+                                        MarkupContext markupContext,
+                                        Style style,
+                                        OnElementParsedListener listener) {
+        try {
+            return fromHtmlImpl(context, HtmlCharsetDetector.newReader(source),
+                    markupContext, style, listener);
+        }catch (IOException e){
+            Log.e("HTML", "error");
+            e.printStackTrace();
+        }
 
+        return RichDocument.EMPTY;
+    }
+
+    /**
+     * same as fromHtml(Context, InputStream, MarkupContext, Style, OnElementParsedListener),
+     * the bytes between the buffer position and its limit are parsed, the buffer isn't modified
+     */
+    public static RichDocument fromHtml(Context context,
+                                        ByteBuffer source,
+                                        MarkupContext markupContext,
+                                        Style style,
+                                        OnElementParsedListener listener) {
+        try {
+            return fromHtmlImpl(context, HtmlCharsetDetector.newReader(source),
+                    markupContext, style, listener);
+        }catch (IOException e){
+            Log.e("HTML", "error");
+            e.printStackTrace();
+        }
+
+        return RichDocument.EMPTY;
+    }
 
     private static RichDocument fromHtmlImpl(Context context,
                                                          String source,
@@ -260,49 +460,296 @@ public class RichTextV2 {
             style = new DefaultStyle(context);
         }
 
+        if(markupContext == null){
+            markupContext = new MarkupContext();
+        }
+
+        RichDocumentCache cache = sDocumentCache;
+        long key = 0;
+
+        if(cache != null){
+            key = RichDocumentCache.key(source, style, markupContext);
+            RichDocument document = cache.get(key, source);
+            if(document != null){
+                return document;
+            }
+        }
+
+        try {
+
+            RichDocument document = new RichTextV2().parse(newReader(), source, markupContext, style);
+            if(cache != null && document != RichDocument.EMPTY){
+                cache.put(key, source, document);
+            }
+            return document;
+
+        } catch (Exception e) {
+            Log.e("HTML", "error");
+            e.printStackTrace();
+        }
+
+        return RichDocument.EMPTY;
+    }
+
+    private static RichDocument fromHtmlImpl(Context context,
+                                             Reader source,
+                                             MarkupContext markupContext,
+                                             Style style,
+                                             OnElementParsedListener listener)  {
+
+        if(style == null){
+            style = new DefaultStyle(context);
+        }
+
+        if(markupContext == null){
+            markupContext = new MarkupContext();
+        }
 
         try {
 
-            XMLReader reader = new Parser();
-            reader.setProperty(Parser.schemaProperty, HtmlParser.schema);
+            return new RichTextV2().parse(newReader(), source, markupContext, style, listener, null);
 
-            if(style.parseWordPressTags() == true) {
+        } catch (Exception e) {
+            Log.e("HTML", "error");
+            e.printStackTrace();
+        }
 
+        return RichDocument.EMPTY;
+    }
 
-                source = source.replaceAll(SOUND_CLOUD,
-                        SOUND_CLOUD_REPLACEMENT);
+    /**
+     * parses source using the given reader, the instance and the reader can be
+     * reused for other documents once this returns but not concurrently.
+     */
+    RichDocument parse(XMLReader reader,
+                       String source,
+                       MarkupContext markupContext,
+                       Style style){
 
-                source = source.replaceAll(INTERACTION,
-                        INTERACTION_REPLACEMENT);
+        return parse(reader, new StringReader(source), markupContext, style, null, null);
+    }
 
-            }
+    /**
+     * parses source as it is read, WordPress shortcodes are rewritten on the fly.
+     * @param listener notified every time an element of the document is complete
+     * @param cancellation stops the parse when cancelled, can be null
+     */
+    RichDocument parse(XMLReader reader,
+                       Reader source,
+                       MarkupContext markupContext,
+                       Style style,
+                       OnElementParsedListener listener,
+                       CancellationToken cancellation){
+
+        RichTextTracer tracer = markupContext.getTracer();
+        long start = tracer != RichTextTracer.NONE ? System.nanoTime() : 0;
+
+        if(style.parseWordPressTags() == true) {
+            source = new ShortcodeReader(source, markupContext.getShortcodeRegistry());
+        }
 
+        if(tracer != RichTextTracer.NONE){
+            tracer.onPhase(RichTextTracer.Phase.PREPROCESS, System.nanoTime() - start);
+        }
 
+        return parseImpl(reader, source, markupContext, style, listener, cancellation);
+    }
 
-            RichTextV2 richText = markupContext == null ?
-                    new RichTextV2(context) :
-                    new RichTextV2(markupContext);
+    private RichDocument parseImpl(XMLReader reader,
+                                   Reader source,
+                                   MarkupContext markupContext,
+                                   Style style,
+                                   OnElementParsedListener listener,
+                                   CancellationToken cancellation){
+
+        mTracer = markupContext.getTracer();
+        mTracer.onParseStarted();
+        mListener = listener;
+        mContentHandler.setCancellationToken(cancellation);
+        final boolean timed = mTracer != RichTextTracer.NONE;
+
+        try {
 
+            long start = timed ? System.nanoTime() : 0;
 
-            richText.mCurrentContext.setStyle(style);
+            init();
+            setupLimits(style.limits(), System.nanoTime() + style.limits().getTimeBudgetNanos());
+            setupContext(markupContext);
+            mCurrentContext.setStyle(style);
 
-            reader.setContentHandler(new InternalContentHandler(richText));
-            reader.parse(new InputSource(new StringReader(source)));
-            richText.appendRemainder();
-            RichDocument out = new RichDocument("",richText.mResult);
-            return out;
+            reader.setContentHandler(mContentHandler);
 
+            try {
+                reader.parse(new InputSource(source));
+            } catch (LimitReachedException e) {
+                // the open tags have been closed, the document ends here
+                resetScanner(reader);
+            }
+
+            if(timed){
+                long now = System.nanoTime();
+                mTracer.onPhase(RichTextTracer.Phase.PARSE, now - start);
+                start = now;
+            }
+
+            appendRemainder();
+
+            if(timed){
+                mTracer.onPhase(RichTextTracer.Phase.FINISH, System.nanoTime() - start);
+            }
+
+            return new RichDocument("", mResult, mTruncated);
+
+        } catch (CancellationException e) {
+            // what has been parsed so far is dropped
+            resetScanner(reader);
         } catch (Exception e) {
             Log.e("HTML", "error");
             e.printStackTrace();
+        } finally {
+            release();
         }
 
         return RichDocument.EMPTY;
     }
 
+    /**
+     * parses one of the chunks ChunkedParser splits a document in, the state left by the
+     * chunks before it is taken from chunk and the state at the end of the chunk stored back.
+     * @param deadline the System.nanoTime the parse ends at when the limits have a time budget
+     */
+    void parseChunk(XMLReader reader,
+                    ChunkedParser.Chunk chunk,
+                    Style style,
+                    long deadline){
+
+        mTracer = chunk.markupContext.getTracer();
+        mTracer.onParseStarted();
+        mChunk = chunk;
+
+        try {
+
+            mOembedCount = chunk.splitCount;
+            mNestedListsCount = chunk.nestedListsCount;
+            mElementCount = chunk.elementCount;
+            mTextLength = chunk.textLength;
+            mTruncated = chunk.truncated;
+            setupLimits(style.limits(), deadline);
+            mResult = chunk.elements;
+            mOutput = chunk.output;
+            if(mTracer != RichTextTracer.NONE){
+                mOutput.setTracer(mTracer);
+            }
+
+            setupContext(chunk.markupContext);
+            mCurrentContext.setStyle(style);
+
+            reader.setContentHandler(mContentHandler);
+
+            try {
+                reader.parse(new InputSource(new StringReader(chunk.source)));
+            } catch (LimitReachedException e) {
+                chunk.ended = true;
+                resetScanner(reader);
+            }
+
+            chunk.output = mOutput;
+            chunk.splitCount = mOembedCount;
+            chunk.nestedListsCount = mNestedListsCount;
+            chunk.elementCount = mElementCount;
+            chunk.textLength = mTextLength;
+            chunk.truncated = mTruncated;
+
+        } catch (Exception e) {
+            chunk.failed = true;
+            Log.e(TAG, "unable to parse chunk " + chunk.index, e);
+        } finally {
+            mChunk = null;
+            release();
+        }
+    }
+
+    private void setupLimits(ParseLimits limits, long deadline){
+        mLimits = limits;
+        mDeadline = deadline;
+        mSkippedDepth = 0;
+    }
+
+    /**
+     * @param slices stops the parses of this instance between the steps of a SlicedParse,
+     *               null to parse documents in one go
+     */
+    void setSlices(SlicedParse.Slices slices){
+        mSlices = slices;
+    }
+
+    /**
+     * stops the parse here when the step of the SlicedParse running it is over, the time
+     * stopped doesn't count against the time budget of the limits
+     */
+    private void yieldToSlices(){
+        if(mSlices != null){
+            mDeadline += mSlices.yieldIfPastDeadline();
+        }
+    }
+
+    private boolean pastDeadline(){
+        return mLimits.hasTimeBudget() == true && System.nanoTime() - mDeadline >= 0;
+    }
+
+    /**
+     * closes the open tags as if the source ended here and unwinds TagSoup
+     */
+    private void endDocument(CharSequence textContent){
+
+        mTruncated = true;
+        CharSequence text = textContent;
+
+        while (mStack.isEmpty() == false){
+            endElement(null, mStack.peek().tag, text);
+            text = null;
+        }
+
+        throw new LimitReachedException();
+    }
+
+    private boolean processesContent(MarkupTag parentTag){
+        return parentTag == null || (!parentTag.ignoreTag() && parentTag.getTagHandler().processContent());
+    }
+
+    private void addElement(DocumentElement element){
+        mResult.add(element);
+        if(mListener != null){
+            mListener.onElementParsed(element, mResult.size() - 1);
+        }
+    }
+
 
 
-    public void startElement(String uri, String localName, Attributes atts, String textContent) {
+    public void startElement(String uri, String localName, Attributes atts, CharSequence textContent) {
+
+        yieldToSlices();
+
+        // html and body are always there
+        if(mStack.size() >= 2) {
+
+            if (mElementCount >= mLimits.getMaxElements() ||
+                    pastDeadline() == true) {
+                endDocument(textContent);
+            }
+
+            mElementCount++;
+
+            // the element is dropped, its text goes to the closest element kept
+            if (mSkippedDepth > 0 || mStack.size() >= mLimits.getMaxDepth()) {
+                if (processesContent(getParent()) == true) {
+                    processAccumulatedTextContent(textContent);
+                }
+                mSkippedDepth++;
+                mTruncated = true;
+                return;
+            }
+        }
 
         //a new tag is starting here , this is text from previous tag should we process ?
         MarkupTag parentTag = getParent();
@@ -318,15 +765,26 @@ public class RichTextV2 {
         }
 
         mStack.push(tag);
+        mTracer.onTagOpen(localName);
         mCurrentContext = mCurrentContext.onTagOpen(tag, mOutput, false);
-        mHistory.add(tag);
         mMarkupContextStack.push( mCurrentContext );
+        addOpenTag(tag);
     }
 
-    public void endElement(String uri, String localName, String textContent) {
+    public void endElement(String uri, String localName, CharSequence textContent) {
+
+        yieldToSlices();
 
         MarkupTag tag = mStack.peek();
 
+        if(mSkippedDepth > 0){
+            if(processesContent(tag) == true){
+                processAccumulatedTextContent(textContent);
+            }
+            mSkippedDepth--;
+            return;
+        }
+
          boolean allowedByParent =  mCurrentContext.tagAllowedByParent(tag);
         if( !tag.ignoreTag() && tag.getTagHandler().processContent() == true && allowedByParent) {
             processAccumulatedTextContent(textContent);
@@ -338,80 +796,119 @@ public class RichTextV2 {
             }
         }
 
+        removeOpenTag();
         mStack.pop();
+        mTracer.onTagClose(tag.tag);
 
         //mCurrentContext = mMarkupContextStack.pop();
     }
 
+    /**
+     * only the instruction ChunkedParser appends to the chunks of a document is handled,
+     * the text before it is processed as the next tag in the document would.
+     * @return true if textContent has been consumed
+     */
+    public boolean processingInstruction(String target, String data, CharSequence textContent) {
 
-    private RichTextDocumentElement processAccumulatedTextContent(String accumulatedText)  {
+        if(mChunk == null || ChunkedParser.CHUNK_END.equals(target) == false){
+            return false;
+        }
+
+        MarkupTag parentTag = getParent();
+
+        if( parentTag == null || (!parentTag.ignoreTag() && parentTag.getTagHandler().processContent())) {
+            processAccumulatedTextContent(textContent);
+        }
+
+        // the next chunk starts inside body with the context this one started with
+        mChunk.clean = mStack.size() == 2 &&
+                mSkippedDepth == 0 &&
+                "body".equalsIgnoreCase(parentTag.tag) &&
+                mCurrentContext == mChunk.markupContext;
+
+        return true;
+    }
+
+
+    private RichTextDocumentElement processAccumulatedTextContent(CharSequence accumulatedText)  {
 
         if(TextUtils.isEmpty(accumulatedText)){
             return null;
         }
 
-        Matcher m = Patterns.WEB_URL.matcher(accumulatedText);
+        // the document ends with the text that reaches the limit
+        int remaining = mLimits.getMaxTextLength() - mTextLength;
+        boolean limitReached = accumulatedText.length() > remaining;
+
+        if(limitReached == true){
+            accumulatedText = accumulatedText.subSequence(0, remaining);
+        }
+
+        mTextLength += accumulatedText.length();
+
+        Linkifier linkifier = getCurrentStyle().linkifier();
+        int position = 0;
 
-        while (m.find()) {
+        while (linkifier.find(accumulatedText, position, mLinkRange)) {
             //link found
-            int matchStart = m.start();
-            int matchEnd = m.end();
+            int matchStart = mLinkRange[0];
+            int matchEnd = mLinkRange[1];
 
             //any text in between ?
-            StringBuffer buffer = new StringBuffer();
-            m.appendReplacement(buffer, "");
-            mOutput.append(buffer);
+            if(matchStart > position) {
+                mOutput.append(accumulatedText, position, matchStart);
+            }
+            position = matchEnd;
+
+            String link = accumulatedText.subSequence(matchStart, matchEnd).toString();
+            EmbedMatch embed = EmbedClassifier.DEFAULT.classify(link);
 
-            CharSequence link = accumulatedText.subSequence(matchStart, matchEnd);
-            boolean linkingToEmbed = getCurrentStyle().extractEmbeds();
-            if( linkingToEmbed == true){
+            if(embed != null && embed.getType() == EmbedUtils.TEmbedType.EYoutube){
+                //we just take care of youtbe videos inline
+                SpannedBuilderUtils.makeYoutube(embed.getId(), getCurrentStyle().maxImageWidth(), mOutput);
+            }else if(embed != null && getCurrentStyle().extractEmbeds() == true){
                 // in case we find  embeds we add them as individual elements to the RichDocument
-                // is the current link an embed ?
-                linkingToEmbed = EmbedUtils.parseLink(accumulatedText, String.valueOf(link), new EmbedUtils.ParseLinkCallback() {
-
-                    @Override
-                    public void onLinkParsed(Object callingObject, String result, EmbedUtils.TEmbedType type) {
-                        if(type == EmbedUtils.TEmbedType.EYoutube){
-                            //we just take care of youtbe videos inline
-                            SpannedBuilderUtils.makeYoutube(result, getCurrentStyle().maxImageWidth(), mOutput);
-                        }else{
-                            onEmbedFound(type, result);
-                        }
-                    }
-                });
-            }
-            // the link wasn't a recognised embed or extractEmbeds = false
-            if(linkingToEmbed == false) {
-
-                //double check if it is a youtube video ?
-                final String youtubeId = EmbedUtils.getYoutubeVideoId(String.valueOf(link));
-                if(TextUtils.isEmpty(youtubeId) == false) {
-                    SpannedBuilderUtils.makeYoutube(youtubeId, getCurrentStyle().maxImageWidth(), mOutput);
-                }else {
-
-                    //is there any white space here ??
-                    Pattern pattern = Pattern.compile("\\s");
-                    Matcher matcher = pattern.matcher(link);
-                    boolean found = matcher.find();
-
-                    // is not empty and the string doesn't contain empty spaces !
-                    if (TextUtils.isEmpty(link) == false && found == false) {
-                        SpannedBuilderUtils.makeLink(link.toString(), null, mOutput);
-                    } else if (TextUtils.isEmpty(link) == false) {
-                        mOutput.append(link);
-                    }
+                onEmbedFound(embed.getType(), embed.getContent());
+            }else {
+                // the link wasn't a recognised embed or extractEmbeds = false
+
+                //is there any white space here ??
+                boolean found = containsWhiteSpace(link);
+
+                // is not empty and the string doesn't contain empty spaces !
+                if (TextUtils.isEmpty(link) == false && found == false) {
+                    SpannedBuilderUtils.makeLink(link, null, mOutput);
+                } else if (TextUtils.isEmpty(link) == false) {
+                    mOutput.append(link);
                 }
             }
 
         }
 
-        StringBuffer buffer = new StringBuffer();
-        m.appendTail(buffer);
-        mOutput.append(buffer);
+        if(position < accumulatedText.length()) {
+            mOutput.append(accumulatedText, position, accumulatedText.length());
+        }
+
+        if(limitReached == true){
+            endDocument(null);
+        }
 
         return mOutput;
     }
 
+    /**
+     * same characters as \s
+     */
+    private static boolean containsWhiteSpace(CharSequence text){
+        for(int index = 0; index < text.length(); index ++){
+            switch (text.charAt(index)){
+                case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+                    return true;
+            }
+        }
+        return false;
+    }
+
     public void onEmbedFound(EmbedUtils.TEmbedType type, String content){
         splitDocument(OembedDocumentElement.newInstance(type, content));
     }
@@ -425,9 +922,15 @@ public class RichTextV2 {
 
     public void splitDocument( DocumentElement element){
 
+        if(mOembedCount >= mLimits.getMaxEmbeds()){
+            mTruncated = true;
+            return;
+        }
+
         mOembedCount ++;
+        mTracer.onDocumentSplit(element);
 
-        RichTextDocumentElement newOut = new RichTextDocumentElement();
+        RichTextDocumentElement newOut = newOutput();
         /// close output
         if(mOutput != null &&
                 mOutput.length() > 0){
@@ -438,14 +941,13 @@ public class RichTextV2 {
                 tag.discardOnClosing = true;
             }
 
-            String text = mOutput.contentString();
-            if(TextUtils.getTrimmedLength(text) > 0) {
-                SpannedBuilderUtils.fixFlags(mOutput);
-                if(mOembedCount > 1) {
-                    SpannedBuilderUtils.trimLeadingNewlines(mOutput);
-                }
-                SpannedBuilderUtils.trimTrailNewlines(mOutput, 0);
-                mResult.add(mOutput);
+            // the text before the first split of a chunk continues the previous chunk
+            boolean deferred = mChunk != null &&
+                    mChunk.deferSplit(mOutput, mOembedCount, mResult.size());
+
+            if(deferred == false && completeSplitOutput(mOutput, mOembedCount) == true) {
+                mOutput.setTracer(null);
+                addElement(mOutput);
             }
 
             //create new Output
@@ -456,12 +958,132 @@ public class RichTextV2 {
             mOutput = newOut;
         }
 
-        mResult.add(element);
+        addElement(element);
+
+    }
+
+    /**
+     * prepares the text found before an embed to be added to the document
+     * @param splitCount the number of embeds found so far, this one included
+     * @return false if the text is blank and has to be dropped
+     */
+    static boolean completeSplitOutput(RichTextDocumentElement output, int splitCount){
+
+        if(output.getNonWhitespaceCount() > 0) {
+            SpannedBuilderUtils.fixFlags(output);
+            if(splitCount > 1) {
+                SpannedBuilderUtils.trimLeadingNewlines(output);
+            }
+            SpannedBuilderUtils.trimTrailNewlines(output, 0);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * prepares the text found after the last embed to be added to the document
+     * @return false if the text is blank and has to be dropped
+     */
+    static boolean completeRemainder(RichTextDocumentElement output){
+
+        if(output != null &&
+                output.getNonWhitespaceCount() > 0){
+            SpannedBuilderUtils.fixFlags(output);
+            return true;
+        }
+
+        return false;
+    }
+
+    public int getNestedListsCount(){
+        return mNestedListsCount;
+    }
+
+    public void setNestedListsCount(int count){
+        mNestedListsCount = count;
+    }
+
+    private void addOpenTag(MarkupTag tag){
+
+        TagHandler handler = tag.getTagHandler();
+        Class<?>[] types = handler != null ? handlerTypes(handler.getClass()) : null;
+
+        if(types != null) {
+            for (Class<?> type : types) {
+                ArrayList<MarkupTag> tags = mOpenTagsByType.get(type);
+                if (tags == null) {
+                    tags = new ArrayList<>();
+                    mOpenTagsByType.put(type, tags);
+                }
+                tags.add(tag);
+            }
+        }
 
+        mOpenTagTypes.push(types);
     }
 
+    /**
+     * the tag at the top of mStack is the last one added with each of its types
+     */
+    private void removeOpenTag(){
+
+        Class<?>[] types = mOpenTagTypes.pop();
+
+        if(types != null) {
+            for (Class<?> type : types) {
+                ArrayList<MarkupTag> tags = mOpenTagsByType.get(type);
+                tags.remove(tags.size() - 1);
+            }
+        }
+    }
+
+    private Class<?>[] handlerTypes(Class<?> handlerClass){
+
+        Class<?>[] types = mHandlerTypes.get(handlerClass);
+
+        if(types == null){
+
+            ArrayList<Class<?>> list = new ArrayList<>();
+            for(Class<?> type = handlerClass; type != Object.class; type = type.getSuperclass()){
+                list.add(type);
+            }
+
+            // interfaces extended by the ones already in the list are added at the end
+            for(int index = 0; index < list.size(); index ++){
+                for(Class<?> type : list.get(index).getInterfaces()){
+                    if(list.contains(type) == false){
+                        list.add(type);
+                    }
+                }
+            }
+
+            types = list.toArray(new Class<?>[list.size()]);
+            mHandlerTypes.put(handlerClass, types);
+        }
+
+        return types;
+    }
+
+    /**
+     * @return the closest tag above child in the stack with a handler of type parentClass,
+     * without walking the stack when child is the tag at its top
+     */
     public MarkupTag getParent(MarkupTag child, Class<? extends TagHandler> parentClass) {
 
+        if(mStack.isEmpty() == false && mStack.peek() == child){
+
+            ArrayList<MarkupTag> tags = mOpenTagsByType.get(parentClass);
+
+            for(int index = tags != null ? tags.size() - 1 : -1; index >= 0; index --){
+                if(tags.get(index) != child){
+                    return tags.get(index);
+                }
+            }
+
+            return null;
+        }
+
         boolean childFound = false;
 
         for(int index = (mStack.size() - 1); index >= 0 ; index --){
@@ -497,10 +1119,12 @@ public class RichTextV2 {
     }
 
     private void appendRemainder(){
-        if(mOutput != null &&
-                TextUtils.getTrimmedLength(mOutput.contentString()) > 0){
-            SpannedBuilderUtils.fixFlags(mOutput);
-            mResult.add(mOutput);
+        if(completeRemainder(mOutput) == true){
+            mOutput.setTracer(null);
+            addElement(mOutput);
+        }
+        if(mOutput != null){
+            mOutput.setTracer(null);
         }
     }
 
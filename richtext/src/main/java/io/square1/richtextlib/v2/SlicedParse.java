@@ -0,0 +1,394 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.square1.richtextlib.v2.cache.RichDocumentCache;
+import io.square1.richtextlib.v2.content.RichDocument;
+
+/**
+ * Parses a document a slice at a time, see RichTextEngine.newSlicedParse.
+ *
+ * TagSoup pushes the whole document in one call, so the parse runs on a parse thread
+ * that every step resumes and that stops at the first element opened or closed once the time
+ * given to the step is used. A step takes its budget plus the time of a single element,
+ * whatever the shape of the document. Steps can run on different threads but not at the
+ * same time. The document is the same RichTextEngine.parse(String) returns, what the parse
+ * thread throws is thrown by the step.
+ *
+ * The parse threads are shared by the sliced parses and kept for a while once idle, along
+ * with the parser state of the engines. The thread of a parse that is neither completed
+ * nor cancelled is released once the SlicedParse is no longer referenced.
+ */
+public final class SlicedParse {
+
+    /**
+     * the stack of the parse thread, the handlers don't recurse deeper than the elements
+     */
+    private static final long STACK_SIZE = 256 * 1024;
+
+    /**
+     * how often a stopped parse checks whether it has been abandoned
+     */
+    private static final long ABANDONED_CHECK_MILLIS = 1000;
+
+    /**
+     * how long an idle parse thread waits for another parse before ending
+     */
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    private static final ThreadPoolExecutor sThreads = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(null, runnable, "RichTextSlicedParse", STACK_SIZE);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final RichTextEngine mEngine;
+    private final String mSource;
+    private final CancellationToken mCancellation;
+
+    private volatile Slices mSlices;
+    private long mKey;
+    private volatile RichDocument mDocument;
+
+    SlicedParse(RichTextEngine engine, String source, CancellationToken cancellation){
+        mEngine = engine;
+        mSource = source;
+        mCancellation = cancellation;
+    }
+
+    /**
+     * parses the document for about budget, at least one element is parsed unless the
+     * document is complete or the parse has been cancelled. When the parse fails with an
+     * unchecked exception or an error, a StackOverflowError on markup nested too deep for
+     * instance, the step throws it and the document is RichDocument.EMPTY
+     * @return true once the document is complete or the parse has been cancelled
+     */
+    public synchronized boolean step(long budget, TimeUnit unit){
+
+        if(mDocument != null){
+            return true;
+        }
+
+        if(mCancellation.isCancelled() == true){
+            if(mSlices != null){
+                mSlices.wake();
+                mSlices = null;
+            }
+            mDocument = RichDocument.EMPTY;
+            return true;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(budget);
+
+        if(mSlices == null && begin() == true){
+            return true;
+        }
+
+        RichDocument document;
+
+        try {
+            document = mSlices.step(deadline);
+        } catch (InterruptedException e) {
+            // the parse stops at its deadline and waits for the next step
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (RuntimeException | Error e) {
+            mSlices = null;
+            mDocument = RichDocument.EMPTY;
+            throw e;
+        }
+
+        if(document == null){
+            return false;
+        }
+
+        mSlices = null;
+
+        RichDocumentCache cache = mEngine.getCache();
+        if(cache != null && document != RichDocument.EMPTY){
+            cache.put(mKey, mSource, document);
+        }
+
+        mDocument = document;
+        return true;
+    }
+
+    /**
+     * @return true if the document has been found in the cache
+     */
+    private boolean begin(){
+
+        RichDocumentCache cache = mEngine.getCache();
+
+        if(cache != null){
+            mKey = RichDocumentCache.key(mSource, mEngine.getStyle(), mEngine.newMarkupContext());
+            mDocument = cache.get(mKey, mSource);
+            if(mDocument != null){
+                return true;
+            }
+        }
+
+        mSlices = new Slices(this);
+        return false;
+    }
+
+    /**
+     * runs the steps on executor, every step is a new task so that the tasks queued in the
+     * meantime run between the steps
+     * @param budgetMillis the time given to every step
+     * @param callback invoked on the thread of the last step once the document is complete,
+     *                 it isn't invoked if the parse is cancelled
+     */
+    public void runOn(final Executor executor,
+                      final long budgetMillis,
+                      final RichTextEngine.Callback callback){
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                if(step(budgetMillis, TimeUnit.MILLISECONDS) == false){
+                    executor.execute(this);
+                }
+                else if(isCancelled() == false && callback != null){
+                    callback.onDocumentParsed(mSource, mDocument);
+                }
+            }
+        });
+    }
+
+    /**
+     * same as runOn(Executor, long, RichTextEngine.Callback) posting the steps to handler,
+     * the messages posted to handler in the meantime are handled between the steps
+     */
+    public void runOn(final Handler handler,
+                      long budgetMillis,
+                      RichTextEngine.Callback callback){
+
+        runOn(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        }, budgetMillis, callback);
+    }
+
+    /**
+     * stops the parse, its thread drops what has been parsed so far and ends
+     */
+    public void cancel(){
+        mCancellation.cancel();
+        Slices slices = mSlices;
+        if(slices != null){
+            slices.wake();
+        }
+    }
+
+    public boolean isCancelled(){
+        return mCancellation.isCancelled();
+    }
+
+    public boolean isDone(){
+        return mDocument != null;
+    }
+
+    /**
+     * @return the document once a step has returned true, RichDocument.EMPTY if the parse
+     * has been cancelled, null before
+     */
+    public RichDocument getDocument(){
+        return mDocument;
+    }
+
+    /**
+     * the parse thread and the hand over between it and the steps. It doesn't reference the
+     * SlicedParse, so that an abandoned parse can be noticed.
+     */
+    static final class Slices implements Runnable {
+
+        private final RichTextEngine mEngine;
+        private final String mSource;
+        private final CancellationToken mCancellation;
+        private final WeakReference<SlicedParse> mOwner;
+
+        /**
+         * the System.nanoTime the current step ends at
+         */
+        private volatile long mDeadline;
+
+        /**
+         * guarded by this, true while a step waits for the parse
+         */
+        private boolean mRunning;
+        private boolean mStarted;
+        private RichDocument mDocument;
+        private Throwable mFailure;
+
+        private Slices(SlicedParse owner){
+            mEngine = owner.mEngine;
+            mSource = owner.mSource;
+            mCancellation = owner.mCancellation;
+            mOwner = new WeakReference<>(owner);
+        }
+
+        /**
+         * lets the parse run until deadline
+         * @return the document once it is complete, null if the parse stopped at the deadline
+         * @throws RuntimeException what the parse thread threw, an Error is thrown as it is
+         */
+        synchronized RichDocument step(long deadline) throws InterruptedException {
+
+            mDeadline = deadline;
+            mRunning = true;
+
+            if(mStarted == false){
+                mStarted = true;
+                sThreads.execute(this);
+            }
+            else {
+                notifyAll();
+            }
+
+            while (mRunning == true){
+                wait();
+            }
+
+            if(mFailure instanceof Error){
+                throw (Error) mFailure;
+            }
+            if(mFailure instanceof RuntimeException){
+                throw (RuntimeException) mFailure;
+            }
+            if(mFailure != null){
+                throw new RuntimeException(mFailure);
+            }
+
+            return mDocument;
+        }
+
+        synchronized void wake(){
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+
+            RichDocument document = RichDocument.EMPTY;
+            Throwable failure = null;
+
+            try {
+                document = parse();
+            } catch (Throwable throwable) {
+                // the reader may have been left in the middle of the document
+                mEngine.discardWorker();
+                failure = throwable;
+            } finally {
+                // the step waiting is woken up whatever happened to the parse
+                synchronized (this){
+                    mDocument = document;
+                    mFailure = failure;
+                    mRunning = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        private RichDocument parse(){
+
+            RichTextEngine.Worker worker = mEngine.obtainWorker();
+
+            if(worker == null){
+                return RichDocument.EMPTY;
+            }
+
+            worker.mRichText.setSlices(this);
+            try {
+                return worker.mRichText.parse(worker.mReader,
+                        new StringReader(mSource),
+                        mEngine.newMarkupContext(),
+                        mEngine.getStyle(),
+                        null,
+                        mCancellation);
+            } finally {
+                worker.mRichText.setSlices(null);
+            }
+        }
+
+        /**
+         * called by the parse thread before every element is opened or closed, stops the
+         * parse until the next step once the current one is past its deadline
+         * @return the nanoseconds the parse has been stopped for
+         * @throws CancellationException when the parse has been cancelled or abandoned
+         * while it was stopped
+         */
+        long yieldIfPastDeadline(){
+
+            if(System.nanoTime() - mDeadline < 0){
+                return 0;
+            }
+
+            long start = System.nanoTime();
+
+            synchronized (this){
+
+                mRunning = false;
+                notifyAll();
+
+                try {
+                    while (mRunning == false){
+
+                        if(mCancellation.isCancelled() == true || mOwner.get() == null){
+                            throw new CancellationException();
+                        }
+
+                        wait(ABANDONED_CHECK_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    Log.w(RichTextV2.TAG, "sliced parse interrupted");
+                    throw new CancellationException();
+                }
+            }
+
+            if(mCancellation.isCancelled() == true){
+                throw new CancellationException();
+            }
+
+            return System.nanoTime() - start;
+        }
+    }
+}
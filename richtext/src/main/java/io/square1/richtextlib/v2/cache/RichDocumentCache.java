@@ -0,0 +1,536 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.cache;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.square1.richtextlib.BuildConfig;
+import io.square1.richtextlib.spans.Style;
+import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.codec.RichDocumentCodec;
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.parser.MarkupContext;
+
+/**
+ * Keeps the documents parsed from the same source with the same Style and MarkupContext,
+ * so that an article opened again or a list bound again after a configuration change
+ * isn't parsed again. Set it on a RichTextEngine or with RichTextV2.setDocumentCache.
+ *
+ * Documents are kept in memory with their spans compacted, see RichDocument.compactCopy,
+ * up to a size estimated from their text and spans, the least recently used ones are
+ * evicted first. When a directory is given documents are
+ * also written there, on a background thread, and read back once evicted from memory or
+ * after the process is restarted. Files written by another version of the library are discarded.
+ *
+ * Every lookup returns a fresh copy of the cached document, see RichDocument.freshCopy: the
+ * copies share the text and the values of the spans, the spans holding state, as images and
+ * videos bound to a view, are new objects in every copy. The cache can be shared between threads.
+ */
+public class RichDocumentCache {
+
+    /**
+     * the version of the layout of the files written in the cache directory
+     */
+    public static final int FORMAT_VERSION = 4;
+
+    private static final int MAGIC = 0x52444f43; // RDOC
+    private static final String EXTENSION = ".rdoc";
+
+    private static final int DOCUMENT_SIZE = 64;
+    private static final int ELEMENT_SIZE = 128;
+    private static final int SPAN_SIZE = 64;
+    private static final int COMPACT_SPAN_SIZE = 36;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long CHECK_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    private static final int HEADER_LEVELS = 6;
+
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    // writes the documents of every cache to disk, one at a time
+    private static final ThreadPoolExecutor sWriter = new ThreadPoolExecutor(0, 1,
+            IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "RichDocumentCacheWriter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final LruCache<Long,Entry> mMemory;
+    private final File mDirectory;
+    private final long mMaxDiskSize;
+    private final String mVersion;
+    private final Executor mWriter;
+
+    private final AtomicLong mMemoryHits = new AtomicLong();
+    private final AtomicLong mDiskHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    /**
+     * @param maxMemorySize the estimated size in bytes of the documents kept in memory
+     */
+    public RichDocumentCache(int maxMemorySize){
+        this(maxMemorySize, null, 0);
+    }
+
+    /**
+     * @param maxMemorySize the estimated size in bytes of the documents kept in memory
+     * @param directory where documents are written, null to keep them in memory only
+     * @param maxDiskSize the size in bytes of the files kept in directory
+     */
+    public RichDocumentCache(int maxMemorySize, File directory, long maxDiskSize){
+        this(maxMemorySize, directory, maxDiskSize, BuildConfig.RICH_TEXT_VERSION);
+    }
+
+    /**
+     * @param version files written with a different version are discarded, the library version
+     *                by default. Apps changing their tag handlers can add their own version to it.
+     */
+    public RichDocumentCache(int maxMemorySize, File directory, long maxDiskSize, String version){
+        this(maxMemorySize, directory, maxDiskSize, version, sWriter);
+    }
+
+    /**
+     * @param writer writes the documents put in the cache to directory and deletes the removed
+     *               ones, a single background thread shared by every cache by default. Writes
+     *               and removals of the same key are applied in order if it runs tasks in order
+     */
+    public RichDocumentCache(int maxMemorySize, File directory, long maxDiskSize, String version,
+                             Executor writer){
+
+        mMemory = new LruCache<Long,Entry>(maxMemorySize){
+            @Override
+            protected int sizeOf(Long key, Entry entry) {
+                return estimateSize(entry.mDocument);
+            }
+        };
+
+        mDirectory = directory;
+        mMaxDiskSize = maxDiskSize;
+        mVersion = version != null ? version : "";
+        mWriter = writer;
+
+        if(mDirectory != null){
+            mDirectory.mkdirs();
+        }
+    }
+
+    /**
+     * @return the key of the document parsed from source with the given style and markupContext,
+     * see MarkupContext.getCacheKey and Linkifier.cacheKey. Lookups check the source against a
+     * second hash of it, see get
+     */
+    public static long key(String source, Style style, MarkupContext markupContext){
+
+        long hash = hash(FNV_OFFSET, source);
+        hash = hash(hash, String.valueOf(source.length()));
+        hash = hash(hash, markupContext.getCacheKey());
+        hash = hash(hash, style.getClass().getName());
+        hash = hash(hash, style.linkifier() != null ? style.linkifier().cacheKey() : "");
+
+        hash = mix(hash, style.headerColor());
+        hash = mix(hash, style.backgroundColor());
+        hash = mix(hash, style.maxImageWidth());
+        hash = mix(hash, style.maxImageHeight());
+        hash = mix(hash, Float.floatToIntBits(style.smallTextReduce()));
+        for(int level = 1; level <= HEADER_LEVELS; level ++){
+            hash = mix(hash, Float.floatToIntBits(style.headerIncrease(level)));
+        }
+        hash = mix(hash, style.parseWordPressTags() ? 1 : 0);
+        hash = mix(hash, style.treatAsHtml() ? 1 : 0);
+        hash = mix(hash, style.extractImages() ? 1 : 0);
+        hash = mix(hash, style.extractVideos() ? 1 : 0);
+        hash = mix(hash, style.extractEmbeds() ? 1 : 0);
+        hash = mix(hash, style.limits().hashCode());
+
+        // spreads the bits of the last characters over the whole key
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /**
+     * @return a fresh copy of the document parsed from source stored with key, null if there
+     * isn't one. A document stored with the same key for another source, whose length or
+     * second hash differ, isn't returned
+     */
+    public RichDocument get(long key, String source){
+
+        int length = source.length();
+        long check = check(source);
+
+        Entry entry = mMemory.get(key);
+
+        if(entry != null && entry.matches(length, check) == true){
+            mMemoryHits.incrementAndGet();
+            return entry.mDocument.freshCopy();
+        }
+
+        RichDocument document = read(key, length, check);
+
+        if(document != null){
+            mDiskHits.incrementAndGet();
+            mMemory.put(key, new Entry(document, length, check));
+            return document.freshCopy();
+        }
+
+        mMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * keeps a compact copy of document, see RichDocument.compactCopy, and writes it to the
+     * directory on the writer. The caller can go on using document and the spans it got from it,
+     * later lookups return copies of the compact one.
+     * Truncated documents aren't kept, they depend on the limits and the time the parse took
+     */
+    public void put(final long key, String source, RichDocument document){
+
+        if(document.isTruncated() == true){
+            return;
+        }
+
+        final int length = source.length();
+        final long check = check(source);
+        final RichDocument compact = document.compactCopy();
+
+        mMemory.put(key, new Entry(compact, length, check));
+
+        if(mDirectory != null){
+            mWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // a copy of its own, the spans encoded aren't kept by the cached document
+                    write(key, length, check, compact.freshCopy());
+                }
+            });
+        }
+    }
+
+    public void remove(final long key){
+
+        mMemory.remove(key);
+
+        if(mDirectory != null){
+            // after the writes of the key already queued
+            mWriter.execute(new Runnable() {
+                @Override
+                public void run() {
+                    file(key).delete();
+                }
+            });
+        }
+    }
+
+    /**
+     * removes every document, from memory and from the directory
+     */
+    public void clear(){
+
+        mMemory.evictAll();
+
+        for(File file : files()){
+            file.delete();
+        }
+    }
+
+    public long getMemoryHitCount(){
+        return mMemoryHits.get();
+    }
+
+    public long getDiskHitCount(){
+        return mDiskHits.get();
+    }
+
+    public long getMissCount(){
+        return mMisses.get();
+    }
+
+    /**
+     * @return the share of the lookups that found a document, in memory or on disk
+     */
+    public float getHitRate(){
+        long hits = mMemoryHits.get() + mDiskHits.get();
+        long lookups = hits + mMisses.get();
+        return lookups > 0 ? (float) hits / lookups : 0;
+    }
+
+    /**
+     * @return the estimated size in bytes of the documents in memory
+     */
+    public int getMemorySize(){
+        return mMemory.size();
+    }
+
+    /**
+     * a rough estimate of the memory retained by document, the text, the spans and
+     * a fixed amount for every element
+     */
+    public static int estimateSize(RichDocument document){
+
+        int size = DOCUMENT_SIZE;
+
+        for(DocumentElement element : document.getElements()){
+
+            size += ELEMENT_SIZE;
+
+            if(element instanceof RichTextDocumentElement){
+                RichTextDocumentElement text = (RichTextDocumentElement) element;
+                size += text.length() * 2;
+                size += text.getSpanCount() * (text.isCompact() ? COMPACT_SPAN_SIZE : SPAN_SIZE);
+            }
+        }
+
+        return size;
+    }
+
+    private RichDocument read(long key, int length, long check){
+
+        if(mDirectory == null){
+            return null;
+        }
+
+        File file = file(key);
+
+        if(file.exists() == false){
+            return null;
+        }
+
+        FileInputStream input = null;
+
+        try {
+
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if(data.getInt() != MAGIC ||
+                    data.getInt() != FORMAT_VERSION ||
+                    mVersion.equals(readVersion(data)) == false ||
+                    data.getLong() != key){
+                input.close();
+                input = null;
+                file.delete();
+                return null;
+            }
+
+            if(data.getInt() != length || data.getLong() != check){
+                // another source with the same key, the file is replaced once it is parsed
+                return null;
+            }
+
+            RichDocument document = RichDocumentCodec.decode(data);
+
+            file.setLastModified(System.currentTimeMillis());
+            return document;
+
+        } catch (Exception e) {
+            Log.e(RichTextV2.TAG, "unable to read cached document " + file, e);
+            file.delete();
+        } finally {
+            close(input);
+        }
+
+        return null;
+    }
+
+    private void write(long key, int length, long check, RichDocument document){
+
+        File file = file(key);
+        File temp = new File(mDirectory, file.getName() + "." + Thread.currentThread().getId());
+        DataOutputStream output = null;
+
+        try {
+
+            byte[] data = RichDocumentCodec.encode(document);
+
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(mVersion);
+            output.writeLong(key);
+            output.writeInt(length);
+            output.writeLong(check);
+            output.write(data);
+            output.close();
+            output = null;
+
+            if(temp.renameTo(file) == false){
+                temp.delete();
+            }
+
+        } catch (Exception e) {
+            Log.e(RichTextV2.TAG, "unable to write cached document " + file, e);
+            temp.delete();
+        } finally {
+            close(output);
+        }
+
+        trimDisk();
+    }
+
+    /**
+     * deletes the least recently used files until the ones left fit in mMaxDiskSize
+     */
+    private synchronized void trimDisk(){
+
+        File[] files = files();
+        long size = 0;
+
+        for(File file : files){
+            size += file.length();
+        }
+
+        if(size <= mMaxDiskSize){
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+
+        for(int index = 0; index < files.length && size > mMaxDiskSize; index ++){
+            size -= files[index].length();
+            files[index].delete();
+        }
+    }
+
+    private File[] files(){
+
+        File[] files = mDirectory != null ? mDirectory.listFiles() : null;
+
+        if(files == null){
+            return new File[0];
+        }
+
+        ArrayList<File> documents = new ArrayList<>(files.length);
+        for(File file : files){
+            if(file.getName().endsWith(EXTENSION)){
+                documents.add(file);
+            }
+        }
+
+        return documents.toArray(new File[documents.size()]);
+    }
+
+    private File file(long key){
+        return new File(mDirectory, Long.toHexString(key) + EXTENSION);
+    }
+
+    private static long hash(long hash, String value){
+        for(int index = 0; index < value.length(); index ++){
+            hash ^= value.charAt(index);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * a second hash of source, independent of the FNV hash in the key
+     */
+    private static long check(String source){
+        long check = source.length();
+        for(int index = 0; index < source.length(); index ++){
+            check = (check + source.charAt(index)) * CHECK_MULTIPLIER;
+            check ^= check >>> 29;
+        }
+        return check;
+    }
+
+    private static long mix(long hash, int value){
+        hash ^= value;
+        hash *= FNV_PRIME;
+        return hash;
+    }
+
+    /**
+     * reads the version the way DataOutputStream.writeUTF wrote it
+     */
+    private static String readVersion(ByteBuffer data) throws IOException {
+        byte[] version = new byte[data.getShort() & 0xffff];
+        data.get(version);
+        return new String(version, "UTF-8");
+    }
+
+    /**
+     * a cached document with the length and the second hash of its source
+     */
+    private static final class Entry {
+
+        final RichDocument mDocument;
+        final int mSourceLength;
+        final long mSourceCheck;
+
+        Entry(RichDocument document, int sourceLength, long sourceCheck){
+            mDocument = document;
+            mSourceLength = sourceLength;
+            mSourceCheck = sourceCheck;
+        }
+
+        boolean matches(int sourceLength, long sourceCheck){
+            return mSourceLength == sourceLength && mSourceCheck == sourceCheck;
+        }
+    }
+
+    private static void close(Closeable closeable){
+        if(closeable != null){
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do with it
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+/**
+ * Implemented by the document elements and spans RichDocumentCodec can write, every
+ * implementation is registered in CodecTypes with its id.
+ * readFrom reads the values in the same order writeTo wrote them.
+ */
+public interface Codable {
+
+    void writeTo(CodecWriter out);
+
+    void readFrom(CodecReader in);
+
+    /**
+     * implemented by the spans keeping no state besides the values writeTo writes, their
+     * RichTextSpan callbacks do nothing. A compact element drops them when they aren't used
+     * and reads them again, a RichContentView doesn't bind them. Spans that aren't values,
+     * an image holding its bitmap or a header bound to the Appearance of the view, are
+     * kept by a compact element once created.
+     */
+    interface Value extends Codable {
+
+    }
+}
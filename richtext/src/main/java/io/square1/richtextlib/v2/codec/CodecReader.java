@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads back the values written by CodecWriter, see RichDocumentCodec.
+ * Malformed data makes the read methods throw a RuntimeException.
+ */
+public final class CodecReader {
+
+    private final ByteBuffer mData;
+    private final String[] mStrings;
+    private char[] mChars = new char[64];
+
+    /**
+     * reads the string table at the position of data, the values follow it
+     */
+    CodecReader(ByteBuffer data){
+
+        mData = data;
+        mStrings = new String[readVarInt()];
+
+        for(int index = 0; index < mStrings.length; index ++){
+            mStrings[index] = readText();
+        }
+    }
+
+    /**
+     * reads values from data whose strings are in the given table
+     */
+    CodecReader(ByteBuffer data, String[] strings){
+        mData = data;
+        mStrings = strings;
+    }
+
+    String[] strings(){
+        return mStrings;
+    }
+
+    void readBytes(byte[] destination, int offset, int length){
+        mData.get(destination, offset, length);
+    }
+
+    void seek(int position){
+        mData.position(position);
+    }
+
+    public int readVarInt(){
+
+        int value = 0;
+
+        for(int shift = 0; shift < 35; shift += 7){
+            byte current = mData.get();
+            value |= (current & 0x7f) << shift;
+            if(current >= 0){
+                return value;
+            }
+        }
+
+        throw new IllegalStateException("malformed varint");
+    }
+
+    public int readInt(){
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean(){
+        return mData.get() != 0;
+    }
+
+    public float readFloat(){
+        return Float.intBitsToFloat(mData.getInt());
+    }
+
+    public String readString(){
+
+        int index = readVarInt();
+
+        if(index == 0){
+            return null;
+        }
+
+        return mStrings[index - 1];
+    }
+
+    public String readText(){
+
+        int length = readVarInt();
+
+        if(length > mData.remaining()){
+            throw new IllegalStateException("text longer than the data left");
+        }
+
+        if(mChars.length < length){
+            mChars = new char[length];
+        }
+
+        for(int index = 0; index < length; index ++){
+
+            int first = mData.get() & 0xff;
+
+            if(first < 0x80){
+                mChars[index] = (char) first;
+            }else if(first < 0xe0){
+                mChars[index] = (char) (((first & 0x1f) << 6) | (mData.get() & 0x3f));
+            }else {
+                int second = mData.get() & 0x3f;
+                mChars[index] = (char) (((first & 0x0f) << 12) | (second << 6) | (mData.get() & 0x3f));
+            }
+        }
+
+        return new String(mChars, 0, length);
+    }
+
+    /**
+     * @return a new instance of the type whose id is read, with the values that follow it
+     * @throws IllegalStateException when the id isn't registered in CodecTypes
+     */
+    public Codable readObject(){
+
+        int id = readVarInt();
+        Codable value = CodecTypes.newInstance(id);
+
+        if(value == null){
+            throw new IllegalStateException("no codec type registered with id " + id);
+        }
+
+        value.readFrom(this);
+        return value;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+import android.text.Layout;
+
+import java.util.HashMap;
+
+import io.square1.richtextlib.spans.AbsoluteSizeSpan;
+import io.square1.richtextlib.spans.BackgroundColorSpan;
+import io.square1.richtextlib.spans.BoldSpan;
+import io.square1.richtextlib.spans.BulletSpan;
+import io.square1.richtextlib.spans.ForegroundColorSpan;
+import io.square1.richtextlib.spans.HeaderSpan;
+import io.square1.richtextlib.spans.ItalicSpan;
+import io.square1.richtextlib.spans.LeadingMarginSpan;
+import io.square1.richtextlib.spans.QuoteSpan;
+import io.square1.richtextlib.spans.RelativeSizeSpan;
+import io.square1.richtextlib.spans.RichAlignmentSpan;
+import io.square1.richtextlib.spans.StrikethroughSpan;
+import io.square1.richtextlib.spans.StyleSpan;
+import io.square1.richtextlib.spans.SubscriptSpan;
+import io.square1.richtextlib.spans.SuperscriptSpan;
+import io.square1.richtextlib.spans.TextAppearanceSpan;
+import io.square1.richtextlib.spans.TypefaceSpan;
+import io.square1.richtextlib.spans.URLSpan;
+import io.square1.richtextlib.spans.UnderlineSpan;
+import io.square1.richtextlib.spans.UnsupportedContentSpan;
+import io.square1.richtextlib.spans.UrlBitmapSpan;
+import io.square1.richtextlib.spans.VideoPlayerSpan;
+import io.square1.richtextlib.spans.YouTubeSpan;
+import io.square1.richtextlib.v2.content.ImageDocumentElement;
+import io.square1.richtextlib.v2.content.OembedDocumentElement;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
+import io.square1.richtextlib.v2.content.VideoDocumentElement;
+import io.square1.richtextlib.v2.content.WebDocumentElement;
+
+/**
+ * The ids RichDocumentCodec writes for the types of elements and spans. Unlike
+ * RichTextSpan.getType the ids don't depend on the order classes are loaded in, an id
+ * means the same type in every build and is never given to another type.
+ * Reading an object creates it through the factory registered with its id, without
+ * looking up its class by name.
+ */
+public final class CodecTypes {
+
+    public interface Factory {
+        Codable newInstance();
+    }
+
+    /**
+     * the ids below are reserved for the types of the library
+     */
+    public static final int FIRST_APPLICATION_ID = 1000;
+
+    static final int NO_ID = 0;
+
+    private static final Object sLock = new Object();
+    private static volatile HashMap<Class<?>,Integer> sIds = new HashMap<>();
+    private static volatile HashMap<Integer,Factory> sFactories = new HashMap<>();
+    private static volatile HashMap<Integer,Class<?>> sTypes = new HashMap<>();
+
+    static {
+
+        // elements
+        add(1, RichTextDocumentElement.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new RichTextDocumentElement();
+            }
+        });
+        add(2, ImageDocumentElement.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new ImageDocumentElement();
+            }
+        });
+        add(3, OembedDocumentElement.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new OembedDocumentElement();
+            }
+        });
+        add(4, VideoDocumentElement.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new VideoDocumentElement();
+            }
+        });
+        add(5, WebDocumentElement.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new WebDocumentElement();
+            }
+        });
+
+        // spans
+        add(100, AbsoluteSizeSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new AbsoluteSizeSpan(0);
+            }
+        });
+        add(101, BackgroundColorSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new BackgroundColorSpan();
+            }
+        });
+        add(102, BoldSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new BoldSpan();
+            }
+        });
+        add(103, BulletSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new BulletSpan();
+            }
+        });
+        add(104, ForegroundColorSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new ForegroundColorSpan();
+            }
+        });
+        add(105, HeaderSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new HeaderSpan();
+            }
+        });
+        add(106, ItalicSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new ItalicSpan();
+            }
+        });
+        add(107, LeadingMarginSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new LeadingMarginSpan();
+            }
+        });
+        add(108, QuoteSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new QuoteSpan();
+            }
+        });
+        add(109, RelativeSizeSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new RelativeSizeSpan();
+            }
+        });
+        add(110, RichAlignmentSpan.Standard.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new RichAlignmentSpan.Standard(Layout.Alignment.ALIGN_NORMAL);
+            }
+        });
+        add(111, StrikethroughSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new StrikethroughSpan();
+            }
+        });
+        add(112, StyleSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new StyleSpan();
+            }
+        });
+        add(113, SubscriptSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new SubscriptSpan();
+            }
+        });
+        add(114, SuperscriptSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new SuperscriptSpan();
+            }
+        });
+        add(115, TextAppearanceSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new TextAppearanceSpan(null, 0, 0, null, null);
+            }
+        });
+        add(116, TypefaceSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new TypefaceSpan();
+            }
+        });
+        add(117, URLSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new URLSpan();
+            }
+        });
+        add(118, UnderlineSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new UnderlineSpan();
+            }
+        });
+        add(119, UnsupportedContentSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new UnsupportedContentSpan();
+            }
+        });
+        add(120, UrlBitmapSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new UrlBitmapSpan();
+            }
+        });
+        add(121, VideoPlayerSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new VideoPlayerSpan();
+            }
+        });
+        add(122, YouTubeSpan.class, new Factory() {
+            @Override
+            public Codable newInstance() {
+                return new YouTubeSpan();
+            }
+        });
+    }
+
+    private CodecTypes(){
+    }
+
+    /**
+     * registers a type of element or span defined by the application
+     * @param id FIRST_APPLICATION_ID or above, the same for the type in every build
+     * @throws IllegalArgumentException if id is reserved or already given to another type
+     */
+    public static void register(int id, Class<? extends Codable> type, Factory factory){
+
+        if(id < FIRST_APPLICATION_ID){
+            throw new IllegalArgumentException("ids below " + FIRST_APPLICATION_ID + " are reserved");
+        }
+
+        add(id, type, factory);
+    }
+
+    /**
+     * @return the id of type or NO_ID if it isn't registered
+     */
+    static int idOf(Class<?> type){
+        Integer id = sIds.get(type);
+        return id != null ? id : NO_ID;
+    }
+
+    /**
+     * @return a new instance of the type registered with id, null if there isn't one
+     */
+    static Codable newInstance(int id){
+        Factory factory = sFactories.get(id);
+        return factory != null ? factory.newInstance() : null;
+    }
+
+    /**
+     * @return the type registered with id, null if there isn't one
+     */
+    static Class<?> typeOf(int id){
+        return sTypes.get(id);
+    }
+
+    private static void add(int id, Class<? extends Codable> type, Factory factory){
+
+        synchronized (sLock){
+
+            Integer current = sIds.get(type);
+            if(sFactories.containsKey(id) == true && (current == null || current != id)){
+                throw new IllegalArgumentException("id " + id + " is already registered");
+            }
+
+            HashMap<Class<?>,Integer> ids = new HashMap<>(sIds);
+            HashMap<Integer,Factory> factories = new HashMap<>(sFactories);
+            HashMap<Integer,Class<?>> types = new HashMap<>(sTypes);
+
+            if(current != null){
+                factories.remove(current);
+                types.remove(current);
+            }
+
+            ids.put(type, id);
+            factories.put(id, factory);
+            types.put(id, type);
+
+            sIds = ids;
+            sFactories = factories;
+            sTypes = types;
+        }
+    }
+}
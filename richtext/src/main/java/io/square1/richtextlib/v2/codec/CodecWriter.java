@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Writes the values of the Codable objects of a document, see RichDocumentCodec.
+ * Integers are written as varints, strings go to a table written once before the
+ * values so that repeated urls and font families take a few bytes each.
+ */
+public final class CodecWriter {
+
+    private byte[] mData = new byte[256];
+    private int mLength;
+
+    private final HashMap<String,Integer> mStringIndex = new HashMap<>();
+    private final ArrayList<String> mStrings = new ArrayList<>();
+
+    CodecWriter(){
+    }
+
+    /**
+     * writes a value that is never negative, in 1 to 5 bytes
+     */
+    public void writeVarInt(int value){
+
+        ensureCapacity(5);
+
+        while ((value & ~0x7f) != 0){
+            mData[mLength ++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        mData[mLength ++] = (byte) value;
+    }
+
+    /**
+     * writes any value, small negative values take as few bytes as small positive ones
+     */
+    public void writeInt(int value){
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    public void writeBoolean(boolean value){
+        ensureCapacity(1);
+        mData[mLength ++] = (byte) (value ? 1 : 0);
+    }
+
+    public void writeFloat(float value){
+
+        int bits = Float.floatToIntBits(value);
+
+        ensureCapacity(4);
+        mData[mLength ++] = (byte) (bits >>> 24);
+        mData[mLength ++] = (byte) (bits >>> 16);
+        mData[mLength ++] = (byte) (bits >>> 8);
+        mData[mLength ++] = (byte) bits;
+    }
+
+    /**
+     * @param value written once in the string table, null is allowed
+     */
+    public void writeString(String value){
+
+        if(value == null){
+            writeVarInt(0);
+            return;
+        }
+
+        Integer index = mStringIndex.get(value);
+
+        if(index == null){
+            index = mStrings.size();
+            mStrings.add(value);
+            mStringIndex.put(value, index);
+        }
+
+        writeVarInt(index + 1);
+    }
+
+    /**
+     * writes text in place, for long text that isn't repeated
+     */
+    public void writeText(CharSequence text){
+
+        int length = text.length();
+
+        writeVarInt(length);
+        ensureCapacity(length * 3);
+
+        for(int index = 0; index < length; index ++){
+            mLength = putChar(mData, mLength, text.charAt(index));
+        }
+    }
+
+    /**
+     * writes the type id of value and its values
+     * @throws IllegalArgumentException when the class of value isn't registered in CodecTypes
+     */
+    public void writeObject(Object value){
+
+        int id = CodecTypes.idOf(value.getClass());
+
+        if(id == CodecTypes.NO_ID || value instanceof Codable == false){
+            throw new IllegalArgumentException("no codec type registered for " + value.getClass().getName());
+        }
+
+        writeVarInt(id);
+        ((Codable) value).writeTo(this);
+    }
+
+    /**
+     * writes the type id of value and the size of its values before them, so that
+     * they can be kept without being read, see SpanTable
+     * @throws IllegalArgumentException when the class of value isn't registered in CodecTypes
+     */
+    void writeSizedObject(Object value){
+
+        int id = CodecTypes.idOf(value.getClass());
+
+        if(id == CodecTypes.NO_ID || value instanceof Codable == false){
+            throw new IllegalArgumentException("no codec type registered for " + value.getClass().getName());
+        }
+
+        writeVarInt(id);
+
+        int start = mLength;
+        ((Codable) value).writeTo(this);
+        int size = mLength - start;
+
+        // the size goes before the values once they are written
+        int sizeLength = varIntLength(size);
+        ensureCapacity(sizeLength);
+        System.arraycopy(mData, start, mData, start + sizeLength, size);
+        mLength = start;
+        writeVarInt(size);
+        mLength += size;
+    }
+
+    int length(){
+        return mLength;
+    }
+
+    byte[] data(){
+        return mData;
+    }
+
+    String[] strings(){
+        return mStrings.toArray(new String[mStrings.size()]);
+    }
+
+    /**
+     * @return header followed by the string table and the values written so far
+     */
+    byte[] toByteArray(byte[] header){
+
+        CodecWriter table = new CodecWriter();
+        table.writeVarInt(mStrings.size());
+        for(String string : mStrings){
+            table.writeText(string);
+        }
+
+        byte[] data = new byte[header.length + table.mLength + mLength];
+        System.arraycopy(header, 0, data, 0, header.length);
+        System.arraycopy(table.mData, 0, data, header.length, table.mLength);
+        System.arraycopy(mData, 0, data, header.length + table.mLength, mLength);
+
+        return data;
+    }
+
+    private void ensureCapacity(int count){
+
+        if(mLength + count > mData.length){
+            byte[] data = new byte[Math.max(mData.length * 2, mLength + count)];
+            System.arraycopy(mData, 0, data, 0, mLength);
+            mData = data;
+        }
+    }
+
+    private static int varIntLength(int value){
+        int length = 1;
+        while ((value & ~0x7f) != 0){
+            value >>>= 7;
+            length ++;
+        }
+        return length;
+    }
+
+    /**
+     * characters are written one by one in 1 to 3 bytes, the way UTF-8 writes the ones
+     * in the basic plane, so that unpaired surrogates are written as they are
+     */
+    private static int putChar(byte[] data, int position, char c){
+
+        if(c < 0x80){
+            data[position ++] = (byte) c;
+        }else if(c < 0x800){
+            data[position ++] = (byte) (0xc0 | (c >> 6));
+            data[position ++] = (byte) (0x80 | (c & 0x3f));
+        }else {
+            data[position ++] = (byte) (0xe0 | (c >> 12));
+            data[position ++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            data[position ++] = (byte) (0x80 | (c & 0x3f));
+        }
+
+        return position;
+    }
+}
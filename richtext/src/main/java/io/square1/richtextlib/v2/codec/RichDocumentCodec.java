@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.content.RichDocument;
+
+/**
+ * Writes a RichDocument in a compact binary form and reads it back.
+ * The data starts with MAGIC and FORMAT_VERSION, then the string table and the
+ * title and elements of the document. Elements and spans are written with the
+ * ids they are registered with in CodecTypes so reading them needs no reflection.
+ * Data can be read from a byte array, a ByteBuffer or a memory mapped file, the spans
+ * of the text elements read are kept in a SpanTable until they are asked for.
+ */
+public final class RichDocumentCodec {
+
+    public static final int MAGIC = 0x52544443;
+
+    /**
+     * changes whenever the layout of the data does, data written with another
+     * version is rejected
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private RichDocumentCodec(){
+    }
+
+    /**
+     * @throws IllegalArgumentException when an element or span of document isn't registered in CodecTypes
+     */
+    public static byte[] encode(RichDocument document){
+
+        CodecWriter out = new CodecWriter();
+        out.writeString(document.getTitle());
+
+        ArrayList<DocumentElement> elements = document.getElements();
+        out.writeVarInt(elements.size());
+
+        for(DocumentElement element : elements){
+            out.writeObject(element);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(MAGIC);
+        header.put((byte) FORMAT_VERSION);
+
+        return out.toByteArray(header.array());
+    }
+
+    public static RichDocument decode(byte[] data) throws IOException {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * reads the document between the position and the limit of data, data itself
+     * isn't changed
+     */
+    public static RichDocument decode(ByteBuffer data) throws IOException {
+
+        ByteBuffer buffer = data.slice();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        try {
+
+            if(buffer.getInt() != MAGIC){
+                throw new IOException("not a RichDocument");
+            }
+
+            int version = buffer.get() & 0xff;
+            if(version != FORMAT_VERSION){
+                throw new IOException("unsupported format version " + version);
+            }
+
+            CodecReader in = new CodecReader(buffer);
+            String title = in.readString();
+
+            int count = in.readVarInt();
+            ArrayList<DocumentElement> elements = new ArrayList<>(Math.min(count, buffer.remaining()));
+
+            for(int index = 0; index < count; index ++){
+                Codable element = in.readObject();
+                if(element instanceof DocumentElement == false){
+                    throw new IOException("unexpected " + element.getClass().getName());
+                }
+                elements.add((DocumentElement) element);
+            }
+
+            return new RichDocument(title, elements);
+
+        }catch (RuntimeException e){
+            throw new IOException("malformed RichDocument", e);
+        }
+    }
+
+    /**
+     * maps file in memory and reads the document from it
+     */
+    public static RichDocument decode(File file) throws IOException {
+
+        FileInputStream stream = new FileInputStream(file);
+
+        try {
+            FileChannel channel = stream.getChannel();
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.codec;
+
+import android.text.Spannable;
+import android.text.Spanned;
+import android.util.LruCache;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+import io.square1.richtextlib.spans.RichTextSpan;
+
+/**
+ * Keeps the spans of a text as parallel arrays of starts, ends, flags and type ids, with
+ * the values of each span encoded the way RichDocumentCodec writes them. Span objects are
+ * created only for the ranges asked for, the last ones created are kept in a bounded
+ * cache and any span still referenced elsewhere is returned again rather than created twice.
+ * Spans that aren't a Codable.Value are never created twice, the table keeps them once
+ * created so that the state they gain is not lost.
+ * Queries return the spans in the same order the Spanned they come from did. Nothing but
+ * the arrays is allocated before the first query.
+ */
+public final class SpanTable {
+
+    /**
+     * the number of span objects kept after being created
+     */
+    public static final int MAX_CACHED_SPANS = 256;
+
+    private final int mCount;
+
+    // indexed by the position of the span in the order of the source
+    private final int[] mStarts;
+    private final int[] mEnds;
+    private final int[] mFlags;
+    private final int[] mOffsets;
+    private final char[] mTypes;
+
+    private final int[] mTypeIds;
+    private final Class<?>[] mTypeClasses;
+
+    private final byte[] mData;
+    private final String[] mStrings;
+
+    // the spans sorted by start, as an implicit binary tree where each node knows the
+    // largest end below it, like SpannableStringBuilder does
+    private int[] mOrder;
+    private int[] mMaxEnds;
+
+    private CodecReader mReader;
+    private LruCache<Integer,Object> mCache;
+    private WeakHashMap<Object,Integer> mIndexes;
+    private WeakReference<?>[] mSpans;
+    private Object[] mPinned;
+    private int[] mHits;
+
+    private SpanTable(int count, int[] starts, int[] ends, int[] flags, int[] offsets, char[] types,
+                      int[] typeIds, Class<?>[] typeClasses, byte[] data, String[] strings){
+
+        mCount = count;
+        mStarts = starts;
+        mEnds = ends;
+        mFlags = flags;
+        mOffsets = offsets;
+        mTypes = types;
+        mTypeIds = typeIds;
+        mTypeClasses = typeClasses;
+        mData = data;
+        mStrings = strings;
+    }
+
+    /**
+     * @return the spans of text in a table, null when one of them isn't registered in CodecTypes.
+     * The spans of text aren't kept, the table creates its own when asked for them.
+     */
+    public static SpanTable of(Spanned text){
+
+        Object[] spans = text.getSpans(0, text.length(), Object.class);
+        int count = spans.length;
+
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] flags = new int[count];
+        int[] offsets = new int[count];
+        char[] types = new char[count];
+        TypeList typeList = new TypeList();
+
+        CodecWriter out = new CodecWriter();
+
+        for(int index = 0; index < count; index ++){
+
+            Object span = spans[index];
+            int id = CodecTypes.idOf(span.getClass());
+
+            if(id == CodecTypes.NO_ID || span instanceof Codable == false){
+                return null;
+            }
+
+            starts[index] = text.getSpanStart(span);
+            ends[index] = text.getSpanEnd(span);
+            flags[index] = text.getSpanFlags(span);
+            types[index] = typeList.indexOf(id, span.getClass());
+            offsets[index] = out.length();
+
+            ((Codable) span).writeTo(out);
+        }
+
+        return new SpanTable(count, starts, ends, flags, offsets, types,
+                typeList.ids(), typeList.classes(),
+                Arrays.copyOf(out.data(), out.length()), out.strings());
+    }
+
+    /**
+     * writes the RichTextSpan spans of text, each start relative to the start of the
+     * previous span and the values of each span after their size, see read
+     */
+    public static void write(CodecWriter out, Spanned text){
+
+        RichTextSpan[] spans = text.getSpans(0, text.length(), RichTextSpan.class);
+
+        out.writeVarInt(spans.length);
+
+        int previousStart = 0;
+
+        for(RichTextSpan span : spans){
+
+            int start = text.getSpanStart(span);
+
+            out.writeInt(start - previousStart);
+            out.writeVarInt(text.getSpanEnd(span) - start);
+            out.writeVarInt(text.getSpanFlags(span));
+            out.writeSizedObject(span);
+
+            previousStart = start;
+        }
+    }
+
+    /**
+     * reads the spans written by write without creating them
+     * @throws IllegalStateException when a span type isn't registered in CodecTypes
+     */
+    public static SpanTable read(CodecReader in){
+
+        int count = in.readVarInt();
+
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] flags = new int[count];
+        int[] offsets = new int[count];
+        char[] types = new char[count];
+        TypeList typeList = new TypeList();
+
+        byte[] data = new byte[Math.max(count * 4, 16)];
+        int length = 0;
+        int start = 0;
+
+        for(int index = 0; index < count; index ++){
+
+            start += in.readInt();
+            starts[index] = start;
+            ends[index] = start + in.readVarInt();
+            flags[index] = in.readVarInt();
+
+            int id = in.readVarInt();
+            Class<?> type = CodecTypes.typeOf(id);
+            if(type == null){
+                throw new IllegalStateException("no codec type registered with id " + id);
+            }
+            types[index] = typeList.indexOf(id, type);
+
+            int size = in.readVarInt();
+            if(length + size > data.length){
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + size));
+            }
+            in.readBytes(data, length, size);
+            offsets[index] = length;
+            length += size;
+        }
+
+        return new SpanTable(count, starts, ends, flags, offsets, types,
+                typeList.ids(), typeList.classes(), Arrays.copyOf(data, length), in.strings());
+    }
+
+    /**
+     * @return a table of the same spans sharing the values and the index of this one. Its spans
+     * are created again when asked for, the state they gain isn't shared with those of this table
+     */
+    public synchronized SpanTable copy(){
+
+        SpanTable copy = new SpanTable(mCount, mStarts, mEnds, mFlags, mOffsets, mTypes,
+                mTypeIds, mTypeClasses, mData, mStrings);
+
+        if(mOrder != null){
+            copy.mOrder = mOrder;
+            copy.mMaxEnds = mMaxEnds;
+            copy.mHits = new int[16];
+        }
+
+        return copy;
+    }
+
+    public int size(){
+        return mCount;
+    }
+
+    /**
+     * @return the bytes taken by the table, not counting the span objects created
+     */
+    public int estimateSize(){
+        int size = mCount * (4 * 4 + 2) + mData.length;
+        if(mOrder != null){
+            size += mCount * 2 * 4;
+        }
+        if(mPinned != null){
+            size += mCount * 4;
+        }
+        return size;
+    }
+
+    /**
+     * same as Spanned.getSpans, creates the spans found that aren't created yet
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T[] getSpans(int queryStart, int queryEnd, Class<T> kind){
+
+        if(kind == null){
+            return (T[]) new Object[0];
+        }
+
+        buildIndex();
+        int count = collect(0, mCount, queryStart, queryEnd, matches(kind), 0);
+        Arrays.sort(mHits, 0, count);
+
+        T[] result = (T[]) Array.newInstance(kind, count);
+        for(int index = 0; index < count; index ++){
+            result[index] = (T) span(mHits[index]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the spans of the given kind that aren't a Codable.Value, in the order of the
+     * source. The value spans aren't created.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T[] getStatefulSpans(Class<T> kind){
+
+        boolean[] matches = matches(kind);
+        for(int index = 0; index < matches.length; index ++){
+            matches[index] &= Codable.Value.class.isAssignableFrom(mTypeClasses[index]) == false;
+        }
+
+        int count = 0;
+        for(int index = 0; index < mCount; index ++){
+            if(matches[mTypes[index]] == true){
+                count ++;
+            }
+        }
+
+        T[] result = (T[]) Array.newInstance(kind, count);
+        count = 0;
+        for(int index = 0; index < mCount; index ++){
+            if(matches[mTypes[index]] == true){
+                result[count ++] = (T) span(index);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the start of span, -1 if it isn't one of the spans of this table
+     */
+    public synchronized int getSpanStart(Object span){
+        Integer index = mIndexes != null ? mIndexes.get(span) : null;
+        return index != null ? mStarts[index] : -1;
+    }
+
+    public synchronized int getSpanEnd(Object span){
+        Integer index = mIndexes != null ? mIndexes.get(span) : null;
+        return index != null ? mEnds[index] : -1;
+    }
+
+    public synchronized int getSpanFlags(Object span){
+        Integer index = mIndexes != null ? mIndexes.get(span) : null;
+        return index != null ? mFlags[index] : 0;
+    }
+
+    /**
+     * same as Spanned.nextSpanTransition, without creating any span
+     */
+    public synchronized int nextSpanTransition(int start, int limit, Class<?> kind){
+        buildIndex();
+        return transition(0, mCount, start, limit, matches(kind != null ? kind : Object.class));
+    }
+
+    /**
+     * sets every span of the table on text, in the order they were read
+     */
+    public synchronized void applyTo(Spannable text){
+        for(int index = 0; index < mCount; index ++){
+            text.setSpan(span(index), mStarts[index], mEnds[index], mFlags[index]);
+        }
+    }
+
+    private boolean[] matches(Class<?> kind){
+        boolean[] matches = new boolean[mTypeClasses.length];
+        for(int index = 0; index < matches.length; index ++){
+            matches[index] = kind.isAssignableFrom(mTypeClasses[index]);
+        }
+        return matches;
+    }
+
+    /**
+     * adds to mHits the spans in the subtree between lo and hi the way
+     * SpannableStringBuilder.getSpans would find them
+     */
+    private int collect(int lo, int hi, int queryStart, int queryEnd, boolean[] matches, int count){
+
+        while (lo < hi){
+
+            int mid = (lo + hi) >>> 1;
+
+            if(mMaxEnds[mid] < queryStart){
+                return count;
+            }
+
+            count = collect(lo, mid, queryStart, queryEnd, matches, count);
+
+            int index = mOrder[mid];
+            int spanStart = mStarts[index];
+            int spanEnd = mEnds[index];
+
+            if(spanStart > queryEnd){
+                return count;
+            }
+
+            boolean found = spanEnd >= queryStart && matches[mTypes[index]];
+
+            if(found == true && spanStart != spanEnd && queryStart != queryEnd){
+                found = spanStart != queryEnd && spanEnd != queryStart;
+            }
+
+            if(found == true){
+                if(count == mHits.length){
+                    mHits = Arrays.copyOf(mHits, count * 2);
+                }
+                mHits[count ++] = index;
+            }
+
+            lo = mid + 1;
+        }
+
+        return count;
+    }
+
+    private int transition(int lo, int hi, int start, int limit, boolean[] matches){
+
+        while (lo < hi){
+
+            int mid = (lo + hi) >>> 1;
+
+            if(mMaxEnds[mid] <= start){
+                return limit;
+            }
+
+            limit = transition(lo, mid, start, limit, matches);
+
+            int index = mOrder[mid];
+            int spanStart = mStarts[index];
+            int spanEnd = mEnds[index];
+
+            if(spanStart >= limit){
+                return limit;
+            }
+
+            if(matches[mTypes[index]] == true){
+                if(spanStart > start){
+                    limit = spanStart;
+                }else if(spanEnd > start && spanEnd < limit){
+                    limit = spanEnd;
+                }
+            }
+
+            lo = mid + 1;
+        }
+
+        return limit;
+    }
+
+    private void buildIndex(){
+
+        if(mOrder != null){
+            return;
+        }
+
+        long[] keys = new long[mCount];
+        for(int index = 0; index < mCount; index ++){
+            keys[index] = ((long) mStarts[index] << 32) | index;
+        }
+        Arrays.sort(keys);
+
+        mOrder = new int[mCount];
+        for(int index = 0; index < mCount; index ++){
+            mOrder[index] = (int) keys[index];
+        }
+
+        mMaxEnds = new int[mCount];
+        buildMaxEnds(0, mCount);
+
+        mHits = new int[16];
+    }
+
+    private int buildMaxEnds(int lo, int hi){
+
+        if(lo >= hi){
+            return Integer.MIN_VALUE;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(mEnds[mOrder[mid]],
+                Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+
+        mMaxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * @return the span at index, created from its values if it isn't referenced anymore
+     */
+    private Object span(int index){
+
+        if(mCache == null){
+            mCache = new LruCache<>(MAX_CACHED_SPANS);
+            mIndexes = new WeakHashMap<>();
+            mSpans = new WeakReference<?>[mCount];
+            mReader = new CodecReader(ByteBuffer.wrap(mData), mStrings);
+        }
+
+        if(mPinned != null && mPinned[index] != null){
+            return mPinned[index];
+        }
+
+        Object span = mCache.get(index);
+
+        if(span == null && mSpans[index] != null){
+            span = mSpans[index].get();
+        }
+
+        if(span == null){
+            Codable codable = CodecTypes.newInstance(mTypeIds[mTypes[index]]);
+            mReader.seek(mOffsets[index]);
+            codable.readFrom(mReader);
+            span = codable;
+            mSpans[index] = new WeakReference<>(span);
+            mIndexes.put(span, index);
+
+            if(codable instanceof Codable.Value == false){
+                if(mPinned == null){
+                    mPinned = new Object[mCount];
+                }
+                mPinned[index] = span;
+                return span;
+            }
+        }
+
+        mCache.put(index, span);
+        return span;
+    }
+
+    /**
+     * the distinct types of the spans of a table
+     */
+    private static class TypeList {
+
+        private int[] mIds = new int[8];
+        private Class<?>[] mClasses = new Class<?>[8];
+        private int mCount;
+
+        char indexOf(int id, Class<?> type){
+
+            for(int index = 0; index < mCount; index ++){
+                if(mIds[index] == id){
+                    return (char) index;
+                }
+            }
+
+            if(mCount == mIds.length){
+                mIds = Arrays.copyOf(mIds, mCount * 2);
+                mClasses = Arrays.copyOf(mClasses, mCount * 2);
+            }
+
+            mIds[mCount] = id;
+            mClasses[mCount] = type;
+            return (char) mCount ++;
+        }
+
+        int[] ids(){
+            return Arrays.copyOf(mIds, mCount);
+        }
+
+        Class<?>[] classes(){
+            return Arrays.copyOf(mClasses, mCount);
+        }
+    }
+}
@@ -24,11 +24,14 @@ import android.os.Parcel;
 
 import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 10/09/15.
  */
-public class ImageDocumentElement extends DocumentElement {
+public class ImageDocumentElement extends DocumentElement implements Codable {
 
     @Override
     public boolean equals(Object o) {
@@ -110,6 +113,23 @@ public class ImageDocumentElement extends DocumentElement {
         mHeight = source.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mImageUrl);
+        out.writeString(mClickAction != null ? mClickAction.toString() : null);
+        out.writeInt(mWidth);
+        out.writeInt(mHeight);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mImageUrl = in.readString();
+        String clickAction = in.readString();
+        mClickAction = clickAction != null ? Uri.parse(clickAction) : null;
+        mWidth = in.readInt();
+        mHeight = in.readInt();
+    }
+
     public int getWidth(){
         return mWidth;
     }
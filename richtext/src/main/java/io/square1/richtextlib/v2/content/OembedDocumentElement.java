@@ -23,11 +23,14 @@ import android.os.Parcel;
 
 import io.square1.parcelable.DynamicParcelableCreator;
 import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 10/09/15.
  */
-public class OembedDocumentElement extends DocumentElement {
+public class OembedDocumentElement extends DocumentElement implements Codable {
 
 
     @Override
@@ -89,6 +92,21 @@ public class OembedDocumentElement extends DocumentElement {
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mBaseUrl);
+        out.writeString(mId);
+        out.writeString(mType != null ? mType.name() : null);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mBaseUrl = in.readString();
+        mId = in.readString();
+        String type = in.readString();
+        mType = type != null ? EmbedUtils.TEmbedType.valueOf(type) : null;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.content;
+
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+
+import java.util.IdentityHashMap;
+
+import io.square1.richtextlib.spans.RichTextSpan;
+
+/**
+ * The spans set on a RichTextDocumentElement that haven't been given to its
+ * SpannableStringBuilder yet. The builder goes through all its spans every time text
+ * is appended, keeping the spans aside while the parser appends text makes appending
+ * cost the same however many spans the text has.
+ * Only non empty SPAN_EXCLUSIVE_EXCLUSIVE spans are kept aside, text appended at the end
+ * doesn't change them and deleted text moves or removes them the way the builder would.
+ * They are given to the builder in the order they were set as soon as spans are read.
+ */
+final class PendingSpans {
+
+    private Object[] mSpans = new Object[16];
+    private int[] mStarts = new int[16];
+    private int[] mEnds = new int[16];
+    private int mCount;
+    private final IdentityHashMap<Object,Object> mPending = new IdentityHashMap<>();
+
+    /**
+     * @return false if the span has to be set on the builder straight away
+     */
+    boolean add(Object what, int start, int end, int flags, int length){
+
+        if(flags != Spannable.SPAN_EXCLUSIVE_EXCLUSIVE ||
+                what instanceof RichTextSpan == false ||
+                start < 0 || start >= end || end > length ||
+                mPending.containsKey(what) == true){
+            return false;
+        }
+
+        if(mCount == mSpans.length){
+            mSpans = grow(mSpans);
+            mStarts = grow(mStarts);
+            mEnds = grow(mEnds);
+        }
+
+        mSpans[mCount] = what;
+        mStarts[mCount] = start;
+        mEnds[mCount] = end;
+        mCount ++;
+        mPending.put(what, what);
+
+        return true;
+    }
+
+    boolean contains(Object what){
+        return mPending.containsKey(what);
+    }
+
+    /**
+     * the spans entirely inside the deleted text are removed, the others move
+     */
+    void delete(int start, int end){
+
+        int count = end - start;
+        int kept = 0;
+
+        for(int index = 0; index < mCount; index ++){
+
+            int spanStart = mStarts[index];
+            int spanEnd = mEnds[index];
+
+            if(spanStart >= start && spanStart < end && spanEnd <= end){
+                mPending.remove(mSpans[index]);
+                continue;
+            }
+
+            mSpans[kept] = mSpans[index];
+            mStarts[kept] = spanStart > start ? Math.max(start, spanStart - count) : spanStart;
+            mEnds[kept] = spanEnd > start ? Math.max(start, spanEnd - count) : spanEnd;
+            kept ++;
+        }
+
+        for(int index = kept; index < mCount; index ++){
+            mSpans[index] = null;
+        }
+
+        mCount = kept;
+    }
+
+    void applyTo(SpannableStringBuilder builder){
+
+        for(int index = 0; index < mCount; index ++){
+            builder.setSpan(mSpans[index], mStarts[index], mEnds[index], Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            mSpans[index] = null;
+        }
+
+        mCount = 0;
+        mPending.clear();
+    }
+
+    boolean isEmpty(){
+        return mCount == 0;
+    }
+
+    private static Object[] grow(Object[] array){
+        Object[] grown = new Object[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array){
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -32,17 +32,26 @@ import io.square1.parcelable.DynamicParcelableCreator;
  */
 public class RichDocument implements Parcelable {
 
-    public static final RichDocument EMPTY = new RichDocument("", new ArrayList());
+    public static final RichDocument EMPTY = new RichDocument("", new ArrayList<DocumentElement>());
 
     private ArrayList<DocumentElement> mElements;
     private String mTitle;
+    private boolean mTruncated;
 
-    public RichDocument(String title, ArrayList items){
+    public RichDocument(String title, ArrayList<DocumentElement> items){
         super();
         mElements = items;
         mTitle = title;
     }
 
+    /**
+     * @param truncated true if the parse reached one of the limits of its style
+     */
+    public RichDocument(String title, ArrayList<DocumentElement> items, boolean truncated){
+        this(title, items);
+        mTruncated = truncated;
+    }
+
 
 
 
@@ -51,10 +60,68 @@ public class RichDocument implements Parcelable {
         return mElements;
     }
 
+    /**
+     * compacts the spans of every text element, see RichTextDocumentElement.compact
+     */
+    public void compact(){
+        for(DocumentElement element : mElements){
+            if(element instanceof RichTextDocumentElement){
+                ((RichTextDocumentElement) element).compact();
+            }
+        }
+    }
+
+    /**
+     * @return a document with the elements of this one and a compact copy of its text
+     * elements, see RichTextDocumentElement.compactCopy. This document is left as it is.
+     */
+    public RichDocument compactCopy(){
+
+        ArrayList<DocumentElement> elements = new ArrayList<>(mElements.size());
+
+        for(DocumentElement element : mElements){
+            if(element instanceof RichTextDocumentElement){
+                RichTextDocumentElement copy = ((RichTextDocumentElement) element).compactCopy();
+                elements.add(copy != null ? copy : element);
+            }else {
+                elements.add(element);
+            }
+        }
+
+        return new RichDocument(mTitle, elements, mTruncated);
+    }
+
+    /**
+     * @return a document with the elements of this one and a fresh copy of its text elements,
+     * with span objects of their own, see RichTextDocumentElement.freshCopy
+     */
+    public RichDocument freshCopy(){
+
+        ArrayList<DocumentElement> elements = new ArrayList<>(mElements.size());
+
+        for(DocumentElement element : mElements){
+            if(element instanceof RichTextDocumentElement){
+                elements.add(((RichTextDocumentElement) element).freshCopy());
+            }else {
+                elements.add(element);
+            }
+        }
+
+        return new RichDocument(mTitle, elements, mTruncated);
+    }
+
     public String getTitle(){
         return mTitle;
     }
 
+    /**
+     * @return true if part of the source has been dropped reaching one of the limits of the
+     * style, see Style.limits. The flag isn't written to parcels or to the cache
+     */
+    public boolean isTruncated(){
+        return mTruncated;
+    }
+
 
     @Override
     public int describeContents() {
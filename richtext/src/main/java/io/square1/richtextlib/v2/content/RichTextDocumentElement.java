@@ -19,6 +19,7 @@
 
 package io.square1.richtextlib.v2.content;
 
+import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Parcel;
@@ -27,13 +28,13 @@ import android.text.GetChars;
 import android.text.Layout;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.TtsSpan;
 
 
 import org.w3c.dom.Text;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -53,14 +54,20 @@ import io.square1.richtextlib.spans.URLSpan;
 import io.square1.richtextlib.spans.UnderlineSpan;
 import io.square1.richtextlib.spans.UrlBitmapSpan;
 import io.square1.richtextlib.spans.VideoPlayerSpan;
+import io.square1.richtextlib.spans.WidthSizedSpan;
 import io.square1.richtextlib.util.NumberUtils;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
+import io.square1.richtextlib.v2.codec.SpanTable;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
 import io.square1.richtextlib.v2.utils.SpannedBuilderUtils;
 
 
 /**
  * This is the class for text whose content and markup can both be changed.
  */
-public class RichTextDocumentElement extends DocumentElement implements CharSequence, GetChars, Spannable, Appendable {
+public class RichTextDocumentElement extends DocumentElement implements CharSequence, GetChars, Spannable, Appendable, Codable {
 
     private static final class StringSpans {
 
@@ -277,13 +284,27 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
     @Override
     public int hashCode() {
-        return mSpannableString.hashCode();
+        return contentString().hashCode();
     }
 
     private SpannableStringBuilder mSpannableString;
+    private PendingSpans mPendingSpans;
+    private SpanTable mSpanTable;
+    private String mCompactText;
+    private RichTextTracer mTracer;
+    private OpenMarkers mMarkers;
+    private TextStats mStats;
+
+    // see getMediaSizes
+    private boolean mMediaSizesKnown;
+    private int mMediaSizesWidth;
+    private int mMediaSizesGeneration;
+    private long mMediaSizes;
 
     public RichTextDocumentElement(CharSequence string){
         mSpannableString = new SpannableStringBuilder(string);
+        mStats = new TextStats();
+        mStats.append(mSpannableString, 0, mSpannableString.length());
 
     }
 
@@ -295,7 +316,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
     @Override
     public void write(Parcel dest, int flags) {
 
-        dest.writeString(mSpannableString.toString());
+        dest.writeString(contentString());
 
         RichTextSpan[] spans =  getSpans();
 
@@ -306,9 +327,9 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
         for(int index = 0; index < spans.length; index ++){
 
             RichTextSpan currentSpan = spans[index];
-            spanStarts[index] = mSpannableString.getSpanStart(currentSpan);
-            spanEnds[index] = mSpannableString.getSpanEnd(currentSpan);
-            spanFlags[index] = mSpannableString.getSpanFlags(currentSpan);
+            spanStarts[index] = getSpanStart(currentSpan);
+            spanEnds[index] = getSpanEnd(currentSpan);
+            spanFlags[index] = getSpanFlags(currentSpan);
 
         }
 
@@ -324,6 +345,12 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
         String text = source.readString();
 
         mSpannableString = new SpannableStringBuilder(text);
+        mPendingSpans = null;
+        mSpanTable = null;
+        mCompactText = null;
+        mMarkers = null;
+        mStats = new TextStats();
+        mStats.append(mSpannableString, 0, mSpannableString.length());
 
         int[] spanStarts = source.createIntArray();
         int[] spanEnds = source.createIntArray();
@@ -342,91 +369,293 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeText(text());
+        SpanTable.write(out, this);
+    }
+
+    /**
+     * the spans read are kept in a SpanTable, see compact
+     */
+    @Override
+    public void readFrom(CodecReader in) {
+
+        mCompactText = in.readText();
+        mSpannableString = null;
+        mPendingSpans = null;
+        mMarkers = null;
+        mStats = new TextStats();
+        mStats.append(mCompactText, 0, mCompactText.length());
+
+        mSpanTable = SpanTable.read(in);
+    }
+
 
     @Override
     public Appendable append(char c)  {
+        inflate();
         mSpannableString =  mSpannableString.append(c);
+        mStats.append(c);
         return this;
     }
 
     @Override
     public Appendable append(CharSequence csq) {
-        mSpannableString = mSpannableString.append(csq);
+        inflate();
+        // the spans of csq are set after the ones already set on this element
+        mSpannableString = (csq instanceof Spanned ? spannable() : mSpannableString).append(csq);
+        mStats.append(csq, 0, csq.length());
         return this;
     }
 
+    /**
+     * appends the characters of csq from start to end without copying them first
+     */
     @Override
-    public Appendable append(CharSequence csq, int start, int end) throws IOException {
-        mSpannableString = mSpannableString.append(csq, start, end);
-        return mSpannableString;
+    public Appendable append(CharSequence csq, int start, int end) {
+        inflate();
+        mSpannableString = (csq instanceof Spanned ? spannable() : mSpannableString).append(csq, start, end);
+        mStats.append(csq, start, end);
+        return this;
     }
 
     @Override
     public void getChars(int start, int end, char[] dest, int destoff) {
+        if(mSpannableString == null){
+            mCompactText.getChars(start, end, dest, destoff);
+            return;
+        }
         mSpannableString.getChars(start, end, dest, destoff);
     }
 
     @Override
     public void setSpan(Object what, int start, int end, int flags) {
-        mSpannableString.setSpan(what, start, end, flags);
+        if(mSpanTable != null){
+            if(what instanceof RichTextSpan == false && mSpanTable.getSpanStart(what) < 0){
+                // watchers set by a layout don't need the spans of the table
+                if(mSpannableString == null){
+                    mSpannableString = new SpannableStringBuilder(mCompactText);
+                }
+                mSpannableString.setSpan(what, start, end, flags);
+                return;
+            }
+            inflate();
+        }
+        if(mTracer != null && mSpannableString.getSpanStart(what) < 0 &&
+                (mPendingSpans == null || mPendingSpans.contains(what) == false)){
+            mTracer.onSpanCreated(what, start, end);
+        }
+        setSpanImpl(what, start, end, flags);
+
+    }
+
+    private void setSpanImpl(Object what, int start, int end, int flags) {
 
+        // the setters of the styles come here directly, the spans of a compact element
+        // go back on the builder before one is added next to them
+        inflate();
+        mMediaSizesKnown = false;
+
+        if(mSpannableString.getSpanStart(what) < 0){
+            if(mPendingSpans == null){
+                mPendingSpans = new PendingSpans();
+            }
+            if(mPendingSpans.add(what, start, end, flags, length()) == true){
+                return;
+            }
+        }
+
+        spannable().setSpan(what, start, end, flags);
+    }
+
+    /**
+     * @return the builder holding the text with all the spans set on this element
+     */
+    private SpannableStringBuilder spannable() {
+        inflate();
+        if(mPendingSpans != null && mPendingSpans.isEmpty() == false){
+            mPendingSpans.applyTo(mSpannableString);
+        }
+        return mSpannableString;
+    }
+
+    /**
+     * @return the text of the element, kept in mCompactText while it is compact and
+     * no span was set on it
+     */
+    private CharSequence text() {
+        return mSpannableString != null ? mSpannableString : mCompactText;
+    }
+
+    /**
+     * sets the spans kept in mSpanTable back on the builder, before the text or the
+     * spans of the table are changed
+     */
+    private void inflate() {
+        if(mSpanTable != null){
+            if(mSpannableString == null){
+                mSpannableString = new SpannableStringBuilder(mCompactText);
+            }
+            SpanTable table = mSpanTable;
+            mSpanTable = null;
+            mCompactText = null;
+            table.applyTo(mSpannableString);
+        }
     }
 
     @Override
     public void removeSpan(Object what) {
-        mSpannableString.removeSpan(what);
+        mMediaSizesKnown = false;
+        if(mSpanTable != null && mSpanTable.getSpanStart(what) < 0){
+            if(mSpannableString != null){
+                mSpannableString.removeSpan(what);
+            }
+            return;
+        }
+        spannable().removeSpan(what);
     }
 
     @Override
     public <T> T[] getSpans(int start, int end, Class<T> type) {
-        return mSpannableString.getSpans(start, end, type);
+        if(mSpanTable != null){
+            return merge(mSpanTable.getSpans(start, end, type),
+                    mSpannableString != null ? mSpannableString.getSpans(start, end, type) : null);
+        }
+        return spannable().getSpans(start, end, type);
     }
 
     @Override
     public int getSpanStart(Object span) {
-        return mSpannableString.getSpanStart(span);
+        if(mSpanTable != null){
+            int start = mSpanTable.getSpanStart(span);
+            return start >= 0 || mSpannableString == null ? start : mSpannableString.getSpanStart(span);
+        }
+        return spannable().getSpanStart(span);
     }
 
     @Override
     public int getSpanEnd(Object span) {
-        return mSpannableString.getSpanEnd(span);
+        if(mSpanTable != null){
+            int end = mSpanTable.getSpanEnd(span);
+            return end >= 0 || mSpannableString == null ? end : mSpannableString.getSpanEnd(span);
+        }
+        return spannable().getSpanEnd(span);
     }
 
     @Override
     public int getSpanFlags(Object span) {
-        return mSpannableString.getSpanFlags(span);
+        if(mSpanTable != null){
+            return mSpanTable.getSpanStart(span) >= 0 || mSpannableString == null ?
+                    mSpanTable.getSpanFlags(span) :
+                    mSpannableString.getSpanFlags(span);
+        }
+        return spannable().getSpanFlags(span);
     }
 
     @Override
     public int nextSpanTransition(int start, int limit, Class type) {
-        return mSpannableString.nextSpanTransition(start, limit, type);
+        if(mSpanTable != null){
+            if(mSpannableString != null){
+                limit = mSpannableString.nextSpanTransition(start, limit, type);
+            }
+            return mSpanTable.nextSpanTransition(start, limit, type);
+        }
+        return spannable().nextSpanTransition(start, limit, type);
+    }
+
+    /**
+     * @return the spans of the table followed by the ones set on the element since it
+     * was compacted, the ones with a higher priority first as SpannableStringBuilder does
+     */
+    private <T> T[] merge(T[] compact, T[] added) {
+
+        if(added == null || added.length == 0){
+            return compact;
+        }
+
+        if(compact.length == 0){
+            return added;
+        }
+
+        T[] result = Arrays.copyOf(compact, compact.length + added.length);
+        System.arraycopy(added, 0, result, compact.length, added.length);
+
+        for(int index = 1; index < result.length; index ++){
+
+            T span = result[index];
+            int priority = getSpanFlags(span) & Spanned.SPAN_PRIORITY;
+            int position = index;
+
+            while (position > 0 && (getSpanFlags(result[position - 1]) & Spanned.SPAN_PRIORITY) < priority){
+                result[position] = result[position - 1];
+                position --;
+            }
+
+            result[position] = span;
+        }
+
+        return result;
     }
 
     @Override
     public int length() {
-        return mSpannableString.length();
+        return text().length();
     }
 
     @Override
     public char charAt(int index) {
-        return mSpannableString.charAt(index);
+        return text().charAt(index);
     }
 
     public void replaceAt(int index, String replacement){
-        mSpannableString.replace(index,index + replacement.length(),replacement);
+        inflate();
+        mStats.remove(mSpannableString, index, index + replacement.length());
+        spannable().replace(index,index + replacement.length(),replacement);
+        mStats.insert(mSpannableString, index, index + replacement.length());
+        if(mMarkers != null){
+            mMarkers.replace(index, index + replacement.length());
+        }
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        return mSpannableString.subSequence(start, end);
+        if(mSpanTable != null){
+            // copies the spans of the range only
+            return new SpannableStringBuilder(this, start, end);
+        }
+        return spannable().subSequence(start, end);
     }
 
     public RichTextSpan[] getSpans() {
-        return mSpannableString.getSpans(0, length(), RichTextSpan.class);
+        return getSpans(0, length(), RichTextSpan.class);
     }
 
     public <T> T[]  getSpans(Class<T> kind) {
-        return mSpannableString.getSpans(0, length(), kind);
+        return getSpans(0, length(), kind);
+    }
+
+    /**
+     * @return the spans a RichContentView binds to itself, all but the Codable.Value ones.
+     * The value spans of a compact element aren't created.
+     */
+    public RichTextSpan[] getStatefulSpans() {
+
+        if(mSpanTable != null){
+            // spans set since the element was compacted inflate it, unless they are watchers
+            return mSpanTable.getStatefulSpans(RichTextSpan.class);
+        }
+
+        RichTextSpan[] spans = getSpans();
+        int count = 0;
+
+        for(RichTextSpan span : spans){
+            if(span instanceof Codable.Value == false){
+                spans[count ++] = span;
+            }
+        }
+
+        return count == spans.length ? spans : Arrays.copyOf(spans, count);
     }
 
     public  <T>  T getLastSpan(Class<T> kind) {
@@ -434,7 +663,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
          * This knows that the last returned object from getSpans()
          * will be the most recently added.
          */
-        T[] objs = mSpannableString.getSpans(0, mSpannableString.length(), kind);
+        T[] objs = getSpans(0, length(), kind);
 
         if (objs.length == 0) {
             return null;
@@ -443,20 +672,99 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
         }
     }
 
+    /**
+     * marks the current end of the text as the start of an element, see SpannedBuilderUtils.startSpan.
+     * Markers aren't spans of the text, they are seen by the marker methods only and move
+     * when text before them is deleted.
+     */
+    public void addMarker(Object marker) {
+        if(mMarkers == null){
+            mMarkers = new OpenMarkers();
+        }
+        mMarkers.add(marker, length());
+    }
+
+    /**
+     * @return the marker of the given kind added last, in constant time
+     */
+    public <T> T getLastMarker(Class<T> kind) {
+        return mMarkers != null ? mMarkers.last(kind) : null;
+    }
+
+    /**
+     * @return where the marker is in the text or -1 if it has been removed
+     */
+    public int getMarkerStart(Object marker) {
+        return mMarkers != null ? mMarkers.start(marker) : -1;
+    }
+
+    public void removeMarker(Object marker) {
+        if(mMarkers != null){
+            mMarkers.remove(marker);
+        }
+    }
+
+    /**
+     * @return true if a marker added hasn't been removed, an element started and not closed yet
+     */
+    public boolean hasOpenMarkers() {
+        return mMarkers != null && mMarkers.isEmpty() == false;
+    }
+
+    /**
+     * @return how many characters of the text aren't whitespace, 0 when the text is blank
+     */
+    public int getNonWhitespaceCount() {
+        return mStats.nonWhitespace();
+    }
+
+    /**
+     * @return how many new lines the text starts with
+     */
+    public int getLeadingNewLines() {
+        return mStats.leadingNewLines();
+    }
+
+    /**
+     * @return how many new lines the text ends with
+     */
+    public int getTrailingNewLines() {
+        return mStats.trailingNewLines();
+    }
+
     public void trim(int count) {
         if(count > 0) {
+            inflate();
             int start = length() - count;
             int end = start + count;
             try {
+                mStats.remove(mSpannableString, start, end);
                 mSpannableString.delete(start, end);
+                mStats.insert(mSpannableString, start, start);
+                if(mPendingSpans != null){
+                    mPendingSpans.delete(start, end);
+                }
+                if(mMarkers != null){
+                    mMarkers.delete(start, end);
+                }
             }catch (Exception exc){}
         }
     }
 
     public void delete(int start, int end) {
+        inflate();
+        mMediaSizesKnown = false;
         try {
            // mSpannableString.replace(start, end, " ", 0, 0);
+            mStats.remove(mSpannableString, start, end);
             mSpannableString = mSpannableString.delete(start, end);
+            mStats.insert(mSpannableString, start, start);
+            if(mPendingSpans != null){
+                mPendingSpans.delete(start, end);
+            }
+            if(mMarkers != null){
+                mMarkers.delete(start, end);
+            }
         }catch (Exception e){
 
         }
@@ -464,16 +772,148 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
     @Override
     public String toString(){
-        int len = mSpannableString.length();
+        CharSequence text = text();
+        int len = text.length();
         if(len == 0) return "<EMPTY>";
-        if(len < 70) return mSpannableString.toString();
-        return mSpannableString.subSequence(0,30).toString() +
+        if(len < 70) return text.toString();
+        return text.subSequence(0,30).toString() +
                 " ~...~ " +
-                mSpannableString.subSequence(len-30, len - 1).toString();
+                text.subSequence(len-30, len - 1).toString();
+    }
+
+    /**
+     * receives the spans set on this element while it is being built by the parser
+     * @param tracer the tracer or null
+     */
+    public void setTracer(RichTextTracer tracer){
+        mTracer = tracer;
+    }
+
+    /**
+     * keeps the spans of this element in a SpanTable, span objects are then created only
+     * for the ranges asked for by layout and drawing. Spans got from the element before are
+     * no longer its spans. The element keeps span objects again as soon as its text or the
+     * spans of the table are changed.
+     * @return false when a span of the element isn't registered in CodecTypes, the element is left as it is
+     */
+    public boolean compact() {
+
+        if(mSpanTable != null){
+            return true;
+        }
+
+        SpannableStringBuilder text = spannable();
+        SpanTable table = SpanTable.of(text);
+
+        if(table == null){
+            return false;
+        }
+
+        // the builder keeps arrays sized for the spans it held and room for more text
+        mCompactText = text.toString();
+        mSpannableString = null;
+        mSpanTable = table;
+        return true;
+    }
+
+    /**
+     * @return a compact element with the text and the spans of this one, this element and the
+     * spans got from it are left as they are. The spans of the copy are new objects created
+     * from the values of these. A compact element returns itself.
+     * Null when a span of the element isn't registered in CodecTypes.
+     */
+    public RichTextDocumentElement compactCopy() {
+
+        if(mSpanTable != null){
+            return this;
+        }
+
+        SpannableStringBuilder text = spannable();
+        SpanTable table = SpanTable.of(text);
+
+        if(table == null){
+            return null;
+        }
+
+        RichTextDocumentElement copy = new RichTextDocumentElement();
+        copy.mCompactText = text.toString();
+        copy.mSpannableString = null;
+        copy.mStats = new TextStats();
+        copy.mStats.append(copy.mCompactText, 0, copy.mCompactText.length());
+        copy.mSpanTable = table;
+        return copy;
+    }
+
+    /**
+     * @return a compact element sharing the text and the span values of this compact one, its
+     * spans are new objects so that the state a view gives them isn't shared with the spans of
+     * this element, see SpanTable.copy. An element that isn't compact returns a compact copy,
+     * or itself when a span isn't registered in CodecTypes.
+     */
+    public RichTextDocumentElement freshCopy() {
+
+        if(mSpanTable == null){
+            RichTextDocumentElement copy = compactCopy();
+            return copy != null ? copy : this;
+        }
+
+        RichTextDocumentElement copy = new RichTextDocumentElement();
+        copy.mCompactText = mCompactText;
+        copy.mSpannableString = null;
+        copy.mStats = new TextStats();
+        copy.mStats.append(copy.mCompactText, 0, copy.mCompactText.length());
+        copy.mSpanTable = mSpanTable.copy();
+        return copy;
+    }
+
+    public boolean isCompact() {
+        return mSpanTable != null;
+    }
+
+    /**
+     * @return a fingerprint of the sizes the WidthSizedSpans of the element have when it is
+     * laid out in width. It is worked out again once a span is set or removed or one of them
+     * changes size, see WidthSizedSpan.Sizes
+     */
+    public long getMediaSizes(int width) {
+
+        int generation = WidthSizedSpan.Sizes.generation();
+
+        if(mMediaSizesKnown == true &&
+                mMediaSizesWidth == width &&
+                mMediaSizesGeneration == generation){
+            return mMediaSizes;
+        }
+
+        long sizes = 0;
+        Paint.FontMetricsInt metrics = new Paint.FontMetricsInt();
+
+        for(WidthSizedSpan span : getSpans(0, length(), WidthSizedSpan.class)){
+            sizes = 31 * sizes + span.getSize(width, metrics);
+            sizes = 31 * sizes + metrics.ascent;
+        }
+
+        mMediaSizes = sizes;
+        mMediaSizesWidth = width;
+        mMediaSizesGeneration = generation;
+        mMediaSizesKnown = true;
+        return sizes;
+    }
+
+    /**
+     * @return the number of spans of the element, without creating the ones kept in a SpanTable
+     */
+    public int getSpanCount() {
+        if(mSpanTable != null){
+            return mSpanTable.size() +
+                    (mSpannableString != null ? mSpannableString.getSpans(0, length(), Object.class).length : 0);
+        }
+        return spannable().getSpans(0, length(), Object.class).length;
     }
 
     public String contentString() {
-        return mSpannableString == null ? "" : mSpannableString.toString();
+        CharSequence text = text();
+        return text == null ? "" : text.toString();
     }
 
 
@@ -490,7 +930,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      */
     public RichTextDocumentElement setFontFamily(String fontFamily, int start, int length){
         if (TextUtils.isEmpty(fontFamily) == false) {
-            mSpannableString.setSpan(new TypefaceSpan(fontFamily), start, length,
+            setSpanImpl(new TypefaceSpan(fontFamily), start, length,
                     Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
         return this;
@@ -503,7 +943,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      * @param length how long is the portion of string that should receive the new style
      */
     public RichTextDocumentElement setFontColor(@ColorInt int color, int start, int length){
-        mSpannableString.setSpan(new ForegroundColorSpan(color | 0xFF000000),
+        setSpanImpl(new ForegroundColorSpan(color | 0xFF000000),
                 start, length,
                 Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -517,7 +957,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      * @return
      */
     public RichTextDocumentElement setFontSizeChange(float relativeSizeChange, int start, int length){
-        mSpannableString.setSpan(new RelativeSizeSpan(relativeSizeChange),
+        setSpanImpl(new RelativeSizeSpan(relativeSizeChange),
                 start, length,
                 Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -530,7 +970,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      * @param length how long is the portion of string that should receive the new style
      */
     public RichTextDocumentElement setBackgroundColor(@ColorInt int color, int start, int length){
-        mSpannableString.setSpan(new BackgroundColorSpan(color | 0xFF000000),
+        setSpanImpl(new BackgroundColorSpan(color | 0xFF000000),
                 start, length,
                 Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -545,7 +985,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      * @return
      */
      public RichTextDocumentElement setUnderline(int start, int length){
-             mSpannableString.setSpan(new UnderlineSpan(),
+             setSpanImpl(new UnderlineSpan(),
                      start,
                      length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
          return this;
@@ -559,7 +999,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      * @return
      */
     public RichTextDocumentElement setRelativeTextSize(int start, int length, float change){
-        mSpannableString.setSpan(new RelativeSizeSpan(change),
+        setSpanImpl(new RelativeSizeSpan(change),
                 start,
                 length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -573,7 +1013,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      */
 
     public RichTextDocumentElement setBoldText(int start, int length){
-        mSpannableString.setSpan(new StyleSpan(Typeface.BOLD),
+        setSpanImpl(new StyleSpan(Typeface.BOLD),
                 start,
                 length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -582,7 +1022,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
     public RichTextDocumentElement setStrikethrough(int start, int length){
 
-        mSpannableString.setSpan(new StrikethroughSpan(),
+        setSpanImpl(new StrikethroughSpan(),
                 start,
                 length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -591,7 +1031,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
     public RichTextDocumentElement setAlignment(int start, int length, Layout.Alignment alignment){
 
-        mSpannableString.setSpan(new RichAlignmentSpan.Standard(alignment),
+        setSpanImpl(new RichAlignmentSpan.Standard(alignment),
                 start,
                 length, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
         return this;
@@ -607,7 +1047,7 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
      public RichTextDocumentElement appendImage(Uri imageUri, int width, int height){
          UrlBitmapSpan imageDrawable = new UrlBitmapSpan(imageUri, width, height, width);
          int[] bounds =  appendText(SpannedBuilderUtils.NO_SPACE);
-         mSpannableString.setSpan(imageDrawable,
+         setSpanImpl(imageDrawable,
                  bounds[0],
                  bounds[1],
                  Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
@@ -670,9 +1110,9 @@ public class RichTextDocumentElement extends DocumentElement implements CharSequ
 
      private int[] appendText(CharSequence sequence){
          int[] startEnd = new int[2];
-         startEnd[0] = mSpannableString.length();
-         mSpannableString.append(sequence);
-         startEnd[1] = mSpannableString.length();
+         startEnd[0] = length();
+         append(sequence);
+         startEnd[1] = length();
          return startEnd;
      }
 
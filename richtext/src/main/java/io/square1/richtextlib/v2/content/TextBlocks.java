@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.content;
+
+import android.text.Spanned;
+import android.text.style.ParagraphStyle;
+import android.text.style.ReplacementSpan;
+
+import java.util.Arrays;
+
+/**
+ * Splits a text in blocks at hard paragraph breaks, so that a long text can be laid out
+ * and drawn a block at a time, see RichTextBlockAdapter. A block ends after a new line
+ * that isn't followed by another one, blank lines stay with the paragraph before them,
+ * and never inside a paragraph span, a quote or a list item, or a replacement span.
+ * Character spans crossing a break are split with the text.
+ */
+public final class TextBlocks {
+
+    private TextBlocks(){
+    }
+
+    /**
+     * @param minLength the length a block reaches before it is ended at the next break,
+     *                  short paragraphs are kept together
+     * @return the offsets the blocks start at followed by the length of text, a text
+     * without breaks is a single block
+     */
+    public static int[] boundaries(Spanned text, int minLength){
+
+        int length = text.length();
+        long[] spans = paragraphSpans(text);
+
+        int[] boundaries = new int[16];
+        int count = 0;
+        boundaries[count ++] = 0;
+
+        int blockStart = 0;
+        int next = 0;
+        int maxEnd = 0;
+
+        for(int index = 1; index < length; index ++){
+
+            if(text.charAt(index - 1) != '\n' || text.charAt(index) == '\n'){
+                continue;
+            }
+
+            // the spans starting before index, the break is inside one of them if it ends after
+            while (next < spans.length && (int) (spans[next] >>> 32) < index){
+                maxEnd = Math.max(maxEnd, (int) spans[next]);
+                next ++;
+            }
+
+            if(maxEnd > index || index - blockStart < minLength){
+                continue;
+            }
+
+            if(count == boundaries.length){
+                boundaries = Arrays.copyOf(boundaries, count * 2);
+            }
+            boundaries[count ++] = index;
+            blockStart = index;
+        }
+
+        if(count == boundaries.length){
+            boundaries = Arrays.copyOf(boundaries, count + 1);
+        }
+        boundaries[count ++] = length;
+
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * @return the number of blocks of boundaries
+     */
+    public static int count(int[] boundaries){
+        return boundaries.length - 1;
+    }
+
+    /**
+     * @return a copy of the text of block index with its spans, without the new line
+     * ending it, views showing the blocks one after the other break the line already
+     */
+    public static RichTextDocumentElement block(RichTextDocumentElement text, int[] boundaries, int index){
+
+        int start = boundaries[index];
+        int end = boundaries[index + 1];
+
+        if(index < count(boundaries) - 1 && end > start && text.charAt(end - 1) == '\n'){
+            end --;
+        }
+
+        return new RichTextDocumentElement(text.subSequence(start, end));
+    }
+
+    /**
+     * @return the start and end of the paragraph and replacement spans of text packed in
+     * longs, sorted by start
+     */
+    private static long[] paragraphSpans(Spanned text){
+
+        ParagraphStyle[] paragraphs = text.getSpans(0, text.length(), ParagraphStyle.class);
+        ReplacementSpan[] replacements = text.getSpans(0, text.length(), ReplacementSpan.class);
+
+        long[] spans = new long[paragraphs.length + replacements.length];
+        int count = 0;
+
+        for(ParagraphStyle span : paragraphs){
+            spans[count ++] = pack(text, span);
+        }
+        for(ReplacementSpan span : replacements){
+            spans[count ++] = pack(text, span);
+        }
+
+        Arrays.sort(spans);
+        return spans;
+    }
+
+    private static long pack(Spanned text, Object span){
+        return ((long) text.getSpanStart(span) << 32) | (text.getSpanEnd(span) & 0xffffffffL);
+    }
+}
@@ -22,11 +22,14 @@ package io.square1.richtextlib.v2.content;
 import android.os.Parcel;
 
 import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 10/09/15.
  */
-public class VideoDocumentElement extends DocumentElement {
+public class VideoDocumentElement extends DocumentElement implements Codable {
 
 
     private String mVideoUrl;
@@ -52,6 +55,20 @@ public class VideoDocumentElement extends DocumentElement {
         mVideoUrl = source.readString();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mVideoUrl);
+        out.writeInt(mWidth);
+        out.writeInt(mHeight);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mVideoUrl = in.readString();
+        mWidth = in.readInt();
+        mHeight = in.readInt();
+    }
+
     public VideoDocumentElement(String video, int width, int height){
         super();
         mVideoUrl = video;
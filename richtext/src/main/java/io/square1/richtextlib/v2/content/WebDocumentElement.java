@@ -20,11 +20,14 @@
 package io.square1.richtextlib.v2.content;
 
 import android.os.Parcel;
+import io.square1.richtextlib.v2.codec.Codable;
+import io.square1.richtextlib.v2.codec.CodecReader;
+import io.square1.richtextlib.v2.codec.CodecWriter;
 
 /**
  * Created by roberto on 10/09/15.
  */
-public class WebDocumentElement extends DocumentElement {
+public class WebDocumentElement extends DocumentElement implements Codable {
 
     public enum ContentType {
         EUrl,
@@ -73,6 +76,23 @@ public class WebDocumentElement extends DocumentElement {
         mHeight = source.readInt();
     }
 
+    @Override
+    public void writeTo(CodecWriter out) {
+        out.writeString(mContent);
+        out.writeString(mType != null ? mType.name() : null);
+        out.writeInt(mWidth);
+        out.writeInt(mHeight);
+    }
+
+    @Override
+    public void readFrom(CodecReader in) {
+        mContent = in.readString();
+        String type = in.readString();
+        mType = type != null ? ContentType.valueOf(type) : null;
+        mWidth = in.readInt();
+        mHeight = in.readInt();
+    }
+
     public int getWidth(){
         return mWidth;
     }
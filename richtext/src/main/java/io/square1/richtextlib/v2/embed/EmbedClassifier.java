@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.embed;
+
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+import io.square1.richtextlib.EmbedUtils;
+
+/**
+ * Finds the embeds in links. A link is parsed once and only the providers registered for
+ * the suffixes of its host are asked for an embed, the results of the last links classified
+ * are kept. Links without a scheme are read as http links.
+ *
+ * A new classifier knows Twitter, YouTube, Gfycat, SoundCloud, Vimeo, Vine and Instagram.
+ * Classifiers are thread safe, DEFAULT is the one EmbedUtils and the parser use.
+ */
+public class EmbedClassifier {
+
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    public static final EmbedClassifier DEFAULT = new EmbedClassifier();
+
+    private static final EmbedMatch NO_MATCH = new EmbedMatch(EmbedUtils.TEmbedType.EUnsupported, null, null);
+
+    private volatile HostSuffixTrie mProviders = new HostSuffixTrie();
+    private final LruCache<String,EmbedMatch> mCache;
+
+    public EmbedClassifier(){
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the number of links whose embed is remembered, 0 to remember none
+     */
+    public EmbedClassifier(int cacheSize){
+
+        mCache = cacheSize > 0 ? new LruCache<String,EmbedMatch>(cacheSize) : null;
+
+        register("twitter.com", EmbedProviders.TWITTER);
+        register("t.co", EmbedProviders.TWITTER);
+        register("youtube.com", EmbedProviders.YOUTUBE);
+        register("youtube-nocookie.com", EmbedProviders.YOUTUBE);
+        register("youtu.be", EmbedProviders.YOUTUBE);
+        register("gfycat.com", EmbedProviders.GFYCAT);
+        register("soundcloud.com", EmbedProviders.SOUND_CLOUD);
+        register("vimeo.com", EmbedProviders.VIMEO);
+        register("vine.co", EmbedProviders.VINE);
+        register("instagram.com", EmbedProviders.INSTAGRAM);
+        register("instagr.am", EmbedProviders.INSTAGRAM);
+    }
+
+    /**
+     * registers provider for the links to hostSuffix and its sub domains,
+     * providers of longer suffixes are asked first.
+     * @param hostSuffix "youtube.com" for www.youtube.com, m.youtube.com and youtube.com
+     */
+    public EmbedClassifier register(String hostSuffix, EmbedProvider provider){
+        synchronized (this){
+            HostSuffixTrie providers = mProviders.copy();
+            providers.put(hostSuffix.toLowerCase(Locale.US), provider);
+            mProviders = providers;
+        }
+        clearCache();
+        return this;
+    }
+
+    /**
+     * removes the providers registered for hostSuffix
+     */
+    public EmbedClassifier unregister(String hostSuffix){
+        synchronized (this){
+            HostSuffixTrie providers = mProviders.copy();
+            providers.remove(hostSuffix.toLowerCase(Locale.US));
+            mProviders = providers;
+        }
+        clearCache();
+        return this;
+    }
+
+    /**
+     * @return the embed in link or null if there isn't one
+     */
+    public EmbedMatch classify(String link){
+
+        if(TextUtils.isEmpty(link) == true){
+            return null;
+        }
+
+        EmbedMatch match = mCache != null ? mCache.get(link) : null;
+
+        if(match == null){
+            match = find(link);
+            if(mCache != null){
+                mCache.put(link, match);
+            }
+        }
+
+        return match != NO_MATCH ? match : null;
+    }
+
+    private EmbedMatch find(String link){
+
+        Uri uri = Uri.parse(link);
+        String host = uri.getHost();
+
+        if(TextUtils.isEmpty(host) == true && uri.getScheme() == null){
+            uri = Uri.parse("http://" + link);
+            host = uri.getHost();
+        }
+
+        if(TextUtils.isEmpty(host) == true){
+            return NO_MATCH;
+        }
+
+        ArrayList<EmbedProvider> providers = new ArrayList<>();
+        mProviders.find(host.toLowerCase(Locale.US), providers);
+
+        for(EmbedProvider provider : providers){
+            EmbedMatch match = provider.match(link, uri);
+            if(match != null){
+                return match;
+            }
+        }
+
+        return NO_MATCH;
+    }
+
+    private void clearCache(){
+        if(mCache != null){
+            mCache.evictAll();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.embed;
+
+import io.square1.richtextlib.EmbedUtils;
+
+/**
+ * An embed found by EmbedClassifier in a link.
+ */
+public final class EmbedMatch {
+
+    private final EmbedUtils.TEmbedType mType;
+    private final String mId;
+    private final String mCanonicalUrl;
+
+    public EmbedMatch(EmbedUtils.TEmbedType type, String id, String canonicalUrl){
+        mType = type;
+        mId = id;
+        mCanonicalUrl = canonicalUrl;
+    }
+
+    public EmbedUtils.TEmbedType getType(){
+        return mType;
+    }
+
+    /**
+     * @return the video, tweet, gif or track id, the link itself for the embeds resolved through oembed
+     */
+    public String getId(){
+        return mId;
+    }
+
+    /**
+     * @return the url the embed is loaded from, the stream url for SoundCloud tracks
+     */
+    public String getCanonicalUrl(){
+        return mCanonicalUrl;
+    }
+
+    /**
+     * @return what EmbedUtils.ParseLinkCallback and OembedDocumentElement receive for this embed
+     */
+    public String getContent(){
+        return mType == EmbedUtils.TEmbedType.ESoundCloud ? mCanonicalUrl : mId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        EmbedMatch that = (EmbedMatch) o;
+
+        if (mType != that.mType) return false;
+        if (mId != null ? !mId.equals(that.mId) : that.mId != null) return false;
+        return mCanonicalUrl != null ? mCanonicalUrl.equals(that.mCanonicalUrl) : that.mCanonicalUrl == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mType.hashCode();
+        result = 31 * result + (mId != null ? mId.hashCode() : 0);
+        result = 31 * result + (mCanonicalUrl != null ? mCanonicalUrl.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return mType + " " + mId + " " + mCanonicalUrl;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.embed;
+
+import android.net.Uri;
+
+/**
+ * Extracts an embed from the links of the hosts it is registered for, see EmbedClassifier.register.
+ * Providers are shared between threads.
+ */
+public interface EmbedProvider {
+
+    /**
+     * @param link the link as found in the document
+     * @param uri link parsed, the host is always set
+     * @return the embed or null if link isn't one
+     */
+    EmbedMatch match(String link, Uri uri);
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.embed;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.square1.richtextlib.EmbedUtils;
+
+/**
+ * The providers EmbedClassifier registers by default.
+ */
+public final class EmbedProviders {
+
+    private EmbedProviders(){
+    }
+
+    private static final Pattern YOUTUBE_ID = Pattern.compile(
+            "(?:youtube(?:-nocookie)?\\.com\\/(?:[^\\/\\n\\s]+\\/\\S+\\/|(?:v|e(?:mbed)?)\\/|\\S*?[?&]v=)|youtu\\.be\\/)([a-zA-Z0-9_-]{11})",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * twitter.com/user/status/id
+     */
+    public static final EmbedProvider TWITTER = new EmbedProvider() {
+        @Override
+        public EmbedMatch match(String link, Uri uri) {
+            String id = uri.getLastPathSegment();
+            if(TextUtils.isEmpty(id) == false && TextUtils.isDigitsOnly(id) == true){
+                return new EmbedMatch(EmbedUtils.TEmbedType.ETwitter, id,
+                        "https://twitter.com/i/web/status/" + id);
+            }
+            return null;
+        }
+    };
+
+    /**
+     * youtube.com/watch?v=id, youtube.com/embed/id, youtu.be/id ...
+     */
+    public static final EmbedProvider YOUTUBE = new EmbedProvider() {
+        @Override
+        public EmbedMatch match(String link, Uri uri) {
+            Matcher matcher = YOUTUBE_ID.matcher(link);
+            if(matcher.find() == true){
+                String id = matcher.group(1);
+                return new EmbedMatch(EmbedUtils.TEmbedType.EYoutube, id,
+                        "https://www.youtube.com/watch?v=" + id);
+            }
+            return null;
+        }
+    };
+
+    /**
+     * gfycat.com/id or gfycat.com/ifr/id
+     */
+    public static final EmbedProvider GFYCAT = new EmbedProvider() {
+        @Override
+        public EmbedMatch match(String link, Uri uri) {
+            List<String> segments = uri.getPathSegments();
+            if(segments.size() == 1 || segments.size() == 2){
+                String id = segments.get(segments.size() - 1);
+                return new EmbedMatch(EmbedUtils.TEmbedType.EGfycat, id, "https://gfycat.com/" + id);
+            }
+            return null;
+        }
+    };
+
+    /**
+     * api.soundcloud.com/tracks/id or a player with the track in its url parameter
+     */
+    public static final EmbedProvider SOUND_CLOUD = new EmbedProvider() {
+        @Override
+        public EmbedMatch match(String link, Uri uri) {
+
+            Uri track = uri;
+
+            if(uri.getHost().regionMatches(true, 0, "api.", 0, 4) == false){
+                String url = null;
+                try {
+                    url = uri.getQueryParameter("url");
+                }catch (Exception exc){
+
+                }
+                if(TextUtils.isEmpty(url) == true){
+                    return null;
+                }
+                track = Uri.parse(url);
+            }
+
+            for(String segment : track.getPathSegments()){
+                if(TextUtils.isDigitsOnly(segment) == true){
+                    return new EmbedMatch(EmbedUtils.TEmbedType.ESoundCloud, segment,
+                            EmbedUtils.getSoundCloudStreamFromTrackId(segment, EmbedUtils.SOUND_CLOUD_CLIENT_ID));
+                }
+            }
+
+            return null;
+        }
+    };
+
+    public static final EmbedProvider VIMEO = oembed(EmbedUtils.TEmbedType.EVimeo);
+
+    public static final EmbedProvider VINE = oembed(EmbedUtils.TEmbedType.EVine);
+
+    public static final EmbedProvider INSTAGRAM = oembed(EmbedUtils.TEmbedType.EInstagram);
+
+    /**
+     * @return a provider matching every link of its hosts, the link is resolved later through oembed
+     */
+    public static EmbedProvider oembed(final EmbedUtils.TEmbedType type){
+        return new EmbedProvider() {
+            @Override
+            public EmbedMatch match(String link, Uri uri) {
+                return new EmbedMatch(type, link, link);
+            }
+        };
+    }
+}
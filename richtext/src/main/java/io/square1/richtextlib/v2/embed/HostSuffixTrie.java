@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+package io.square1.richtextlib.v2.embed;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Providers indexed by the labels of their host suffix read from the right,
+ * "youtu.be" is stored under "be" then "youtu". Not thread safe, EmbedClassifier
+ * replaces it instead of modifying it.
+ */
+final class HostSuffixTrie {
+
+    private final HashMap<String,HostSuffixTrie> mChildren = new HashMap<>();
+    private final ArrayList<EmbedProvider> mProviders = new ArrayList<>();
+
+    void put(String hostSuffix, EmbedProvider provider){
+        node(hostSuffix, true).mProviders.add(provider);
+    }
+
+    void remove(String hostSuffix){
+        HostSuffixTrie node = node(hostSuffix, false);
+        if(node != null){
+            node.mProviders.clear();
+        }
+    }
+
+    /**
+     * @param host lower case
+     * @param providers receives the providers of every suffix of host, the longest suffix first
+     */
+    void find(String host, List<EmbedProvider> providers){
+
+        HostSuffixTrie node = this;
+        int end = host.length();
+
+        while (end > 0){
+
+            int dot = host.lastIndexOf('.', end - 1);
+            node = node.mChildren.get(host.substring(dot + 1, end));
+
+            if(node == null){
+                return;
+            }
+
+            providers.addAll(0, node.mProviders);
+            end = dot;
+        }
+    }
+
+    HostSuffixTrie copy(){
+        HostSuffixTrie copy = new HostSuffixTrie();
+        copy.mProviders.addAll(mProviders);
+        for(String label : mChildren.keySet()){
+            copy.mChildren.put(label, mChildren.get(label).copy());
+        }
+        return copy;
+    }
+
+    private HostSuffixTrie node(String hostSuffix, boolean create){
+
+        HostSuffixTrie node = this;
+        int end = hostSuffix.length();
+
+        while (end > 0){
+
+            int dot = hostSuffix.lastIndexOf('.', end - 1);
+            String label = hostSuffix.substring(dot + 1, end);
+            HostSuffixTrie child = node.mChildren.get(label);
+
+            if(child == null){
+                if(create == false){
+                    return null;
+                }
+                child = new HostSuffixTrie();
+                node.mChildren.put(label, child);
+            }
+
+            node = child;
+            end = dot;
+        }
+
+        return node;
+    }
+}
@@ -19,15 +19,17 @@
 
 package io.square1.richtextlib.v2.parser;
 
-import android.util.Log;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
+import java.util.concurrent.CancellationException;
+
 import io.square1.richtextlib.EmbedUtils;
+import io.square1.richtextlib.v2.CancellationToken;
 import io.square1.richtextlib.v2.RichTextV2;
+import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 
 /**
  * Created by roberto on 07/09/15.
@@ -36,6 +38,7 @@ public class InternalContentHandler  implements ContentHandler {
 
     private RichTextV2 mHandler;
     private StringBuilder mAccumulatedText;
+    private CancellationToken mCancellation;
 
     public InternalContentHandler(RichTextV2 context){
         mHandler = context;
@@ -43,6 +46,23 @@ public class InternalContentHandler  implements ContentHandler {
 
     }
 
+    /**
+     * @param cancellation checked before every element is opened or closed, null if the
+     *                     parse can't be cancelled
+     */
+    public void setCancellationToken(CancellationToken cancellation){
+        mCancellation = cancellation;
+    }
+
+    /**
+     * unwinds TagSoup when the parse has been cancelled
+     */
+    private void checkCancelled(){
+        if(mCancellation != null && mCancellation.isCancelled() == true){
+            throw new CancellationException();
+        }
+    }
+
     @Override
     public void setDocumentLocator(Locator locator) {
 
@@ -50,7 +70,7 @@ public class InternalContentHandler  implements ContentHandler {
 
     @Override
     public void startDocument() throws SAXException {
-
+        mAccumulatedText.setLength(0);
     }
 
     @Override
@@ -70,15 +90,15 @@ public class InternalContentHandler  implements ContentHandler {
 
     @Override
     public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
-        Log.i("HTML","TAG -- > open " + localName);
-        mHandler.startElement(uri, localName, atts, mAccumulatedText.toString());
+        checkCancelled();
+        mHandler.startElement(uri, localName, atts, mAccumulatedText);
         mAccumulatedText.setLength(0);
     }
 
     @Override
     public void endElement(String uri, String localName, String qName) throws SAXException {
-        Log.i("HTML","TAG -- > closed " + localName);
-        mHandler.endElement(uri, localName, mAccumulatedText.toString());
+        checkCancelled();
+        mHandler.endElement(uri, localName, mAccumulatedText);
         mAccumulatedText.setLength(0);
     }
 
@@ -133,35 +153,55 @@ public class InternalContentHandler  implements ContentHandler {
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException {
 
-        for (int i = 0; i < length; i++) {
-            char c = ch[i + start];
+        /*
+         * Ignore whitespace that immediately follows other whitespace;
+         * newlines count as spaces. The text between whitespace is appended in one go.
+         */
 
-            if (c == ' ' || c == '\n') {
+        char pred = lastChar();
+        int end = start + length;
+        int run = start;
 
-                char pred;
-                int len = mAccumulatedText.length();
+        for (int i = start; i < end; i++) {
 
-                //no text yet in the accumulated buffer
-                if (len == 0) {
+            char c = ch[i];
 
-                    len =  mHandler.getCurrentOutput().length();
+            if (c == ' ' || c == '\n') {
 
-                    if (len == 0) {
-                        pred = '\n';
-                    } else {
-                        pred =  mHandler.getCurrentOutput().charAt(len - 1);
-                    }
-                } else {
-                    pred = mAccumulatedText.charAt(len - 1);
+                if (i > run) {
+                    mAccumulatedText.append(ch, run, i - run);
+                    pred = ch[i - 1];
                 }
 
                 if (pred != ' ' && pred != '\n') {
                     mAccumulatedText.append(' ');
+                    pred = ' ';
                 }
-            } else {
-                mAccumulatedText.append(c);
+
+                run = i + 1;
             }
         }
+
+        if (end > run) {
+            mAccumulatedText.append(ch, run, end - run);
+        }
+    }
+
+    /**
+     * @return the last character of the text so far, a new line when there is none
+     */
+    private char lastChar(){
+
+        int len = mAccumulatedText.length();
+
+        if (len > 0) {
+            return mAccumulatedText.charAt(len - 1);
+        }
+
+        RichTextDocumentElement output = mHandler.getCurrentOutput();
+        len = output.length();
+
+        return len == 0 ? '\n' : output.charAt(len - 1);
     }
 
 
@@ -172,7 +212,9 @@ public class InternalContentHandler  implements ContentHandler {
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
-
+        if(mHandler.processingInstruction(target, data, mAccumulatedText) == true){
+            mAccumulatedText.setLength(0);
+        }
     }
 
     @Override
@@ -20,29 +20,69 @@
 package io.square1.richtextlib.v2.parser;
 
 import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 import io.square1.richtextlib.spans.Style;
 import io.square1.richtextlib.v2.RichTextV2;
-import io.square1.richtextlib.v2.parser.handlers.DefaultHandler;
-import io.square1.richtextlib.v2.parser.handlers.SCRIPTHandler;
+import io.square1.richtextlib.v2.parser.handlers.DefaultTagHandlers;
+import io.square1.richtextlib.v2.shortcode.ShortcodeRegistry;
+import io.square1.richtextlib.v2.trace.RichTextTracer;
 
 /**
  * Created by roberto on 19/08/15.
+ *
+ * Holds the state of the document being parsed, including the handlers of its tags.
+ * A MarkupContext can't be shared by documents parsed at the same time, see
+ * RichTextEngine.MarkupContextFactory.
  */
 public class MarkupContext {
 
     private HashMap<String,Object> mValues = new HashMap<>();
 
-    private HashMap<String,Class<? extends TagHandler>> mHandlers;
-    private String mHandlersPackage;
+    /**
+     * factories registered on this context, they take precedence over DefaultTagHandlers
+     */
+    private HashMap<String,TagHandlerFactory> mFactories;
+    /**
+     * tag name as reported by the parser -> factory, unsupported tags map to DefaultTagHandlers.UNSUPPORTED
+     */
+    private HashMap<String,TagHandlerFactory> mResolvedFactories;
+    /**
+     * handlers created by stateless factories, reused for every tag with the same name
+     */
+    private HashMap<String,TagHandler> mSharedHandlers;
     private Style mStyle;
     private RichTextV2 mRichTextV2;
+    private RichTextTracer mTracer = RichTextTracer.NONE;
+    private ShortcodeRegistry mShortcodeRegistry = ShortcodeRegistry.DEFAULT;
+    private String mCacheVersion = "";
 
 
     public MarkupContext(){
-        mHandlersPackage = DefaultHandler.class.getPackage().getName();
-        mHandlers = new HashMap<>();
+        mResolvedFactories = new HashMap<>();
+        mSharedHandlers = new HashMap<>();
+    }
+
+    /**
+     * registers the factory used to create the handlers for the given tag on this context,
+     * replacing the default one if any.
+     * @param tag the tag name, not case sensitive
+     * @param factory factories implementing TagHandlerFactory.Stateless will be asked for one handler only
+     */
+    public void register(String tag, TagHandlerFactory factory){
+
+        String name = tag.toLowerCase(Locale.US);
+
+        if(mFactories == null){
+            mFactories = new HashMap<>();
+        }
+
+        mFactories.put(name, factory);
+        mResolvedFactories.clear();
+        mSharedHandlers.clear();
     }
 
     public final  void setRichText(RichTextV2 richText){
@@ -62,44 +102,116 @@ public class MarkupContext {
         return mStyle;
     }
 
-    public TagHandler getTagHandler(MarkupTag tag){
+    /**
+     * @param tracer receives the parse events of the documents parsed with this context, null to disable tracing
+     */
+    public void setTracer(RichTextTracer tracer){
+        mTracer = tracer != null ? tracer : RichTextTracer.NONE;
+    }
 
-        Class<? extends TagHandler> tagHandlerClass = mHandlers.get(tag.tag);
+    public RichTextTracer getTracer(){
+        return mTracer;
+    }
 
-        if(tagHandlerClass == null){
+    /**
+     * @param registry the WordPress shortcodes rewritten when Style.parseWordPressTags is true,
+     *                 null restores ShortcodeRegistry.DEFAULT
+     */
+    public void setShortcodeRegistry(ShortcodeRegistry registry){
+        mShortcodeRegistry = registry != null ? registry : ShortcodeRegistry.DEFAULT;
+    }
 
-            String handlerClassName = mHandlersPackage + "." + tag.tag.toUpperCase() + "Handler";
-            try {
-                tagHandlerClass = (Class<? extends TagHandler>) Class.forName(handlerClassName);
+    public ShortcodeRegistry getShortcodeRegistry(){
+        return mShortcodeRegistry;
+    }
 
-                if(tagHandlerClass != null) {
-                    mHandlers.put(tag.tag,tagHandlerClass);
-                }
+    /**
+     * @param version part of the key RichDocumentCache keeps the documents parsed with this
+     *                context by. Registered handlers and shortcode rewriters are told apart by
+     *                class, change the version when one of them is configured to produce a
+     *                different output.
+     */
+    public void setCacheVersion(String version){
+        mCacheVersion = version != null ? version : "";
+    }
+
+    public String getCacheVersion(){
+        return mCacheVersion;
+    }
 
-            }catch (Exception e){
+    /**
+     * @return what the documents parsed with this context depend on besides their source and
+     * Style: the class of the context, the registered handlers, the shortcodes and the cache version
+     */
+    public String getCacheKey(){
 
+        StringBuilder key = new StringBuilder(getClass().getName()).append(' ');
+
+        if(mFactories != null){
+            for(Map.Entry<String,TagHandlerFactory> entry : new TreeMap<>(mFactories).entrySet()){
+                key.append(entry.getKey())
+                        .append('=')
+                        .append(entry.getValue().getClass().getName())
+                        .append(' ');
             }
         }
 
-        try {
+        return key.append(mShortcodeRegistry.getCacheKey())
+                .append(' ')
+                .append(mCacheVersion)
+                .toString();
+    }
+
+    public TagHandler getTagHandler(MarkupTag tag){
 
-            TagHandler handler =  tagHandlerClass.newInstance();
-            handler.replaceContext(this);
+        TagHandler handler = mSharedHandlers.get(tag.tag);
+
+        if(handler != null){
             return handler;
+        }
+
+        TagHandlerFactory factory = resolveFactory(tag.tag);
+        handler = factory.newTagHandler();
+        handler.replaceContext(this);
+
+        if(factory instanceof TagHandlerFactory.Stateless){
+            mSharedHandlers.put(tag.tag, handler);
+        }
+
+        return handler;
+    }
+
+    private TagHandlerFactory resolveFactory(String tag){
+
+        TagHandlerFactory factory = mResolvedFactories.get(tag);
+
+        if(factory == null){
+
+            String name = tag.toLowerCase(Locale.US);
+
+            if(mFactories != null){
+                factory = mFactories.get(name);
+            }
+
+            if(factory == null){
+                factory = DefaultTagHandlers.get(name);
+            }
+
+            if(factory == null){
+                factory = DefaultTagHandlers.UNSUPPORTED;
+            }
 
-        }catch (Exception e){
-            Exception ex = e;
-            TagHandler defaultHandler = new DefaultHandler();
-            tag.setTagHandler(defaultHandler);
-            return defaultHandler;
+            mResolvedFactories.put(tag, factory);
         }
 
+        return factory;
     }
 
     public final TagHandler tagHandlerInstance(MarkupTag tag){
 
         TagHandler handler = getTagHandler(tag);
         tag.setTagHandler(handler);
+        mRichTextV2.getTracer().onHandlerResolved(tag.tag, handler);
 
         return handler;
     }
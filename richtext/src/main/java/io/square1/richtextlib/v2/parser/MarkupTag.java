@@ -22,7 +22,6 @@ package io.square1.richtextlib.v2.parser;
 import android.text.TextUtils;
 
 import org.xml.sax.Attributes;
-import org.xml.sax.helpers.AttributesImpl;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,31 +39,41 @@ public class MarkupTag {
     public boolean discardOnClosing;
 
     private MarkupTag mParent;
-    private ArrayList<MarkupTag> mChildren;
+    private final String mElementClass;
+    private final boolean mIgnoreAttribute;
+    private boolean mIgnore;
 
     private TagHandler mTagHandler;
 
+    /**
+     * @param attributes read only while the element is open, see LazyAttributes
+     */
     public MarkupTag(String tag, Attributes attributes) {
-        mChildren = new ArrayList<>();
         this.tag = tag;
         this.discardOnClosing = false;
         this.closeOnEnd = true;
         this.duplicateOnStart = true;
-        this.attributes = new AttributesImpl(attributes);
-        String attributeClass = attributes.getValue("class");
-        this.elementClasses = parseClassAttribute(attributeClass);
+        this.attributes = attributes.getLength() > 0 ? new LazyAttributes(attributes) : LazyAttributes.EMPTY;
+        mElementClass = attributes.getValue("class");
+        this.elementClasses = parseClassAttribute(mElementClass);
+        mIgnoreAttribute = attributes.getIndex("", ATT_IGNORE_TAG) > -1;
+        mIgnore = mIgnoreAttribute;
     }
 
     public void setParent(MarkupTag parent){
         mParent = parent;
+        mIgnore = mIgnoreAttribute || (parent != null && parent.ignoreTag());
     }
+
+    /**
+     * sets this as the parent of tag, children aren't kept so that closed tags can be released
+     */
     public void addChild(MarkupTag tag){
         tag.setParent(this);
-        mChildren.add(tag);
     }
 
     public final String getElementClass(){
-        return attributes.getValue("class");
+        return mElementClass;
     }
 
     public void setTagHandler(TagHandler handler) {
@@ -94,18 +103,11 @@ public class MarkupTag {
 
     /**
      * the ignore flag is either set on the current tag
-     * or it is set on the parent !
+     * or it is set on the parent ! it is worked out when the parent is set.
      *
      * @return true or false
      */
     public boolean ignoreTag(){
-
-        boolean ignore = this.attributes.getIndex("", ATT_IGNORE_TAG) > -1;
-
-        if(ignore == false && mParent != null ){
-            ignore = mParent.ignoreTag();
-        }
-
-        return ignore;
+        return mIgnore;
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.parser;
+
+/**
+ * Creates the TagHandler for a tag, see MarkupContext.register
+ */
+public interface TagHandlerFactory {
+
+    TagHandler newTagHandler();
+
+    /**
+     * marks factories producing handlers that keep no state of their own between
+     * onTagOpen and onTagClose. A MarkupContext creates one of those handlers and
+     * reuses it for every tag with the same name.
+     */
+    interface Stateless extends TagHandlerFactory {
+
+    }
+}
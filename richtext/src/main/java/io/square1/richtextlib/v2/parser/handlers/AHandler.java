@@ -35,18 +35,17 @@ public class AHandler extends TagHandler {
     @Override
     public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
         String href = tag.attributes.getValue("", "href");
-        int len = out.length();
         Markers.Href h = new Markers.Href(href);
-        out.setSpan(h, len, len, Spannable.SPAN_MARK_MARK);
+        out.addMarker(h);
     }
 
     @Override
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         int len = out.length();
-        Object obj = out.getLastSpan(Markers.Href.class);
-        int where = out.getSpanStart(obj);
-        out.removeSpan(obj);
+        Object obj = out.getLastMarker(Markers.Href.class);
+        int where = out.getMarkerStart(obj);
+        out.removeMarker(obj);
 
         if (where != len) {
 
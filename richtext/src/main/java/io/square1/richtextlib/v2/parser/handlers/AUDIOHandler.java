@@ -52,7 +52,7 @@ public class AUDIOHandler extends TagHandler {
     @Override
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
-        Markers.MarkerWithSource source = out.getLastSpan(Markers.MarkerWithSource.class);
+        Markers.MarkerWithSource source = out.getLastMarker(Markers.MarkerWithSource.class);
         if(source != null &&
                 TextUtils.isEmpty(source.src) == false){
 
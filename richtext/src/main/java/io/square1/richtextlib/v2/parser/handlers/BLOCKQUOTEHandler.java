@@ -48,14 +48,14 @@ public class BLOCKQUOTEHandler extends TagHandler {
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         //TODO handle Tweets
-        Markers.Blockquote obj = out.getLastSpan(Markers.Blockquote.class);
+        Markers.Blockquote obj = out.getLastMarker(Markers.Blockquote.class);
         if(obj == null) return;
 
         SpannedBuilderUtils.ensureAtLeastThoseNewLines(out, 2);
 
         int len = out.length();
-        int where = out.getSpanStart(obj);
-        out.removeSpan(obj);
+        int where = out.getMarkerStart(obj);
+        out.removeMarker(obj);
 
             if (where != len) {
                 StyleSpan styleSpan = new StyleSpan(Typeface.ITALIC);
@@ -19,6 +19,7 @@
 
 package io.square1.richtextlib.v2.parser.handlers;
 
+import io.square1.richtextlib.v2.RichTextV2;
 import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 import io.square1.richtextlib.v2.parser.MarkupContext;
 import io.square1.richtextlib.v2.parser.MarkupTag;
@@ -30,22 +31,26 @@ import io.square1.richtextlib.v2.utils.SpannedBuilderUtils;
  */
 public abstract class BaseListHandler extends TagHandler {
 
-    private static int sNestedListsCount = 0;
-
-    public static int getNestedListsCount(){
-        return sNestedListsCount;
+    /**
+     * the nesting level is kept by the document being parsed so that
+     * documents parsed on different threads don't interfere with each other
+     */
+    public static int getNestedListsCount(MarkupContext context){
+        return context.getRichText().getNestedListsCount();
     }
 
     @Override
     public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
         SpannedBuilderUtils.ensureAtLeastThoseNewLines(out, 1);
-        sNestedListsCount ++;
+        RichTextV2 richText = context.getRichText();
+        richText.setNestedListsCount(richText.getNestedListsCount() + 1);
     }
 
     @Override
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
         SpannedBuilderUtils.ensureAtLeastThoseNewLines(out,1);
-        sNestedListsCount --;
+        RichTextV2 richText = context.getRichText();
+        richText.setNestedListsCount(richText.getNestedListsCount() - 1);
 
     }
 
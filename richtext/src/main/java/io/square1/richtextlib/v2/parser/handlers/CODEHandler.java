@@ -48,14 +48,14 @@ public class CODEHandler extends TagHandler {
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         //TODO handle Tweets
-        Markers.Code obj = out.getLastSpan(Markers.Code.class);
+        Markers.Code obj = out.getLastMarker(Markers.Code.class);
         if(obj == null) return;
 
         SpannedBuilderUtils.ensureAtLeastThoseNewLines(out, 2);
 
         int len = out.length();
-        int where = out.getSpanStart(obj);
-        out.removeSpan(obj);
+        int where = out.getMarkerStart(obj);
+        out.removeMarker(obj);
 
             if (where != len) {
                 StyleSpan styleSpan = new StyleSpan(Typeface.ITALIC);
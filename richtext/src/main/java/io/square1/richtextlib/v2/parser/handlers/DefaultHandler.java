@@ -19,9 +19,6 @@
 
 package io.square1.richtextlib.v2.parser.handlers;
 
-import android.util.Log;
-
-import io.square1.richtextlib.v2.RichTextV2;
 import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 import io.square1.richtextlib.v2.parser.MarkupContext;
 import io.square1.richtextlib.v2.parser.MarkupTag;
@@ -34,7 +31,7 @@ public final class DefaultHandler extends TagHandler {
 
     @Override
     public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
-        Log.i(RichTextV2.TAG, tag.tag  + " not supported" );
+        //unsupported tags are reported to the RichTextTracer through onHandlerResolved
     }
 
     @Override
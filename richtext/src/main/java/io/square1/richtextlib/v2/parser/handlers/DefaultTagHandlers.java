@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.parser.handlers;
+
+import java.util.HashMap;
+
+import io.square1.richtextlib.v2.parser.TagHandler;
+import io.square1.richtextlib.v2.parser.TagHandlerFactory;
+
+/**
+ * The handlers MarkupContext uses for the tags it supports out of the box.
+ * Handlers keeping state while their tag is open ( DIV and OL ) are created
+ * for every tag, all the others are shared within a MarkupContext.
+ */
+public final class DefaultTagHandlers {
+
+    /**
+     * used for tags without a handler
+     */
+    public static final TagHandlerFactory UNSUPPORTED = new TagHandlerFactory.Stateless() {
+        @Override
+        public TagHandler newTagHandler() {
+            return new DefaultHandler();
+        }
+    };
+
+    private static final HashMap<String, TagHandlerFactory> FACTORIES = new HashMap<>();
+
+    static {
+
+        FACTORIES.put("a", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new AHandler();
+            }
+        });
+
+        FACTORIES.put("audio", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new AUDIOHandler();
+            }
+        });
+
+        FACTORIES.put("b", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new BHandler();
+            }
+        });
+
+        FACTORIES.put("big", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new BIGHandler();
+            }
+        });
+
+        FACTORIES.put("blockquote", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new BLOCKQUOTEHandler();
+            }
+        });
+
+        FACTORIES.put("br", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new BRHandler();
+            }
+        });
+
+        FACTORIES.put("cite", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new CITEHandler();
+            }
+        });
+
+        FACTORIES.put("code", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new CODEHandler();
+            }
+        });
+
+        FACTORIES.put("dd", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DDHandler();
+            }
+        });
+
+        FACTORIES.put("del", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DELHandler();
+            }
+        });
+
+        FACTORIES.put("dfn", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DFNHandler();
+            }
+        });
+
+        FACTORIES.put("div", new TagHandlerFactory() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DIVHandler();
+            }
+        });
+
+        FACTORIES.put("dl", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DLHandler();
+            }
+        });
+
+        FACTORIES.put("dt", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new DTHandler();
+            }
+        });
+
+        FACTORIES.put("em", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new EMHandler();
+            }
+        });
+
+        FACTORIES.put("font", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new FONTHandler();
+            }
+        });
+
+        FACTORIES.put("h1", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H1Handler();
+            }
+        });
+
+        FACTORIES.put("h2", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H2Handler();
+            }
+        });
+
+        FACTORIES.put("h3", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H3Handler();
+            }
+        });
+
+        FACTORIES.put("h4", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H4Handler();
+            }
+        });
+
+        FACTORIES.put("h5", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H5Handler();
+            }
+        });
+
+        FACTORIES.put("h6", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new H6Handler();
+            }
+        });
+
+        FACTORIES.put("i", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new IHandler();
+            }
+        });
+
+        FACTORIES.put("iframe", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new IFRAMEHandler();
+            }
+        });
+
+        FACTORIES.put("img", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new IMGHandler();
+            }
+        });
+
+        FACTORIES.put("li", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new LIHandler();
+            }
+        });
+
+        FACTORIES.put("ol", new TagHandlerFactory() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new OLHandler();
+            }
+        });
+
+        FACTORIES.put("p", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new PHandler();
+            }
+        });
+
+        FACTORIES.put("s", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SHandler();
+            }
+        });
+
+        FACTORIES.put("script", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SCRIPTHandler();
+            }
+        });
+
+        FACTORIES.put("small", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SMALLHandler();
+            }
+        });
+
+        FACTORIES.put("soundcloud", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SOUNDCLOUDHandler();
+            }
+        });
+
+        FACTORIES.put("source", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SOURCEHandler();
+            }
+        });
+
+        FACTORIES.put("strong", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new STRONGHandler();
+            }
+        });
+
+        FACTORIES.put("style", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new STYLEHandler();
+            }
+        });
+
+        FACTORIES.put("sub", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SUBHandler();
+            }
+        });
+
+        FACTORIES.put("sup", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new SUPHandler();
+            }
+        });
+
+        FACTORIES.put("tt", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new TTHandler();
+            }
+        });
+
+        FACTORIES.put("u", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new UHandler();
+            }
+        });
+
+        FACTORIES.put("ul", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new ULHandler();
+            }
+        });
+
+        FACTORIES.put("video", new TagHandlerFactory.Stateless() {
+            @Override
+            public TagHandler newTagHandler() {
+                return new VIDEOHandler();
+            }
+        });
+    }
+
+    private DefaultTagHandlers(){
+
+    }
+
+    /**
+     * @param tag lower case tag name
+     * @return the factory for tag or null if the tag isn't supported
+     */
+    public static TagHandlerFactory get(String tag){
+        return FACTORIES.get(tag);
+    }
+}
@@ -43,8 +43,7 @@ public class FONTHandler extends TagHandler {
 
         String color = tag.attributes.getValue("", "color");
         String face = tag.attributes.getValue("", "face");
-        int len = out.length();
-        out.setSpan(new Markers.Font(color, face), len, len, Spannable.SPAN_MARK_MARK);
+        out.addMarker(new Markers.Font(color, face));
 
     }
 
@@ -52,10 +51,10 @@ public class FONTHandler extends TagHandler {
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         int len = out.length();
-        Markers.Font f = out.getLastSpan(Markers.Font.class);
-        int where = out.getSpanStart(f);
+        Markers.Font f = out.getLastMarker(Markers.Font.class);
+        int where = out.getMarkerStart(f);
 
-        out.removeSpan(f);
+        out.removeMarker(f);
 
         if (where != len) {
 
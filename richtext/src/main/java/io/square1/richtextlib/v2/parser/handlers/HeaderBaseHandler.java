@@ -54,10 +54,10 @@ public abstract class HeaderBaseHandler extends TagHandler {
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         int len = out.length();
-        Markers.Header header = out.getLastSpan(Markers.Header.class);
+        Markers.Header header = out.getLastMarker(Markers.Header.class);
 
-        int where = out.getSpanStart(header);
-        out.removeSpan(header);
+        int where = out.getMarkerStart(header);
+        out.removeMarker(header);
 
         // Back off not to change only the text, not the blank line.
         while (len > where && out.charAt(len - 1) == '\n') {
@@ -36,7 +36,7 @@ public class LIHandler extends TagHandler {
         SpannedBuilderUtils.ensureAtLeastThoseNewLines(out,1);
         MarkupTag parent = context.getParent(tag,BaseListHandler.class);
 
-        int nestedListsCount = BaseListHandler.getNestedListsCount();
+        int nestedListsCount = BaseListHandler.getNestedListsCount(context);
 
         for (int index = 0; index < nestedListsCount; index ++) {
             out.append(SpannedBuilderUtils.TAB);
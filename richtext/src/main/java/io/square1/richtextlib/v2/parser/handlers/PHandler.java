@@ -20,7 +20,6 @@
 package io.square1.richtextlib.v2.parser.handlers;
 
 import android.text.Spannable;
-import android.text.TextUtils;
 
 import io.square1.richtextlib.v2.content.RichTextDocumentElement;
 import io.square1.richtextlib.v2.parser.MarkupContext;
@@ -38,12 +37,10 @@ public class PHandler extends TagHandler {
     public void onTagOpenAfterSplit(MarkupContext context, MarkupTag tag , RichTextDocumentElement out) {
 
         //we don't want any extra lines here
-        String current = out.contentString();
-
         Markers.P marker = new Markers.P();
         SpannedBuilderUtils.startSpan(out, marker);
         SpannedBuilderUtils.trimTrailNewlines(out, 0);
-        marker.newLinesAtStart = out.contentString().length();
+        marker.newLinesAtStart = out.length();
 //        if(TextUtils.getTrimmedLength(current) > 0 ) {
 //
 //        }else {
@@ -57,12 +54,12 @@ public class PHandler extends TagHandler {
     @Override
     public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
-        String current = out.contentString();
+        boolean blank = out.getNonWhitespaceCount() == 0;
 
         Markers.P marker = new Markers.P();
         SpannedBuilderUtils.startSpan(out, marker);
 
-        if(TextUtils.getTrimmedLength(current) > 0 ) {
+        if(blank == false) {
           marker.newLinesAtStart = SpannedBuilderUtils.ensureAtLeastThoseNewLines(out, 2);
         }else {
             marker.newLinesAtStart = 1;
@@ -75,10 +72,10 @@ public class PHandler extends TagHandler {
     public void onTagClose(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
         int len = out.length();
-        Markers.P obj = out.getLastSpan(Markers.P.class);
-        int where = out.getSpanStart(obj);
+        Markers.P obj = out.getLastMarker(Markers.P.class);
+        int where = out.getMarkerStart(obj);
 
-        out.removeSpan(obj);
+        out.removeMarker(obj);
 
         if (len > obj.newLinesAtStart) {
             SpannedBuilderUtils.ensureAtLeastThoseNewLines(out,1);
@@ -38,7 +38,7 @@ public class SOURCEHandler extends TagHandler {
     @Override
     public void onTagOpen(MarkupContext context, MarkupTag tag, RichTextDocumentElement out) {
 
-        Markers.MarkerWithSource source = out.getLastSpan(Markers.MarkerWithSource.class);
+        Markers.MarkerWithSource source = out.getLastMarker(Markers.MarkerWithSource.class);
         //if src is set in the audio or video tag we ignore this one
         if(source != null && TextUtils.isEmpty(source.src)){
             Attributes attributes = tag.attributes;
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.trace;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.parser.TagHandler;
+
+/**
+ * Aggregates per tag counts and timings without logging anything.
+ * Tag timings are inclusive of the nested tags, from the opening to the closing of the tag.
+ * Safe to share between threads.
+ */
+public class CountingTracer implements RichTextTracer {
+
+    private static class Counter {
+        long count;
+        long nanos;
+    }
+
+    /**
+     * opening times of the tags still open on a thread
+     */
+    private static class OpenTags {
+
+        private long[] mStarts = new long[32];
+        private int mSize;
+
+        void push(long time){
+            if(mSize == mStarts.length){
+                long[] starts = new long[mSize * 2];
+                System.arraycopy(mStarts, 0, starts, 0, mSize);
+                mStarts = starts;
+            }
+            mStarts[mSize ++] = time;
+        }
+
+        long pop(long time){
+            return mSize > 0 ? mStarts[-- mSize] : time;
+        }
+    }
+
+    private final ThreadLocal<OpenTags> mOpenTags = new ThreadLocal<OpenTags>(){
+        @Override
+        protected OpenTags initialValue() {
+            return new OpenTags();
+        }
+    };
+
+    private final HashMap<String, Counter> mTags = new HashMap<>();
+    private final HashMap<String, Counter> mHandlers = new HashMap<>();
+    private final HashMap<String, Counter> mSpans = new HashMap<>();
+    private final HashMap<Phase, Counter> mPhases = new HashMap<>();
+    private long mSplits;
+
+    @Override
+    public void onParseStarted() {
+        // forget the tags left open by a parse unwound on this thread
+        mOpenTags.remove();
+    }
+
+    @Override
+    public void onTagOpen(String tag) {
+        mOpenTags.get().push(System.nanoTime());
+    }
+
+    @Override
+    public void onTagClose(String tag) {
+        long now = System.nanoTime();
+        long elapsed = now - mOpenTags.get().pop(now);
+        synchronized (this) {
+            add(mTags, tag, elapsed);
+        }
+    }
+
+    @Override
+    public synchronized void onHandlerResolved(String tag, TagHandler handler) {
+        add(mHandlers, handler.getClass().getName(), 0);
+    }
+
+    @Override
+    public synchronized void onDocumentSplit(DocumentElement element) {
+        mSplits ++;
+    }
+
+    @Override
+    public synchronized void onSpanCreated(Object span, int start, int end) {
+        add(mSpans, span.getClass().getName(), 0);
+    }
+
+    @Override
+    public synchronized void onPhase(Phase phase, long nanos) {
+        add(mPhases, phase, nanos);
+    }
+
+    private static <K> void add(HashMap<K, Counter> counters, K key, long nanos){
+        Counter counter = counters.get(key);
+        if(counter == null){
+            counter = new Counter();
+            counters.put(key, counter);
+        }
+        counter.count ++;
+        counter.nanos += nanos;
+    }
+
+    private static <K> long count(HashMap<K, Counter> counters, K key){
+        Counter counter = counters.get(key);
+        return counter != null ? counter.count : 0;
+    }
+
+    private static <K> long nanos(HashMap<K, Counter> counters, K key){
+        Counter counter = counters.get(key);
+        return counter != null ? counter.nanos : 0;
+    }
+
+    public synchronized Set<String> getTags(){
+        return new HashSet<>(mTags.keySet());
+    }
+
+    public synchronized long getTagCount(String tag){
+        return count(mTags, tag);
+    }
+
+    public synchronized long getTagNanos(String tag){
+        return nanos(mTags, tag);
+    }
+
+    /**
+     * @param handlerClass the class of the handler
+     * @return how many times a handler of this class was resolved for a tag
+     */
+    public synchronized long getHandlerCount(Class<? extends TagHandler> handlerClass){
+        return count(mHandlers, handlerClass.getName());
+    }
+
+    public synchronized long getSpanCount(Class<?> spanClass){
+        return count(mSpans, spanClass.getName());
+    }
+
+    public synchronized long getSplitCount(){
+        return mSplits;
+    }
+
+    /**
+     * @return how many documents went through the phase
+     */
+    public synchronized long getPhaseCount(Phase phase){
+        return count(mPhases, phase);
+    }
+
+    public synchronized long getPhaseNanos(Phase phase){
+        return nanos(mPhases, phase);
+    }
+
+    public synchronized void reset(){
+        mTags.clear();
+        mHandlers.clear();
+        mSpans.clear();
+        mPhases.clear();
+        mSplits = 0;
+    }
+}
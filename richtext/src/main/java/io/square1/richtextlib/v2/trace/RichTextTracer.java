@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015. Roberto  Prato <https://github.com/robertoprato>
+ *
+ *  *
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package io.square1.richtextlib.v2.trace;
+
+import io.square1.richtextlib.v2.content.DocumentElement;
+import io.square1.richtextlib.v2.parser.TagHandler;
+
+/**
+ * Receives structured events while a document is parsed, set it on the MarkupContext
+ * or on the RichTextEngine.
+ * Callbacks are invoked on the parsing thread, a tracer shared between engines or
+ * threads has to be thread safe.
+ */
+public interface RichTextTracer {
+
+    enum Phase {
+        /**
+         * reported when a document starts. Shortcodes are rewritten while the source
+         * is read and are part of PARSE, except for RichTextEngine.parse(String, Executor)
+         * that rewrites them during this phase
+         */
+        PREPROCESS,
+        /** tokenizing and handling of the tags */
+        PARSE,
+        /** closing of the last output element */
+        FINISH
+    }
+
+    /**
+     * tracer used when none is set, does nothing
+     */
+    RichTextTracer NONE = new Adapter();
+
+    /**
+     * a parse starts on the calling thread, the tags left open on this thread by a parse
+     * that was cancelled or reached a limit won't be closed. Reported once for every
+     * chunk a document is split in, on the thread parsing the chunk.
+     */
+    void onParseStarted();
+
+    void onTagOpen(String tag);
+
+    void onTagClose(String tag);
+
+    void onHandlerResolved(String tag, TagHandler handler);
+
+    /**
+     * the document was split because element was found
+     */
+    void onDocumentSplit(DocumentElement element);
+
+    void onSpanCreated(Object span, int start, int end);
+
+    void onPhase(Phase phase, long nanos);
+
+    /**
+     * empty implementation, extend it to receive only the events of interest
+     */
+    class Adapter implements RichTextTracer {
+
+        @Override
+        public void onParseStarted() {
+
+        }
+
+        @Override
+        public void onTagOpen(String tag) {
+
+        }
+
+        @Override
+        public void onTagClose(String tag) {
+
+        }
+
+        @Override
+        public void onHandlerResolved(String tag, TagHandler handler) {
+
+        }
+
+        @Override
+        public void onDocumentSplit(DocumentElement element) {
+
+        }
+
+        @Override
+        public void onSpanCreated(Object span, int start, int end) {
+
+        }
+
+        @Override
+        public void onPhase(Phase phase, long nanos) {
+
+        }
+    }
+}
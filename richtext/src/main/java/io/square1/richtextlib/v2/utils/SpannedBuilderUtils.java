@@ -42,38 +42,17 @@ public class SpannedBuilderUtils {
 
     public static void trimLeadingNewlines(RichTextDocumentElement text) {
 
-        int len = text.length();
-        int index = 0;
-        boolean found = false;
-        for (index = 0; index < len; index++) {
-
-            if (text.charAt(index) != '\n') {
-                break;
-            }
-            found = true;
-        }
+        int newLines = text.getLeadingNewLines();
 
-        if (found == true) {
-            text.delete(0, index);
+        if (newLines > 0) {
+            text.delete(0, newLines);
         }
 
     }
 
     public static void trimTrailNewlines(RichTextDocumentElement text, int newLinesCountAfter) {
 
-        int len = text.length();
-
-        int currentNewLines = 0;
-
-        while (len > 0) {
-            if (text.charAt(len - 1) == '\n') {
-                currentNewLines++;
-            }
-            else {
-                break;
-            }
-            len--;
-        }
+        int currentNewLines = text.getTrailingNewLines();
 
         ///at the end of the process the string must end with
         //at max newLinesCount
@@ -86,19 +65,7 @@ public class SpannedBuilderUtils {
 
     public static int ensureAtLeastThoseNewLines(RichTextDocumentElement text, int newLines) {
 
-        int len = text.length();
-
-        int currentNewLines = 0;
-
-        while (len > 0) {
-            if (text.charAt(len - 1) == '\n') {
-                currentNewLines++;
-            }
-            else {
-                break;
-            }
-            len--;
-        }
+        int currentNewLines = text.getTrailingNewLines();
 
         newLines = newLines - currentNewLines;
 
@@ -213,8 +180,17 @@ public class SpannedBuilderUtils {
         builder.setSpan(new URLSpan(link), len, len + text.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
 
+    /**
+     * marks where an element starts, on a RichTextDocumentElement the mark is one of its
+     * markers rather than a span
+     */
     public static void startSpan(Spannable text, Object mark) {
 
+        if(text instanceof RichTextDocumentElement){
+            ((RichTextDocumentElement) text).addMarker(mark);
+            return;
+        }
+
         int len = text.length();
         text.setSpan(mark, len, len, Spannable.SPAN_MARK_MARK);
     }
@@ -222,10 +198,10 @@ public class SpannedBuilderUtils {
     public static void endSpan(RichTextDocumentElement text, Class kind, Object repl) {
 
         int len = text.length();
-        Object obj = text.getLastSpan(kind);
-        int where = text.getSpanStart(obj);
+        Object obj = text.getLastMarker(kind);
+        int where = text.getMarkerStart(obj);
 
-        text.removeSpan(obj);
+        text.removeMarker(obj);
 
         if (where != len) {
             text.setSpan(repl, where, len, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);